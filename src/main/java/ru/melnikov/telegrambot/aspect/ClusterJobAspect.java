@@ -0,0 +1,59 @@
+package ru.melnikov.telegrambot.aspect;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
+import ru.melnikov.telegrambot.scheduler.ScheduledJobRegistry;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Задачи с @ClusterSingleton выполняются только на ведущем экземпляре
+ * и один раз на плановый момент (см. SchedulerLeadership).
+ * Работает внутри ScheduledJobAspect, который уже определил плановый момент запуска
+ */
+@Aspect
+@Component
+@Order(2)
+@RequiredArgsConstructor
+public class ClusterJobAspect {
+
+    private final SchedulerLeadership leadership;
+    private final ScheduledJobRegistry registry;
+
+    @Around("@annotation(clusterSingleton) && @annotation(scheduled)")
+    public Object runOnLeader(ProceedingJoinPoint joinPoint, ClusterSingleton clusterSingleton,
+                              Scheduled scheduled) throws Throwable {
+        String name = ScheduledJobAspect.jobName(joinPoint);
+        LocalDateTime slot = slotOf(registry.job(name, scheduled), LocalDateTime.now());
+        if (!leadership.claim(name, slot)) {
+            return null;
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * Плановый момент, одинаковый на всех экземплярах: совпадение cron
+     * или начало интервала fixedDelay/fixedRate от начала эпохи
+     */
+    private static LocalDateTime slotOf(ScheduledJobRegistry.Job job, LocalDateTime now) {
+        if (job.cron() != null && job.currentExpected() != null) {
+            return job.currentExpected();
+        }
+        long period = job.periodMs();
+        if (job.cron() != null || period <= 0) {
+            return now.truncatedTo(ChronoUnit.SECONDS);
+        }
+        long millis = now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis - millis % period), ZoneId.systemDefault());
+    }
+}
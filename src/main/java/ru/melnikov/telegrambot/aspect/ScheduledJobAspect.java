@@ -0,0 +1,51 @@
+package ru.melnikov.telegrambot.aspect;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.scheduler.ScheduledJobRegistry;
+
+import java.time.LocalDateTime;
+
+/**
+ * Учет периодических задач: защита от наложения запусков, опоздание старта,
+ * длительность и ошибки (см. ScheduledJobRegistry)
+ */
+@Aspect
+@Component
+@Order(1)
+@RequiredArgsConstructor
+public class ScheduledJobAspect {
+
+    private final ScheduledJobRegistry registry;
+
+    @Around("@annotation(scheduled) && within(ru.melnikov.telegrambot..*)")
+    public Object monitorJob(ProceedingJoinPoint joinPoint, Scheduled scheduled) throws Throwable {
+        String name = jobName(joinPoint);
+        ScheduledJobRegistry.Job job = registry.job(name, scheduled);
+
+        LocalDateTime start = LocalDateTime.now();
+        if (!job.tryStart(start)) {
+            return null;
+        }
+
+        Throwable error = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            job.finish(start, LocalDateTime.now(), error);
+        }
+    }
+
+    static String jobName(ProceedingJoinPoint joinPoint) {
+        return joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+    }
+}
@@ -1,23 +1,26 @@
 package ru.melnikov.telegrambot.bot;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.telegram.telegrambots.meta.api.methods.ParseMode;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Chat;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
 import ru.melnikov.telegrambot.bot.context.CommandContext;
 import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.dto.DeadlineView;
 import ru.melnikov.telegrambot.model.BotChat;
-import ru.melnikov.telegrambot.model.Deadline;
+import ru.melnikov.telegrambot.model.ChatSettings;
 import ru.melnikov.telegrambot.model.Schedule;
 import ru.melnikov.telegrambot.service.*;
 
 import java.time.DayOfWeek;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.*;
@@ -39,18 +42,51 @@ public class CommandService {
     private final AdminCheckService adminCheckService;
     private final BotSettingsConfig settingsConfig;
     private final WeekTypeService weekTypeService;
+    private final DailyPlanService dailyPlanService;
     private final ChatEventService chatEventService;
     private final ConfigService configService;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
     private static final Locale RUSSIAN_LOCALE = new Locale("ru");
 
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
     public SendMessage handle(CommandType type, CommandContext ctx) {
         // Автоматическое логирование через аспект
         performanceMonitor.incrementCommand(type.name());
 
+        // Читающие команды выполняются в одной read-only транзакции: все запросы
+        // команды идут через одно соединение из пула, сессия Hibernate не делает flush,
+        // а PostgreSQL получает BEGIN READ ONLY.
+        // Изменяющие команды не оборачиваются — их сервисы управляют транзакциями сами
+        if (type.isReadOnly()) {
+            return handleReadOnly(type, ctx);
+        }
+        return dispatch(type, ctx);
+    }
+
+    private SendMessage handleReadOnly(CommandType type, CommandContext ctx) {
+        SendMessage[] result = new SendMessage[1];
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> result[0] = dispatch(type, ctx));
+        } catch (UnexpectedRollbackException e) {
+            // Обработчик сам перехватил ошибку репозитория, и транзакция помечена на откат.
+            // Для читающей команды откат ничего не меняет — ответ уже сформирован
+            log.debug("Read-only транзакция команды {} откачена: {}", type, e.getMessage());
+        }
+        return result[0];
+    }
+
+    private SendMessage dispatch(CommandType type, CommandContext ctx) {
         return switch (type) {
             case START -> start(ctx);
             case TODAY -> today(ctx);
@@ -347,151 +383,8 @@ public class CommandService {
     }
 
     private SendMessage today(CommandContext ctx) {
-        // Используем WeekTypeService для определения типа недели
-        String currentWeekType = weekTypeService.getCurrentWeekType();
-        String weekTypeDisplay = weekTypeService.getWeekTypeDisplayName(currentWeekType);
-        String weekTypeEmoji = weekTypeService.getWeekTypeEmoji(currentWeekType);
-
-        // Получаем номер дня недели (1-7)
-        DayOfWeek todayDayOfWeek = LocalDate.now().getDayOfWeek();
-        int dayNumber = todayDayOfWeek.getValue();
-
-        // Получаем ВСЕ расписания для этого дня недели
-        List<Schedule> allScheduleList = scheduleService.findEntitiesByDay(dayNumber);
-
-        // ✅ ИСПРАВЛЕНИЕ: Фильтруем как в методе day()
-        List<Schedule> filteredScheduleList = allScheduleList.stream()
-                .filter(s -> {
-                    String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
-                    return scheduleWeekType.equals(currentWeekType) || scheduleWeekType.equals("all");
-                })
-                .sorted(Comparator.comparing(Schedule::getTimeStart))
-                .toList();
-
-        // Логируем для отладки
-        log.debug("Сегодня день: {} (номер: {}), тип недели: {} ({}), всего пар в БД: {}, после фильтрации: {}",
-                todayDayOfWeek.getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE),
-                dayNumber,
-                currentWeekType, weekTypeDisplay,
-                allScheduleList.size(),
-                filteredScheduleList.size());
-
-        if (filteredScheduleList.isEmpty()) {
-            return reply(ctx, String.format("""
-                📭 *Сегодня занятий нет!* 📭
-                📅 *День:* %s
-                🗓️ *Тип недели:* %s %s
-                
-                🎉 *Можно отдохнуть или заняться саморазвитием:*
-                • Повторите пройденный материал
-                • Подготовьтесь к будущим занятиям
-                • Отдохните и наберитесь сил
-                
-                💡 *Что дальше?*
-                /day [1-7] – посмотреть другой день
-                /deadlines – проверить дедлайны
-                """,
-                    todayDayOfWeek.getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE),
-                    weekTypeEmoji, weekTypeDisplay));
-        }
-
-        String dayName = todayDayOfWeek.getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE);
-
-        // Форматируем расписание
-        StringBuilder scheduleText = new StringBuilder();
-
-        for (int i = 0; i < filteredScheduleList.size(); i++) {
-            Schedule s = filteredScheduleList.get(i);
-            String timeRange = String.format("%s-%s",
-                    s.getTimeStart().format(TIME_FORMATTER),
-                    s.getTimeEnd().format(TIME_FORMATTER));
-
-            String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
-
-            // Эмодзи для каждой пары
-            String pairWeekTypeEmoji;
-            String pairWeekTypeText;
-
-            if ("odd".equals(scheduleWeekType)) {
-                pairWeekTypeEmoji = "1️⃣";
-                pairWeekTypeText = "числитель";
-            } else if ("even".equals(scheduleWeekType)) {
-                pairWeekTypeEmoji = "2️⃣";
-                pairWeekTypeText = "знаменатель";
-            } else {
-                pairWeekTypeEmoji = "🔄";
-                pairWeekTypeText = "обе недели";
-            }
-
-            String onlineEmoji = (s.getIsOnline() != null && s.getIsOnline()) ? "💻" : "🏫";
-
-            scheduleText.append(String.format("%d. %s %s\n", i + 1, pairWeekTypeEmoji, onlineEmoji))
-                    .append(String.format("   ⏰ *%s*\n", timeRange))
-                    .append(String.format("   📖 %s (%s)\n", s.getSubject(), pairWeekTypeText));
-
-            if (s.getTeacher() != null && !s.getTeacher().isBlank()) {
-                scheduleText.append(String.format("   👨‍🏫 %s\n", s.getTeacher()));
-            }
-
-            if (s.getLocation() != null && !s.getLocation().isBlank()) {
-                String location = (s.getIsOnline() != null && s.getIsOnline()) ?
-                        "Онлайн" : s.getLocation();
-                scheduleText.append(String.format("   📍 %s\n", location));
-            }
-
-            scheduleText.append("\n");
-        }
-
-        int totalPairs = filteredScheduleList.size();
-        int onlinePairs = (int) filteredScheduleList.stream()
-                .filter(s -> s.getIsOnline() != null && s.getIsOnline())
-                .count();
-        int offlinePairs = totalPairs - onlinePairs;
-
-        LocalTime firstTime = getFirstPairTime(filteredScheduleList);
-        LocalTime lastTime = getLastPairTime(filteredScheduleList);
-
-        String response = String.format("""
-            📋 *РАСПИСАНИЕ НА СЕГОДНЯ* 📋
-            📅 *День:* %s
-            🗓️ *Тип недели:* %s %s
-            
-            %s
-            
-            📊 *Статистика дня:*
-            📝 Всего пар: %d
-            🏫 Очных: %d
-            💻 Онлайн: %d
-            
-            ⏰ *Временные границы:*
-            🕐 Начало: %s
-            🕔 Конец: %s
-            
-            💡 *Другие команды:*
-            /day [1-7] – другой день недели
-            /deadlines – дедлайны работ
-            """,
-                dayName.substring(0, 1).toUpperCase() + dayName.substring(1),
-                weekTypeEmoji, weekTypeDisplay,
-                scheduleText.toString(),
-                totalPairs,
-                offlinePairs,
-                onlinePairs,
-                firstTime != null ? firstTime.format(TIME_FORMATTER) : "—",
-                lastTime != null ? lastTime.format(TIME_FORMATTER) : "—");
-
-        log.info("========== DEBUG /today ==========");
-        log.info("Сегодня: {} (день {}), weekType: {}",
-                LocalDate.now(), dayNumber, currentWeekType);
-        log.info("Всего пар в БД для дня {}: {}", dayNumber, allScheduleList.size());
-        for (Schedule s : allScheduleList) {
-            log.info("Пара в БД: {} (week_type: {})",
-                    s.getSubject(), s.getWeekType() != null ? s.getWeekType() : "all");
-        }
-        log.info("После фильтрации (weekType={}): {} пар",
-                currentWeekType, filteredScheduleList.size());
-        log.info("========== END DEBUG ==========");
-        return reply(ctx, response);
+        // План дня строится заранее: в полночь и при изменении расписания или настроек
+        return reply(ctx, dailyPlanService.current().todayText());
     }
 
     private SendMessage day(CommandContext ctx) {
@@ -840,25 +733,9 @@ public class CommandService {
     }
 
     private SendMessage deadlines(CommandContext ctx) {
-        // Получаем ВСЕ дедлайны
-        var allDeadlines = deadlineService.findAllDeadlinesSorted();
-
-        // Фильтруем дедлайны:
-        // 1. Показываем все будущие дедлайны (deadlineAt > now)
-        // 2. Показываем просроченные, но не более чем на 7 дней
+        // Актуальные дедлайны: все будущие и просроченные не более чем на 7 дней (выборка по индексу)
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime sevenDaysAgo = now.minusDays(7);
-
-        var filteredDeadlines = allDeadlines.stream()
-                .filter(d -> {
-                    LocalDateTime deadlineTime = d.getDeadlineAt();
-                    // Показываем если:
-                    // 1. Дедлайн в будущем
-                    // 2. ИЛИ дедлайн просрочен, но не более чем на 7 дней
-                    return deadlineTime.isAfter(now) ||
-                            (deadlineTime.isBefore(now) && deadlineTime.isAfter(sevenDaysAgo));
-                })
-                .toList();
+        List<DeadlineView> filteredDeadlines = deadlineService.findActual(now);
 
         if (filteredDeadlines.isEmpty()) {
             return reply(ctx, """
@@ -879,7 +756,7 @@ public class CommandService {
         }
 
         // Сортируем по дате дедлайна
-        List<Deadline> sortedDeadlines = new ArrayList<>(filteredDeadlines);
+        List<DeadlineView> sortedDeadlines = new ArrayList<>(filteredDeadlines);
         sortedDeadlines.sort((d1, d2) -> {
             boolean d1Overdue = d1.getDeadlineAt().isBefore(now);
             boolean d2Overdue = d2.getDeadlineAt().isBefore(now);
@@ -1266,14 +1143,13 @@ public class CommandService {
         }
 
         BotChat chat = chatOpt.get();
-        Map<String, Object> settings = chat.getSettings();
+        ChatSettings settings = chat.getSettings();
 
         // Настройки из YML
         int minutesBefore = settingsConfig.getReminders().getBeforeClass().getMinutes();
-        boolean beforeClassEnabled = settingsConfig.getReminders().getBeforeClass().getEnabled();
 
         // Проверяем, включены ли напоминания перед парой для этого чата
-        boolean chatBeforeClassEnabled = (boolean) settings.getOrDefault("before_class_enabled", beforeClassEnabled);
+        boolean chatBeforeClassEnabled = settings.beforeClassEnabled();
 
         // Настройки из YML
         String scheduleTime = settingsConfig.getReminders().getSchedule().getTime();
@@ -1281,8 +1157,8 @@ public class CommandService {
         String deadlineDays = formatDaysOfWeek(settingsConfig.getReminders().getDeadlines().getDays());
 
         // Настройки из БД чата
-        boolean scheduleEnabled = (boolean) settings.getOrDefault("schedule_notifications", true);
-        boolean deadlineEnabled = (boolean) settings.getOrDefault("deadline_notifications", true);
+        boolean scheduleEnabled = settings.scheduleNotifications();
+        boolean deadlineEnabled = settings.deadlineNotifications();
 
         StringBuilder response = new StringBuilder();
         response.append("🔔 *ТЕКУЩИЕ НАСТРОЙКИ НАПОМИНАНИЙ*\n\n");
@@ -1607,10 +1483,10 @@ public class CommandService {
         }
 
         BotChat chat = chatOpt.get();
-        Map<String, Object> settings = chat.getSettings();
+        ChatSettings settings = chat.getSettings();
 
-        boolean welcomeEnabled = (boolean) settings.getOrDefault("welcome_message", true);
-        boolean mentionsEnabled = (boolean) settings.getOrDefault("mention_all_enabled", true);
+        boolean welcomeEnabled = settings.welcomeMessage();
+        boolean mentionsEnabled = settings.mentionAllEnabled();
 
         return reply(ctx, String.format("""
             ⚙️ *НАСТРОЙКИ ГРУППЫ «%s»*
@@ -1738,20 +1614,6 @@ public class CommandService {
         return sb.toString();
     }
 
-    private LocalTime getFirstPairTime(List<Schedule> scheduleList) {
-        return scheduleList.stream()
-                .map(Schedule::getTimeStart)
-                .min(LocalTime::compareTo)
-                .orElse(null);
-    }
-
-    private LocalTime getLastPairTime(List<Schedule> scheduleList) {
-        return scheduleList.stream()
-                .map(Schedule::getTimeEnd)
-                .max(LocalTime::compareTo)
-                .orElse(null);
-    }
-
     private int countOnlinePairs(List<Schedule> scheduleList) {
         return (int) scheduleList.stream()
                 .filter(s -> s.getIsOnline() != null && s.getIsOnline())
@@ -4,29 +4,36 @@ import java.util.Arrays;
 
 public enum CommandType {
     START("/start", "Начать работу"),
-    TODAY("/today", "Расписание на сегодня"),
-    DAY("/day", "Расписание по дню"),
-    WEEK("/week", "Расписание на неделю"),
-    DEADLINES("/deadlines", "Ближайшие дедлайны"),
-    LINKS("/links", "Полезные ссылки"),
-    TAG("/tag", "Упомянуть группу"),
-    HELP("/help", "Помощь"),
+    TODAY("/today", "Расписание на сегодня", true),
+    DAY("/day", "Расписание по дню", true),
+    WEEK("/week", "Расписание на неделю", true),
+    DEADLINES("/deadlines", "Ближайшие дедлайны", true),
+    LINKS("/links", "Полезные ссылки", true),
+    TAG("/tag", "Упомянуть группу", true),
+    HELP("/help", "Помощь", true),
     REMINDERS("/reminders", "Управление напоминаниями"),
-    SETTINGS("/settings", "Настройки группы"),
+    SETTINGS("/settings", "Настройки группы", true),
     ADMIN("/admin", "Проверка админских прав"),
     SETTOPIC("/settopic", "Установить тему для бота"),
-    CHATINFO("/chatinfo", "Информация о чате"),
+    CHATINFO("/chatinfo", "Информация о чате", true),
     IAMADMIN("/iamadmin", "Установить бота как администратора"), // ← НОВАЯ
     SETADMIN("/setadmin", "Установить бота как администратора"), // ← НОВАЯ
     CONFIG("/config", "Управление конфигурацией"),
-    UNKNOWN("", "");
+    UNKNOWN("", "", true);
 
     private final String command;
     private final String description;
+    // Команда только читает данные — выполняется в одной read-only транзакции
+    private final boolean readOnly;
 
     CommandType(String command, String description) {
+        this(command, description, false);
+    }
+
+    CommandType(String command, String description, boolean readOnly) {
         this.command = command;
         this.description = description;
+        this.readOnly = readOnly;
     }
 
     public String getCommand() {
@@ -37,6 +44,10 @@ public enum CommandType {
         return description;
     }
 
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     public static CommandType fromText(String text) {
         if (text == null || text.trim().isEmpty()) return UNKNOWN;
 
@@ -0,0 +1,27 @@
+package ru.melnikov.telegrambot.cache;
+
+import java.util.List;
+
+/**
+ * Имена регионов кеша второго уровня Hibernate.
+ * Размер и время жизни каждого региона задаются в hibernate-cache.conf;
+ * регион без настройки там — ошибка старта (missing_cache_strategy: fail).
+ */
+public final class CacheRegions {
+
+    public static final String SCHEDULE = "schedule";
+    public static final String LINKS = "links";
+    public static final String GROUPS = "groups";
+    public static final String GROUP_USERS = "groups.users";
+    public static final String USERS = "users";
+
+    // Стандартные регионы кеша запросов Hibernate
+    public static final String QUERY_RESULTS = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    public static final List<String> ALL = List.of(
+            SCHEDULE, LINKS, GROUPS, GROUP_USERS, USERS, QUERY_RESULTS, UPDATE_TIMESTAMPS);
+
+    private CacheRegions() {
+    }
+}
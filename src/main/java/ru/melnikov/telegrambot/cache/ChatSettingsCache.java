@@ -0,0 +1,255 @@
+package ru.melnikov.telegrambot.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.melnikov.telegrambot.cluster.ChatOwnershipChangedEvent;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.model.BotChat;
+import ru.melnikov.telegrambot.repository.BotChatRepository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-through кеш разобранных настроек чатов.
+ * <p>
+ * Все мутаторы BotChatService и ChatEventService кладут сюда свежий снимок
+ * после сохранения (после коммита, если есть транзакция), поэтому чтения
+ * на горячем пути отправки не ходят в БД и не разбирают jsonb.
+ * <p>
+ * Промах читает БД без блокировки. Чтобы снимок, прочитанный до коммита мутатора,
+ * не лег в кеш после его инвалидации, каждое изменение чата увеличивает счетчик
+ * версий его полосы (chatId -> одна из VERSION_STRIPES), а загрузка кладет снимок,
+ * только если счетчик за время чтения не изменился.
+ * <p>
+ * Внутри read-only транзакции промах читается в отдельной пишущей транзакции:
+ * read-only соединение может прийти с реплики, а снимок с отставанием нельзя
+ * класть в кеш, который дальше обновляют только мутаторы.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatSettingsCache {
+
+    private static final int VERSION_STRIPES = 256;
+
+    private final BotChatRepository botChatRepository;
+    private final BotSettingsConfig settingsConfig;
+    private final PlatformTransactionManager transactionManager;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong staleLoads = new AtomicLong();
+
+    // Счетчики изменений по полосам chatId, под монитором this
+    private final long[] versions = new long[VERSION_STRIPES];
+
+    private LongKeyedLruCache<ChatSettingsSnapshot> cache;
+    private TransactionTemplate primaryTransaction;
+
+    @PostConstruct
+    public void init() {
+        cache = new LongKeyedLruCache<>(getConfig().getMaxSize());
+        primaryTransaction = new TransactionTemplate(transactionManager);
+        primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Получает настройки чата: из памяти, а при промахе — из БД с сохранением в кеш
+     */
+    public Optional<ChatSettingsSnapshot> get(Long chatId) {
+        if (chatId == null) {
+            return Optional.empty();
+        }
+
+        ChatSettingsSnapshot snapshot;
+        long version;
+        synchronized (this) {
+            snapshot = cache.get(chatId, System.currentTimeMillis());
+            version = versions[stripe(chatId)];
+        }
+
+        if (snapshot != null) {
+            hits.incrementAndGet();
+            return Optional.of(snapshot);
+        }
+
+        misses.incrementAndGet();
+        return load(chatId)
+                .map(loaded -> {
+                    synchronized (this) {
+                        if (versions[stripe(chatId)] != version) {
+                            // Пока читали БД, чат изменили: прочитанное могло устареть, в кеш не кладем
+                            staleLoads.incrementAndGet();
+                            ChatSettingsSnapshot current = cache.peek(chatId);
+                            return current != null ? current : loaded;
+                        }
+                        // putIfAbsent: не затираем снимок, который мутатор успел положить параллельно
+                        if (!cache.putIfAbsent(chatId, loaded, System.currentTimeMillis())) {
+                            return cache.peek(chatId);
+                        }
+                    }
+                    return loaded;
+                });
+    }
+
+    /**
+     * Кладет актуальное состояние чата в кеш (после коммита текущей транзакции)
+     */
+    public void put(BotChat chat) {
+        if (chat == null || chat.getChatId() == null) {
+            return;
+        }
+
+        ChatSettingsSnapshot snapshot = toSnapshot(chat);
+        afterCommit(() -> store(snapshot));
+    }
+
+    /**
+     * Убирает чат из кеша — следующее чтение загрузит его из БД
+     */
+    public void invalidate(Long chatId) {
+        if (chatId == null) {
+            return;
+        }
+
+        remove(chatId);
+        afterCommit(() -> remove(chatId));
+    }
+
+    /**
+     * Прогрев кеша активными чатами при старте
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            List<BotChat> activeChats = botChatRepository.findAllActiveChats();
+            int limit = Math.min(activeChats.size(), getConfig().getMaxSize());
+            long now = System.currentTimeMillis();
+
+            synchronized (this) {
+                for (int i = 0; i < limit; i++) {
+                    BotChat chat = activeChats.get(i);
+                    cache.put(chat.getChatId(), toSnapshot(chat), now);
+                }
+            }
+
+            log.info("🔥 Кеш настроек чатов прогрет: {} из {} активных чатов", limit, activeChats.size());
+        } catch (Exception e) {
+            log.error("❌ Ошибка прогрева кеша настроек чатов: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Вытеснение чатов, к которым давно не обращались
+     */
+    @Scheduled(fixedDelay = 600000) // 10 минут
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - getConfig().getIdleTimeout().toMillis();
+        int removed;
+        synchronized (this) {
+            removed = cache.removeIdle(cutoff);
+        }
+
+        if (removed > 0) {
+            evictions.addAndGet(removed);
+            log.debug("🧹 Из кеша настроек вытеснено {} неактивных чатов", removed);
+        }
+    }
+
+    /**
+     * Чаты, которые по новому кольцу принадлежат другим экземплярам, больше сюда не придут
+     */
+    @EventListener
+    public void onOwnershipChanged(ChatOwnershipChangedEvent event) {
+        int removed;
+        synchronized (this) {
+            removed = cache.removeKeys(chatId -> !event.ownedLocally().test(chatId));
+        }
+        if (removed > 0) {
+            log.info("🔀 Из кеша настроек убрано {} чатов, перешедших к другим экземплярам", removed);
+        }
+    }
+
+    /**
+     * Статистика кеша для мониторинга
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", cache.size());
+            stats.put("maxSize", cache.maxSize());
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("evictions", evictions.get());
+        stats.put("staleLoads", staleLoads.get());
+        stats.put("idleTimeout", getConfig().getIdleTimeout().toString());
+        return stats;
+    }
+
+    // ====== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ======
+
+    private Optional<ChatSettingsSnapshot> load(Long chatId) {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return botChatRepository.findByChatId(chatId).map(this::toSnapshot);
+        }
+        return primaryTransaction.execute(status -> botChatRepository.findByChatId(chatId).map(this::toSnapshot));
+    }
+
+    private ChatSettingsSnapshot toSnapshot(BotChat chat) {
+        return ChatSettingsSnapshot.from(chat);
+    }
+
+    private int stripe(long chatId) {
+        return Long.hashCode(chatId) & (VERSION_STRIPES - 1);
+    }
+
+    private synchronized void store(ChatSettingsSnapshot snapshot) {
+        versions[stripe(snapshot.chatId())]++;
+        if (cache.put(snapshot.chatId(), snapshot, System.currentTimeMillis())) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(Long chatId) {
+        versions[stripe(chatId)]++;
+        cache.remove(chatId);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private BotSettingsConfig.CacheConfig.ChatSettingsCacheConfig getConfig() {
+        return settingsConfig.getCache().getChatSettings();
+    }
+}
@@ -0,0 +1,52 @@
+package ru.melnikov.telegrambot.cache;
+
+import ru.melnikov.telegrambot.model.BotChat;
+import ru.melnikov.telegrambot.model.ChatSettings;
+
+/**
+ * Настройки чата, которые нужны на горячем пути отправки:
+ * тема бота, флаги уведомлений и статус администратора.
+ * Неизменяемый снимок — при изменении чата в кеш кладется новый объект.
+ */
+public record ChatSettingsSnapshot(
+        long chatId,
+        String chatType,
+        boolean active,
+        boolean botAdmin,
+        ChatSettings settings) {
+
+    private static final ChatSettings DEFAULT_SETTINGS = ChatSettings.fromLegacyMap(null);
+
+    public static ChatSettingsSnapshot from(BotChat chat) {
+        return new ChatSettingsSnapshot(
+                chat.getChatId(),
+                chat.getChatType(),
+                Boolean.TRUE.equals(chat.getIsActive()),
+                Boolean.TRUE.equals(chat.getIsBotAdmin()),
+                chat.getSettings() != null ? chat.getSettings() : DEFAULT_SETTINGS);
+    }
+
+    public boolean isGroupChat() {
+        return chatType != null && chatType.toLowerCase().contains("group");
+    }
+
+    public boolean scheduleNotifications() {
+        return settings.scheduleNotifications();
+    }
+
+    public boolean deadlineNotifications() {
+        return settings.deadlineNotifications();
+    }
+
+    public boolean beforeClassEnabled() {
+        return settings.beforeClassEnabled();
+    }
+
+    public Integer botTopicId() {
+        return settings.botTopicId();
+    }
+
+    public String botTopicName() {
+        return settings.botTopicName();
+    }
+}
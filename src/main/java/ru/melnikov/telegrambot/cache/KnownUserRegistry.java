@@ -0,0 +1,180 @@
+package ru.melnikov.telegrambot.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.repository.UserRepository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Множество уже зарегистрированных telegram_id с отпечатком имени пользователя.
+ * <p>
+ * Позволяет повторным /start не ходить в БД вообще: если id известен и
+ * username/имя/фамилия не менялись, регистрировать нечего.
+ * Хранится в примитивных массивах (long id + int отпечаток), без boxing.
+ * Загружается из БД при старте; записи не вытесняются — пользователей немного.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnownUserRegistry {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final UserRepository userRepository;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] fingerprints = new int[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Отпечаток изменяемых полей пользователя
+     */
+    public static int fingerprint(String username, String firstName, String lastName) {
+        return Objects.hash(username, firstName, lastName);
+    }
+
+    /**
+     * true, если пользователь известен и его имя не менялось с последней регистрации
+     */
+    public boolean isUpToDate(long telegramId, int fingerprint) {
+        boolean upToDate;
+        synchronized (this) {
+            int slot = find(telegramId);
+            upToDate = slot >= 0 && fingerprints[slot] == fingerprint;
+        }
+
+        (upToDate ? hits : misses).incrementAndGet();
+        return upToDate;
+    }
+
+    /**
+     * Запоминает пользователя. Вызывать после успешной записи в БД
+     */
+    public synchronized void remember(long telegramId, int fingerprint) {
+        int slot = find(telegramId);
+        if (slot >= 0) {
+            fingerprints[slot] = fingerprint;
+            return;
+        }
+
+        if ((size + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+        insert(telegramId, fingerprint);
+    }
+
+    /**
+     * Забывает пользователя (например, после удаления из БД)
+     */
+    public synchronized void forget(long telegramId) {
+        int slot = find(telegramId);
+        if (slot < 0) {
+            return;
+        }
+
+        used[slot] = false;
+        size--;
+
+        // Перевставляем остаток цепочки пробирования, чтобы поиск не обрывался на дыре
+        int mask = ids.length - 1;
+        int index = (slot + 1) & mask;
+        while (used[index]) {
+            used[index] = false;
+            size--;
+            insert(ids[index], fingerprints[index]);
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Загрузка известных пользователей при старте
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            List<Object[]> rows = userRepository.findAllRegistrationFingerprints();
+
+            synchronized (this) {
+                for (Object[] row : rows) {
+                    remember(((Number) row[0]).longValue(),
+                            fingerprint((String) row[1], (String) row[2], (String) row[3]));
+                }
+            }
+
+            log.info("👥 Загружено {} известных пользователей", rows.size());
+        } catch (Exception e) {
+            log.error("❌ Ошибка загрузки известных пользователей: {}", e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", size);
+            stats.put("capacity", ids.length);
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    // ====== ВНУТРЕННЯЯ МЕХАНИКА ТАБЛИЦЫ ======
+
+    private int index(long id, int mask) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int find(long id) {
+        int mask = ids.length - 1;
+        int index = index(id, mask);
+        while (used[index]) {
+            if (ids[index] == id) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long id, int fingerprint) {
+        int mask = ids.length - 1;
+        int index = index(id, mask);
+        while (used[index]) {
+            index = (index + 1) & mask;
+        }
+        ids[index] = id;
+        fingerprints[index] = fingerprint;
+        used[index] = true;
+        size++;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        int[] oldFingerprints = fingerprints;
+        boolean[] oldUsed = used;
+
+        ids = new long[capacity];
+        fingerprints = new int[capacity];
+        used = new boolean[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldUsed[i]) {
+                insert(oldIds[i], oldFingerprints[i]);
+            }
+        }
+    }
+}
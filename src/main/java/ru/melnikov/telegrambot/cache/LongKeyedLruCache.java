@@ -0,0 +1,231 @@
+package ru.melnikov.telegrambot.cache;
+
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Компактный ограниченный кеш с примитивными ключами long.
+ * <p>
+ * Открытая адресация с линейным пробированием: ключи, значения и время
+ * последнего обращения лежат в параллельных массивах, без boxing ключей
+ * и без объектов-узлов. При переполнении вытесняется запись, к которой
+ * дольше всего не обращались.
+ * <p>
+ * Класс НЕ потокобезопасен — синхронизация на стороне владельца.
+ */
+public class LongKeyedLruCache<V> {
+
+    private final int maxSize;
+    private final int mask;
+    private final long[] keys;
+    private final Object[] values;
+    private final long[] lastAccess;
+    private int size;
+
+    public LongKeyedLruCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize должен быть больше 0: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        // Заполненность таблицы не больше 50%, чтобы цепочки пробирования оставались короткими
+        int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+        this.mask = capacity - 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.lastAccess = new long[capacity];
+    }
+
+    /**
+     * Возвращает значение и обновляет время обращения
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key, long now) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        lastAccess[slot] = now;
+        return (V) values[slot];
+    }
+
+    /**
+     * Возвращает значение без обновления времени обращения
+     */
+    @SuppressWarnings("unchecked")
+    public V peek(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Кладет значение. Возвращает true, если ради него была вытеснена другая запись
+     */
+    public boolean put(long key, V value, long now) {
+        if (value == null) {
+            throw new IllegalArgumentException("null-значения не поддерживаются");
+        }
+
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = value;
+            lastAccess[slot] = now;
+            return false;
+        }
+
+        boolean evicted = false;
+        if (size >= maxSize) {
+            deleteSlot(findLeastRecentlyUsed());
+            evicted = true;
+        }
+
+        int index = index(key);
+        while (values[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        lastAccess[index] = now;
+        size++;
+        return evicted;
+    }
+
+    /**
+     * Кладет значение только если ключа еще нет
+     */
+    public boolean putIfAbsent(long key, V value, long now) {
+        if (find(key) >= 0) {
+            return false;
+        }
+        put(key, value, now);
+        return true;
+    }
+
+    public boolean remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        deleteSlot(slot);
+        return true;
+    }
+
+    /**
+     * Удаляет записи, к которым не обращались с момента cutoff.
+     * Возвращает количество удаленных записей
+     */
+    public int removeIdle(long cutoff) {
+        long[] idle = new long[size];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && lastAccess[i] < cutoff) {
+                idle[count++] = keys[i];
+            }
+        }
+        // Удаляем отдельным проходом: сдвиг цепочек при удалении ломает линейный обход
+        for (int i = 0; i < count; i++) {
+            remove(idle[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Удаляет записи с ключами, подходящими под условие.
+     * Возвращает количество удаленных записей
+     */
+    public int removeKeys(LongPredicate condition) {
+        long[] matched = new long[size];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && condition.test(keys[i])) {
+                matched[count++] = keys[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            remove(matched[i]);
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+            keys[i] = 0L;
+            lastAccess[i] = 0L;
+        }
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    // ====== ВНУТРЕННЯЯ МЕХАНИКА ТАБЛИЦЫ ======
+
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int find(long key) {
+        int index = index(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int findLeastRecentlyUsed() {
+        int victim = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && lastAccess[i] < oldest) {
+                oldest = lastAccess[i];
+                victim = i;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Удаление со сдвигом назад: переносим в освободившуюся ячейку элементы,
+     * чья цепочка пробирования проходит через нее, чтобы не нужны были "надгробия"
+     */
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int ideal = index(keys[next]);
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                lastAccess[gap] = lastAccess[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0L;
+        values[gap] = null;
+        lastAccess[gap] = 0L;
+        size--;
+    }
+}
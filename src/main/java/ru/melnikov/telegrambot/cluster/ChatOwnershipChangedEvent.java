@@ -0,0 +1,11 @@
+package ru.melnikov.telegrambot.cluster;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Состав кластера изменился: часть чатов сменила владельца.
+ * ownedLocally — принадлежит ли чат этому экземпляру по новому кольцу
+ */
+public record ChatOwnershipChangedEvent(List<String> nodes, LongPredicate ownedLocally) {
+}
@@ -0,0 +1,273 @@
+package ru.melnikov.telegrambot.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+import ru.melnikov.telegrambot.service.ConfigChangedEvent;
+import ru.melnikov.telegrambot.service.DeadlineChangedEvent;
+import ru.melnikov.telegrambot.service.ReminderChangedEvent;
+import ru.melnikov.telegrambot.service.ScheduleChangedEvent;
+import ru.melnikov.telegrambot.service.SecondLevelCacheService;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Доставка событий изменения данных на остальные экземпляры.
+ * <p>
+ * ScheduleChangedEvent, ReminderChangedEvent, DeadlineChangedEvent и ConfigChangedEvent —
+ * события Spring внутри одного процесса, а отправляет напоминания только ведущий.
+ * Поэтому каждое локальное событие записывается строкой в cluster_events, а каждый экземпляр
+ * раз в eventPollInterval читает строки после последнего увиденного id и публикует у себя
+ * события других экземпляров: движки напоминаний и план дня перестраиваются так же,
+ * как при локальной правке. Перед публикацией сбрасываются затронутые регионы
+ * кеша второго уровня — он у каждого экземпляра свой.
+ * <p>
+ * id выдает последовательность, и строка с меньшим id может стать видимой позже
+ * (транзакция закоммитилась позже). Пропущенные id запоминаются и перечитываются
+ * в течение GAP_TTL_MS. Файл настроек при этом не копируется — ConfigChangedEvent
+ * только перестраивает посчитанные из настроек данные.
+ */
+@Slf4j
+@Component
+public class ClusterEventBridge {
+
+    private static final int BATCH_SIZE = 500;
+    private static final long GAP_TTL_MS = 60000;
+    // Больший разрыв — не гонка коммитов, а откат пачки вставок
+    private static final int MAX_GAP = 1000;
+
+    private static final String SCHEDULE = "schedule";
+    private static final String REMINDER = "reminder";
+    private static final String DEADLINE = "deadline";
+    private static final String CONFIG = "config";
+
+    private static final String POLL_SQL = """
+            SELECT id, node_id, event_type, payload FROM cluster_events
+            WHERE id > ? OR id = ANY(?::bigint[])
+            ORDER BY id LIMIT ?
+            """;
+
+    // Поток, публикующий события других экземпляров: их не нужно записывать снова
+    private static final ThreadLocal<Boolean> REPLAYING = ThreadLocal.withInitial(() -> false);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SchedulerLeadership leadership;
+    private final SecondLevelCacheService secondLevelCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BotSettingsConfig settingsConfig;
+
+    // id -> когда замечен пропуск; меняются только под монитором poll()
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private long lastSeenId = -1;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile LocalDateTime lastPoll;
+    private volatile String lastError;
+
+    public ClusterEventBridge(JdbcTemplate jdbcTemplate,
+                              SchedulerLeadership leadership,
+                              SecondLevelCacheService secondLevelCacheService,
+                              ApplicationEventPublisher eventPublisher,
+                              BotSettingsConfig settingsConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leadership = leadership;
+        this.secondLevelCacheService = secondLevelCacheService;
+        this.eventPublisher = eventPublisher;
+        this.settingsConfig = settingsConfig;
+    }
+
+    /**
+     * Отсчет ведется с текущего конца журнала: все, что было раньше, уже прочитано из БД при старте
+     */
+    @PostConstruct
+    public synchronized void init() {
+        try {
+            lastSeenId = maxId();
+        } catch (DataAccessException e) {
+            // Отсчет начнется с первого удачного опроса
+            log.warn("⚠️ Не удалось прочитать журнал cluster_events: {}", e.getMessage());
+        }
+    }
+
+    // ====== ЛОКАЛЬНЫЕ СОБЫТИЯ ======
+
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        record(SCHEDULE, event.reason());
+    }
+
+    @EventListener
+    public void onReminderChanged(ReminderChangedEvent event) {
+        record(REMINDER, String.valueOf(event.reminderId()));
+    }
+
+    @EventListener
+    public void onDeadlineChanged(DeadlineChangedEvent event) {
+        record(DEADLINE, String.valueOf(event.deadlineId()));
+    }
+
+    @EventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        record(CONFIG, event.path());
+    }
+
+    // ====== СОБЫТИЯ ДРУГИХ ЭКЗЕМПЛЯРОВ ======
+
+    @Scheduled(fixedDelayString = "${telegram.cluster.event-poll-interval:2s}")
+    public synchronized void poll() {
+        try {
+            if (lastSeenId < 0) {
+                lastSeenId = maxId();
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            gaps.values().removeIf(noticedAt -> now - noticedAt > GAP_TTL_MS);
+            String gapIds = gaps.keySet().stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+
+            List<Row> rows = jdbcTemplate.query(POLL_SQL,
+                    (rs, rowNum) -> new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)),
+                    lastSeenId, gapIds, BATCH_SIZE);
+
+            // Несколько правок расписания подряд — одна перестройка
+            Map<Object, Object> events = new LinkedHashMap<>();
+            for (Row row : rows) {
+                if (row.id() > lastSeenId) {
+                    if (row.id() - lastSeenId <= MAX_GAP) {
+                        for (long missing = lastSeenId + 1; missing < row.id(); missing++) {
+                            gaps.put(missing, now);
+                        }
+                    }
+                    lastSeenId = row.id();
+                } else {
+                    gaps.remove(row.id());
+                }
+
+                if (row.nodeId().equals(leadership.getInstanceId())) {
+                    continue;
+                }
+                Object event = toEvent(row);
+                if (event != null) {
+                    events.putIfAbsent(event instanceof ScheduleChangedEvent ? SCHEDULE : event, event);
+                }
+            }
+
+            lastPoll = LocalDateTime.now();
+            lastError = null;
+            replay(events.values());
+        } catch (DataAccessException e) {
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+            log.warn("⚠️ Не удалось прочитать изменения других экземпляров: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Старые строки журнала: все экземпляры давно их прочитали
+     */
+    @ClusterSingleton
+    @Scheduled(cron = "0 50 * * * *") // Каждый час в :50
+    public void cleanup() {
+        int deleted = jdbcTemplate.update(
+                "DELETE FROM cluster_events WHERE created_at < now() - make_interval(secs => ?)",
+                settingsConfig.getCluster().getEventRetention().toSeconds());
+        if (deleted > 0) {
+            log.debug("🧹 Удалено {} старых строк cluster_events", deleted);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("lastSeenId", lastSeenId);
+            stats.put("pendingGaps", gaps.size());
+        }
+        stats.put("published", published.get());
+        stats.put("replayed", replayed.get());
+        stats.put("failures", failures.get());
+        stats.put("lastPoll", lastPoll);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    // ====== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ======
+
+    private void record(String type, String payload) {
+        if (REPLAYING.get()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO cluster_events (node_id, event_type, payload) VALUES (?, ?, ?)",
+                    leadership.getInstanceId(), type, truncate(payload));
+            published.incrementAndGet();
+        } catch (DataAccessException e) {
+            // Локальная правка уже сохранена; остальные экземпляры увидят ее после перезапуска
+            failures.incrementAndGet();
+            log.error("❌ Не удалось передать изменение {} ({}) другим экземплярам: {}", type, payload, e.getMessage());
+        }
+    }
+
+    private void replay(Collection<Object> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        REPLAYING.set(true);
+        try {
+            if (events.stream().anyMatch(ScheduleChangedEvent.class::isInstance)) {
+                secondLevelCacheService.evictSchedule();
+            }
+            for (Object event : events) {
+                try {
+                    eventPublisher.publishEvent(event);
+                    replayed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    log.error("❌ Ошибка обработки изменения с другого экземпляра {}: {}", event, e.getMessage(), e);
+                }
+            }
+        } finally {
+            REPLAYING.remove();
+        }
+        log.debug("📥 Применено {} изменений с других экземпляров", events.size());
+    }
+
+    private static Object toEvent(Row row) {
+        try {
+            return switch (row.type()) {
+                case SCHEDULE -> new ScheduleChangedEvent(row.payload() + " (" + row.nodeId() + ")");
+                case REMINDER -> new ReminderChangedEvent(Long.valueOf(row.payload()));
+                case DEADLINE -> new DeadlineChangedEvent(Long.valueOf(row.payload()));
+                case CONFIG -> new ConfigChangedEvent(row.payload());
+                default -> null;
+            };
+        } catch (NumberFormatException e) {
+            log.warn("⚠️ Некорректная строка cluster_events {}: {}", row.id(), row.payload());
+            return null;
+        }
+    }
+
+    private long maxId() {
+        Long max = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM cluster_events", Long.class);
+        return max != null ? max : 0;
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > 500 ? value.substring(0, 500) : value;
+    }
+
+    private record Row(long id, String nodeId, String type, String payload) {
+    }
+}
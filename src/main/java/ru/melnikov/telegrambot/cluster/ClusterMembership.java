@@ -0,0 +1,219 @@
+package ru.melnikov.telegrambot.cluster;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Состав кластера и владельцы чатов.
+ * <p>
+ * Экземпляры отмечаются в cluster_nodes раз в heartbeatInterval; живыми считаются
+ * отметившиеся за nodeTtl. Чаты распределяются по кольцу согласованного хеширования
+ * (virtualNodes точек на экземпляр), поэтому при входе или выходе экземпляра
+ * меняют владельца только чаты соседних участков кольца, а не все.
+ * При изменении состава публикуется ChatOwnershipChangedEvent — локальные
+ * кеши отпускают чаты, которые теперь принадлежат другим.
+ * <p>
+ * С telegram.cluster.enabled=false кольцо состоит из одного этого экземпляра.
+ */
+@Slf4j
+@Component
+public class ClusterMembership {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BotSettingsConfig settingsConfig;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Node self;
+
+    private volatile Ring ring;
+    private volatile LocalDateTime lastHeartbeat;
+    private volatile String lastError;
+    private volatile long rebalances;
+
+    public ClusterMembership(JdbcTemplate jdbcTemplate,
+                             BotSettingsConfig settingsConfig,
+                             ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.settingsConfig = settingsConfig;
+        this.eventPublisher = eventPublisher;
+        this.self = new Node(ManagementFactory.getRuntimeMXBean().getName(),
+                Objects.requireNonNullElse(getConfig().getNodeUrl(), ""));
+        this.ring = new Ring(List.of(self), getConfig().getVirtualNodes());
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(getConfig().getEnabled());
+    }
+
+    public Node self() {
+        return self;
+    }
+
+    public Node ownerOf(long chatId) {
+        return ring.owner(chatId);
+    }
+
+    public boolean isLocal(long chatId) {
+        return ring.owner(chatId).id().equals(self.id());
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${telegram.cluster.heartbeat-interval:5s}")
+    public synchronized void heartbeat() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        long ttlSeconds = getConfig().getNodeTtl().toSeconds();
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO cluster_nodes (node_id, base_url, started_at, heartbeat_at)
+                    VALUES (?, ?, now(), now())
+                    ON CONFLICT (node_id) DO UPDATE SET base_url = EXCLUDED.base_url, heartbeat_at = now()
+                    """, self.id(), self.baseUrl());
+
+            List<Node> live = jdbcTemplate.query(
+                    "SELECT node_id, base_url FROM cluster_nodes "
+                            + "WHERE heartbeat_at > now() - make_interval(secs => ?) ORDER BY node_id",
+                    (rs, rowNum) -> new Node(rs.getString(1), rs.getString(2)), ttlSeconds);
+
+            // Давно пропавшие экземпляры больше не нужны даже для истории
+            jdbcTemplate.update("DELETE FROM cluster_nodes WHERE heartbeat_at < now() - make_interval(secs => ?)",
+                    ttlSeconds * 10);
+
+            lastHeartbeat = LocalDateTime.now();
+            lastError = null;
+            update(live);
+        } catch (DataAccessException e) {
+            // Без связи с БД остается прежнее кольцо
+            lastError = e.getMessage();
+            log.warn("⚠️ Не удалось обновить состав кластера: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Выход из кластера при остановке: остальные заберут чаты на своей следующей отметке
+     */
+    @PreDestroy
+    public void leave() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM cluster_nodes WHERE node_id = ?", self.id());
+            log.info("👋 Экземпляр {} вышел из кластера", self.id());
+        } catch (DataAccessException e) {
+            log.warn("⚠️ Не удалось выйти из кластера: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Ring current = ring;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("self", self.id());
+        stats.put("nodes", current.nodes());
+        stats.put("ownershipShare", current.shares());
+        stats.put("virtualNodes", getConfig().getVirtualNodes());
+        stats.put("rebalances", rebalances);
+        stats.put("lastHeartbeat", lastHeartbeat);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private void update(List<Node> live) {
+        if (!live.contains(self)) {
+            // Своя отметка могла не попасть в выборку по часам БД — себя не исключаем
+            live = new ArrayList<>(live);
+            live.add(self);
+        }
+        if (live.equals(ring.nodes())) {
+            return;
+        }
+
+        List<String> before = ring.nodes().stream().map(Node::id).toList();
+        ring = new Ring(live, getConfig().getVirtualNodes());
+        rebalances++;
+
+        List<String> after = ring.nodes().stream().map(Node::id).toList();
+        log.info("🔄 Состав кластера изменился: {} → {}", before, after);
+        eventPublisher.publishEvent(new ChatOwnershipChangedEvent(after, this::isLocal));
+    }
+
+    private BotSettingsConfig.ClusterConfig getConfig() {
+        return settingsConfig.getCluster();
+    }
+
+    // ====== КОЛЬЦО ======
+
+    public record Node(String id, String baseUrl) {
+    }
+
+    /**
+     * Неизменяемое кольцо: точки экземпляров по 64-битному хешу, владелец чата —
+     * первая точка по часовой стрелке от хеша chat_id
+     */
+    static final class Ring {
+
+        private final List<Node> nodes;
+        private final TreeMap<Long, Node> points = new TreeMap<>();
+
+        Ring(List<Node> nodes, int virtualNodes) {
+            this.nodes = nodes.stream().sorted(Comparator.comparing(Node::id)).toList();
+            for (Node node : this.nodes) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    points.put(hash(node.id() + "#" + i), node);
+                }
+            }
+        }
+
+        List<Node> nodes() {
+            return nodes;
+        }
+
+        Node owner(long chatId) {
+            Map.Entry<Long, Node> entry = points.ceilingEntry(mix(chatId));
+            return entry != null ? entry.getValue() : points.firstEntry().getValue();
+        }
+
+        /**
+         * Доля хеш-пространства каждого экземпляра
+         */
+        Map<String, Double> shares() {
+            Map<String, Double> shares = new TreeMap<>();
+            double total = Math.pow(2, 64);
+            double previous = (double) points.lastKey() - total;
+            for (Map.Entry<Long, Node> entry : points.entrySet()) {
+                double arc = (double) entry.getKey() - previous;
+                shares.merge(entry.getValue().id(), arc / total, Double::sum);
+                previous = entry.getKey();
+            }
+            return shares;
+        }
+
+        private static long hash(String value) {
+            // FNV-1a с последующим перемешиванием
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        private static long mix(long value) {
+            value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+            value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+            return value ^ (value >>> 31);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package ru.melnikov.telegrambot.cluster;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.melnikov.telegrambot.bot.TelegramBot;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Прием обновлений из вебхука с маршрутизацией по владельцу чата.
+ * <p>
+ * Обновление чужого чата пересылается владельцу (ClusterMembership) без разбора
+ * и повторной сериализации — тело уходит как пришло. Пересланное обновление
+ * обрабатывается на месте, даже если кольцо успело измениться, чтобы не гонять его по кругу.
+ * <p>
+ * Обновление не обрабатывается в потоке запроса, а ставится в очередь своей полосы:
+ * у каждой из LANES полос один поток, полоса выбирается по chat_id, поэтому обновления
+ * одного чата идут строго по порядку. Владелец отвечает 200 сразу после постановки в очередь,
+ * и пересылка не ждет обработки команды.
+ * <p>
+ * Обновление обрабатывается здесь вместо владельца, только если запрос до него точно не дошел
+ * (соединение не установлено) или владелец его не принял (ответ не 2xx). Если запрос ушел,
+ * а ответа нет (тайм-аут, обрыв), владелец мог уже поставить обновление в очередь — повторная
+ * обработка здесь выполнила бы команду дважды, поэтому обновление только учитывается как потерянное.
+ */
+@Slf4j
+@Service
+public class UpdateIngestionService {
+
+    public static final String INTERNAL_PATH = "/internal/updates";
+    public static final String INTERNAL_TOKEN_HEADER = "X-Internal-Token";
+    private static final int LANES = 64;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    // Формат Telegram API разбирается тем же Jackson, что использует библиотека бота
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final TelegramBot telegramBot;
+    private final ClusterMembership membership;
+    private final BotSettingsConfig settingsConfig;
+    private final HttpClient httpClient;
+    private final ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[LANES];
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong receivedForwarded = new AtomicLong();
+    private final AtomicLong processedLocally = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong forwardFailures = new AtomicLong();
+    private final AtomicLong forwardUncertain = new AtomicLong();
+    private final AtomicLong processingFailures = new AtomicLong();
+    private final AtomicLong totalForwardMillis = new AtomicLong();
+    private final LongAccumulator maxForwardMillis = new LongAccumulator(Math::max, 0);
+
+    public UpdateIngestionService(TelegramBot telegramBot,
+                                  ClusterMembership membership,
+                                  BotSettingsConfig settingsConfig) {
+        this.telegramBot = telegramBot;
+        this.membership = membership;
+        this.settingsConfig = settingsConfig;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(settingsConfig.getCluster().getForwardTimeout())
+                .build();
+        for (int i = 0; i < LANES; i++) {
+            String name = "updates-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    /**
+     * Остановка: уже принятые обновления дообрабатываются, новые не принимаются
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        try {
+            for (ExecutorService lane : lanes) {
+                if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.warn("⚠️ Не все принятые обновления обработаны до остановки");
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Принимает тело обновления: пересылает владельцу или ставит в очередь обработки здесь.
+     * Возвращает управление, не дожидаясь обработки. forwardedByPeer — пришло от другого экземпляра
+     */
+    public void accept(String body, boolean forwardedByPeer) throws IOException {
+        Update update = objectMapper.readValue(body, Update.class);
+        Long chatId = chatIdOf(update);
+
+        if (forwardedByPeer) {
+            receivedForwarded.incrementAndGet();
+        } else {
+            received.incrementAndGet();
+            if (chatId != null && membership.isEnabled() && !membership.isLocal(chatId)
+                    && forward(membership.ownerOf(chatId), body, chatId)) {
+                return;
+            }
+        }
+
+        enqueue(update, chatId);
+    }
+
+    public Map<String, Object> getStats() {
+        long forwardCount = forwarded.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("received", received.get());
+        stats.put("receivedForwarded", receivedForwarded.get());
+        stats.put("processedLocally", processedLocally.get());
+        stats.put("forwarded", forwardCount);
+        stats.put("forwardFailures", forwardFailures.get());
+        stats.put("forwardUncertain", forwardUncertain.get());
+        stats.put("processingFailures", processingFailures.get());
+        stats.put("queued", queued());
+        stats.put("avgForwardMillis", forwardCount > 0 ? totalForwardMillis.get() / forwardCount : 0);
+        stats.put("maxForwardMillis", maxForwardMillis.get());
+        return stats;
+    }
+
+    private void enqueue(Update update, Long chatId) {
+        processedLocally.incrementAndGet();
+        long key = chatId != null ? chatId : update.getUpdateId();
+        lanes[Math.floorMod(Long.hashCode(key), LANES)].execute(() -> {
+            try {
+                telegramBot.onUpdateReceived(update);
+            } catch (Exception e) {
+                processingFailures.incrementAndGet();
+                log.error("❌ Ошибка обработки обновления {} чата {}: {}", update.getUpdateId(), chatId, e.getMessage(), e);
+            }
+        });
+    }
+
+    private int queued() {
+        int total = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            total += lane.getQueue().size();
+        }
+        return total;
+    }
+
+    private boolean forward(ClusterMembership.Node owner, String body, long chatId) {
+        long start = System.currentTimeMillis();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(owner.baseUrl() + INTERNAL_PATH))
+                    .timeout(settingsConfig.getCluster().getForwardTimeout())
+                    .header("Content-Type", "application/json")
+                    .header(INTERNAL_TOKEN_HEADER, String.valueOf(settingsConfig.getCluster().getInternalToken()))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                // Владелец ответил, что не принял обновление, — обработать его здесь безопасно
+                log.warn("⚠️ Экземпляр {} не принял обновление чата {}: HTTP {} — обрабатываем здесь",
+                        owner.id(), chatId, response.statusCode());
+                forwardFailures.incrementAndGet();
+                return false;
+            }
+
+            long elapsed = System.currentTimeMillis() - start;
+            forwarded.incrementAndGet();
+            totalForwardMillis.addAndGet(elapsed);
+            maxForwardMillis.accumulate(elapsed);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return uncertain(owner, chatId, e);
+        } catch (IOException e) {
+            if (!neverSent(e)) {
+                return uncertain(owner, chatId, e);
+            }
+            log.warn("⚠️ Экземпляр {} недоступен для обновления чата {}: {} — обрабатываем здесь",
+                    owner.id(), chatId, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Некорректный адрес экземпляра {} для обновления чата {}: {} — обрабатываем здесь",
+                    owner.id(), chatId, e.getMessage());
+        }
+        forwardFailures.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Запрос мог дойти до владельца: повторно здесь не обрабатываем
+     */
+    private boolean uncertain(ClusterMembership.Node owner, long chatId, Exception e) {
+        forwardUncertain.incrementAndGet();
+        log.error("❌ Нет ответа от экземпляра {} на обновление чата {}: {} — обновление могло быть не обработано",
+                owner.id(), chatId, e.getMessage());
+        return true;
+    }
+
+    /**
+     * Соединение с владельцем не установлено — запрос точно не отправлен
+     */
+    static boolean neverSent(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof ConnectException || current instanceof HttpConnectTimeoutException
+                    || current instanceof UnresolvedAddressException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasEditedMessage()) {
+            return update.getEditedMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        if (update.hasMyChatMember()) {
+            return update.getMyChatMember().getChat().getId();
+        }
+        if (update.hasChatMember()) {
+            return update.getChatMember().getChat().getId();
+        }
+        if (update.hasChannelPost()) {
+            return update.getChannelPost().getChatId();
+        }
+        return null;
+    }
+}
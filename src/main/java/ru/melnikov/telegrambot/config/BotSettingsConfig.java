@@ -11,9 +11,13 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Единая точка конфигурации для всех настроек бота.
@@ -37,6 +41,18 @@ public class BotSettingsConfig {
     @NotNull
     private ReminderConfig reminders = new ReminderConfig();
 
+    @NotNull
+    private CacheConfig cache = new CacheConfig();
+
+    @NotNull
+    private AuditConfig audit = new AuditConfig();
+
+    @NotNull
+    private BroadcastConfig broadcast = new BroadcastConfig();
+
+    @NotNull
+    private ClusterConfig cluster = new ClusterConfig();
+
     // ==================== ВЛОЖЕННЫЕ КЛАССЫ ====================
 
     @Data
@@ -51,6 +67,10 @@ public class BotSettingsConfig {
         @NotNull
         private Boolean enabled = true;
 
+        private String webhookUrl; // Публичный адрес вебхука; не задан — обновления забираются long polling
+
+        private String webhookSecret; // Секрет из заголовка X-Telegram-Bot-Api-Secret-Token
+
         public boolean isValid() {
             return token != null && !token.trim().isEmpty() &&
                     username != null && !username.trim().isEmpty();
@@ -146,6 +166,13 @@ public class BotSettingsConfig {
             @Pattern(regexp = "^[01]{7}$", message = "Дни должны быть 7 символов (0 или 1)")
             private String days;
 
+            @NotNull
+            private List<Duration> remindBefore = List.of(
+                    Duration.ofDays(7), Duration.ofDays(1), Duration.ofHours(3)); // Напоминания о каждом дедлайне; пусто — отключены
+
+            @NotNull
+            private Duration actualHorizon = Duration.ofDays(90); // Насколько вперед /deadlines и рассылки показывают дедлайны
+
             public LocalTime getTimeAsLocalTime() {
                 return LocalTime.parse(time, DateTimeFormatter.ofPattern("HH:mm"));
             }
@@ -211,6 +238,128 @@ public class BotSettingsConfig {
 
             @NotBlank
             private String checkInterval;
+
+            @NotNull
+            private Duration catchUpGrace = Duration.ofHours(2); // Рассылка, пропущенная во время простоя, догоняется в этих пределах
         }
     }
-}
\ No newline at end of file
+
+    @Data
+    @Validated
+    public static class CacheConfig {
+        @NotNull
+        private ChatSettingsCacheConfig chatSettings = new ChatSettingsCacheConfig();
+
+        @Data
+        @Validated
+        public static class ChatSettingsCacheConfig {
+            @NotNull
+            @Min(1)
+            private Integer maxSize = 10000; // Максимум чатов в памяти
+
+            @NotNull
+            private Duration idleTimeout = Duration.ofHours(6); // Вытеснение неактивных чатов
+        }
+    }
+
+    @Data
+    @Validated
+    public static class AuditConfig {
+        @NotNull
+        private CommandLogConfig commandLog = new CommandLogConfig();
+
+        @Data
+        @Validated
+        public static class CommandLogConfig {
+            @NotNull
+            @Min(1)
+            private Integer bufferSize = 10000; // Емкость кольцевого буфера, при переполнении записи отбрасываются
+
+            @NotNull
+            @Min(1)
+            @Max(2000)
+            private Integer batchSize = 500; // Максимум строк в одном INSERT
+
+            @NotNull
+            private Duration flushInterval = Duration.ofSeconds(2); // Как часто сбрасывать неполный батч
+
+            @NotNull
+            @Min(1)
+            private Integer retentionDays = 30; // Сколько дней хранить секции command_logs
+
+            @NotNull
+            @Min(1)
+            @Max(60)
+            private Integer partitionsAhead = 7; // На сколько дней вперед создавать секции
+        }
+    }
+
+    @Data
+    @Validated
+    public static class BroadcastConfig {
+        @NotNull
+        @Min(1)
+        @Max(256)
+        private Integer partitions = 8; // На сколько частей делится рассылка (части разбирают все экземпляры)
+
+        @NotNull
+        @Min(1)
+        @Max(30)
+        private Integer globalRatePerSecond = 25; // Общий предел сообщений в секунду на всех экземплярах
+
+        @NotNull
+        private Duration lease = Duration.ofSeconds(60); // Через сколько без отметки прогресса часть переходит другому
+
+        @NotNull
+        @Min(1)
+        private Integer keepDays = 7; // Сколько дней хранить завершенные рассылки
+
+        @NotNull
+        private Map<String, SpreadConfig> spread = new HashMap<>(); // Окна рассылок по ключу (groups.schedule и т.п.)
+
+        public SpreadConfig spreadFor(String key) {
+            return spread.getOrDefault(key, new SpreadConfig());
+        }
+
+        @Data
+        @Validated
+        public static class SpreadConfig {
+            @NotNull
+            private Duration startBefore = Duration.ZERO; // Насколько раньше планового времени открывается окно
+
+            @NotNull
+            private Duration window = Duration.ZERO; // Длина окна; 0 — отправка сразу всем
+        }
+    }
+
+    @Data
+    @Validated
+    public static class ClusterConfig {
+        @NotNull
+        private Boolean enabled = false; // Распределение чатов между экземплярами по кольцу
+
+        private String nodeUrl; // Внутренний адрес этого экземпляра для пересылки обновлений (http://host:port)
+
+        private String internalToken; // Общий секрет экземпляров для /internal/updates
+
+        @NotNull
+        private Duration heartbeatInterval = Duration.ofSeconds(5); // Как часто экземпляр отмечается в cluster_nodes
+
+        @NotNull
+        private Duration nodeTtl = Duration.ofSeconds(20); // Без отметки дольше этого экземпляр выпадает из кольца
+
+        @NotNull
+        @Min(1)
+        @Max(1024)
+        private Integer virtualNodes = 64; // Точек на кольце у каждого экземпляра
+
+        @NotNull
+        private Duration forwardTimeout = Duration.ofSeconds(3); // Тайм-аут пересылки обновления владельцу
+
+        @NotNull
+        private Duration eventPollInterval = Duration.ofSeconds(2); // Как часто читать cluster_events
+
+        @NotNull
+        private Duration eventRetention = Duration.ofDays(1); // Сколько хранить строки cluster_events
+    }
+}
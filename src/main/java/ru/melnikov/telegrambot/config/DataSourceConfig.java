@@ -0,0 +1,34 @@
+package ru.melnikov.telegrambot.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Оборачивает пул соединений в MeteredDataSource (замер времени получения соединения).
+     * Обертки и маршрутизаторы (DelegatingDataSource, AbstractDataSource) не трогаются —
+     * метрики собираются по каждому физическому пулу.
+     * static — чтобы постпроцессор создавался раньше самого DataSource
+     */
+    @Bean
+    public static BeanPostProcessor meteredDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource
+                        && !(bean instanceof DelegatingDataSource)
+                        && !(bean instanceof AbstractDataSource)) {
+                    return new MeteredDataSource(beanName, dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package ru.melnikov.telegrambot.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Обертка пула соединений, которая замеряет время получения соединения.
+ * Рост среднего/максимального времени ожидания — признак нехватки соединений в пуле.
+ */
+@Slf4j
+public class MeteredDataSource extends DelegatingDataSource {
+
+    private static final long SLOW_ACQUIRE_MS = 100;
+
+    private final String name;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong slowAcquired = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public MeteredDataSource(String name, DataSource target) {
+        super(target);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection connection = super.getConnection();
+            record(start);
+            return connection;
+        } catch (SQLException e) {
+            failed.incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection connection = super.getConnection(username, password);
+            record(start);
+            return connection;
+        } catch (SQLException e) {
+            failed.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = acquired.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquired", count);
+        stats.put("failed", failed.get());
+        stats.put("slowAcquired", slowAcquired.get());
+        stats.put("avgAcquireMicros", count > 0 ? TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get() / count) : 0);
+        stats.put("maxAcquireMicros", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()));
+
+        if (getTargetDataSource() instanceof HikariDataSource hikari && hikari.getHikariPoolMXBean() != null) {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            stats.put("poolSize", hikari.getMaximumPoolSize());
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+        }
+        return stats;
+    }
+
+    private void record(long start) {
+        long waited = System.nanoTime() - start;
+        acquired.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulate(waited);
+
+        if (waited >= TimeUnit.MILLISECONDS.toNanos(SLOW_ACQUIRE_MS)) {
+            long slow = slowAcquired.incrementAndGet();
+            if (slow == 1 || slow % 100 == 0) {
+                log.warn("⚠️ Долгое ожидание соединения из пула {}: {} мс (всего таких: {})",
+                        name, TimeUnit.NANOSECONDS.toMillis(waited), slow);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ru.melnikov.telegrambot.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Маршрутизация читающих транзакций на реплику.
+ * Включается, только если задан spring.datasource.replica.url —
+ * без него используется обычный DataSource из spring.datasource.
+ * <p>
+ * Основной DataSource — LazyConnectionDataSourceProxy: соединение берется
+ * при первом запросе, когда признак read-only транзакции уже выставлен.
+ * Транзакции @Transactional(readOnly = true) и read-only TransactionTemplate
+ * получают соединение реплики (с откатом на основную БД при отставании),
+ * все остальные — основной БД.
+ * <p>
+ * Пулы основной БД и реплики — отдельные бины, поэтому каждый оборачивается
+ * в MeteredDataSource и виден в /api/stats/db/pool отдельно.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "url")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(ReplicaDataSourceProperties properties,
+                                              DataSourceProperties primaryProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("bot-replica-pool");
+        dataSource.setJdbcUrl(properties.getUrl());
+        dataSource.setUsername(properties.getUsername() != null
+                ? properties.getUsername() : primaryProperties.getUsername());
+        dataSource.setPassword(properties.getPassword() != null
+                ? properties.getPassword() : primaryProperties.getPassword());
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                               ReplicaDataSourceProperties properties) {
+        return new ReplicaLagMonitor(replica, properties.getMaxLag());
+    }
+
+    @Bean
+    public ReplicaFallbackDataSource replicaFallbackDataSource(@Qualifier("replicaDataSource") DataSource replica,
+                                                               @Qualifier("primaryDataSource") DataSource primary,
+                                                               ReplicaLagMonitor lagMonitor) {
+        return new ReplicaFallbackDataSource(replica, primary, lagMonitor);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 ReplicaFallbackDataSource replicaFallback,
+                                 ReplicaDataSourceProperties properties) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaFallback);
+
+        log.info("🔀 Читающие транзакции направляются на реплику {} (допустимое отставание {})",
+                properties.getUrl(), properties.getMaxLag());
+        return dataSource;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.melnikov.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Реплика для читающих транзакций (spring.datasource.replica.*).
+ * Настройки пула Hikari — в spring.datasource.replica.hikari.*
+ */
+@Data
+@ConfigurationProperties(prefix = "spring.datasource.replica")
+public class ReplicaDataSourceProperties {
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    // Максимально допустимое отставание: при большем read-only транзакции идут в основную БД
+    private Duration maxLag = Duration.ofSeconds(2);
+
+    // Как часто проверять отставание реплики
+    private Duration lagCheckInterval = Duration.ofSeconds(5);
+}
@@ -0,0 +1,59 @@
+package ru.melnikov.telegrambot.config;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Источник соединений для читающих транзакций: реплика, если она
+ * доступна и не отстает, иначе основная БД.
+ * Ошибка соединения с репликой не доходит до вызывающего кода —
+ * запрос выполняется на основной БД, а реплика исключается до следующей проверки.
+ */
+public class ReplicaFallbackDataSource extends AbstractDataSource {
+
+    private final DataSource replica;
+    private final DataSource primary;
+    private final ReplicaLagMonitor lagMonitor;
+
+    private final AtomicLong replicaConnections = new AtomicLong();
+    private final AtomicLong primaryFallbacks = new AtomicLong();
+
+    public ReplicaFallbackDataSource(DataSource replica, DataSource primary, ReplicaLagMonitor lagMonitor) {
+        this.replica = replica;
+        this.primary = primary;
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (lagMonitor.isUsable()) {
+            try {
+                Connection connection = replica.getConnection();
+                replicaConnections.incrementAndGet();
+                return connection;
+            } catch (SQLException e) {
+                lagMonitor.markUnavailable(e);
+            }
+        }
+        primaryFallbacks.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Маршрутизация на реплику не поддерживает явные учетные данные");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(lagMonitor.getStats());
+        stats.put("replicaConnections", replicaConnections.get());
+        stats.put("primaryFallbacks", primaryFallbacks.get());
+        return stats;
+    }
+}
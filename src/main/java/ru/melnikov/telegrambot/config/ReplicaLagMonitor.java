@@ -0,0 +1,98 @@
+package ru.melnikov.telegrambot.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Следит за отставанием реплики. Пока отставание больше maxLag или реплика
+ * недоступна, читающие транзакции выполняются на основной БД.
+ * <p>
+ * Если реплика догнала основную БД (принятый и примененный WAL совпадают),
+ * отставание считается нулевым — иначе при отсутствии записей время
+ * последней примененной транзакции росло бы бесконечно.
+ * Экземпляр не в режиме восстановления (обычный сервер) тоже дает ноль,
+ * поэтому маршрутизацию можно проверить на двух независимых локальных PostgreSQL.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END::bigint
+            """;
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration maxLag;
+
+    // До первой проверки реплика не используется
+    private volatile boolean usable;
+    private volatile long lagMillis = -1;
+    private volatile String lastError;
+    private volatile LocalDateTime lastCheck;
+
+    public ReplicaLagMonitor(DataSource replica, Duration maxLag) {
+        this.jdbcTemplate = new JdbcTemplate(replica);
+        this.jdbcTemplate.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+        this.maxLag = maxLag;
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${spring.datasource.replica.lag-check-interval:5s}")
+    public void check() {
+        try {
+            Long lag = jdbcTemplate.queryForObject(LAG_SQL, Long.class);
+            lagMillis = lag != null ? lag : 0;
+            lastError = null;
+            update(lagMillis <= maxLag.toMillis(), "отставание " + lagMillis + " мс");
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            update(false, "ошибка проверки: " + e.getMessage());
+        } finally {
+            lastCheck = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Вызывается при ошибке получения соединения с реплики: до следующей
+     * успешной проверки читающие транзакции идут в основную БД
+     */
+    public void markUnavailable(Exception e) {
+        lastError = e.getMessage();
+        update(false, "нет соединения: " + e.getMessage());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("usable", usable);
+        stats.put("lagMillis", lagMillis);
+        stats.put("maxLagMillis", maxLag.toMillis());
+        stats.put("lastCheck", lastCheck);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private void update(boolean nowUsable, String reason) {
+        if (usable != nowUsable) {
+            if (nowUsable) {
+                log.info("✅ Реплика доступна, читающие транзакции идут на нее ({})", reason);
+            } else {
+                log.warn("⚠️ Реплика исключена, читающие транзакции идут в основную БД ({})", reason);
+            }
+        }
+        usable = nowUsable;
+    }
+}
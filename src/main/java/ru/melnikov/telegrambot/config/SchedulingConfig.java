@@ -0,0 +1,52 @@
+package ru.melnikov.telegrambot.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Отдельные пулы для семейств периодических задач, чтобы медленная рассылка
+ * не задерживала напоминания и служебные задачи.
+ * Пул выбирается атрибутом @Scheduled(scheduler = ...), без него задача идет в taskScheduler.
+ * Учет длительности, опоздания и наложений — ScheduledJobAspect
+ */
+@Slf4j
+@Configuration
+public class SchedulingConfig {
+
+    // Массовые рассылки по времени (расписание, дедлайны)
+    public static final String BROADCAST = "broadcastTaskScheduler";
+
+    // Планирование напоминаний: смена дня, запись last_sent_at
+    public static final String REMINDERS = "reminderTaskScheduler";
+
+    // Служебные задачи (кеши, статистика, секции журнала, проверка прав) — пул по умолчанию
+    public static final String MAINTENANCE = "taskScheduler";
+
+    @Bean(name = BROADCAST)
+    public ThreadPoolTaskScheduler broadcastTaskScheduler() {
+        return createScheduler("broadcast-", 2, 60);
+    }
+
+    @Bean(name = REMINDERS)
+    public ThreadPoolTaskScheduler reminderTaskScheduler() {
+        return createScheduler("reminders-", 1, 15);
+    }
+
+    @Bean(name = MAINTENANCE)
+    public ThreadPoolTaskScheduler taskScheduler() {
+        return createScheduler("maintenance-", 2, 15);
+    }
+
+    private ThreadPoolTaskScheduler createScheduler(String threadNamePrefix, int poolSize, int awaitTerminationSeconds) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setPoolSize(poolSize);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        scheduler.setErrorHandler(e -> log.error("❌ Ошибка периодической задачи в пуле {}: {}",
+                threadNamePrefix, e.getMessage(), e));
+        return scheduler;
+    }
+}
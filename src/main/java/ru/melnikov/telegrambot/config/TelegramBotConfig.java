@@ -3,7 +3,9 @@ package ru.melnikov.telegrambot.config;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 import ru.melnikov.telegrambot.bot.TelegramBot;
@@ -31,6 +33,11 @@ public class TelegramBotConfig {
             return;
         }
 
+        if (StringUtils.hasText(settingsConfig.getBot().getWebhookUrl())) {
+            registerWebhook();
+            return;
+        }
+
         try {
             TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
             botsApi.registerBot(telegramBot);
@@ -40,4 +47,27 @@ public class TelegramBotConfig {
             log.error("❌ Ошибка при регистрации Telegram бота: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Режим вебхука: обновления приходят в WebhookController на любой экземпляр,
+     * long polling не запускается. Повторная установка того же адреса безопасна
+     */
+    private void registerWebhook() {
+        String secret = settingsConfig.getBot().getWebhookSecret();
+        if (!StringUtils.hasText(secret)) {
+            log.error("❌ Для вебхука нужен telegram.bot.webhook-secret — бот не будет получать обновления");
+            return;
+        }
+
+        try {
+            telegramBot.execute(SetWebhook.builder()
+                    .url(settingsConfig.getBot().getWebhookUrl())
+                    .secretToken(secret)
+                    .build());
+            log.info("✅ Вебхук бота '@{}' установлен: {}",
+                    settingsConfig.getBot().getUsername(), settingsConfig.getBot().getWebhookUrl());
+        } catch (TelegramApiException e) {
+            log.error("❌ Ошибка установки вебхука: {}", e.getMessage());
+        }
+    }
+}
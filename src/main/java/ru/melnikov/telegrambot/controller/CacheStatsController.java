@@ -0,0 +1,35 @@
+package ru.melnikov.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.service.SecondLevelCacheService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class CacheStatsController {
+
+    private final SecondLevelCacheService secondLevelCacheService;
+
+    /**
+     * Статистика кеша второго уровня Hibernate по регионам
+     */
+    @GetMapping("/l2")
+    public ResponseEntity<Map<String, Object>> getSecondLevelStats() {
+        return ResponseEntity.ok(secondLevelCacheService.getStats());
+    }
+
+    /**
+     * Очистить все регионы кеша второго уровня
+     */
+    @DeleteMapping("/l2")
+    public ResponseEntity<Void> evictSecondLevel() {
+        secondLevelCacheService.evictAll();
+        return ResponseEntity.noContent().build();
+    }
+}
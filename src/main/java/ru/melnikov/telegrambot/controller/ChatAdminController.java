@@ -3,11 +3,18 @@ package ru.melnikov.telegrambot.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.melnikov.telegrambot.model.BotChat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.melnikov.telegrambot.cache.ChatSettingsCache;
+import ru.melnikov.telegrambot.dto.ChatSummaryDto;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.repository.BotChatRepository;
 import ru.melnikov.telegrambot.service.ChatEventService;
+import ru.melnikov.telegrambot.util.StreamingJsonExport;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.HashMap;
 import java.util.List;
@@ -21,34 +28,60 @@ public class ChatAdminController {
 
     private final BotChatRepository botChatRepository;
     private final ChatEventService chatEventService;
+    private final ChatSettingsCache chatSettingsCache;
+    private final JsonMapper jsonMapper;
 
     /**
-     * Получить все чаты
+     * Получить чаты постранично (keyset), с необязательными фильтрами
      */
     @GetMapping
-    public ResponseEntity<List<BotChat>> getAllChats() {
-        return ResponseEntity.ok(botChatRepository.findAll());
+    public ResponseEntity<CursorPage<ChatSummaryDto>> getChats(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) Boolean botAdmin,
+            @RequestParam(required = false) String chatType) {
+        return ResponseEntity.ok(findPage(after, limit, active, botAdmin, chatType));
     }
 
     /**
      * Получить активные чаты
      */
     @GetMapping("/active")
-    public ResponseEntity<List<BotChat>> getActiveChats() {
-        return ResponseEntity.ok(botChatRepository.findByIsActiveTrue());
+    public ResponseEntity<CursorPage<ChatSummaryDto>> getActiveChats(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(findPage(after, limit, true, null, null));
     }
 
     /**
      * Получить чаты, где бот администратор
      */
     @GetMapping("/admin")
-    public ResponseEntity<List<BotChat>> getAdminChats() {
-        // Нужно будет добавить метод в репозиторий
-        List<BotChat> allChats = botChatRepository.findAll();
-        List<BotChat> adminChats = allChats.stream()
-                .filter(chat -> Boolean.TRUE.equals(chat.getIsBotAdmin()))
-                .toList();
-        return ResponseEntity.ok(adminChats);
+    public ResponseEntity<CursorPage<ChatSummaryDto>> getAdminChats(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(findPage(after, limit, null, true, null));
+    }
+
+    /**
+     * Выгрузка всех чатов потоковым JSON-массивом
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportChats(
+            @RequestParam(required = false) Boolean active) {
+        return ResponseEntity.ok(StreamingJsonExport.stream(jsonMapper,
+                after -> botChatRepository.findSummaries(after, active, null, null,
+                        Limit.of(StreamingJsonExport.PAGE_SIZE)),
+                ChatSummaryDto::id));
+    }
+
+    /**
+     * Статистика кеша настроек чатов
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(chatSettingsCache.getStats());
     }
 
     /**
@@ -84,9 +117,8 @@ public class ChatAdminController {
 
         botChatRepository.findByChatId(chatId).ifPresentOrElse(
                 chat -> {
-                    chat.setIsBotAdmin(isAdmin);
-                    chat.setUpdatedAt(java.time.LocalDateTime.now());
-                    botChatRepository.save(chat);
+                    // Через сервис, чтобы кеш настроек чата оставался согласованным
+                    chatEventService.setBotAdminStatus(chatId, isAdmin);
 
                     response.put("success", true);
                     response.put("message", "Статус администратора обновлен");
@@ -105,4 +137,12 @@ public class ChatAdminController {
 
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    private CursorPage<ChatSummaryDto> findPage(Long after, Integer limit,
+                                                Boolean active, Boolean botAdmin, String chatType) {
+        int pageSize = CursorPage.clampLimit(limit);
+        List<ChatSummaryDto> fetched = botChatRepository.findSummaries(
+                CursorPage.startAfter(after), active, botAdmin, chatType, Limit.of(pageSize + 1));
+        return CursorPage.of(fetched, pageSize, ChatSummaryDto::id);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.melnikov.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.cluster.ClusterMembership;
+import ru.melnikov.telegrambot.cluster.UpdateIngestionService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats/cluster")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ClusterStatsController {
+
+    private final ClusterMembership clusterMembership;
+    private final UpdateIngestionService updateIngestionService;
+
+    /**
+     * Состав кластера, доли кольца и пересылка обновлений
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getClusterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("membership", clusterMembership.getStats());
+        stats.put("ingestion", updateIngestionService.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Владелец чата по текущему кольцу
+     */
+    @GetMapping("/owner/{chatId}")
+    public ResponseEntity<ClusterMembership.Node> getOwner(@PathVariable Long chatId) {
+        return ResponseEntity.ok(clusterMembership.ownerOf(chatId));
+    }
+}
@@ -0,0 +1,40 @@
+package ru.melnikov.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.service.CommandLogService;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats/commands")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class CommandStatsController {
+
+    private final CommandLogService commandLogService;
+
+    /**
+     * Статистика команд за период [from, to). По умолчанию — последние 24 часа
+     */
+    @GetMapping
+    public ResponseEntity<CommandLogService.CommandStatistics> getStatistics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime periodTo = to != null ? to : LocalDateTime.now();
+        LocalDateTime periodFrom = from != null ? from : periodTo.minusDays(1);
+        return ResponseEntity.ok(commandLogService.getStatistics(periodFrom, periodTo));
+    }
+
+    /**
+     * Состояние асинхронной записи журнала команд
+     */
+    @GetMapping("/writer")
+    public ResponseEntity<Map<String, Object>> getWriterStats() {
+        return ResponseEntity.ok(commandLogService.getWriterStats());
+    }
+}
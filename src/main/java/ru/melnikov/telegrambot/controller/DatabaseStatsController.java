@@ -0,0 +1,35 @@
+package ru.melnikov.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.config.MeteredDataSource;
+import ru.melnikov.telegrambot.config.ReplicaFallbackDataSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats/db")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class DatabaseStatsController {
+
+    private final List<MeteredDataSource> dataSources;
+    // Есть только при заданном spring.datasource.replica.url
+    private final ObjectProvider<ReplicaFallbackDataSource> replicaRouting;
+
+    /**
+     * Состояние пулов соединений: время получения соединения, активные/ожидающие
+     */
+    @GetMapping("/pool")
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        dataSources.forEach(dataSource -> stats.put(dataSource.getName(), dataSource.getStats()));
+        replicaRouting.ifAvailable(routing -> stats.put("replicaRouting", routing.getStats()));
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -1,11 +1,16 @@
 package ru.melnikov.telegrambot.controller;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.DeadlineDto;
+import ru.melnikov.telegrambot.dto.DeadlineSummaryDto;
 import ru.melnikov.telegrambot.service.DeadlineService;
 
+import java.time.LocalDateTime;
+
 @Controller
 @RequestMapping("/api/deadlines")
 public class DeadlineController {
@@ -23,6 +28,15 @@ public class DeadlineController {
         return "layout";
     }
 
+    @GetMapping("/page")
+    @ResponseBody
+    public CursorPage<DeadlineSummaryDto> page(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from) {
+        return deadlineService.findPage(after, limit, from);
+    }
+
     @GetMapping("/create")
     public String createForm(Model model) {
         model.addAttribute("deadline", new DeadlineDto());
@@ -2,10 +2,17 @@ package ru.melnikov.telegrambot.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.LinkDto;
+import ru.melnikov.telegrambot.dto.LinkSummaryDto;
 import ru.melnikov.telegrambot.service.LinkService;
+import ru.melnikov.telegrambot.util.StreamingJsonExport;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.List;
 
@@ -16,10 +23,20 @@ import java.util.List;
 public class LinkController {
 
     private final LinkService linkService;
+    private final JsonMapper jsonMapper;
 
     @GetMapping
-    public List<LinkDto> getAll() {
-        return linkService.findAll();
+    public CursorPage<LinkSummaryDto> getPage(@RequestParam(required = false) Long after,
+                                              @RequestParam(required = false) Integer limit,
+                                              @RequestParam(required = false) Long userId) {
+        return linkService.findPage(after, limit, userId);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) Long userId) {
+        return ResponseEntity.ok(StreamingJsonExport.stream(jsonMapper,
+                after -> linkService.findSummaries(after, userId, StreamingJsonExport.PAGE_SIZE),
+                LinkSummaryDto::id));
     }
 
     @GetMapping("/user/{userId}")
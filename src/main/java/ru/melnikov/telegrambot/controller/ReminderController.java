@@ -0,0 +1,55 @@
+package ru.melnikov.telegrambot.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.dto.ReminderDto;
+import ru.melnikov.telegrambot.scheduler.ReminderEngine;
+import ru.melnikov.telegrambot.service.ReminderService;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reminders")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ReminderController {
+
+    private final ReminderService reminderService;
+    private final ReminderEngine reminderEngine;
+
+    @GetMapping
+    public List<ReminderDto> getByChat(@RequestParam Long chatId) {
+        return reminderService.findByChat(chatId);
+    }
+
+    @GetMapping("/{id}")
+    public ReminderDto getById(@PathVariable Long id) {
+        return reminderService.findById(id);
+    }
+
+    @PostMapping
+    public ReminderDto create(@Valid @RequestBody ReminderDto reminder) {
+        return reminderService.create(reminder);
+    }
+
+    @PutMapping("/{id}")
+    public ReminderDto update(@PathVariable Long id, @Valid @RequestBody ReminderDto reminder) {
+        return reminderService.update(id, reminder);
+    }
+
+    @DeleteMapping("/{id}")
+    public void delete(@PathVariable Long id) {
+        reminderService.delete(id);
+    }
+
+    /**
+     * Состояние движка: число напоминаний, ближайшая отправка, опоздание, буфер last_sent_at
+     */
+    @GetMapping("/engine")
+    public Map<String, Object> getEngineStats() {
+        return reminderEngine.getStats();
+    }
+}
@@ -2,11 +2,22 @@ package ru.melnikov.telegrambot.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.ScheduleDto;
+import ru.melnikov.telegrambot.dto.ScheduleImportResult;
+import ru.melnikov.telegrambot.dto.ScheduleSummaryDto;
 import ru.melnikov.telegrambot.service.ScheduleService;
+import ru.melnikov.telegrambot.service.ScheduleTransferService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -16,6 +27,15 @@ import java.util.List;
 public class ScheduleController {
 
     private final ScheduleService scheduleService;
+    private final ScheduleTransferService scheduleTransferService;
+
+    @GetMapping
+    public CursorPage<ScheduleSummaryDto> getPage(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  @RequestParam(required = false) Integer day,
+                                                  @RequestParam(required = false) String weekType) {
+        return scheduleService.findPage(after, limit, day, weekType);
+    }
 
     @GetMapping("/day/{day}")
     public List<ScheduleDto> getByDay(@PathVariable Integer day) {
@@ -34,4 +54,27 @@ public class ScheduleController {
     public ScheduleDto create(@Valid @RequestBody ScheduleDto scheduleDto) {
         return scheduleService.save(scheduleDto);
     }
+
+    /**
+     * Массовая загрузка расписания из CSV или iCalendar (формат — параметр format или расширение файла).
+     * replace=true заменяет все текущее расписание
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ScheduleImportResult importSchedule(@RequestParam("file") MultipartFile file,
+                                               @RequestParam(required = false) String format,
+                                               @RequestParam(defaultValue = "false") boolean replace) throws IOException {
+        ScheduleTransferService.Format resolved = ScheduleTransferService.Format.resolve(format, file.getOriginalFilename());
+        try (InputStream input = file.getInputStream()) {
+            return scheduleTransferService.importSchedule(input, resolved, replace);
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") String format) {
+        ScheduleTransferService.Format resolved = ScheduleTransferService.Format.resolve(format, null);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(resolved.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"schedule." + resolved.getExtension() + "\"")
+                .body(scheduleTransferService.export(resolved));
+    }
 }
@@ -0,0 +1,86 @@
+package ru.melnikov.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.cluster.ClusterEventBridge;
+import ru.melnikov.telegrambot.scheduler.DeadlineReminderEngine;
+import ru.melnikov.telegrambot.scheduler.ScheduledJobRegistry;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+import ru.melnikov.telegrambot.service.BroadcastFanoutService;
+import ru.melnikov.telegrambot.service.BroadcastFireMarkers;
+import ru.melnikov.telegrambot.service.DailyPlanService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats/jobs")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class SchedulerStatsController {
+
+    private final ScheduledJobRegistry scheduledJobRegistry;
+    private final SchedulerLeadership schedulerLeadership;
+    private final ClusterEventBridge clusterEventBridge;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final BroadcastFireMarkers broadcastFireMarkers;
+    private final DeadlineReminderEngine deadlineReminderEngine;
+    private final DailyPlanService dailyPlanService;
+
+    /**
+     * Периодические задачи: пул, длительность, опоздание старта, пропуски
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getJobStats() {
+        return ResponseEntity.ok(scheduledJobRegistry.getStats());
+    }
+
+    /**
+     * Ведущий экземпляр, epoch и блокировки задач с @ClusterSingleton
+     */
+    @GetMapping("/cluster")
+    public ResponseEntity<Map<String, Object>> getClusterStats() {
+        return ResponseEntity.ok(schedulerLeadership.getStats());
+    }
+
+    /**
+     * Распределенные рассылки: части, прогресс, экземпляры-отправители
+     */
+    @GetMapping("/broadcasts")
+    public ResponseEntity<Map<String, Object>> getBroadcastStats() {
+        return ResponseEntity.ok(broadcastFanoutService.getStats());
+    }
+
+    /**
+     * Обмен изменениями между экземплярами через cluster_events
+     */
+    @GetMapping("/cluster/events")
+    public ResponseEntity<Map<String, Object>> getClusterEventStats() {
+        return ResponseEntity.ok(clusterEventBridge.getStats());
+    }
+
+    /**
+     * Отметки последних запусков рассылок и догоняющие запуски после простоя
+     */
+    @GetMapping("/fire-markers")
+    public ResponseEntity<Map<String, Object>> getFireMarkers() {
+        return ResponseEntity.ok(broadcastFireMarkers.getStats());
+    }
+
+    /**
+     * Напоминания о каждом дедлайне: очередь, объединенные по минутам рассылки, опоздание
+     */
+    @GetMapping("/deadline-reminders")
+    public ResponseEntity<Map<String, Object>> getDeadlineReminderStats() {
+        return ResponseEntity.ok(deadlineReminderEngine.getStats());
+    }
+
+    /**
+     * План дня: когда и почему построен, сколько раз прочитан
+     */
+    @GetMapping("/daily-plan")
+    public ResponseEntity<Map<String, Object>> getDailyPlanStats() {
+        return ResponseEntity.ok(dailyPlanService.getStats());
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.melnikov.telegrambot.scheduler.ClassReminderPlanner;
 import ru.melnikov.telegrambot.service.ReminderMessageService;
 import ru.melnikov.telegrambot.service.SmartReminderService;
 
@@ -20,6 +21,7 @@ public class TestReminderController {
 
     private final SmartReminderService smartReminderService;
     private final ReminderMessageService reminderMessageService;
+    private final ClassReminderPlanner classReminderPlanner;
 
     @GetMapping("/api/test/send-schedule")
     public Map<String, Object> testSendSchedule() {
@@ -106,4 +108,12 @@ public class TestReminderController {
 
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * План напоминаний перед парой: ближайшие моменты отправки и опоздание срабатываний
+     */
+    @GetMapping("/api/test/class-reminders/plan")
+    public Map<String, Object> getClassReminderPlan() {
+        return classReminderPlanner.getStats();
+    }
+}
@@ -2,15 +2,22 @@ package ru.melnikov.telegrambot.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.UserDto;
+import ru.melnikov.telegrambot.dto.UserSummaryDto;
 import ru.melnikov.telegrambot.exception.NotFoundException;
 import ru.melnikov.telegrambot.mapper.UserMapper;
+import ru.melnikov.telegrambot.model.Role;
 import ru.melnikov.telegrambot.service.UserService;
+import ru.melnikov.telegrambot.util.StreamingJsonExport;
+import tools.jackson.databind.json.JsonMapper;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/users")
@@ -20,12 +27,20 @@ public class UserController {
 
     private final UserService userService;
     private final UserMapper userMapper;
+    private final JsonMapper jsonMapper;
 
     @GetMapping
-    public List<UserDto> getAll() {
-        return userService.findAll().stream()
-                .map(userMapper::toDto)
-                .toList();
+    public CursorPage<UserSummaryDto> getPage(@RequestParam(required = false) Long after,
+                                              @RequestParam(required = false) Integer limit,
+                                              @RequestParam(required = false) Role role) {
+        return userService.findPage(after, limit, role);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) Role role) {
+        return ResponseEntity.ok(StreamingJsonExport.stream(jsonMapper,
+                after -> userService.findSummaries(after, role, StreamingJsonExport.PAGE_SIZE),
+                UserSummaryDto::id));
     }
 
     @GetMapping("/{telegramId}")
@@ -35,6 +50,11 @@ public class UserController {
                 .orElseThrow(() -> new NotFoundException("User not found by telegramId: " + telegramId));
     }
 
+    @GetMapping("/registry/stats")
+    public Map<String, Object> getRegistryStats() {
+        return userService.getKnownUserStats();
+    }
+
     @PostMapping
     public UserDto create(@Valid @RequestBody UserDto userDto) {
         return userMapper.toDto(userService.save(userMapper.toEntity(userDto)));
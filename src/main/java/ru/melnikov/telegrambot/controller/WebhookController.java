@@ -0,0 +1,71 @@
+package ru.melnikov.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import ru.melnikov.telegrambot.cluster.UpdateIngestionService;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Вебхук Telegram и внутренняя пересылка обновлений между экземплярами.
+ * Без сессии и CSRF; доступ проверяется по секретам из настроек
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class WebhookController {
+
+    private static final String TELEGRAM_SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final UpdateIngestionService ingestionService;
+    private final BotSettingsConfig settingsConfig;
+
+    @PostMapping("/telegram/webhook")
+    public ResponseEntity<Void> onWebhook(@RequestHeader(value = TELEGRAM_SECRET_HEADER, required = false) String secret,
+                                          @RequestBody String body) {
+        String expected = settingsConfig.getBot().getWebhookSecret();
+        if (!StringUtils.hasText(settingsConfig.getBot().getWebhookUrl()) || !StringUtils.hasText(expected)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!matches(expected, secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return accept(body, false);
+    }
+
+    @PostMapping(UpdateIngestionService.INTERNAL_PATH)
+    public ResponseEntity<Void> onForwarded(
+            @RequestHeader(value = UpdateIngestionService.INTERNAL_TOKEN_HEADER, required = false) String token,
+            @RequestBody String body) {
+        String expected = settingsConfig.getCluster().getInternalToken();
+        if (!Boolean.TRUE.equals(settingsConfig.getCluster().getEnabled()) || !StringUtils.hasText(expected)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!matches(expected, token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return accept(body, true);
+    }
+
+    private ResponseEntity<Void> accept(String body, boolean forwarded) {
+        try {
+            ingestionService.accept(body, forwarded);
+            return ResponseEntity.ok().build();
+        } catch (IOException e) {
+            log.warn("⚠️ Некорректное обновление в вебхуке: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static boolean matches(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+}
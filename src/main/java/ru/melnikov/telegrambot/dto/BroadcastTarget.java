@@ -0,0 +1,15 @@
+package ru.melnikov.telegrambot.dto;
+
+/**
+ * Получатель рассылки: чат и тема бота в нем (null — писать в общий чат)
+ */
+public record BroadcastTarget(long chatId, Integer topicId) {
+
+    /**
+     * Строка нативного запроса (chat_id, bot_topic_id)
+     */
+    public static BroadcastTarget fromRow(Object[] row) {
+        return new BroadcastTarget(((Number) row[0]).longValue(),
+                row[1] != null ? ((Number) row[1]).intValue() : null);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.melnikov.telegrambot.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Краткая информация о чате для списков (без jsonb настроек и прав)
+ */
+public record ChatSummaryDto(
+        Long id,
+        Long chatId,
+        String chatType,
+        String title,
+        String username,
+        Boolean isActive,
+        Boolean isBotAdmin,
+        LocalDateTime updatedAt) {
+}
@@ -0,0 +1,39 @@
+package ru.melnikov.telegrambot.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации: элементы, отсортированные по id, и курсор для следующего запроса
+ * (передается как after=nextCursor). nextCursor == null — данных больше нет.
+ */
+public record CursorPage<T>(List<T> items, Long nextCursor, boolean hasMore) {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    /**
+     * Собирает страницу из выборки размером limit + 1: лишний элемент означает, что есть продолжение
+     */
+    public static <T> CursorPage<T> of(List<T> fetched, int limit, Function<T, Long> idExtractor) {
+        if (fetched.size() <= limit) {
+            return new CursorPage<>(fetched, null, false);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new CursorPage<>(List.copyOf(items), idExtractor.apply(items.get(limit - 1)), true);
+    }
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit < 1) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Курсор "с начала": id в таблицах положительные
+     */
+    public static long startAfter(Long after) {
+        return after != null ? after : 0L;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.melnikov.telegrambot.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Дедлайн в списках (без автора-сущности, только его id)
+ */
+public record DeadlineSummaryDto(
+        Long id,
+        String title,
+        LocalDateTime deadlineAt,
+        String linkUrl,
+        String linkText,
+        Long createdBy) {
+}
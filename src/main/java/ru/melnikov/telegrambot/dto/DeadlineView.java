@@ -0,0 +1,22 @@
+package ru.melnikov.telegrambot.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Проекция дедлайна для сообщений бота: только отображаемые поля,
+ * без загрузки автора (createdBy)
+ */
+public interface DeadlineView {
+
+    Long getId();
+
+    String getTitle();
+
+    LocalDateTime getDeadlineAt();
+
+    String getDescription();
+
+    String getLinkUrl();
+
+    String getLinkText();
+}
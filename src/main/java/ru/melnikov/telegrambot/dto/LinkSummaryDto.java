@@ -0,0 +1,11 @@
+package ru.melnikov.telegrambot.dto;
+
+/**
+ * Ссылка в списках (без автора-сущности, только его id)
+ */
+public record LinkSummaryDto(
+        Long id,
+        String title,
+        String url,
+        Long createdBy) {
+}
@@ -0,0 +1,37 @@
+package ru.melnikov.telegrambot.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+
+@Data
+public class ReminderDto {
+
+    private Long id;
+
+    @NotNull
+    private Long chatId;
+
+    @NotNull
+    @Pattern(regexp = "SCHEDULE_TODAY|SCHEDULE_BEFORE|DEADLINE_WEEKLY",
+            message = "Reminder type must be SCHEDULE_TODAY, SCHEDULE_BEFORE or DEADLINE_WEEKLY")
+    private String reminderType;
+
+    @NotNull
+    private LocalTime scheduleTime;
+
+    // Маска дней с понедельника: 1 — отправлять, 0 — нет
+    @Pattern(regexp = "[01]{1,7}", message = "Days of week must be a mask of 0 and 1 starting from Monday")
+    private String daysOfWeek;
+
+    private Boolean isActive;
+
+    // Для SCHEDULE_BEFORE: minutes_before — за сколько минут до пары
+    private Map<String, Object> config;
+
+    private LocalDateTime lastSentAt;
+}
@@ -0,0 +1,12 @@
+package ru.melnikov.telegrambot.dto;
+
+/**
+ * Итог массовой загрузки расписания
+ *
+ * @param duplicates строки, совпавшие с уже загруженными из этого же файла (пропущены)
+ * @param existing   строки, которые уже есть в расписании (при загрузке без замены, пропущены)
+ * @param deleted    удалено прежних записей (при загрузке с заменой)
+ */
+public record ScheduleImportResult(String format, int imported, int duplicates, int existing, int deleted,
+                                   long durationMs) {
+}
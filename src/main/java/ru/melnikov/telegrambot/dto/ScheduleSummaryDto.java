@@ -0,0 +1,18 @@
+package ru.melnikov.telegrambot.dto;
+
+import java.time.LocalTime;
+
+/**
+ * Пара в списках расписания
+ */
+public record ScheduleSummaryDto(
+        Long id,
+        Integer dayOfWeek,
+        LocalTime timeStart,
+        LocalTime timeEnd,
+        String subject,
+        String teacher,
+        String location,
+        Boolean isOnline,
+        String weekType) {
+}
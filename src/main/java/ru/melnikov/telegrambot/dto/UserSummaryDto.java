@@ -0,0 +1,16 @@
+package ru.melnikov.telegrambot.dto;
+
+import ru.melnikov.telegrambot.model.Role;
+
+/**
+ * Краткая информация о пользователе для списков (без групп)
+ */
+public record UserSummaryDto(
+        Long id,
+        Long telegramId,
+        String username,
+        String firstName,
+        String lastName,
+        Role role,
+        Boolean isActive) {
+}
@@ -0,0 +1,14 @@
+package ru.melnikov.telegrambot.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.ReportingPolicy;
+import ru.melnikov.telegrambot.dto.ReminderDto;
+import ru.melnikov.telegrambot.model.Reminder;
+
+@Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface ReminderMapper {
+
+    ReminderDto toDto(Reminder entity);
+
+    Reminder toEntity(ReminderDto dto);
+}
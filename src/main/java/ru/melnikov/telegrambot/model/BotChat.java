@@ -3,11 +3,10 @@ package ru.melnikov.telegrambot.model;
 
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
+import org.hibernate.annotations.ColumnTransformer;
 
 import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.Locale;
 
 @Entity
 @Table(name = "bot_chats")
@@ -24,6 +23,7 @@ public class BotChat {
     @Column(name = "chat_id", nullable = false, unique = true)
     private Long chatId;
 
+    // Всегда в нижнем регистре (CHECK в БД, см. миграцию V5)
     @Column(name = "chat_type", nullable = false)
     private String chatType;
 
@@ -42,9 +42,16 @@ public class BotChat {
     @Column(name = "bot_permissions", columnDefinition = "TEXT")
     private String botPermissions; // ← НОВОЕ: права бота в JSON
 
-    @JdbcTypeCode(SqlTypes.JSON)
-    @Column(name = "settings", columnDefinition = "jsonb")
-    private Map<String, Object> settings;
+    // Пишется только при создании чата. Дальнейшие изменения — атомарными UPDATE
+    // через BotChatRepository.updateSettingsFlags / updateBotTopic
+    @Convert(converter = ChatSettingsConverter.class)
+    @ColumnTransformer(write = "?::jsonb")
+    @Column(name = "settings", columnDefinition = "jsonb", updatable = false)
+    private ChatSettings settings;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -59,10 +66,17 @@ public class BotChat {
         if (isActive == null) isActive = true;
         if (isBotAdmin == null) isBotAdmin = false;
         if (botPermissions == null) botPermissions = "{}";
+        if (settings == null) settings = ChatSettings.fromLegacyMap(null);
+        normalizeChatType();
     }
 
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        normalizeChatType();
+    }
+
+    private void normalizeChatType() {
+        if (chatType != null) chatType = chatType.toLowerCase(Locale.ROOT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package ru.melnikov.telegrambot.model;
+
+import java.util.Map;
+
+/**
+ * Настройки чата с фиксированной схемой.
+ * <p>
+ * Булевы настройки хранятся битовой маской в одном int, тема бота — отдельными полями.
+ * Объект неизменяемый: изменения делаются через with*-методы и setSettings(...),
+ * чтобы Hibernate корректно видел изменение поля.
+ * В БД хранится как jsonb вида {"v":2,"flags":N,"bot_topic_id":...,"bot_topic_name":...}
+ * (см. ChatSettingsConverter).
+ */
+public record ChatSettings(int flags, Integer botTopicId, String botTopicName) {
+
+    public static final int SCHEDULE_NOTIFICATIONS = 1;
+    public static final int DEADLINE_NOTIFICATIONS = 1 << 1;
+    public static final int BEFORE_CLASS_ENABLED = 1 << 2;
+    public static final int WELCOME_MESSAGE = 1 << 3;
+    public static final int MENTION_ALL_ENABLED = 1 << 4;
+    public static final int PENDING_WELCOME = 1 << 5;
+
+    /**
+     * Настройки по умолчанию для групп и супергрупп
+     */
+    public static ChatSettings defaultsForGroup(boolean beforeClassEnabled) {
+        int flags = SCHEDULE_NOTIFICATIONS | DEADLINE_NOTIFICATIONS | WELCOME_MESSAGE | MENTION_ALL_ENABLED;
+        if (beforeClassEnabled) {
+            flags |= BEFORE_CLASS_ENABLED;
+        }
+        return new ChatSettings(flags, null, null);
+    }
+
+    /**
+     * Настройки по умолчанию для личных чатов
+     */
+    public static ChatSettings defaultsForPrivate(boolean beforeClassEnabled) {
+        int flags = DEADLINE_NOTIFICATIONS;
+        if (beforeClassEnabled) {
+            flags |= BEFORE_CLASS_ENABLED;
+        }
+        return new ChatSettings(flags, null, null);
+    }
+
+    /**
+     * Разбор старого формата (произвольная Map из jsonb) с теми же значениями
+     * по умолчанию, что использовались при чтении через getOrDefault
+     */
+    public static ChatSettings fromLegacyMap(Map<String, Object> settings) {
+        if (settings == null) {
+            settings = Map.of();
+        }
+
+        int flags = 0;
+        flags |= legacyFlag(settings, "schedule_notifications", true) ? SCHEDULE_NOTIFICATIONS : 0;
+        flags |= legacyFlag(settings, "deadline_notifications", true) ? DEADLINE_NOTIFICATIONS : 0;
+        flags |= legacyFlag(settings, "before_class_enabled", true) ? BEFORE_CLASS_ENABLED : 0;
+        flags |= legacyFlag(settings, "welcome_message", true) ? WELCOME_MESSAGE : 0;
+        flags |= legacyFlag(settings, "mention_all_enabled", true) ? MENTION_ALL_ENABLED : 0;
+        flags |= legacyFlag(settings, "pending_welcome", false) ? PENDING_WELCOME : 0;
+
+        Object name = settings.get("bot_topic_name");
+        return new ChatSettings(flags,
+                legacyTopicId(settings.get("bot_topic_id")),
+                name instanceof String topicName ? topicName : null);
+    }
+
+    public boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public ChatSettings with(int flag, boolean enabled) {
+        int newFlags = enabled ? flags | flag : flags & ~flag;
+        return newFlags == flags ? this : new ChatSettings(newFlags, botTopicId, botTopicName);
+    }
+
+    public ChatSettings withBotTopic(Integer topicId, String topicName) {
+        return new ChatSettings(flags, topicId, topicName);
+    }
+
+    public ChatSettings withoutBotTopic() {
+        return botTopicId == null && botTopicName == null ? this : new ChatSettings(flags, null, null);
+    }
+
+    public boolean scheduleNotifications() {
+        return has(SCHEDULE_NOTIFICATIONS);
+    }
+
+    public boolean deadlineNotifications() {
+        return has(DEADLINE_NOTIFICATIONS);
+    }
+
+    public boolean beforeClassEnabled() {
+        return has(BEFORE_CLASS_ENABLED);
+    }
+
+    public boolean welcomeMessage() {
+        return has(WELCOME_MESSAGE);
+    }
+
+    public boolean mentionAllEnabled() {
+        return has(MENTION_ALL_ENABLED);
+    }
+
+    public boolean pendingWelcome() {
+        return has(PENDING_WELCOME);
+    }
+
+    // ====== РАЗБОР СТАРОГО ФОРМАТА ======
+
+    private static boolean legacyFlag(Map<String, Object> settings, String key, boolean defaultValue) {
+        Object value = settings.get(key);
+        if (value instanceof Boolean flag) {
+            return flag;
+        }
+        if (value instanceof String text) {
+            return Boolean.parseBoolean(text);
+        }
+        return defaultValue;
+    }
+
+    private static Integer legacyTopicId(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
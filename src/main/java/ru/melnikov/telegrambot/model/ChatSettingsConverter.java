@@ -0,0 +1,263 @@
+package ru.melnikov.telegrambot.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Конвертер ChatSettings <-> jsonb.
+ * <p>
+ * Текущий формат (v2) плоский: {"v":2,"flags":N,"bot_topic_id":N|null,"bot_topic_name":"..."|null}.
+ * Он разбирается вручную за один проход по строке, без Jackson и без промежуточной Map.
+ * Postgres отдает jsonb с пробелами и в своем порядке ключей — разбор к этому устойчив.
+ * Все остальное (старые строки с произвольными ключами) уходит в медленный путь через Jackson.
+ */
+@Slf4j
+@Converter
+public class ChatSettingsConverter implements AttributeConverter<ChatSettings, String> {
+
+    public static final int CURRENT_VERSION = 2;
+
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    @Override
+    public String convertToDatabaseColumn(ChatSettings settings) {
+        if (settings == null) {
+            return null;
+        }
+
+        StringBuilder json = new StringBuilder(64);
+        json.append("{\"v\":").append(CURRENT_VERSION)
+                .append(",\"flags\":").append(settings.flags())
+                .append(",\"bot_topic_id\":").append(settings.botTopicId())
+                .append(",\"bot_topic_name\":");
+        appendString(json, settings.botTopicName());
+        json.append('}');
+        return json.toString();
+    }
+
+    @Override
+    public ChatSettings convertToEntityAttribute(String json) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+
+        ChatSettings settings = new FastParser(json).parse();
+        if (settings != null) {
+            return settings;
+        }
+
+        try {
+            return ChatSettings.fromLegacyMap(LEGACY_MAPPER.readValue(json, MAP_TYPE));
+        } catch (Exception e) {
+            log.warn("Не удалось разобрать настройки чата '{}': {}", json, e.getMessage());
+            return ChatSettings.fromLegacyMap(null);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Разбор плоского v2-объекта. Возвращает null, если строка не в формате v2 —
+     * тогда вызывающий код использует Jackson
+     */
+    private static final class FastParser {
+
+        private final String json;
+        private int pos;
+
+        private FastParser(String json) {
+            this.json = json;
+        }
+
+        ChatSettings parse() {
+            int version = -1;
+            int flags = 0;
+            boolean hasFlags = false;
+            Integer topicId = null;
+            String topicName = null;
+
+            skipWhitespace();
+            if (!consume('{')) {
+                return null;
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return null;
+            }
+
+            do {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                if (key == null || !consume(':')) {
+                    return null;
+                }
+                skipWhitespace();
+
+                switch (key) {
+                    case "v" -> {
+                        Long value = readLong();
+                        if (value == null) return null;
+                        version = value.intValue();
+                    }
+                    case "flags" -> {
+                        Long value = readLong();
+                        if (value == null) return null;
+                        flags = value.intValue();
+                        hasFlags = true;
+                    }
+                    case "bot_topic_id" -> {
+                        if (!readNull()) {
+                            Long value = readLong();
+                            if (value == null) return null;
+                            topicId = value.intValue();
+                        }
+                    }
+                    case "bot_topic_name" -> {
+                        if (!readNull()) {
+                            topicName = readString();
+                            if (topicName == null) return null;
+                        }
+                    }
+                    default -> {
+                        // Неизвестный ключ — это не v2
+                        return null;
+                    }
+                }
+                skipWhitespace();
+            } while (consume(','));
+
+            skipWhitespace();
+            if (!consume('}') || version != CURRENT_VERSION || !hasFlags) {
+                return null;
+            }
+            return new ChatSettings(flags, topicId, topicName);
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean consume(char expected) {
+            if (pos < json.length() && json.charAt(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean readNull() {
+            if (json.startsWith("null", pos)) {
+                pos += 4;
+                return true;
+            }
+            return false;
+        }
+
+        private Long readLong() {
+            int start = pos;
+            if (pos < json.length() && json.charAt(pos) == '-') {
+                pos++;
+            }
+            int digitsStart = pos;
+            while (pos < json.length() && Character.isDigit(json.charAt(pos))) {
+                pos++;
+            }
+            int digits = pos - digitsStart;
+            if (digits == 0 || digits > 18) {
+                return null;
+            }
+            return Long.parseLong(json, start, pos, 10);
+        }
+
+        private String readString() {
+            if (!consume('"')) {
+                return null;
+            }
+
+            StringBuilder value = null;
+            int start = pos;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    String result = value == null
+                            ? json.substring(start, pos)
+                            : value.append(json, start, pos).toString();
+                    pos++;
+                    return result;
+                }
+                if (c != '\\') {
+                    pos++;
+                    continue;
+                }
+
+                if (value == null) {
+                    value = new StringBuilder();
+                }
+                value.append(json, start, pos);
+                if (pos + 1 >= json.length()) {
+                    return null;
+                }
+                char escaped = json.charAt(pos + 1);
+                pos += 2;
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > json.length()) {
+                            return null;
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json, pos, pos + 4, 16));
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                        pos += 4;
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+                start = pos;
+            }
+            return null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import lombok.*;
 
 import java.time.LocalDateTime;
 
+// Таблица секционирована по created_at (миграция V3), строки пишет CommandLogWriter через JDBC
 @Entity
 @Table(name = "command_logs", indexes = {
         @Index(name = "idx_command_logs_user_id", columnList = "userId"),
@@ -27,7 +27,8 @@ public class Deadline extends BaseEntity {
     @Column(name = "link_text")
     private String linkText;
 
-    @ManyToOne
+    // Ленивая загрузка: в DTO нужен только id автора, он доступен без запроса к users
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by")
     private User createdBy;
 }
\ No newline at end of file
@@ -2,10 +2,15 @@ package ru.melnikov.telegrambot.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.melnikov.telegrambot.cache.CacheRegions;
 
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.GROUPS)
 @Table(name = "groups")
 @Getter
 @Setter
@@ -23,7 +28,10 @@ public class Group {
 
     private String description;
 
+    // Владеющая сторона связи: изменения состава группы обновляют этот регион.
+    // Обратная сторона (User.groups) не кешируется — Hibernate не инвалидирует ее при записи сюда
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.GROUP_USERS)
     @JoinTable(
             name = "user_groups",
             joinColumns = @JoinColumn(name = "group_id"),
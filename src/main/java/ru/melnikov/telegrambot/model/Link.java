@@ -2,8 +2,13 @@ package ru.melnikov.telegrambot.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.melnikov.telegrambot.cache.CacheRegions;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.LINKS)
 @Table(name = "links")
 @Getter
 @Setter
@@ -16,7 +21,8 @@ public class Link extends BaseEntity {
 
     private String url;
 
-    @ManyToOne
+    // Ленивая загрузка: в DTO нужен только id автора, он доступен без запроса к users
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by")
     private User createdBy;
 }
\ No newline at end of file
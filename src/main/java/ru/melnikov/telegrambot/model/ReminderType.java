@@ -0,0 +1,10 @@
+package ru.melnikov.telegrambot.model;
+
+/**
+ * Типы напоминаний из таблицы reminders (колонка reminder_type)
+ */
+public enum ReminderType {
+    SCHEDULE_TODAY,   // расписание на день в schedule_time
+    SCHEDULE_BEFORE,  // перед каждой парой, за config.minutes_before минут
+    DEADLINE_WEEKLY   // сводка дедлайнов в schedule_time
+}
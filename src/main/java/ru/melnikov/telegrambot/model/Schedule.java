@@ -2,10 +2,15 @@ package ru.melnikov.telegrambot.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.melnikov.telegrambot.cache.CacheRegions;
 
 import java.time.LocalTime;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.SCHEDULE)
 @Table(name = "schedule")
 @Getter
 @Setter
@@ -2,11 +2,16 @@ package ru.melnikov.telegrambot.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.melnikov.telegrambot.cache.CacheRegions;
 
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.USERS)
 @Table(name = "users")
 @Getter
 @Setter
@@ -1,8 +1,14 @@
 package ru.melnikov.telegrambot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import ru.melnikov.telegrambot.dto.ChatSummaryDto;
 import ru.melnikov.telegrambot.model.BotChat;
 
 import java.util.List;
@@ -20,46 +26,113 @@ public interface BotChatRepository extends JpaRepository<BotChat, Long> {
 
     boolean existsByChatId(Long chatId);
 
+    // is_group и notify_* — генерируемые колонки (см. миграцию V5)
     @Query(value = """
-        SELECT * FROM bot_chats c 
-        WHERE c.is_active = true 
-        AND c.chat_type IN ('group', 'supergroup', 'GROUP', 'SUPERGROUP')
+        SELECT * FROM bot_chats c
+        WHERE c.is_active AND c.is_group
     """, nativeQuery = true)
     List<BotChat> findAllActiveGroups();
 
-    // Упрощаем запросы для JSON полей
     @Query("SELECT c FROM BotChat c WHERE c.isActive = true")
     List<BotChat> findAllActiveChats();
 
     @Query(value = """
-        SELECT * FROM bot_chats c 
-        WHERE c.is_active = true 
-        AND c.chat_type IN ('group', 'supergroup', 'GROUP', 'SUPERGROUP')
-        AND (
-           c.settings->>'schedule_notifications' = 'true' 
-           OR c.settings->>'schedule_notifications' IS NULL
-     )
+        SELECT * FROM bot_chats c
+        WHERE c.is_active AND c.is_group AND c.notify_schedule
     """, nativeQuery = true)
     List<BotChat> findChatsWithScheduleNotifications();
 
     @Query(value = """
-        SELECT * FROM bot_chats c 
-        WHERE c.is_active = true 
-        AND c.chat_type IN ('group', 'supergroup', 'GROUP', 'SUPERGROUP')
-        AND (
-         c.settings->>'deadline_notifications' = 'true' 
-            OR c.settings->>'deadline_notifications' IS NULL
-        )
+        SELECT * FROM bot_chats c
+        WHERE c.is_active AND c.is_group AND c.notify_deadlines
     """, nativeQuery = true)
     List<BotChat> findChatsWithDeadlineNotifications();
 
     @Query(value = """
-        SELECT c.chat_id, 
-               COALESCE(c.settings->>'before_class_enabled', 'true')::boolean as before_class_enabled
-        FROM bot_chats c 
-        WHERE c.is_active = true 
-        AND c.chat_type IN ('group', 'supergroup', 'GROUP', 'SUPERGROUP')
-        AND (c.settings->>'schedule_notifications' = 'true' OR c.settings->>'schedule_notifications' IS NULL)
+        SELECT c.chat_id, c.notify_before_class AS before_class_enabled
+        FROM bot_chats c
+        WHERE c.is_active AND c.is_group AND c.notify_schedule
     """, nativeQuery = true)
     List<Object[]> findAllActiveGroupsWithBeforeClass();
-}
\ No newline at end of file
+
+    // ====== ПОЛУЧАТЕЛИ РАССЫЛОК ======
+    // Только (chat_id, bot_topic_id): каждый запрос покрыт своим частичным индексом
+    // из миграции V5 и выполняется сканированием только индекса.
+    // Массовые рассылки читают получателей потоком — см. BroadcastTargetReader
+
+    @Query(value = """
+        SELECT c.chat_id, c.bot_topic_id
+        FROM bot_chats c
+        WHERE c.is_active AND c.is_group AND c.notify_before_class
+        ORDER BY c.chat_id
+    """, nativeQuery = true)
+    List<Object[]> findBeforeClassTargets();
+
+    @Query(value = """
+        SELECT c.chat_id, c.bot_topic_id
+        FROM bot_chats c
+        WHERE c.is_active AND c.is_group
+        ORDER BY c.chat_id
+    """, nativeQuery = true)
+    List<Object[]> findActiveGroupTargets();
+
+    // ====== АТОМАРНОЕ ИЗМЕНЕНИЕ НАСТРОЕК ======
+    // Один UPDATE на изменение: без чтения сущности и без перезаписи всей строки.
+    // Каждое изменение увеличивает version, поэтому параллельное сохранение
+    // устаревшей сущности BotChat завершится OptimisticLockException, а не затрет настройки.
+    // HINT_NATIVE_SPACES ограничивает инвалидацию кеша второго уровня таблицей bot_chats
+
+    /**
+     * Включает биты setMask и выключает биты clearMask в settings->'flags' одним запросом
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "bot_chats"))
+    @Query(value = """
+        UPDATE bot_chats
+        SET settings = jsonb_set(settings, '{flags}',
+                to_jsonb(((settings->>'flags')::int | :setMask) & ~(:clearMask))),
+            version = version + 1,
+            updated_at = now()
+        WHERE chat_id = :chatId
+    """, nativeQuery = true)
+    int updateSettingsFlags(@Param("chatId") Long chatId,
+                            @Param("setMask") int setMask,
+                            @Param("clearMask") int clearMask);
+
+    /**
+     * Устанавливает тему бота (null в обоих параметрах — сброс темы)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "bot_chats"))
+    @Query(value = """
+        UPDATE bot_chats
+        SET settings = settings || jsonb_build_object(
+                'bot_topic_id', CAST(:topicId AS integer),
+                'bot_topic_name', CAST(:topicName AS text)),
+            version = version + 1,
+            updated_at = now()
+        WHERE chat_id = :chatId
+    """, nativeQuery = true)
+    int updateBotTopic(@Param("chatId") Long chatId,
+                       @Param("topicId") Integer topicId,
+                       @Param("topicName") String topicName);
+
+    // ====== KEYSET-ПАГИНАЦИЯ ДЛЯ АДМИНКИ ======
+    // Фильтры необязательные (null — не фильтровать), сортировка по id, продолжение — id > :after
+
+    @Query("""
+        SELECT new ru.melnikov.telegrambot.dto.ChatSummaryDto(
+               c.id, c.chatId, c.chatType, c.title, c.username, c.isActive, c.isBotAdmin, c.updatedAt)
+        FROM BotChat c
+        WHERE c.id > :after
+          AND (:active IS NULL OR c.isActive = :active)
+          AND (:botAdmin IS NULL OR c.isBotAdmin = :botAdmin)
+          AND (:chatType IS NULL OR c.chatType = LOWER(:chatType))
+        ORDER BY c.id
+    """)
+    List<ChatSummaryDto> findSummaries(@Param("after") long after,
+                                       @Param("active") Boolean active,
+                                       @Param("botAdmin") Boolean botAdmin,
+                                       @Param("chatType") String chatType,
+                                       Limit limit);
+}
@@ -1,10 +1,16 @@
 package ru.melnikov.telegrambot.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.melnikov.telegrambot.dto.DeadlineSummaryDto;
+import ru.melnikov.telegrambot.dto.DeadlineView;
 import ru.melnikov.telegrambot.model.Deadline;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface DeadlineRepository extends JpaRepository<Deadline, Long> {
 
@@ -14,4 +20,46 @@ public interface DeadlineRepository extends JpaRepository<Deadline, Long> {
 
     // Дополнительный метод для получения всех дедлайнов
     List<Deadline> findAllByOrderByDeadlineAtAsc();
-}
\ No newline at end of file
+
+    // ====== ВЫБОРКИ ПО ОКНУ ДАТ (индекс ix_deadlines_deadline_at) ======
+
+    @Query("""
+        SELECT d.id AS id, d.title AS title, d.deadlineAt AS deadlineAt,
+               d.description AS description, d.linkUrl AS linkUrl, d.linkText AS linkText
+        FROM Deadline d
+        WHERE d.deadlineAt >= :from AND d.deadlineAt < :to
+        ORDER BY d.deadlineAt
+    """)
+    List<DeadlineView> findWindow(@Param("from") LocalDateTime from,
+                                  @Param("to") LocalDateTime to);
+
+    @Query("""
+        SELECT d.id AS id, d.title AS title, d.deadlineAt AS deadlineAt,
+               d.description AS description, d.linkUrl AS linkUrl, d.linkText AS linkText
+        FROM Deadline d
+        WHERE d.deadlineAt >= :from
+        ORDER BY d.deadlineAt
+    """)
+    List<DeadlineView> findFrom(@Param("from") LocalDateTime from);
+
+    @Query("""
+        SELECT d.id AS id, d.title AS title, d.deadlineAt AS deadlineAt,
+               d.description AS description, d.linkUrl AS linkUrl, d.linkText AS linkText
+        FROM Deadline d
+        WHERE d.id = :id
+    """)
+    Optional<DeadlineView> findViewById(@Param("id") Long id);
+
+    @Query("""
+        SELECT new ru.melnikov.telegrambot.dto.DeadlineSummaryDto(
+               d.id, d.title, d.deadlineAt, d.linkUrl, d.linkText, u.id)
+        FROM Deadline d
+        LEFT JOIN d.createdBy u
+        WHERE d.id > :after
+          AND (:from IS NULL OR d.deadlineAt >= :from)
+        ORDER BY d.id
+    """)
+    List<DeadlineSummaryDto> findSummaries(@Param("after") long after,
+                                           @Param("from") LocalDateTime from,
+                                           Limit limit);
+}
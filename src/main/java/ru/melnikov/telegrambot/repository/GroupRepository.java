@@ -1,8 +1,11 @@
 package ru.melnikov.telegrambot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import ru.melnikov.telegrambot.model.Group;
 
@@ -10,12 +13,14 @@ import java.util.Optional;
 
 public interface GroupRepository extends JpaRepository<Group, Long> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Group> findByName(String name);
 
     @EntityGraph(attributePaths = "users")
     Optional<Group> findWithUsersById(Long id);
 
     // Новый метод для загрузки группы с пользователями по имени
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT g FROM Group g LEFT JOIN FETCH g.users WHERE g.name = :name")
     Optional<Group> findByNameWithUsers(@Param("name") String name);
 }
\ No newline at end of file
@@ -1,11 +1,35 @@
 package ru.melnikov.telegrambot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ru.melnikov.telegrambot.dto.LinkSummaryDto;
 import ru.melnikov.telegrambot.model.Link;
 
 import java.util.List;
 
 public interface LinkRepository extends JpaRepository<Link, Long> {
 
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Link> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Link> findByCreatedBy_Id(Long userId);
-}
\ No newline at end of file
+
+    @Query("""
+        SELECT new ru.melnikov.telegrambot.dto.LinkSummaryDto(l.id, l.title, l.url, u.id)
+        FROM Link l
+        LEFT JOIN l.createdBy u
+        WHERE l.id > :after
+          AND (:userId IS NULL OR u.id = :userId)
+        ORDER BY l.id
+    """)
+    List<LinkSummaryDto> findSummaries(@Param("after") long after,
+                                       @Param("userId") Long userId,
+                                       Limit limit);
+}
@@ -13,6 +13,11 @@ public interface ReminderRepository extends JpaRepository<Reminder, Long> {
 
     List<Reminder> findByChatIdAndIsActiveTrue(Long chatId);
 
+    List<Reminder> findByChatIdOrderById(Long chatId);
+
+    // Полная загрузка — только при старте ReminderEngine, дальше он обновляется по событиям
+    List<Reminder> findByIsActiveTrue();
+
     @Query("SELECT r FROM Reminder r WHERE r.isActive = true AND r.scheduleTime = :time")
     List<Reminder> findActiveRemindersByTime(@Param("time") LocalTime time);
 
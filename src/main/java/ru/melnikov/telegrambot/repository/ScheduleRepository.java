@@ -1,13 +1,43 @@
 package ru.melnikov.telegrambot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ru.melnikov.telegrambot.dto.ScheduleSummaryDto;
 import ru.melnikov.telegrambot.model.Schedule;
 
 import java.util.List;
 
 public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
 
+    // Расписание почти не меняется: результаты частых выборок — в кеше запросов,
+    // сами сущности — в регионе schedule (см. CacheRegions)
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Schedule> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Schedule> findByDayOfWeek(Integer dayOfWeek);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Schedule> findByDayOfWeekAndWeekType(Integer dayOfWeek, String weekType);
-}
\ No newline at end of file
+
+    @Query("""
+        SELECT new ru.melnikov.telegrambot.dto.ScheduleSummaryDto(
+               s.id, s.dayOfWeek, s.timeStart, s.timeEnd, s.subject, s.teacher, s.location, s.isOnline, s.weekType)
+        FROM Schedule s
+        WHERE s.id > :after
+          AND (:dayOfWeek IS NULL OR s.dayOfWeek = :dayOfWeek)
+          AND (:weekType IS NULL OR s.weekType = :weekType)
+        ORDER BY s.id
+    """)
+    List<ScheduleSummaryDto> findSummaries(@Param("after") long after,
+                                           @Param("dayOfWeek") Integer dayOfWeek,
+                                           @Param("weekType") String weekType,
+                                           Limit limit);
+}
@@ -1,13 +1,65 @@
 package ru.melnikov.telegrambot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.melnikov.telegrambot.dto.UserSummaryDto;
+import ru.melnikov.telegrambot.model.Role;
 import ru.melnikov.telegrambot.model.User;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByTelegramId(Long telegramId);
 
     boolean existsByTelegramId(Long telegramId);
-}
\ No newline at end of file
+
+    /**
+     * Регистрация одним запросом: вставка нового пользователя или обновление
+     * имени, если оно изменилось. Возвращает количество затронутых строк (0 — ничего не менялось).
+     * Затронутая таблица объявлена явно: иначе нативный запрос сбросил бы весь кеш второго уровня
+     */
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users"))
+    @Query(value = """
+        INSERT INTO users (telegram_id, username, first_name, last_name, role, is_active, created_at)
+        VALUES (:telegramId, :username, :firstName, :lastName, :role, true, now())
+        ON CONFLICT (telegram_id) DO UPDATE
+        SET username = EXCLUDED.username,
+            first_name = EXCLUDED.first_name,
+            last_name = EXCLUDED.last_name
+        WHERE (users.username, users.first_name, users.last_name)
+              IS DISTINCT FROM (EXCLUDED.username, EXCLUDED.first_name, EXCLUDED.last_name)
+    """, nativeQuery = true)
+    int upsertRegistration(@Param("telegramId") Long telegramId,
+                           @Param("username") String username,
+                           @Param("firstName") String firstName,
+                           @Param("lastName") String lastName,
+                           @Param("role") String role);
+
+    // telegram_id и поля для отпечатка KnownUserRegistry
+    @Query("SELECT u.telegramId, u.username, u.firstName, u.lastName FROM User u")
+    List<Object[]> findAllRegistrationFingerprints();
+
+    @Query("""
+        SELECT new ru.melnikov.telegrambot.dto.UserSummaryDto(
+               u.id, u.telegramId, u.username, u.firstName, u.lastName, u.role, u.isActive)
+        FROM User u
+        WHERE u.id > :after
+          AND (:role IS NULL OR u.role = :role)
+        ORDER BY u.id
+    """)
+    List<UserSummaryDto> findSummaries(@Param("after") long after,
+                                       @Param("role") Role role,
+                                       Limit limit);
+}
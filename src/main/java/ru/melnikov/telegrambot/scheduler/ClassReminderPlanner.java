@@ -0,0 +1,290 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+import ru.melnikov.telegrambot.model.Schedule;
+import ru.melnikov.telegrambot.service.BroadcastTargetReader;
+import ru.melnikov.telegrambot.service.BroadcastTargetReader.Audience;
+import ru.melnikov.telegrambot.service.ReminderMessageService;
+import ru.melnikov.telegrambot.service.ScheduleChangedEvent;
+import ru.melnikov.telegrambot.service.ScheduleService;
+import ru.melnikov.telegrambot.service.WeekTypeService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Напоминания перед парой по заранее построенному плану.
+ * <p>
+ * План — моменты отправки пар сегодняшнего и завтрашнего дня (с учетом типа недели
+ * и minutes из YML) в DelayQueue. Отдельный поток забирает запись ровно в момент
+ * отправки, поэтому поминутного опроса и перебора «группы × пары» больше нет.
+ * План перестраивается при смене дня и при любом изменении расписания (ScheduleChangedEvent).
+ * <p>
+ * Получатели читаются в момент отправки одним запросом по индексу (BroadcastTargetReader),
+ * поэтому изменение настроек чата не требует перестройки плана.
+ * Каждая пара напоминается не больше одного раза за дату, даже если план перестроен.
+ * План строят все экземпляры, отправляет только ведущий (SchedulerLeadership).
+ */
+@Slf4j
+@Component
+public class ClassReminderPlanner {
+
+    // Пропущенная запись (рестарт, перестройка плана) еще отправляется, если опоздание не больше этого
+    private static final Duration LATE_GRACE = Duration.ofMinutes(1);
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final BotSettingsConfig settingsConfig;
+    private final ScheduleService scheduleService;
+    private final WeekTypeService weekTypeService;
+    private final ReminderMessageService reminderMessageService;
+    private final BroadcastTargetReader broadcastTargetReader;
+    private final SchedulerLeadership leadership;
+
+    private final DelayQueue<PlannedReminder> queue = new DelayQueue<>();
+    // Отправленные пары: дата -> id пар
+    private final Map<LocalDate, Set<Long>> fired = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong firedEntries = new AtomicLong();
+    private final AtomicLong sentReminders = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+    private volatile long lastLagMillis;
+    private volatile LocalDateTime lastPlanAt;
+    private volatile String lastPlanReason;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public ClassReminderPlanner(BotSettingsConfig settingsConfig,
+                                ScheduleService scheduleService,
+                                WeekTypeService weekTypeService,
+                                ReminderMessageService reminderMessageService,
+                                BroadcastTargetReader broadcastTargetReader,
+                                SchedulerLeadership leadership) {
+        this.settingsConfig = settingsConfig;
+        this.scheduleService = scheduleService;
+        this.weekTypeService = weekTypeService;
+        this.reminderMessageService = reminderMessageService;
+        this.broadcastTargetReader = broadcastTargetReader;
+        this.leadership = leadership;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "class-reminder-planner");
+        worker.setDaemon(true);
+        worker.start();
+
+        replan("запуск");
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Смена дня: план на новые сутки, отметки об отправке за прошедшие даты больше не нужны
+     */
+    @Scheduled(cron = "0 0 0 * * *", scheduler = SchedulingConfig.REMINDERS)
+    public void onDayRollover() {
+        LocalDate today = LocalDate.now();
+        fired.keySet().removeIf(date -> date.isBefore(today));
+        replan("смена дня");
+    }
+
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        replan("изменение расписания: " + event.reason());
+    }
+
+    /**
+     * Строит план заново: старые записи удаляются, новые получают следующее поколение
+     */
+    public synchronized void replan(String reason) {
+        long currentGeneration = generation.incrementAndGet();
+        queue.clear();
+
+        BotSettingsConfig.ReminderConfig.BeforeClassConfig config = settingsConfig.getReminders().getBeforeClass();
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            lastPlanAt = LocalDateTime.now();
+            lastPlanReason = reason;
+            log.info("⏸️ Напоминания перед парой отключены в YML — план пуст");
+            return;
+        }
+
+        int minutesBefore = config.getMinutes();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime notBefore = now.minus(LATE_GRACE);
+
+        // Сегодня и завтра: пара в начале суток может напоминаться еще вечером накануне
+        int planned = 0;
+        for (LocalDate date = now.toLocalDate(); !date.isAfter(now.toLocalDate().plusDays(1)); date = date.plusDays(1)) {
+            String weekType = weekTypeService.getWeekTypeForDate(date);
+            Set<Long> firedForDate = fired.getOrDefault(date, Set.of());
+
+            // Пары с одинаковым началом отправляются одной записью
+            Map<LocalDateTime, List<Schedule>> byFireAt = new TreeMap<>();
+            for (Schedule schedule : scheduleService.findEntitiesByDay(date.getDayOfWeek().getValue())) {
+                String scheduleWeekType = schedule.getWeekType() != null ? schedule.getWeekType() : "all";
+                if (!scheduleWeekType.equals("all") && !scheduleWeekType.equals(weekType)) {
+                    continue;
+                }
+                if (firedForDate.contains(schedule.getId())) {
+                    continue;
+                }
+                LocalDateTime fireAt = date.atTime(schedule.getTimeStart()).withSecond(0).withNano(0)
+                        .minusMinutes(minutesBefore);
+                if (fireAt.isBefore(notBefore) || !fireAt.toLocalDate().isBefore(now.toLocalDate().plusDays(1))) {
+                    // Прошедшие пропускаем; моменты завтрашнего дня попадут в план после смены дня
+                    continue;
+                }
+                byFireAt.computeIfAbsent(fireAt, key -> new ArrayList<>()).add(schedule);
+            }
+
+            for (Map.Entry<LocalDateTime, List<Schedule>> entry : byFireAt.entrySet()) {
+                queue.add(new PlannedReminder(entry.getKey(), date, List.copyOf(entry.getValue()),
+                        minutesBefore, currentGeneration));
+                planned++;
+            }
+        }
+
+        lastPlanAt = now;
+        lastPlanReason = reason;
+        log.info("🗓️ План напоминаний перед парой построен ({}): {} моментов отправки, ближайший {}",
+                reason, planned, Optional.ofNullable(queue.peek()).map(PlannedReminder::fireAt).orElse(null));
+    }
+
+    public Map<String, Object> getStats() {
+        long count = firedEntries.get();
+
+        List<Map<String, Object>> upcoming = queue.stream()
+                .sorted()
+                .limit(10)
+                .map(entry -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("fireAt", entry.fireAt());
+                    item.put("subjects", entry.schedules().stream().map(Schedule::getSubject).toList());
+                    return item;
+                })
+                .toList();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", generation.get());
+        stats.put("lastPlanAt", lastPlanAt);
+        stats.put("lastPlanReason", lastPlanReason);
+        stats.put("planned", queue.size());
+        stats.put("upcoming", upcoming);
+        stats.put("firedEntries", count);
+        stats.put("sentReminders", sentReminders.get());
+        stats.put("lastLagMillis", lastLagMillis);
+        stats.put("avgLagMillis", count > 0 ? totalLagMillis.get() / count : 0);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
+
+    // ====== ПОТОК ОТПРАВКИ ======
+
+    private void runLoop() {
+        while (running) {
+            PlannedReminder entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            // Запись успела устареть, пока план перестраивался
+            if (entry.generation() != generation.get()) {
+                continue;
+            }
+
+            try {
+                fire(entry);
+            } catch (Exception e) {
+                log.error("❌ Ошибка отправки напоминаний перед парой на {}: {}", entry.fireAt(), e.getMessage(), e);
+            }
+        }
+        log.info("⏹️ Поток напоминаний перед парой остановлен");
+    }
+
+    private void fire(PlannedReminder entry) {
+        if (!leadership.isLeader()) {
+            log.debug("Напоминания на {} отправит ведущий экземпляр", entry.fireAt());
+            return;
+        }
+
+        long lag = Math.max(0, System.currentTimeMillis() - entry.fireAtMillis());
+        lastLagMillis = lag;
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulate(lag);
+        firedEntries.incrementAndGet();
+
+        Set<Long> firedForDate = fired.computeIfAbsent(entry.date(), date -> ConcurrentHashMap.newKeySet());
+        List<Schedule> schedules = entry.schedules().stream()
+                .filter(schedule -> firedForDate.add(schedule.getId()))
+                .toList();
+        if (schedules.isEmpty()) {
+            return;
+        }
+
+        int groups = broadcastTargetReader.forEach(Audience.BEFORE_CLASS, group -> {
+            for (Schedule schedule : schedules) {
+                try {
+                    reminderMessageService.sendClassReminder(group.chatId(), schedule, entry.minutesBefore());
+                    sentReminders.incrementAndGet();
+                } catch (Exception e) {
+                    log.error("❌ Ошибка при отправке напоминания в чат {}: {}", group.chatId(), e.getMessage());
+                }
+            }
+        });
+
+        log.info("🔔 Напоминания за {} минут отправлены: {} пар ({}), {} групп, опоздание {} мс",
+                entry.minutesBefore(), schedules.size(),
+                schedules.get(0).getTimeStart().format(TIME_FORMATTER), groups, lag);
+    }
+
+    /**
+     * Момент отправки: пары дня date, начинающиеся через minutesBefore минут после fireAt
+     */
+    private record PlannedReminder(LocalDateTime fireAt, LocalDate date, List<Schedule> schedules,
+                                   int minutesBefore, long generation) implements Delayed {
+
+        long fireAtMillis() {
+            return fireAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return fireAt.compareTo(((PlannedReminder) other).fireAt);
+        }
+    }
+}
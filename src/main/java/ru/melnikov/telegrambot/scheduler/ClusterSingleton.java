@@ -0,0 +1,15 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Периодическая задача (@Scheduled), которая выполняется только на ведущем экземпляре
+ * и не больше одного раза на плановый момент во всем кластере (см. SchedulerLeadership)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ClusterSingleton {
+}
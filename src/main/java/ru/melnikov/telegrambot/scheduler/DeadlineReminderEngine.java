@@ -0,0 +1,282 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.dto.DeadlineView;
+import ru.melnikov.telegrambot.repository.DeadlineRepository;
+import ru.melnikov.telegrambot.service.BroadcastFanoutService;
+import ru.melnikov.telegrambot.service.BroadcastTargetReader.Audience;
+import ru.melnikov.telegrambot.service.DeadlineChangedEvent;
+import ru.melnikov.telegrambot.service.DeadlineService;
+import ru.melnikov.telegrambot.service.ReminderMessageService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Напоминания о каждом дедлайне за remind-before до срока (по умолчанию за 7 дней, 1 день и 3 часа).
+ * <p>
+ * Будущие дедлайны читаются из БД один раз при старте. Для каждого напоминания в очередь
+ * с приоритетом по времени (DelayQueue) кладется момент deadline_at − смещение, округленный
+ * до минуты. Изменения приходят по DeadlineChangedEvent и затрагивают только один дедлайн;
+ * устаревшие записи очереди пропускаются по номеру версии — рассылки дедлайнов целиком
+ * больше не перечитываются и не пересобираются.
+ * <p>
+ * Все напоминания одной минуты объединяются: текст собирается один раз и уходит одной
+ * распределенной рассылкой (BroadcastFanoutService), то есть каждый чат получает одно сообщение.
+ * Очередь ведут все экземпляры, рассылку ставит только ведущий (SchedulerLeadership).
+ */
+@Slf4j
+@Component
+public class DeadlineReminderEngine {
+
+    // Напоминание, опоздавшее не больше этого (рестарт, смена ведущего), еще отправляется
+    private static final Duration LATE_GRACE = Duration.ofMinutes(1);
+
+    private final DeadlineService deadlineService;
+    private final DeadlineRepository deadlineRepository;
+    private final ReminderMessageService reminderMessageService;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final BotSettingsConfig settingsConfig;
+    private final SchedulerLeadership leadership;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final DelayQueue<FireSlot> queue = new DelayQueue<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    private final AtomicLong firedReminders = new AtomicLong();
+    private final AtomicLong digests = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public DeadlineReminderEngine(DeadlineService deadlineService,
+                                  DeadlineRepository deadlineRepository,
+                                  ReminderMessageService reminderMessageService,
+                                  BroadcastFanoutService broadcastFanoutService,
+                                  BotSettingsConfig settingsConfig,
+                                  SchedulerLeadership leadership) {
+        this.deadlineService = deadlineService;
+        this.deadlineRepository = deadlineRepository;
+        this.reminderMessageService = reminderMessageService;
+        this.broadcastFanoutService = broadcastFanoutService;
+        this.settingsConfig = settingsConfig;
+        this.leadership = leadership;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        LocalDateTime now = LocalDateTime.now();
+        deadlineService.findWindow(now, null).forEach(deadline -> upsert(deadline, now));
+
+        running = true;
+        worker = new Thread(this::runLoop, "deadline-reminder-engine");
+        worker.setDaemon(true);
+        worker.start();
+
+        log.info("📌 Напоминания о дедлайнах запущены: {} дедлайнов, {} напоминаний, ближайшее {}",
+                entries.size(), queue.size(), Optional.ofNullable(queue.peek()).map(FireSlot::fireAt).orElse(null));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @EventListener
+    public void onDeadlineChanged(DeadlineChangedEvent event) {
+        updates.incrementAndGet();
+        Optional<DeadlineView> deadline = deadlineRepository.findViewById(event.deadlineId());
+        if (deadline.isPresent()) {
+            upsert(deadline.get(), LocalDateTime.now());
+        } else if (entries.remove(event.deadlineId()) != null) {
+            log.debug("🔕 Напоминания о дедлайне {} сняты", event.deadlineId());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long fired = firedReminders.get();
+
+        List<Map<String, Object>> upcoming = new ArrayList<>();
+        queue.stream().sorted().forEach(slot -> {
+            Entry entry = currentEntry(slot);
+            if (entry != null && upcoming.size() < 10) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("fireAt", slot.fireAt());
+                item.put("deadlineId", slot.deadlineId());
+                item.put("title", entry.deadline().getTitle());
+                item.put("before", slot.before().toString());
+                upcoming.add(item);
+            }
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("remindBefore", getOffsets().stream().map(Duration::toString).toList());
+        stats.put("deadlines", entries.size());
+        stats.put("queued", queue.size());
+        stats.put("upcoming", upcoming);
+        stats.put("updates", updates.get());
+        stats.put("fired", fired);
+        stats.put("digests", digests.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("avgLagMillis", fired > 0 ? totalLagMillis.get() / fired : 0);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
+
+    // ====== ПЛАНИРОВАНИЕ ======
+
+    private void upsert(DeadlineView deadline, LocalDateTime now) {
+        if (deadline.getDeadlineAt() == null || !deadline.getDeadlineAt().isAfter(now)) {
+            entries.remove(deadline.getId());
+            return;
+        }
+
+        Entry entry = new Entry(deadline, versions.incrementAndGet());
+        entries.put(deadline.getId(), entry);
+
+        fireTimes(deadline.getDeadlineAt(), getOffsets(), now).forEach((before, fireAt) ->
+                queue.add(new FireSlot(deadline.getId(), entry.version(), before, fireAt)));
+    }
+
+    /**
+     * Моменты напоминаний о дедлайне deadlineAt: за каждое before из offsets, с точностью до минуты.
+     * Уже прошедшие моменты (раньше now больше чем на LATE_GRACE) не включаются
+     */
+    static Map<Duration, LocalDateTime> fireTimes(LocalDateTime deadlineAt, List<Duration> offsets, LocalDateTime now) {
+        LocalDateTime notBefore = now.minus(LATE_GRACE);
+        Map<Duration, LocalDateTime> times = new LinkedHashMap<>();
+        for (Duration before : offsets) {
+            LocalDateTime fireAt = deadlineAt.minus(before).truncatedTo(ChronoUnit.MINUTES);
+            if (!fireAt.isBefore(notBefore)) {
+                times.put(before, fireAt);
+            }
+        }
+        return times;
+    }
+
+    private List<Duration> getOffsets() {
+        return settingsConfig.getReminders().getDeadlines().getRemindBefore();
+    }
+
+    /**
+     * Запись дедлайна, если слот очереди не устарел
+     */
+    private Entry currentEntry(FireSlot slot) {
+        Entry entry = entries.get(slot.deadlineId());
+        return entry != null && entry.version() == slot.version() ? entry : null;
+    }
+
+    // ====== ПОТОК ОТПРАВКИ ======
+
+    private void runLoop() {
+        while (running) {
+            List<FireSlot> due = new ArrayList<>();
+            try {
+                due.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // Все, что наступило к этому моменту, — одной пачкой
+            queue.drainTo(due);
+
+            try {
+                fire(due);
+            } catch (Exception e) {
+                log.error("❌ Ошибка отправки напоминаний о дедлайнах: {}", e.getMessage(), e);
+            }
+        }
+        log.info("⏹️ Поток напоминаний о дедлайнах остановлен");
+    }
+
+    private void fire(List<FireSlot> due) {
+        long nowMillis = System.currentTimeMillis();
+
+        // Минута -> дедлайны: одно сообщение на чат за минуту, даже если смещений несколько
+        Map<LocalDateTime, Map<Long, DeadlineView>> byMinute = new TreeMap<>();
+        for (FireSlot slot : due) {
+            Entry entry = currentEntry(slot);
+            if (entry == null) {
+                continue; // дедлайн удален или изменен после постановки в очередь
+            }
+            Map<Long, DeadlineView> deadlines = byMinute.computeIfAbsent(slot.fireAt(), minute -> new LinkedHashMap<>());
+            if (!deadlines.isEmpty()) {
+                coalesced.incrementAndGet();
+            }
+            deadlines.putIfAbsent(slot.deadlineId(), entry.deadline());
+
+            long lag = Math.max(0, nowMillis - slot.fireAtMillis());
+            totalLagMillis.addAndGet(lag);
+            maxLagMillis.accumulate(lag);
+            firedReminders.incrementAndGet();
+        }
+
+        // Прошедшие дедлайны больше не нужны
+        LocalDateTime now = LocalDateTime.now();
+        entries.values().removeIf(entry -> !entry.deadline().getDeadlineAt().isAfter(now));
+
+        if (byMinute.isEmpty()) {
+            return;
+        }
+        if (!leadership.isLeader()) {
+            log.debug("Напоминания о дедлайнах на {} отправит ведущий экземпляр", byMinute.keySet());
+            return;
+        }
+
+        byMinute.forEach((minute, deadlines) -> {
+            List<DeadlineView> sorted = deadlines.values().stream()
+                    .sorted(Comparator.comparing(DeadlineView::getDeadlineAt))
+                    .toList();
+            String text = reminderMessageService.formatDeadlineReminders(sorted, now);
+            long jobId = broadcastFanoutService.submit(Audience.DEADLINE_ALERTS, text, "напоминания о дедлайнах");
+            digests.incrementAndGet();
+            log.info("📌 Напоминание о {} дедлайнах на {} поставлено в рассылку #{}", sorted.size(), minute, jobId);
+        });
+    }
+
+    // ====== МОДЕЛЬ ======
+
+    private record Entry(DeadlineView deadline, long version) {
+    }
+
+    /**
+     * Напоминание о дедлайне deadlineId за before до срока
+     */
+    private record FireSlot(long deadlineId, long version, Duration before, LocalDateTime fireAt) implements Delayed {
+
+        long fireAtMillis() {
+            return fireAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return fireAt.compareTo(((FireSlot) other).fireAt);
+        }
+    }
+}
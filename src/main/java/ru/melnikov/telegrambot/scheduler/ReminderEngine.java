@@ -0,0 +1,436 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+import ru.melnikov.telegrambot.model.Reminder;
+import ru.melnikov.telegrambot.model.ReminderType;
+import ru.melnikov.telegrambot.model.Schedule;
+import ru.melnikov.telegrambot.repository.ReminderRepository;
+import ru.melnikov.telegrambot.service.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Напоминания чатов с собственным временем и днями (таблица reminders).
+ * <p>
+ * Активные напоминания читаются из БД один раз при старте. В памяти для каждого
+ * хранится ближайший момент отправки в очереди с приоритетом по времени (DelayQueue),
+ * поток отправки просыпается ровно к нему. Изменения приходят по ReminderChangedEvent
+ * и обновляют только одно напоминание — поминутных запросов к БД нет.
+ * Устаревшие записи очереди не удаляются, а пропускаются по номеру версии.
+ * Если в ближайшие LOOKAHEAD_DAYS дней отправлять нечего (каникулы, нет пар нужного типа недели),
+ * в очередь кладется контрольная запись на конец этого горизонта, и поиск продолжается от нее.
+ * <p>
+ * Все напоминания, наступившие одновременно, отправляются одной пачкой: общий текст
+ * (расписание, дедлайны) формируется один раз. last_sent_at копится в памяти и
+ * записывается в БД пачкой раз в LAST_SENT_FLUSH_MS.
+ * <p>
+ * Чат с собственным напоминанием исключается из общей рассылки того же типа
+ * по времени из YML (см. BroadcastTargetReader.Audience).
+ * <p>
+ * Очередь ведут все экземпляры, а отправляет только ведущий (SchedulerLeadership) —
+ * при смене ведущего план уже готов и ничего не приходится перечитывать.
+ */
+@Slf4j
+@Component
+public class ReminderEngine {
+
+    private static final long LAST_SENT_FLUSH_MS = 10000;
+    // Сколько дней вперед искать следующий момент (неделя + запас на маску дней)
+    private static final int LOOKAHEAD_DAYS = 8;
+    private static final String MINUTES_BEFORE_KEY = "minutes_before";
+
+    private final ReminderRepository reminderRepository;
+    private final ReminderMessageService reminderMessageService;
+    private final ScheduleService scheduleService;
+    private final WeekTypeService weekTypeService;
+    private final BotSettingsConfig settingsConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final SchedulerLeadership leadership;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final DelayQueue<FireSlot> queue = new DelayQueue<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    // Пары по датам для SCHEDULE_BEFORE, сбрасываются при изменении расписания
+    private final Map<LocalDate, List<Schedule>> classesByDate = new ConcurrentHashMap<>();
+
+    // id напоминания -> время последней отправки, еще не записанное в БД
+    private final Map<Long, LocalDateTime> pendingLastSent = new ConcurrentHashMap<>();
+
+    private final AtomicLong firedReminders = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong lastSentWrites = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public ReminderEngine(ReminderRepository reminderRepository,
+                          ReminderMessageService reminderMessageService,
+                          ScheduleService scheduleService,
+                          WeekTypeService weekTypeService,
+                          BotSettingsConfig settingsConfig,
+                          JdbcTemplate jdbcTemplate,
+                          SchedulerLeadership leadership) {
+        this.reminderRepository = reminderRepository;
+        this.reminderMessageService = reminderMessageService;
+        this.scheduleService = scheduleService;
+        this.weekTypeService = weekTypeService;
+        this.settingsConfig = settingsConfig;
+        this.jdbcTemplate = jdbcTemplate;
+        this.leadership = leadership;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<Reminder> reminders = reminderRepository.findByIsActiveTrue();
+        LocalDateTime now = LocalDateTime.now();
+        reminders.forEach(reminder -> upsert(reminder, now));
+
+        running = true;
+        worker = new Thread(this::runLoop, "reminder-engine");
+        worker.setDaemon(true);
+        worker.start();
+
+        log.info("🔔 Движок напоминаний запущен: {} напоминаний, ближайшее {}",
+                entries.size(), Optional.ofNullable(queue.peek()).map(FireSlot::fireAt).orElse(null));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        flushLastSent();
+    }
+
+    @EventListener
+    public void onReminderChanged(ReminderChangedEvent event) {
+        Optional<Reminder> reminder = reminderRepository.findById(event.reminderId());
+        if (reminder.isPresent() && Boolean.TRUE.equals(reminder.get().getIsActive())) {
+            upsert(reminder.get(), LocalDateTime.now());
+        } else {
+            entries.remove(event.reminderId());
+            log.debug("🔕 Напоминание {} снято с расписания", event.reminderId());
+        }
+    }
+
+    /**
+     * Пары изменились: моменты напоминаний перед парой пересчитываются
+     */
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        classesByDate.clear();
+        LocalDateTime now = LocalDateTime.now();
+        entries.values().stream()
+                .filter(entry -> entry.type() == ReminderType.SCHEDULE_BEFORE)
+                .forEach(entry -> reschedule(entry.withVersion(versions.incrementAndGet()), now));
+    }
+
+    @Scheduled(cron = "0 0 0 * * *", scheduler = SchedulingConfig.REMINDERS)
+    public void onDayRollover() {
+        LocalDate today = LocalDate.now();
+        classesByDate.keySet().removeIf(date -> date.isBefore(today));
+    }
+
+    /**
+     * Пакетная запись last_sent_at
+     */
+    @Scheduled(fixedDelay = LAST_SENT_FLUSH_MS, scheduler = SchedulingConfig.REMINDERS)
+    public void flushLastSent() {
+        if (pendingLastSent.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(pendingLastSent.size());
+        for (Long id : new ArrayList<>(pendingLastSent.keySet())) {
+            LocalDateTime sentAt = pendingLastSent.remove(id);
+            if (sentAt != null) {
+                batch.add(new Object[]{Timestamp.valueOf(sentAt), id});
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate("UPDATE reminders SET last_sent_at = ? WHERE id = ?", batch);
+            lastSentWrites.addAndGet(batch.size());
+        } catch (Exception e) {
+            // Вернем в буфер, более новое значение не затираем
+            batch.forEach(row -> pendingLastSent.merge((Long) row[1], ((Timestamp) row[0]).toLocalDateTime(),
+                    (current, failed) -> current.isAfter(failed) ? current : failed));
+            log.error("❌ Не удалось записать last_sent_at для {} напоминаний: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long fired = firedReminders.get();
+        Map<ReminderType, Long> byType = new EnumMap<>(ReminderType.class);
+        entries.values().forEach(entry -> byType.merge(entry.type(), 1L, Long::sum));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reminders", entries.size());
+        stats.put("byType", byType);
+        stats.put("queued", queue.size());
+        stats.put("nextFireAt", Optional.ofNullable(queue.peek()).map(FireSlot::fireAt).orElse(null));
+        stats.put("fired", fired);
+        stats.put("batches", batches.get());
+        stats.put("avgLagMillis", fired > 0 ? totalLagMillis.get() / fired : 0);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        stats.put("pendingLastSent", pendingLastSent.size());
+        stats.put("lastSentWrites", lastSentWrites.get());
+        return stats;
+    }
+
+    // ====== ПЛАНИРОВАНИЕ ======
+
+    private void upsert(Reminder reminder, LocalDateTime now) {
+        Entry entry;
+        try {
+            entry = Entry.of(reminder, versions.incrementAndGet(),
+                    settingsConfig.getReminders().getBeforeClass().getMinutes());
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Напоминание {} пропущено: {}", reminder.getId(), e.getMessage());
+            entries.remove(reminder.getId());
+            return;
+        }
+
+        // Уже отправленное не повторяем: следующий момент — после last_sent_at
+        LocalDateTime lastSent = pendingLastSent.getOrDefault(reminder.getId(), reminder.getLastSentAt());
+        LocalDateTime after = lastSent != null && lastSent.isAfter(now) ? lastSent : now;
+        reschedule(entry, after);
+    }
+
+    private void reschedule(Entry entry, LocalDateTime after) {
+        entries.put(entry.id(), entry);
+        LocalDateTime next = nextFireAt(entry, after);
+        if (next != null) {
+            queue.add(new FireSlot(entry.id(), entry.version(), next, false));
+        } else {
+            // Дни до горизонта просмотрены — вернемся к напоминанию сразу после него
+            LocalDateTime recheckAt = after.toLocalDate().plusDays(LOOKAHEAD_DAYS + 1).atStartOfDay();
+            queue.add(new FireSlot(entry.id(), entry.version(), recheckAt, true));
+            log.debug("Напоминанию {} нечего отправлять в ближайшие {} дней, повторная проверка {}",
+                    entry.id(), LOOKAHEAD_DAYS, recheckAt);
+        }
+    }
+
+    private LocalDateTime nextFireAt(Entry entry, LocalDateTime after) {
+        LocalDate startDate = after.toLocalDate();
+        for (int day = 0; day <= LOOKAHEAD_DAYS; day++) {
+            LocalDate date = startDate.plusDays(day);
+            if (!entry.firesOn(date)) {
+                continue;
+            }
+
+            if (entry.type() != ReminderType.SCHEDULE_BEFORE) {
+                LocalDateTime candidate = date.atTime(entry.time());
+                if (candidate.isAfter(after)) {
+                    return candidate;
+                }
+                continue;
+            }
+
+            // Пары отсортированы по началу, поэтому первый подходящий момент — ближайший
+            for (Schedule schedule : classesFor(date)) {
+                LocalDateTime candidate = date.atTime(schedule.getTimeStart())
+                        .truncatedTo(ChronoUnit.MINUTES)
+                        .minusMinutes(entry.minutesBefore());
+                if (candidate.isAfter(after)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<Schedule> classesFor(LocalDate date) {
+        return classesByDate.computeIfAbsent(date, key -> {
+            String weekType = weekTypeService.getWeekTypeForDate(key);
+            return scheduleService.findEntitiesByDay(key.getDayOfWeek().getValue()).stream()
+                    .filter(schedule -> {
+                        String scheduleWeekType = schedule.getWeekType() != null ? schedule.getWeekType() : "all";
+                        return scheduleWeekType.equals("all") || scheduleWeekType.equals(weekType);
+                    })
+                    .sorted(Comparator.comparing(Schedule::getTimeStart))
+                    .toList();
+        });
+    }
+
+    // ====== ПОТОК ОТПРАВКИ ======
+
+    private void runLoop() {
+        while (running) {
+            List<FireSlot> due = new ArrayList<>();
+            try {
+                due.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // Все, что наступило к этому моменту, — одной пачкой
+            queue.drainTo(due);
+
+            try {
+                fire(due);
+            } catch (Exception e) {
+                log.error("❌ Ошибка отправки пачки напоминаний: {}", e.getMessage(), e);
+            }
+        }
+        log.info("⏹️ Поток движка напоминаний остановлен");
+    }
+
+    private void fire(List<FireSlot> due) {
+        long now = System.currentTimeMillis();
+        Map<ReminderType, String> texts = new EnumMap<>(ReminderType.class);
+        int sent = 0;
+        boolean leader = leadership.isLeader();
+
+        for (FireSlot slot : due) {
+            Entry entry = entries.get(slot.reminderId());
+            if (entry == null || entry.version() != slot.version()) {
+                continue; // напоминание удалено или изменено после постановки в очередь
+            }
+
+            if (slot.recheck()) {
+                // Моменты кандидатов округлены до минуты: минута назад включает саму границу
+                reschedule(entry, slot.fireAt().minusMinutes(1));
+                continue;
+            }
+
+            if (!leader) {
+                // Отправляет ведущий экземпляр, здесь только следующий момент
+                reschedule(entry, slot.fireAt());
+                continue;
+            }
+
+            try {
+                switch (entry.type()) {
+                    case SCHEDULE_TODAY -> reminderMessageService.sendMessageToChat(entry.chatId(),
+                            texts.computeIfAbsent(entry.type(), type -> reminderMessageService.formatDailySchedule()));
+                    case DEADLINE_WEEKLY -> reminderMessageService.sendMessageToChat(entry.chatId(),
+                            texts.computeIfAbsent(entry.type(), type -> reminderMessageService.formatDeadlines()));
+                    case SCHEDULE_BEFORE -> {
+                        LocalDateTime classStart = slot.fireAt().plusMinutes(entry.minutesBefore());
+                        for (Schedule schedule : classesFor(classStart.toLocalDate())) {
+                            if (schedule.getTimeStart().truncatedTo(ChronoUnit.MINUTES).equals(classStart.toLocalTime())) {
+                                reminderMessageService.sendClassReminder(entry.chatId(), schedule, entry.minutesBefore());
+                            }
+                        }
+                    }
+                }
+                sent++;
+            } catch (Exception e) {
+                log.error("❌ Ошибка отправки напоминания {} в чат {}: {}", entry.id(), entry.chatId(), e.getMessage());
+            }
+
+            long lag = Math.max(0, now - slot.fireAtMillis());
+            totalLagMillis.addAndGet(lag);
+            maxLagMillis.accumulate(lag);
+            firedReminders.incrementAndGet();
+
+            pendingLastSent.put(entry.id(), slot.fireAt());
+            // Следующий момент — только если напоминание не поменялось за время отправки
+            if (entries.get(entry.id()) == entry) {
+                reschedule(entry, slot.fireAt());
+            }
+        }
+
+        batches.incrementAndGet();
+        log.debug("🔔 Отправлена пачка напоминаний: {} из {}", sent, due.size());
+    }
+
+    // ====== МОДЕЛЬ ======
+
+    /**
+     * Разобранное напоминание. daysMask — биты дней недели, бит 0 — понедельник
+     */
+    private record Entry(long id, long chatId, ReminderType type, LocalTime time,
+                         int daysMask, int minutesBefore, long version) {
+
+        static Entry of(Reminder reminder, long version, int defaultMinutesBefore) {
+            ReminderType type;
+            try {
+                type = ReminderType.valueOf(reminder.getReminderType());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("неизвестный тип " + reminder.getReminderType());
+            }
+            if (reminder.getChatId() == null || reminder.getScheduleTime() == null) {
+                throw new IllegalArgumentException("не заданы chat_id или schedule_time");
+            }
+            return new Entry(reminder.getId(), reminder.getChatId(), type,
+                    reminder.getScheduleTime().truncatedTo(ChronoUnit.MINUTES),
+                    parseDays(reminder.getDaysOfWeek()),
+                    minutesBefore(reminder.getConfig(), defaultMinutesBefore),
+                    version);
+        }
+
+        boolean firesOn(LocalDate date) {
+            return (daysMask & (1 << (date.getDayOfWeek().getValue() - 1))) != 0;
+        }
+
+        Entry withVersion(long newVersion) {
+            return new Entry(id, chatId, type, time, daysMask, minutesBefore, newVersion);
+        }
+
+        private static int parseDays(String days) {
+            if (days == null || days.isBlank()) {
+                return 0b1111111;
+            }
+            int mask = 0;
+            for (int i = 0; i < Math.min(days.length(), 7); i++) {
+                if (days.charAt(i) == '1') {
+                    mask |= 1 << i;
+                }
+            }
+            return mask;
+        }
+
+        private static int minutesBefore(Map<String, Object> config, int defaultValue) {
+            if (config != null && config.get(MINUTES_BEFORE_KEY) instanceof Number number) {
+                return number.intValue();
+            }
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Момент отправки; recheck — контрольная запись на границе горизонта поиска, без отправки
+     */
+    private record FireSlot(long reminderId, long version, LocalDateTime fireAt, boolean recheck) implements Delayed {
+
+        long fireAtMillis() {
+            return fireAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return fireAt.compareTo(((FireSlot) other).fireAt);
+        }
+    }
+}
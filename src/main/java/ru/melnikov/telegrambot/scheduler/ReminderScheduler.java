@@ -3,147 +3,110 @@ package ru.melnikov.telegrambot.scheduler;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Component;
-import ru.melnikov.telegrambot.config.BotSettingsConfig;
-import ru.melnikov.telegrambot.model.BotChat;
-import ru.melnikov.telegrambot.model.Schedule;
-import ru.melnikov.telegrambot.service.*;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+import ru.melnikov.telegrambot.service.BroadcastFanoutService;
+import ru.melnikov.telegrambot.service.BroadcastFireMarkers;
+import ru.melnikov.telegrambot.service.BroadcastTargetReader.Audience;
+import ru.melnikov.telegrambot.service.ReminderMessageService;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class ReminderScheduler {
 
+    private static final String DAILY_SCHEDULE_CRON = "0 0 8 * * *";
+    private static final String WEEKLY_DEADLINES_CRON = "0 0 9 * * MON";
+    private static final CronExpression DAILY_SCHEDULE = CronExpression.parse(DAILY_SCHEDULE_CRON);
+    private static final CronExpression WEEKLY_DEADLINES = CronExpression.parse(WEEKLY_DEADLINES_CRON);
+    private static final String DAILY_SCHEDULE_MARKER = "all.schedule";
+    private static final String WEEKLY_DEADLINES_MARKER = "all.deadlines";
+
     private final ReminderMessageService reminderMessageService;
-    private final BotChatService botChatService;
-    private final ScheduleService scheduleService;
-    private final BotSettingsConfig settingsConfig;
-    private final WeekTypeService weekTypeService;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final BroadcastFireMarkers fireMarkers;
+
+    // Напоминания перед парой — по заранее построенному плану, см. ClassReminderPlanner
 
-    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    /**
+     * Догоняющий запуск после старта: рассылка, время которой пришлось на простой,
+     * отправляется, если опоздание не больше catch-up-grace (см. BroadcastFireMarkers)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpMissed() {
+        LocalDateTime now = LocalDateTime.now();
+        fireDailySchedule(now);
+        fireWeeklyDeadlines(now);
+    }
 
     /**
      * Ежедневная отправка расписания
      */
-    @Scheduled(cron = "0 0 8 * * *") // Каждый день в 8:00
+    @ClusterSingleton
+    @Scheduled(cron = DAILY_SCHEDULE_CRON, scheduler = SchedulingConfig.BROADCAST) // Каждый день в 8:00
     public void sendDailySchedule() {
-        log.info("⏰ Запуск ежедневной отправки расписания...");
-        try {
-            reminderMessageService.sendDailyScheduleToAllChats();
-        } catch (Exception e) {
-            log.error("❌ Ошибка при отправке ежедневного расписания: {}", e.getMessage(), e);
-        }
+        fireDailySchedule(LocalDateTime.now());
     }
 
     /**
      * Еженедельная отправка дедлайнов
      */
-    @Scheduled(cron = "0 0 9 * * MON") // Каждый понедельник в 9:00
+    @ClusterSingleton
+    @Scheduled(cron = WEEKLY_DEADLINES_CRON, scheduler = SchedulingConfig.BROADCAST) // Каждый понедельник в 9:00
     public void sendWeeklyDeadlines() {
-        log.info("📋 Запуск еженедельной отправки дедлайнов...");
-        try {
-            reminderMessageService.sendWeeklyDeadlinesToAllChats();
-        } catch (Exception e) {
-            log.error("❌ Ошибка при отправке недельных дедлайнов: {}", e.getMessage(), e);
-        }
+        fireWeeklyDeadlines(LocalDateTime.now());
+    }
+
+    /**
+     * Повтор рассылок, которые не удалось поставить в очередь в плановый момент:
+     * отметка при ошибке откатывается, и момент запускается здесь, пока не вышел catch-up-grace
+     */
+    @ClusterSingleton
+    @Scheduled(cron = "0 */5 * * * *", scheduler = SchedulingConfig.BROADCAST) // Каждые 5 минут
+    public void retryFailed() {
+        LocalDateTime now = LocalDateTime.now();
+        fireDailySchedule(now);
+        fireWeeklyDeadlines(now);
+    }
+
+    private void fireDailySchedule(LocalDateTime now) {
+        LocalDateTime planned = lastFire(DAILY_SCHEDULE, now);
+        // Ошибку постановки в очередь логирует BroadcastFireMarkers, отметка при этом откатывается
+        fireMarkers.tryFire(DAILY_SCHEDULE_MARKER, planned, now, () -> {
+            log.info("⏰ Запуск ежедневной отправки расписания...");
+            // Отправку по частям разбирают все экземпляры
+            // Окно рассылки открывается в момент cron (start-before здесь не применяется)
+            broadcastFanoutService.submit(Audience.SCHEDULE, reminderMessageService.formatDailySchedule(), "расписания",
+                    DAILY_SCHEDULE_MARKER, planned);
+        });
+    }
+
+    private void fireWeeklyDeadlines(LocalDateTime now) {
+        LocalDateTime planned = lastFire(WEEKLY_DEADLINES, now);
+        fireMarkers.tryFire(WEEKLY_DEADLINES_MARKER, planned, now, () -> {
+            log.info("📋 Запуск еженедельной отправки дедлайнов...");
+            broadcastFanoutService.submit(Audience.DEADLINES, reminderMessageService.formatDeadlines(), "дедлайнов",
+                    WEEKLY_DEADLINES_MARKER, planned);
+        });
     }
 
     /**
-     * Проверка пар каждую минуту для отправки напоминаний перед началом
+     * Последнее наступившее совпадение cron за прошедшие 8 дней
      */
-    @Scheduled(fixedDelay = 60000) // Каждую минуту
-    public void checkClassReminders() {
-        try {
-            int minutesBefore = settingsConfig.getReminders().getBeforeClass().getMinutes();
-            boolean enabled = settingsConfig.getReminders().getBeforeClass().getEnabled();
-
-            if (!enabled) {
-                log.debug("⏸️ Напоминания перед парой отключены в YML");
-                return;
-            }
-
-            // Текущий день недели и тип недели
-            LocalDate today = LocalDate.now();
-            int currentDayOfWeek = today.getDayOfWeek().getValue();
-            String currentWeekType = weekTypeService.getCurrentWeekType();
-
-            // Время проверки (текущее время + минуты напоминания)
-            LocalTime checkTime = LocalTime.now().plusMinutes(minutesBefore);
-
-            // Получаем все активные группы
-            List<BotChat> activeGroups = botChatService.getRepository().findAllActiveGroups();
-
-            log.debug("🔍 Проверка напоминаний за {} минут для {} групп", minutesBefore, activeGroups.size());
-
-            for (BotChat group : activeGroups) {
-                try {
-                    // Проверяем, включены ли напоминания перед парой для этой группы
-                    Map<String, Object> settings = group.getSettings();
-                    boolean beforeClassEnabled = settings != null &&
-                            (boolean) settings.getOrDefault("before_class_enabled",
-                                    settingsConfig.getReminders().getBeforeClass().getEnabled());
-
-                    if (!beforeClassEnabled) {
-                        log.debug("⏸️ Напоминания отключены для чата {}", group.getChatId());
-                        continue;
-                    }
-
-                    // Получаем расписание для текущего дня и типа недели
-                    List<Schedule> todaySchedule = scheduleService.findEntitiesByDay(currentDayOfWeek);
-
-                    if (todaySchedule.isEmpty()) {
-                        log.debug("📭 Нет пар на сегодня для чата {}", group.getChatId());
-                        continue;
-                    }
-
-                    log.debug("📅 Для чата {} найдено {} пар на сегодня",
-                            group.getChatId(), todaySchedule.size());
-
-                    for (Schedule schedule : todaySchedule) {
-                        // Проверяем тип недели
-                        String scheduleWeekType = schedule.getWeekType() != null ? schedule.getWeekType() : "all";
-                        if (!scheduleWeekType.equals(currentWeekType) && !scheduleWeekType.equals("all")) {
-                            continue;
-                        }
-
-                        // Проверяем время начала пары
-                        LocalTime classStartTime = schedule.getTimeStart();
-
-                        // Округляем до минут для сравнения
-                        LocalTime roundedCheckTime = LocalTime.of(checkTime.getHour(), checkTime.getMinute());
-                        LocalTime roundedClassStart = LocalTime.of(classStartTime.getHour(), classStartTime.getMinute());
-
-                        if (roundedCheckTime.equals(roundedClassStart)) {
-                            // Отправляем напоминание с использованием НОВОЙ сигнатуры
-                            reminderMessageService.sendClassReminder(
-                                    group.getChatId(),
-                                    schedule,  // Передаем объект Schedule, а не строку
-                                    minutesBefore  // Передаем количество минут
-                            );
-
-                            log.info("✅ Напоминание отправлено в чат {}: '{}' в {} (за {} минут)",
-                                    group.getChatId(),
-                                    schedule.getSubject(),
-                                    classStartTime.format(TIME_FORMATTER),
-                                    minutesBefore);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.error("❌ Ошибка при проверке напоминаний для чата {}: {}",
-                            group.getChatId(), e.getMessage());
-                }
-            }
-        } catch (Exception e) {
-            log.error("❌ Ошибка при проверке напоминаний о парах: {}", e.getMessage(), e);
+    private static LocalDateTime lastFire(CronExpression cron, LocalDateTime now) {
+        LocalDateTime latest = null;
+        LocalDateTime candidate = cron.next(now.minusDays(8));
+        while (candidate != null && !candidate.isAfter(now)) {
+            latest = candidate;
+            candidate = cron.next(candidate);
         }
+        return latest;
     }
 
     /**
@@ -0,0 +1,199 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Состояние и метрики периодических задач (@Scheduled): длительность, опоздание старта,
+ * пропуски из-за наложения и переполнения интервала. Заполняется ScheduledJobAspect.
+ * <p>
+ * Ожидаемое время старта считается так же, как его считает Spring:
+ * cron — следующее совпадение после max(предыдущий плановый старт, окончание),
+ * fixedDelay — окончание + задержка, fixedRate — предыдущий плановый старт + период.
+ * Для значений из свойств (*String) опоздание не считается.
+ */
+@Slf4j
+@Component
+public class ScheduledJobRegistry {
+
+    // Опоздание старта больше этого считается поздним запуском
+    private static final Duration LATE_THRESHOLD = Duration.ofSeconds(5);
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public Job job(String name, Scheduled scheduled) {
+        return jobs.computeIfAbsent(name, key -> new Job(key, scheduled));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new TreeMap<>();
+        jobs.forEach((name, job) -> result.put(name, job.getStats()));
+        return result;
+    }
+
+    public static final class Job {
+
+        private final String name;
+        private final String pool;
+        private final CronExpression cron;
+        private final long fixedDelayMs;
+        private final long fixedRateMs;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong skippedOverlaps = new AtomicLong();
+        private final AtomicLong lateStarts = new AtomicLong();
+        private final AtomicLong overruns = new AtomicLong();
+        private final AtomicLong totalDurationMs = new AtomicLong();
+        private final LongAccumulator maxDurationMs = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxLagMs = new LongAccumulator(Math::max, 0);
+
+        private volatile LocalDateTime nextExpected;
+        private volatile LocalDateTime currentExpected;
+        private volatile LocalDateTime lastStart;
+        private volatile long lastDurationMs;
+        private volatile long lastLagMs;
+        private volatile String lastError;
+
+        private Job(String name, Scheduled scheduled) {
+            this.name = name;
+            this.pool = StringUtils.hasText(scheduled.scheduler()) ? scheduled.scheduler() : SchedulingConfig.MAINTENANCE;
+            this.cron = StringUtils.hasText(scheduled.cron()) && CronExpression.isValidExpression(scheduled.cron())
+                    ? CronExpression.parse(scheduled.cron()) : null;
+            this.fixedDelayMs = scheduled.timeUnit().toMillis(scheduled.fixedDelay());
+            this.fixedRateMs = scheduled.timeUnit().toMillis(scheduled.fixedRate());
+        }
+
+        /**
+         * Начало запуска. false — предыдущий запуск еще идет, этот нужно пропустить
+         */
+        public boolean tryStart(LocalDateTime now) {
+            if (!running.compareAndSet(false, true)) {
+                skippedOverlaps.incrementAndGet();
+                log.warn("⏭️ Задача {} пропущена: предыдущий запуск еще выполняется", name);
+                return false;
+            }
+
+            LocalDateTime expected = nextExpected != null ? nextExpected : firstExpected(now);
+            currentExpected = expected;
+            lastStart = now;
+
+            if (expected != null) {
+                long lag = Math.max(0, Duration.between(expected, now).toMillis());
+                lastLagMs = lag;
+                maxLagMs.accumulate(lag);
+                if (lag > LATE_THRESHOLD.toMillis()) {
+                    lateStarts.incrementAndGet();
+                    log.warn("🐢 Задача {} ({}) стартовала с опозданием {} мс (план {})", name, pool, lag, expected);
+                }
+            }
+            return true;
+        }
+
+        public void finish(LocalDateTime start, LocalDateTime end, Throwable error) {
+            long duration = Duration.between(start, end).toMillis();
+            runs.incrementAndGet();
+            lastDurationMs = duration;
+            totalDurationMs.addAndGet(duration);
+            maxDurationMs.accumulate(duration);
+
+            if (error != null) {
+                failures.incrementAndGet();
+                lastError = error.getClass().getSimpleName() + ": " + error.getMessage();
+            }
+
+            LocalDateTime expected = currentExpected != null ? currentExpected : start;
+            if (cron != null) {
+                // Запуск не уложился до следующего совпадения cron — оно будет пропущено
+                LocalDateTime followingFire = cron.next(expected);
+                if (followingFire != null && end.isAfter(followingFire)) {
+                    overruns.incrementAndGet();
+                    log.warn("⚠️ Задача {} выполнялась {} мс и пропустила запуск в {}", name, duration, followingFire);
+                }
+                nextExpected = cron.next(end.isAfter(expected) ? end : expected);
+            } else if (fixedRateMs > 0) {
+                LocalDateTime followingFire = expected.plus(fixedRateMs, ChronoUnit.MILLIS);
+                if (end.isAfter(followingFire)) {
+                    overruns.incrementAndGet();
+                    log.warn("⚠️ Задача {} выполнялась {} мс при периоде {} мс", name, duration, fixedRateMs);
+                }
+                nextExpected = followingFire;
+            } else if (fixedDelayMs > 0) {
+                nextExpected = end.plus(fixedDelayMs, ChronoUnit.MILLIS);
+            }
+
+            running.set(false);
+        }
+
+        /**
+         * Для первого запуска cron — последнее совпадение не позже now (ищется в пределах часа)
+         */
+        private LocalDateTime firstExpected(LocalDateTime now) {
+            if (cron == null) {
+                return null;
+            }
+            LocalDateTime candidate = cron.next(now.minusHours(1));
+            LocalDateTime latest = null;
+            while (candidate != null && !candidate.isAfter(now)) {
+                latest = candidate;
+                candidate = cron.next(candidate);
+            }
+            return latest;
+        }
+
+        /**
+         * Плановый момент текущего запуска (null — неизвестен)
+         */
+        public LocalDateTime currentExpected() {
+            return currentExpected;
+        }
+
+        public CronExpression cron() {
+            return cron;
+        }
+
+        /**
+         * Период для fixedDelay/fixedRate в мс, 0 — задача по cron
+         */
+        public long periodMs() {
+            return fixedRateMs > 0 ? fixedRateMs : fixedDelayMs;
+        }
+
+        Map<String, Object> getStats() {
+            long count = runs.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("pool", pool);
+            stats.put("running", running.get());
+            stats.put("runs", count);
+            stats.put("failures", failures.get());
+            stats.put("skippedOverlaps", skippedOverlaps.get());
+            stats.put("lateStarts", lateStarts.get());
+            stats.put("overruns", overruns.get());
+            stats.put("lastStart", lastStart);
+            stats.put("nextExpected", nextExpected);
+            stats.put("lastDurationMs", lastDurationMs);
+            stats.put("avgDurationMs", count > 0 ? totalDurationMs.get() / count : 0);
+            stats.put("maxDurationMs", maxDurationMs.get());
+            stats.put("lastLagMs", lastLagMs);
+            stats.put("maxLagMs", maxLagMs.get());
+            stats.put("lastError", lastError);
+            return stats;
+        }
+    }
+}
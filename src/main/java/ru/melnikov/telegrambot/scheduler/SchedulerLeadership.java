@@ -0,0 +1,303 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Ведущий экземпляр при запуске нескольких копий бота.
+ * <p>
+ * Ведущий держит сессионный advisory lock PostgreSQL на отдельном соединении.
+ * При захвате лидерства epoch в scheduler_leader увеличивается — это маркер (fencing token)
+ * ведущего. Рассылки (@ClusterSingleton) выполняются только на ведущем и только после
+ * записи планового момента в scheduled_job_runs, причем запись проходит лишь при
+ * совпадении epoch. Прежний ведущий, потерявший соединение, не сможет запустить задачу
+ * повторно, а новый не повторит уже выполненный плановый момент.
+ * <p>
+ * Соединение ведущего проверяется раз в HEARTBEAT_MS; при ошибке или чужом epoch
+ * экземпляр слагает лидерство и пробует захватить его заново на следующей проверке.
+ */
+@Slf4j
+@Component
+public class SchedulerLeadership {
+
+    private static final long LEADER_LOCK_KEY = 7_424_118_301L;
+    private static final long HEARTBEAT_MS = 5000;
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO scheduled_job_runs (job_name, last_slot, epoch, owner, claimed_at)
+            SELECT ?, ?, l.epoch, ?, now() FROM scheduler_leader l WHERE l.id = 1 AND l.epoch = ?
+            ON CONFLICT (job_name) DO UPDATE
+                SET last_slot = EXCLUDED.last_slot, epoch = EXCLUDED.epoch,
+                    owner = EXCLUDED.owner, claimed_at = EXCLUDED.claimed_at
+                WHERE scheduled_job_runs.last_slot < EXCLUDED.last_slot
+            """;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String instanceId;
+
+    private final Map<String, JobLockStats> jobs = new ConcurrentHashMap<>();
+
+    // Соединение с advisory lock, есть только у ведущего
+    private Connection leaderConnection;
+    // 0 — экземпляр не ведущий
+    private volatile long epoch;
+    private volatile LocalDateTime leaderSince;
+    private volatile LocalDateTime lastHeartbeat;
+    private volatile String lastError;
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong stepDowns = new AtomicLong();
+
+    public SchedulerLeadership(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+        this.instanceId = ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    public boolean isLeader() {
+        return epoch > 0;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelay = HEARTBEAT_MS)
+    public synchronized void heartbeat() {
+        lastHeartbeat = LocalDateTime.now();
+        if (leaderConnection != null) {
+            verify();
+        } else {
+            tryAcquire();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void release() {
+        if (leaderConnection != null) {
+            log.info("👋 Экземпляр {} передает лидерство (epoch {})", instanceId, epoch);
+            epoch = 0;
+            unlockAndClose(leaderConnection);
+            leaderConnection = null;
+        }
+    }
+
+    /**
+     * Разрешение на запуск задачи в плановый момент slot.
+     * true — этот экземпляр ведущий и момент еще не выполнялся в кластере
+     */
+    public boolean claim(String jobName, LocalDateTime slot) {
+        JobLockStats stats = jobs.computeIfAbsent(jobName, key -> new JobLockStats());
+        long currentEpoch = epoch;
+        if (currentEpoch == 0) {
+            stats.notLeader.incrementAndGet();
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        int claimed;
+        try {
+            claimed = jdbcTemplate.update(CLAIM_SQL, jobName, Timestamp.valueOf(slot), instanceId, currentEpoch);
+        } catch (DataAccessException e) {
+            stats.errors.incrementAndGet();
+            log.error("❌ Не удалось занять запуск {} на {}: {}", jobName, slot, e.getMessage());
+            return false;
+        } finally {
+            stats.recordLatency(System.currentTimeMillis() - start);
+        }
+
+        if (claimed == 1) {
+            stats.claimed.incrementAndGet();
+            stats.lastSlot = slot;
+            stats.lastEpoch = currentEpoch;
+            return true;
+        }
+
+        // Отказ: момент уже выполнен или лидерство перехвачено
+        Long actualEpoch = jdbcTemplate.queryForObject("SELECT epoch FROM scheduler_leader WHERE id = 1", Long.class);
+        if (!Objects.equals(actualEpoch, currentEpoch)) {
+            stats.fenced.incrementAndGet();
+            log.warn("🚧 Запуск {} на {} отклонен: epoch {} устарел (текущий {})",
+                    jobName, slot, currentEpoch, actualEpoch);
+        } else {
+            stats.alreadyRun.incrementAndGet();
+            log.debug("Запуск {} на {} уже выполнен", jobName, slot);
+        }
+        return false;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> jobStats = new TreeMap<>();
+        jobs.forEach((name, stats) -> jobStats.put(name, stats.toMap()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("instance", instanceId);
+        stats.put("leader", isLeader());
+        stats.put("epoch", epoch);
+        stats.put("leaderSince", leaderSince);
+        stats.put("lastHeartbeat", lastHeartbeat);
+        stats.put("acquisitions", acquisitions.get());
+        stats.put("stepDowns", stepDowns.get());
+        stats.put("lastError", lastError);
+        stats.put("jobs", jobStats);
+        return stats;
+    }
+
+    // ====== ЛИДЕРСТВО ======
+
+    private void tryAcquire() {
+        Connection connection = null;
+        boolean locked = false;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+
+            try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                statement.setLong(1, LEADER_LOCK_KEY);
+                try (ResultSet rs = statement.executeQuery()) {
+                    locked = rs.next() && rs.getBoolean(1);
+                }
+            }
+            if (!locked) {
+                connection.close();
+                return;
+            }
+
+            long newEpoch;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE scheduler_leader SET epoch = epoch + 1, owner = ?, acquired_at = now() WHERE id = 1 RETURNING epoch")) {
+                statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                statement.setString(1, instanceId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("нет строки scheduler_leader");
+                    }
+                    newEpoch = rs.getLong(1);
+                }
+            }
+
+            leaderConnection = connection;
+            epoch = newEpoch;
+            leaderSince = LocalDateTime.now();
+            lastError = null;
+            acquisitions.incrementAndGet();
+            log.info("👑 Экземпляр {} стал ведущим, epoch {}", instanceId, newEpoch);
+        } catch (SQLException e) {
+            lastError = e.getMessage();
+            log.warn("⚠️ Не удалось захватить лидерство: {}", e.getMessage());
+            if (connection != null) {
+                if (locked) {
+                    unlockAndClose(connection);
+                } else {
+                    closeQuietly(connection);
+                }
+            }
+        }
+    }
+
+    private void verify() {
+        try (PreparedStatement statement = leaderConnection.prepareStatement(
+                "SELECT epoch FROM scheduler_leader WHERE id = 1")) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            try (ResultSet rs = statement.executeQuery()) {
+                long current = rs.next() ? rs.getLong(1) : -1;
+                if (current != epoch) {
+                    stepDown("лидерство перехвачено, текущий epoch " + current);
+                }
+            }
+        } catch (SQLException e) {
+            lastError = e.getMessage();
+            stepDown("соединение с блокировкой потеряно: " + e.getMessage());
+        }
+    }
+
+    private void stepDown(String reason) {
+        log.warn("🔻 Экземпляр {} больше не ведущий (epoch {}): {}", instanceId, epoch, reason);
+        epoch = 0;
+        stepDowns.incrementAndGet();
+        unlockAndClose(leaderConnection);
+        leaderConnection = null;
+    }
+
+    /**
+     * Соединение вернется в пул, поэтому блокировку нужно снять явно
+     */
+    private void unlockAndClose(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            statement.setLong(1, LEADER_LOCK_KEY);
+            statement.execute();
+        } catch (SQLException e) {
+            // Соединение разорвано — вместе с ним снята и блокировка
+            log.debug("Не удалось снять advisory lock: {}", e.getMessage());
+        }
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Ошибка закрытия соединения: {}", e.getMessage());
+        }
+    }
+
+    // ====== МЕТРИКИ ======
+
+    private static final class JobLockStats {
+        private final AtomicLong claimed = new AtomicLong();
+        private final AtomicLong notLeader = new AtomicLong();
+        private final AtomicLong alreadyRun = new AtomicLong();
+        private final AtomicLong fenced = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong totalClaimMillis = new AtomicLong();
+        private final LongAccumulator maxClaimMillis = new LongAccumulator(Math::max, 0);
+        private volatile LocalDateTime lastSlot;
+        private volatile long lastEpoch;
+
+        void recordLatency(long millis) {
+            attempts.incrementAndGet();
+            totalClaimMillis.addAndGet(millis);
+            maxClaimMillis.accumulate(millis);
+        }
+
+        Map<String, Object> toMap() {
+            long count = attempts.get();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("claimed", claimed.get());
+            map.put("skippedNotLeader", notLeader.get());
+            map.put("skippedAlreadyRun", alreadyRun.get());
+            map.put("fenced", fenced.get());
+            map.put("errors", errors.get());
+            map.put("avgClaimMillis", count > 0 ? totalClaimMillis.get() / count : 0);
+            map.put("maxClaimMillis", maxClaimMillis.get());
+            map.put("lastSlot", lastSlot);
+            map.put("lastEpoch", lastEpoch);
+            return map;
+        }
+    }
+}
@@ -5,14 +5,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.telegram.telegrambots.meta.api.objects.Chat;
+import ru.melnikov.telegrambot.cache.ChatSettingsCache;
+import ru.melnikov.telegrambot.cache.ChatSettingsSnapshot;
 import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.dto.BroadcastTarget;
 import ru.melnikov.telegrambot.model.BotChat;
+import ru.melnikov.telegrambot.model.ChatSettings;
 import ru.melnikov.telegrambot.repository.BotChatRepository;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -22,6 +24,7 @@ public class BotChatService {
 
     private final BotChatRepository botChatRepository;
     private final BotSettingsConfig settingsConfig;
+    private final ChatSettingsCache chatSettingsCache;
 
     @Transactional
     public BotChat registerOrUpdateChat(Chat telegramChat, Long userId) {
@@ -53,44 +56,33 @@ public class BotChatService {
         }
 
         chat = botChatRepository.save(chat);
+        chatSettingsCache.put(chat);
         return chat;
     }
 
-    private Map<String, Object> createDefaultSettings(String chatType) {
-        Map<String, Object> settings = new HashMap<>();
-
-        if ("GROUP".equals(chatType) || "SUPERGROUP".equals(chatType) ||
-                "group".equals(chatType) || "supergroup".equals(chatType)) {
-            settings.put("schedule_notifications", true);
-            settings.put("deadline_notifications", true);
-            // НЕ храним минуты в БД, только флаг enabled из YML
-            settings.put("before_class_enabled", settingsConfig.getReminders().getBeforeClass().getEnabled());
-            settings.put("welcome_message", true);
-            settings.put("mention_all_enabled", true);
-        } else {
-            settings.put("schedule_notifications", false);
-            settings.put("deadline_notifications", true);
-            settings.put("before_class_enabled", settingsConfig.getReminders().getBeforeClass().getEnabled());
-        }
+    private ChatSettings createDefaultSettings(String chatType) {
+        // НЕ храним минуты в БД, только флаг enabled из YML
+        boolean beforeClassEnabled = settingsConfig.getReminders().getBeforeClass().getEnabled();
 
-        return settings;
+        if ("group".equalsIgnoreCase(chatType) || "supergroup".equalsIgnoreCase(chatType)) {
+            return ChatSettings.defaultsForGroup(beforeClassEnabled);
+        }
+        return ChatSettings.defaultsForPrivate(beforeClassEnabled);
     }
 
     public Optional<BotChat> findByChatId(Long chatId) {
         return botChatRepository.findByChatId(chatId);
     }
 
-    public void updateChatSettings(Long chatId, Map<String, Object> newSettings) {
-        botChatRepository.findByChatId(chatId).ifPresent(chat -> {
-            Map<String, Object> currentSettings = chat.getSettings();
-            if (currentSettings == null) {
-                currentSettings = new HashMap<>();
-            }
-            currentSettings.putAll(newSettings);
-            chat.setSettings(currentSettings);
-            chat.setUpdatedAt(LocalDateTime.now());
-            botChatRepository.save(chat);
-        });
+    /**
+     * Меняет несколько флагов настроек одним запросом
+     *
+     * @param enableMask  биты ChatSettings, которые нужно включить
+     * @param disableMask биты ChatSettings, которые нужно выключить
+     */
+    @Transactional
+    public void updateChatSettings(Long chatId, int enableMask, int disableMask) {
+        updateFlags(chatId, enableMask, disableMask);
     }
 
     @Transactional
@@ -102,53 +94,26 @@ public class BotChatService {
 
     @Transactional
     public void toggleScheduleNotifications(Long chatId, boolean enable) {
-        botChatRepository.findByChatId(chatId).ifPresent(chat -> {
-            Map<String, Object> settings = chat.getSettings();
-            if (settings == null) {
-                settings = new HashMap<>();
-            }
-            settings.put("schedule_notifications", enable);
-            chat.setSettings(settings);
-            chat.setUpdatedAt(LocalDateTime.now());
-            botChatRepository.save(chat);
-
+        if (toggleFlag(chatId, ChatSettings.SCHEDULE_NOTIFICATIONS, enable)) {
             log.info("{} уведомления о расписании для чата {}",
                     enable ? "Включены" : "Выключены", chatId);
-        });
+        }
     }
 
     @Transactional
     public void toggleDeadlineNotifications(Long chatId, boolean enable) {
-        botChatRepository.findByChatId(chatId).ifPresent(chat -> {
-            Map<String, Object> settings = chat.getSettings();
-            if (settings == null) {
-                settings = new HashMap<>();
-            }
-            settings.put("deadline_notifications", enable);
-            chat.setSettings(settings);
-            chat.setUpdatedAt(LocalDateTime.now());
-            botChatRepository.save(chat);
-
+        if (toggleFlag(chatId, ChatSettings.DEADLINE_NOTIFICATIONS, enable)) {
             log.info("{} уведомления о дедлайнах для чата {}",
                     enable ? "Включены" : "Выключены", chatId);
-        });
+        }
     }
 
     @Transactional
     public void toggleBeforeClassEnabled(Long chatId, boolean enable) {
-        botChatRepository.findByChatId(chatId).ifPresent(chat -> {
-            Map<String, Object> settings = chat.getSettings();
-            if (settings == null) {
-                settings = new HashMap<>();
-            }
-            settings.put("before_class_enabled", enable);
-            chat.setSettings(settings);
-            chat.setUpdatedAt(LocalDateTime.now());
-            botChatRepository.save(chat);
-
+        if (toggleFlag(chatId, ChatSettings.BEFORE_CLASS_ENABLED, enable)) {
             log.info("{} напоминания перед парой для чата {}",
                     enable ? "Включены" : "Выключены", chatId);
-        });
+        }
     }
 
     /**
@@ -156,36 +121,22 @@ public class BotChatService {
      */
     @Transactional
     public void setBotTopicId(Long chatId, Integer topicId, String topicName) {
-        findByChatId(chatId).ifPresent(chat -> {
-            Map<String, Object> settings = chat.getSettings();
-            if (settings == null) {
-                settings = new HashMap<>();
-            }
-
-            settings.put("bot_topic_id", topicId);
-            settings.put("bot_topic_name", topicName);
-            chat.setSettings(settings);
-            chat.setUpdatedAt(LocalDateTime.now());
-            botChatRepository.save(chat);
+        if (botChatRepository.updateBotTopic(chatId, topicId, topicName) > 0) {
+            chatSettingsCache.invalidate(chatId);
 
             log.info("✅ Тема установлена для чата {}: ID={}, Название={}",
                     chatId, topicId, topicName);
-        });
+        } else {
+            log.warn("Чат {} не найден при установке темы", chatId);
+        }
     }
 
     /**
-     * Получает ID темы бота для указанного чата
+     * Получает ID темы бота для указанного чата (из кеша настроек)
      */
     public Optional<Integer> getBotTopicId(Long chatId) {
-        return findByChatId(chatId)
-                .map(chat -> {
-                    Map<String, Object> settings = chat.getSettings();
-                    if (settings != null && settings.containsKey("bot_topic_id")) {
-                        Object topicId = settings.get("bot_topic_id");
-                        return convertToInteger(topicId);
-                    }
-                    return null;
-                });
+        return chatSettingsCache.get(chatId)
+                .map(ChatSettingsSnapshot::botTopicId);
     }
 
     /**
@@ -199,14 +150,8 @@ public class BotChatService {
      * Получает название темы бота
      */
     public Optional<String> getBotTopicName(Long chatId) {
-        return findByChatId(chatId)
-                .map(chat -> {
-                    Map<String, Object> settings = chat.getSettings();
-                    if (settings != null && settings.containsKey("bot_topic_name")) {
-                        return (String) settings.get("bot_topic_name");
-                    }
-                    return null;
-                });
+        return chatSettingsCache.get(chatId)
+                .map(ChatSettingsSnapshot::botTopicName);
     }
 
     /**
@@ -214,43 +159,28 @@ public class BotChatService {
      */
     @Transactional
     public void clearBotTopic(Long chatId) {
-        findByChatId(chatId).ifPresent(chat -> {
-            Map<String, Object> settings = chat.getSettings();
-            if (settings != null) {
-                settings.remove("bot_topic_id");
-                settings.remove("bot_topic_name");
-                chat.setSettings(settings);
-                chat.setUpdatedAt(LocalDateTime.now());
-                botChatRepository.save(chat);
-
-                log.info("✅ Тема удалена для чата {}", chatId);
-            }
-        });
+        if (botChatRepository.updateBotTopic(chatId, null, null) > 0) {
+            chatSettingsCache.invalidate(chatId);
+
+            log.info("✅ Тема удалена для чата {}", chatId);
+        }
+    }
+
+    private boolean toggleFlag(Long chatId, int flag, boolean enable) {
+        return enable ? updateFlags(chatId, flag, 0) : updateFlags(chatId, 0, flag);
     }
 
     /**
-     * Конвертирует объект в Integer
+     * Атомарно меняет флаги настроек и сбрасывает чат из кеша
      */
-    private Integer convertToInteger(Object obj) {
-        if (obj == null) return null;
-
-        if (obj instanceof Integer) {
-            return (Integer) obj;
-        } else if (obj instanceof Long) {
-            return ((Long) obj).intValue();
-        } else if (obj instanceof String) {
-            try {
-                return Integer.parseInt((String) obj);
-            } catch (NumberFormatException e) {
-                log.warn("Некорректный формат topic_id: {}", obj);
-                return null;
-            }
-        } else if (obj instanceof Number) {
-            return ((Number) obj).intValue();
+    private boolean updateFlags(Long chatId, int enableMask, int disableMask) {
+        if (botChatRepository.updateSettingsFlags(chatId, enableMask, disableMask) == 0) {
+            log.warn("Чат {} не найден при изменении настроек", chatId);
+            return false;
         }
 
-        log.warn("Неизвестный тип topic_id: {} ({})", obj, obj.getClass());
-        return null;
+        chatSettingsCache.invalidate(chatId);
+        return true;
     }
 
     /**
@@ -266,4 +196,26 @@ public class BotChatService {
     public List<BotChat> findAllActiveChats() {
         return botChatRepository.findAllActiveChats();
     }
-}
\ No newline at end of file
+
+    // ====== ПОЛУЧАТЕЛИ РАССЫЛОК ======
+
+    /**
+     * Активные группы с включенными напоминаниями перед парой
+     */
+    public List<BroadcastTarget> findBeforeClassTargets() {
+        return toTargets(botChatRepository.findBeforeClassTargets());
+    }
+
+    /**
+     * Все активные группы
+     */
+    public List<BroadcastTarget> findActiveGroupTargets() {
+        return toTargets(botChatRepository.findActiveGroupTargets());
+    }
+
+    private List<BroadcastTarget> toTargets(List<Object[]> rows) {
+        return rows.stream()
+                .map(BroadcastTarget::fromRow)
+                .toList();
+    }
+}
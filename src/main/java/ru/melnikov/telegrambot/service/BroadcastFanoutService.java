@@ -0,0 +1,516 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+import ru.melnikov.telegrambot.dto.BroadcastTarget;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+import ru.melnikov.telegrambot.service.BroadcastTargetReader.Audience;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рассылка одного текста силами всех запущенных экземпляров.
+ * <p>
+ * submit() записывает рассылку и ее части (остаток chat_id от деления на partitions)
+ * в broadcast_jobs / broadcast_partitions. Каждый экземпляр раз в POLL_MS забирает
+ * свободную часть через FOR UPDATE SKIP LOCKED и отправляет ее, отмечая прогресс
+ * (последний chat_id) каждые CHECKPOINT_EVERY сообщений с продлением аренды.
+ * Часть упавшего экземпляра после окончания аренды забирает другой и продолжает
+ * после последнего отмеченного чата. Отметки принимаются только от текущего
+ * владельца (по номеру захвата attempts), так что прежний владелец останавливается.
+ * Получатели части читаются короткими страницами (BroadcastTargetReader), а отправка
+ * и отметки идут вне транзакции чтения — то есть на основную базу, а не на реплику.
+ * <p>
+ * Общий предел Telegram делится между экземплярами, которые сейчас отправляют:
+ * пауза между сообщениями = число отправляющих / globalRatePerSecond.
+ * <p>
+ * Рассылка с окном (telegram.broadcast.spread) не уходит одним всплеском: каждому чату
+ * по хешу chat_id назначено смещение от начала окна (BroadcastTargetReader.spreadOffset),
+ * и сообщение отправляется не раньше window_start + смещение. Части такой рассылки — последовательные отрезки окна,
+ * часть забирается только после начала своего отрезка. Для каждой рассылки
+ * считается распределение плановых и фактических моментов отправки.
+ */
+@Slf4j
+@Service
+public class BroadcastFanoutService {
+
+    private static final long POLL_MS = 2000;
+    private static final int CHECKPOINT_EVERY = 50;
+    // Ожидание момента отправки чата — отрезками, чтобы вовремя продлевать аренду
+    private static final long WAIT_SLICE_MS = 1000;
+    private static final int DISTRIBUTION_BUCKETS = 30;
+    private static final int DISTRIBUTIONS_KEPT = 10;
+
+    private static final String CLAIM_SQL = """
+            UPDATE broadcast_partitions p
+            SET status = 'claimed', claimed_by = ?, claimed_at = now(),
+                lease_until = now() + make_interval(secs => ?), attempts = p.attempts + 1
+            FROM broadcast_jobs j
+            WHERE j.id = p.job_id
+              AND (p.job_id, p.partition_no) = (
+                  SELECT bp.job_id, bp.partition_no FROM broadcast_partitions bp
+                  JOIN broadcast_jobs bj ON bj.id = bp.job_id
+                  WHERE bp.completed_at IS NULL
+                    AND (bp.status = 'pending' OR bp.lease_until < now())
+                    AND (bj.spread_ms = 0
+                         OR bj.window_start + (bp.partition_no::bigint * bj.spread_ms / bj.partitions)
+                            * interval '1 millisecond' <= now())
+                  ORDER BY bp.job_id, bp.partition_no
+                  LIMIT 1
+                  FOR UPDATE OF bp SKIP LOCKED)
+            RETURNING p.job_id, p.partition_no, p.attempts, p.last_chat_id, p.last_offset_ms, p.sent, p.failed,
+                      p.lag_total_ms, p.lag_max_ms, j.audience, j.what, j.text, j.partitions,
+                      coalesce(j.window_start, j.created_at) AS window_start, j.spread_ms
+            """;
+
+    private static final String CHECKPOINT_SQL = """
+            UPDATE broadcast_partitions
+            SET last_chat_id = ?, last_offset_ms = ?, sent = ?, failed = ?, lag_total_ms = ?, lag_max_ms = ?,
+                lease_until = now() + make_interval(secs => ?)
+            WHERE job_id = ? AND partition_no = ? AND attempts = ? AND completed_at IS NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BroadcastTargetReader broadcastTargetReader;
+    private final ReminderMessageService reminderMessageService;
+    private final BotSettingsConfig settingsConfig;
+    private final SchedulerLeadership leadership;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong partitionsDone = new AtomicLong();
+    private final AtomicLong partitionsResumed = new AtomicLong();
+    private final AtomicLong claimsLost = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong messagesFailed = new AtomicLong();
+
+    // Распределение моментов отправки последних рассылок на этом экземпляре: id -> распределение
+    private final Map<Long, SendDistribution> distributions = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, SendDistribution> eldest) {
+                    return size() > DISTRIBUTIONS_KEPT;
+                }
+            });
+
+    public BroadcastFanoutService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  BroadcastTargetReader broadcastTargetReader,
+                                  ReminderMessageService reminderMessageService,
+                                  BotSettingsConfig settingsConfig,
+                                  SchedulerLeadership leadership) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.broadcastTargetReader = broadcastTargetReader;
+        this.reminderMessageService = reminderMessageService;
+        this.settingsConfig = settingsConfig;
+        this.leadership = leadership;
+    }
+
+    /**
+     * Ставит рассылку в очередь, возвращает ее id. Отправка начнется на ближайшем опросе
+     */
+    public long submit(Audience audience, String text, String what) {
+        return submit(audience, text, what, LocalDateTime.now(), Duration.ZERO);
+    }
+
+    /**
+     * Рассылка с окном из telegram.broadcast.spread.{spreadKey}, открывшимся в windowStart
+     */
+    public long submit(Audience audience, String text, String what, String spreadKey, LocalDateTime windowStart) {
+        return submit(audience, text, what, windowStart, getConfig().spreadFor(spreadKey).getWindow());
+    }
+
+    /**
+     * Рассылка, растянутая на окно [windowStart, windowStart + spread).
+     * Нулевое окно — отправка всем сразу
+     */
+    public long submit(Audience audience, String text, String what, LocalDateTime windowStart, Duration spread) {
+        int partitions = getConfig().getPartitions();
+        long spreadMillis = Math.max(0, spread.toMillis());
+        Long jobId = transactionTemplate.execute(status -> {
+            Long id = jdbcTemplate.queryForObject(
+                    "INSERT INTO broadcast_jobs (audience, what, text, partitions, created_by, window_start, spread_ms) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id",
+                    Long.class, audience.name(), what, text, partitions, leadership.getInstanceId(),
+                    Timestamp.valueOf(windowStart), spreadMillis);
+            jdbcTemplate.update(
+                    "INSERT INTO broadcast_partitions (job_id, partition_no) "
+                            + "SELECT ?, g FROM generate_series(0, ? - 1) g",
+                    id, partitions);
+            return id;
+        });
+
+        submitted.incrementAndGet();
+        if (spreadMillis > 0) {
+            log.info("📨 Рассылка {} #{} поставлена в очередь: {} частей, окно {} с с {}",
+                    what, jobId, partitions, spreadMillis / 1000, windowStart);
+        } else {
+            log.info("📨 Рассылка {} #{} поставлена в очередь: {} частей", what, jobId, partitions);
+        }
+        return jobId != null ? jobId : 0;
+    }
+
+    /**
+     * Разбирает свободные части, пока они есть
+     */
+    @Scheduled(fixedDelay = POLL_MS, scheduler = SchedulingConfig.BROADCAST)
+    public void processPending() {
+        while (!Thread.currentThread().isInterrupted() && processNext()) {
+            // следующая часть
+        }
+    }
+
+    /**
+     * Завершенные рассылки хранятся keepDays дней
+     */
+    @ClusterSingleton
+    @Scheduled(cron = "0 30 0 * * *") // Каждый день в 00:30
+    public void cleanupFinished() {
+        int deleted = jdbcTemplate.update(
+                "DELETE FROM broadcast_jobs WHERE completed_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(getConfig().getKeepDays())));
+        log.info("🧹 Удалено завершенных рассылок: {}", deleted);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("submitted", submitted.get());
+        stats.put("partitionsDone", partitionsDone.get());
+        stats.put("partitionsResumed", partitionsResumed.get());
+        stats.put("claimsLost", claimsLost.get());
+        stats.put("messagesSent", messagesSent.get());
+        stats.put("messagesFailed", messagesFailed.get());
+        stats.put("recentJobs", jdbcTemplate.queryForList("""
+                SELECT j.id, j.what, j.audience, j.created_at, j.completed_at, j.partitions,
+                       j.window_start, j.spread_ms,
+                       count(*) FILTER (WHERE p.completed_at IS NOT NULL) AS partitions_done,
+                       count(*) FILTER (WHERE p.completed_at IS NULL AND p.status = 'claimed') AS partitions_claimed,
+                       coalesce(sum(p.sent), 0) AS sent,
+                       coalesce(sum(p.failed), 0) AS failed,
+                       coalesce(sum(p.lag_total_ms) / nullif(sum(p.sent + p.failed), 0), 0) AS avg_lag_ms,
+                       coalesce(max(p.lag_max_ms), 0) AS max_lag_ms,
+                       string_agg(DISTINCT p.claimed_by, ', ') AS instances
+                FROM broadcast_jobs j
+                JOIN broadcast_partitions p ON p.job_id = j.id
+                GROUP BY j.id
+                ORDER BY j.id DESC
+                LIMIT 20
+                """));
+
+        List<Map<String, Object>> sendTimes = new ArrayList<>();
+        synchronized (distributions) {
+            distributions.forEach((jobId, distribution) -> sendTimes.add(distribution.toMap(jobId)));
+        }
+        Collections.reverse(sendTimes);
+        stats.put("sendTimes", sendTimes);
+        return stats;
+    }
+
+    // ====== ОБРАБОТКА ЧАСТИ ======
+
+    private boolean processNext() {
+        List<Claim> claims = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            long lastChatId = rs.getLong("last_chat_id");
+            boolean fresh = rs.wasNull();
+            long lastOffset = rs.getLong("last_offset_ms");
+            boolean noOffset = rs.wasNull();
+            return new Claim(rs.getLong("job_id"), rs.getInt("partition_no"), rs.getInt("attempts"),
+                    fresh ? Long.MIN_VALUE : lastChatId, noOffset ? -1 : lastOffset,
+                    rs.getInt("sent"), rs.getInt("failed"), rs.getLong("lag_total_ms"), rs.getLong("lag_max_ms"),
+                    rs.getString("audience"), rs.getString("what"), rs.getString("text"), rs.getInt("partitions"),
+                    rs.getTimestamp("window_start").getTime(), rs.getLong("spread_ms"));
+        }, leadership.getInstanceId(), leaseSeconds());
+        if (claims.isEmpty()) {
+            return false;
+        }
+
+        Claim claim = claims.get(0);
+        if (claim.attempts() > 1) {
+            partitionsResumed.incrementAndGet();
+            log.info("🔁 Часть {} рассылки #{} продолжается после чата {} (захват {})",
+                    claim.partitionNo(), claim.jobId(), claim.lastChatId(), claim.attempts());
+        }
+        process(claim);
+        return true;
+    }
+
+    private void process(Claim claim) {
+        Progress progress = new Progress(claim);
+        progress.delayMillis = pacingDelay();
+        progress.distribution = distributions.computeIfAbsent(claim.jobId(),
+                id -> new SendDistribution(claim.what(), claim.windowStartMillis(), claim.spreadMillis()));
+        Audience audience = Audience.valueOf(claim.audience());
+
+        try {
+            if (claim.spreadMillis() > 0) {
+                broadcastTargetReader.forEachInSpreadPartition(audience, claim.partitionNo(), claim.partitions(),
+                        claim.spreadMillis(), claim.lastOffsetMillis(), claim.lastChatId(),
+                        (target, offsetMillis) -> send(progress, target, offsetMillis));
+            } else {
+                broadcastTargetReader.forEachInPartition(audience, claim.partitionNo(), claim.partitions(),
+                        claim.lastChatId(), target -> send(progress, target, 0));
+            }
+        } catch (ClaimLostException e) {
+            claimsLost.incrementAndGet();
+            log.warn("⚠️ Часть {} рассылки #{} перехвачена другим экземпляром, отправка остановлена",
+                    claim.partitionNo(), claim.jobId());
+            return;
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            // Остановка экземпляра: часть сразу отдается другим
+            release(progress);
+            return;
+        }
+        complete(progress);
+    }
+
+    /**
+     * Отправка одному чату не раньше его планового момента: начало окна + offsetMillis
+     */
+    private void send(Progress progress, BroadcastTarget target, long offsetMillis) {
+        Claim claim = progress.claim;
+        long plannedMillis = claim.windowStartMillis() + offsetMillis;
+        waitUntil(progress, plannedMillis);
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
+        try {
+            reminderMessageService.sendMessageToChat(target.chatId(), target.topicId(), claim.text(), false);
+            progress.sent++;
+            messagesSent.incrementAndGet();
+        } catch (Exception e) {
+            progress.failed++;
+            messagesFailed.incrementAndGet();
+            log.error("Ошибка отправки {} в чат {}: {}", claim.what(), target.chatId(), e.getMessage());
+        }
+        progress.lastChatId = target.chatId();
+        progress.lastOffsetMillis = offsetMillis;
+
+        long actualMillis = System.currentTimeMillis();
+        long lag = Math.max(0, actualMillis - plannedMillis);
+        progress.lagTotalMillis += lag;
+        progress.lagMaxMillis = Math.max(progress.lagMaxMillis, lag);
+        progress.distribution.record(plannedMillis, actualMillis);
+
+        if ((progress.sent + progress.failed) % CHECKPOINT_EVERY == 0) {
+            if (!checkpoint(progress)) {
+                throw new ClaimLostException();
+            }
+            progress.delayMillis = pacingDelay();
+        }
+
+        sleep(progress.delayMillis);
+    }
+
+    /**
+     * Ожидание момента отправки; аренда продлевается, пока ждем
+     */
+    private void waitUntil(Progress progress, long plannedMillis) {
+        long renewEvery = getConfig().getLease().toMillis() / 3;
+        long remaining;
+        while ((remaining = plannedMillis - System.currentTimeMillis()) > 0
+                && !Thread.currentThread().isInterrupted()) {
+            if (System.currentTimeMillis() - progress.checkpointedAt >= renewEvery && !checkpoint(progress)) {
+                throw new ClaimLostException();
+            }
+            sleep(Math.min(remaining, WAIT_SLICE_MS));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // Флаг прерывания остановит обход получателей
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean checkpoint(Progress progress) {
+        progress.checkpointedAt = System.currentTimeMillis();
+        return jdbcTemplate.update(CHECKPOINT_SQL, progress.lastChatId, progress.lastOffsetMillis(),
+                progress.sent, progress.failed, progress.lagTotalMillis, progress.lagMaxMillis, leaseSeconds(),
+                progress.claim.jobId(), progress.claim.partitionNo(), progress.claim.attempts()) == 1;
+    }
+
+    private void release(Progress progress) {
+        jdbcTemplate.update("""
+                UPDATE broadcast_partitions
+                SET status = 'pending', lease_until = NULL, last_chat_id = ?, last_offset_ms = ?, sent = ?, failed = ?,
+                    lag_total_ms = ?, lag_max_ms = ?
+                WHERE job_id = ? AND partition_no = ? AND attempts = ? AND completed_at IS NULL
+                """, progress.lastChatId, progress.lastOffsetMillis(), progress.sent, progress.failed,
+                progress.lagTotalMillis, progress.lagMaxMillis, progress.claim.jobId(), progress.claim.partitionNo(), progress.claim.attempts());
+        log.info("⏸️ Часть {} рассылки #{} возвращена в очередь после чата {}",
+                progress.claim.partitionNo(), progress.claim.jobId(), progress.lastChatId);
+    }
+
+    private void complete(Progress progress) {
+        Claim claim = progress.claim;
+        int updated = jdbcTemplate.update("""
+                UPDATE broadcast_partitions
+                SET status = 'done', completed_at = now(), last_chat_id = ?, last_offset_ms = ?, sent = ?, failed = ?,
+                    lag_total_ms = ?, lag_max_ms = ?
+                WHERE job_id = ? AND partition_no = ? AND attempts = ? AND completed_at IS NULL
+                """, progress.lastChatId, progress.lastOffsetMillis(), progress.sent, progress.failed,
+                progress.lagTotalMillis, progress.lagMaxMillis, claim.jobId(), claim.partitionNo(), claim.attempts());
+        if (updated == 0) {
+            claimsLost.incrementAndGet();
+            log.warn("⚠️ Часть {} рассылки #{} завершена, но уже перехвачена другим экземпляром",
+                    claim.partitionNo(), claim.jobId());
+            return;
+        }
+        partitionsDone.incrementAndGet();
+
+        // Последняя часть закрывает рассылку
+        List<Map<String, Object>> finished = jdbcTemplate.queryForList("""
+                UPDATE broadcast_jobs j SET completed_at = now()
+                WHERE j.id = ? AND j.completed_at IS NULL
+                  AND NOT EXISTS (SELECT 1 FROM broadcast_partitions p WHERE p.job_id = j.id AND p.completed_at IS NULL)
+                RETURNING (SELECT sum(p.sent) FROM broadcast_partitions p WHERE p.job_id = j.id) AS sent,
+                          EXTRACT(EPOCH FROM now() - j.created_at)::bigint AS seconds
+                """, claim.jobId());
+        if (!finished.isEmpty()) {
+            log.info("✅ Рассылка {} #{} завершена: отправлено {}, за {} с",
+                    claim.what(), claim.jobId(), finished.get(0).get("sent"), finished.get(0).get("seconds"));
+        }
+    }
+
+    /**
+     * Пауза между сообщениями: общий предел делится между отправляющими экземплярами
+     */
+    private long pacingDelay() {
+        Integer senders = jdbcTemplate.queryForObject("""
+                SELECT count(DISTINCT claimed_by) FROM broadcast_partitions
+                WHERE completed_at IS NULL AND status = 'claimed' AND lease_until > now()
+                """, Integer.class);
+        int active = Math.max(1, senders != null ? senders : 1);
+        return (long) Math.ceil(1000.0 * active / getConfig().getGlobalRatePerSecond());
+    }
+
+    private long leaseSeconds() {
+        return getConfig().getLease().toSeconds();
+    }
+
+    private BotSettingsConfig.BroadcastConfig getConfig() {
+        return settingsConfig.getBroadcast();
+    }
+
+    // ====== МОДЕЛЬ ======
+
+    private record Claim(long jobId, int partitionNo, int attempts, long lastChatId, long lastOffsetMillis,
+                         int sent, int failed, long lagTotalMillis, long lagMaxMillis,
+                         String audience, String what, String text, int partitions,
+                         long windowStartMillis, long spreadMillis) {
+    }
+
+    private static final class Progress {
+        private final Claim claim;
+        private long lastChatId;
+        private long lastOffsetMillis;
+        private int sent;
+        private int failed;
+        private long lagTotalMillis;
+        private long lagMaxMillis;
+        private long delayMillis;
+        private long checkpointedAt = System.currentTimeMillis();
+        private SendDistribution distribution;
+
+        Progress(Claim claim) {
+            this.claim = claim;
+            this.lastChatId = claim.lastChatId();
+            this.lastOffsetMillis = claim.lastOffsetMillis();
+            this.sent = claim.sent();
+            this.failed = claim.failed();
+            this.lagTotalMillis = claim.lagTotalMillis();
+            this.lagMaxMillis = claim.lagMaxMillis();
+        }
+
+        /**
+         * Смещение последнего чата; null — ни одного чата еще не обработано
+         */
+        Long lastOffsetMillis() {
+            return lastOffsetMillis >= 0 ? lastOffsetMillis : null;
+        }
+    }
+
+    /**
+     * Плановые и фактические моменты отправки относительно начала окна по корзинам
+     * (окно делится на DISTRIBUTION_BUCKETS, последняя корзина — все, что позже окна)
+     */
+    private static final class SendDistribution {
+        private final String what;
+        private final long windowStartMillis;
+        private final long spreadMillis;
+        private final long bucketMillis;
+        private final int[] planned = new int[DISTRIBUTION_BUCKETS + 1];
+        private final int[] actual = new int[DISTRIBUTION_BUCKETS + 1];
+        private long count;
+        private long totalLagMillis;
+        private long maxLagMillis;
+
+        SendDistribution(String what, long windowStartMillis, long spreadMillis) {
+            this.what = what;
+            this.windowStartMillis = windowStartMillis;
+            this.spreadMillis = spreadMillis;
+            // Без окна — секундные корзины от начала рассылки
+            this.bucketMillis = Math.max(1000, spreadMillis / DISTRIBUTION_BUCKETS);
+        }
+
+        synchronized void record(long plannedMillis, long actualMillis) {
+            planned[bucket(plannedMillis)]++;
+            actual[bucket(actualMillis)]++;
+            long lag = Math.max(0, actualMillis - plannedMillis);
+            count++;
+            totalLagMillis += lag;
+            maxLagMillis = Math.max(maxLagMillis, lag);
+        }
+
+        synchronized Map<String, Object> toMap(long jobId) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", jobId);
+            map.put("what", what);
+            map.put("windowStart", new Timestamp(windowStartMillis).toLocalDateTime());
+            map.put("spreadMillis", spreadMillis);
+            map.put("bucketMillis", bucketMillis);
+            map.put("planned", planned.clone());
+            map.put("actual", actual.clone());
+            map.put("messages", count);
+            map.put("avgLagMillis", count > 0 ? totalLagMillis / count : 0);
+            map.put("maxLagMillis", maxLagMillis);
+            return map;
+        }
+
+        private int bucket(long millis) {
+            long index = Math.max(0, millis - windowStartMillis) / bucketMillis;
+            return (int) Math.min(index, DISTRIBUTION_BUCKETS);
+        }
+    }
+
+    /**
+     * Отметка прогресса не принята: часть уже у другого экземпляра
+     */
+    private static final class ClaimLostException extends RuntimeException {
+        ClaimLostException() {
+            super(null, null, false, false);
+        }
+    }
+}
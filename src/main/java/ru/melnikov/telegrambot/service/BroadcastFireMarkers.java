@@ -0,0 +1,161 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отметки о последнем выполненном плановом моменте каждой рассылки (broadcast_fire_markers).
+ * <p>
+ * Рассылка запускается, только если удалось сдвинуть отметку на ее плановый момент —
+ * это одна атомарная запись, поэтому обычный запуск, догоняющий запуск после простоя
+ * и запуск на другом экземпляре не дублируют друг друга.
+ * Догоняется только момент не старше catchUpGrace; более старые пропускаются с предупреждением.
+ * <p>
+ * Сдвиг отметки и постановка рассылки в очередь (BroadcastFanoutService.submit) выполняются
+ * в одной транзакции: если постановка упала, отметка откатывается, и момент будет
+ * запущен снова на следующей проверке, а не потерян.
+ */
+@Slf4j
+@Service
+public class BroadcastFireMarkers {
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO broadcast_fire_markers (broadcast_key, last_planned_at, fired_at, fired_by, caught_up)
+            VALUES (?, ?, now(), ?, ?)
+            ON CONFLICT (broadcast_key) DO UPDATE
+                SET last_planned_at = EXCLUDED.last_planned_at, fired_at = EXCLUDED.fired_at,
+                    fired_by = EXCLUDED.fired_by, caught_up = EXCLUDED.caught_up
+                WHERE broadcast_fire_markers.last_planned_at < EXCLUDED.last_planned_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BotSettingsConfig settingsConfig;
+    private final SchedulerLeadership leadership;
+
+    // Плановые моменты, про которые уже известно, что они выполнены (здесь или на другом экземпляре)
+    private final Map<String, LocalDateTime> knownFired = new ConcurrentHashMap<>();
+    private final Map<String, LocalDateTime> knownSkipped = new ConcurrentHashMap<>();
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong caughtUp = new AtomicLong();
+    private final AtomicLong alreadyFired = new AtomicLong();
+    private final AtomicLong skippedOutsideGrace = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BroadcastFireMarkers(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                BotSettingsConfig settingsConfig,
+                                SchedulerLeadership leadership) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.settingsConfig = settingsConfig;
+        this.leadership = leadership;
+    }
+
+    public Duration getCatchUpGrace() {
+        return settingsConfig.getReminders().getScheduler().getCatchUpGrace();
+    }
+
+    /**
+     * Запускает рассылку key за плановый момент planned (последний наступивший), если он еще
+     * не выполнен. action ставит рассылку в очередь и выполняется в транзакции сдвига отметки;
+     * исключение из action откатывает отметку. true — рассылка поставлена этим вызовом
+     */
+    public boolean tryFire(String key, LocalDateTime planned, LocalDateTime now, Runnable action) {
+        if (planned == null || planned.isAfter(now) || planned.equals(knownFired.get(key))) {
+            return false;
+        }
+
+        Duration late = Duration.between(planned, now);
+        if (late.compareTo(getCatchUpGrace()) > 0) {
+            reportSkipped(key, planned, late);
+            return false;
+        }
+
+        // Все, что позже минуты, — догоняющий запуск
+        boolean catchUp = late.toMinutes() >= 1;
+        Boolean claimed;
+        try {
+            claimed = transactionTemplate.execute(status -> {
+                if (jdbcTemplate.update(CLAIM_SQL, key, Timestamp.valueOf(planned),
+                        leadership.getInstanceId(), catchUp) != 1) {
+                    return false;
+                }
+                action.run();
+                return true;
+            });
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.error("❌ Рассылка {} за {} не поставлена в очередь, повторим на следующей проверке: {}",
+                    key, planned, e.getMessage(), e);
+            return false;
+        }
+        knownFired.put(key, planned);
+
+        if (!Boolean.TRUE.equals(claimed)) {
+            alreadyFired.incrementAndGet();
+            log.debug("Рассылка {} за {} уже выполнена", key, planned);
+            return false;
+        }
+
+        fired.incrementAndGet();
+        if (catchUp) {
+            caughtUp.incrementAndGet();
+            log.info("⏪ Рассылка {} за {} запускается с опозданием {} мин (пропущена во время простоя)",
+                    key, planned, late.toMinutes());
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        List<Map<String, Object>> markers = jdbcTemplate.queryForList(
+                "SELECT broadcast_key, last_planned_at, fired_at, fired_by, caught_up "
+                        + "FROM broadcast_fire_markers ORDER BY broadcast_key");
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("catchUpGrace", getCatchUpGrace().toString());
+        stats.put("fired", fired.get());
+        stats.put("caughtUp", caughtUp.get());
+        stats.put("alreadyFired", alreadyFired.get());
+        stats.put("skippedOutsideGrace", skippedOutsideGrace.get());
+        stats.put("failed", failed.get());
+        stats.put("markers", markers);
+        return stats;
+    }
+
+    /**
+     * Пропуск вне окна: предупреждение один раз на плановый момент и только если его никто не выполнил
+     */
+    private void reportSkipped(String key, LocalDateTime planned, Duration late) {
+        if (planned.equals(knownSkipped.get(key))) {
+            return;
+        }
+        knownSkipped.put(key, planned);
+
+        List<Timestamp> last = jdbcTemplate.queryForList(
+                "SELECT last_planned_at FROM broadcast_fire_markers WHERE broadcast_key = ?", Timestamp.class, key);
+        if (!last.isEmpty() && !last.get(0).toLocalDateTime().isBefore(planned)) {
+            knownFired.put(key, planned);
+            return;
+        }
+
+        skippedOutsideGrace.incrementAndGet();
+        log.warn("⏭️ Рассылка {} за {} пропущена: опоздание {} мин больше окна догоняния {}",
+                key, planned, late.toMinutes(), getCatchUpGrace());
+    }
+}
@@ -0,0 +1,223 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.melnikov.telegrambot.dto.BroadcastTarget;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Постраничный обход получателей рассылки.
+ * <p>
+ * Читает только пары (chat_id, bot_topic_id) через JDBC, минуя контекст
+ * персистентности, страницами по PAGE_SIZE с продолжением по ключу (chat_id > последнего),
+ * используя индекс из миграции V5. Каждая страница читается в отдельной короткой
+ * read-only транзакции, а обработчик вызывается уже после ее завершения: медленная
+ * отправка с паузами между чатами не держит открытыми ни транзакцию, ни соединение,
+ * а память не зависит от числа чатов.
+ */
+@Slf4j
+@Component
+public class BroadcastTargetReader {
+
+    private static final int PAGE_SIZE = 500;
+
+    // Хеш chat_id для смещения в окне: умножения по модулю простого 2^31 - 1 и сдвиг с xor.
+    // Все промежуточные значения меньше 2^62, поэтому bigint в PostgreSQL и long в Java
+    // считают одно и то же без переполнения (см. spreadOffset)
+    private static final long SPREAD_HASH_PRIME = 2147483647L;
+    private static final long SPREAD_HASH_MUL1 = 1103515245L;
+    private static final long SPREAD_HASH_MUL2 = 1664525L;
+
+    /**
+     * Кому рассылать. Условия совпадают с частичными индексами из миграции V5.
+     * Чаты с собственным напоминанием того же типа (таблица reminders, см. ReminderEngine)
+     * из общей рассылки исключаются — анти-соединение по индексу из миграции V7
+     */
+    public enum Audience {
+        SCHEDULE("c.is_active AND c.notify_schedule", "SCHEDULE_TODAY"),
+        SCHEDULE_GROUPS("c.is_active AND c.notify_schedule AND c.is_group", "SCHEDULE_TODAY"),
+        DEADLINES("c.is_active AND c.notify_deadlines", "DEADLINE_WEEKLY"),
+        DEADLINE_GROUPS("c.is_active AND c.notify_deadlines AND c.is_group", "DEADLINE_WEEKLY"),
+        // Напоминания о приближении отдельных дедлайнов (DeadlineReminderEngine) — всем подписанным
+        DEADLINE_ALERTS("c.is_active AND c.notify_deadlines", null),
+        BEFORE_CLASS("c.is_active AND c.is_group AND c.notify_before_class", "SCHEDULE_BEFORE"),
+        ACTIVE_GROUPS("c.is_active AND c.is_group", null);
+
+        private final String sql;
+        private final String partitionSql;
+        private final String spreadSql;
+
+        Audience(String condition, String customReminderType) {
+            String where = customReminderType == null ? condition : condition
+                    + " AND NOT EXISTS (SELECT 1 FROM reminders r WHERE r.chat_id = c.chat_id"
+                    + " AND r.is_active AND r.reminder_type = '" + customReminderType + "')";
+            this.sql = "SELECT c.chat_id, c.bot_topic_id FROM bot_chats c WHERE " + where
+                    + " AND c.chat_id > ? ORDER BY c.chat_id LIMIT ?";
+            // Часть рассылки: остаток chat_id и продолжение после последнего обработанного чата
+            this.partitionSql = "SELECT c.chat_id, c.bot_topic_id FROM bot_chats c WHERE " + where
+                    + " AND abs(c.chat_id % ?) = ? AND c.chat_id > ? ORDER BY c.chat_id LIMIT ?";
+            // Рассылка с окном: смещение чата в окне по хешу chat_id (то же, что spreadOffset),
+            // часть — доля окна (spreadPartition), порядок и продолжение — по (смещение, chat_id)
+            this.spreadSql = "SELECT t.chat_id, t.bot_topic_id, t.offset_ms FROM ("
+                    + "SELECT h.chat_id, h.bot_topic_id,"
+                    + " mod(((h.hash # (h.hash >> 16)) * " + SPREAD_HASH_MUL2 + ") % " + SPREAD_HASH_PRIME + ", ?)"
+                    + " AS offset_ms FROM ("
+                    + "SELECT c.chat_id, c.bot_topic_id,"
+                    + " (((c.chat_id % " + SPREAD_HASH_PRIME + ") + " + SPREAD_HASH_PRIME + ") % " + SPREAD_HASH_PRIME + ")"
+                    + " * " + SPREAD_HASH_MUL1 + " % " + SPREAD_HASH_PRIME + " AS hash"
+                    + " FROM bot_chats c WHERE " + where + ") h) t"
+                    + " WHERE t.offset_ms * ? / ? = ? AND (t.offset_ms, t.chat_id) > (?, ?)"
+                    + " ORDER BY t.offset_ms, t.chat_id LIMIT ?";
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public BroadcastTargetReader(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Передает обработчику получателей по одному, вне транзакции. Обход прекращается,
+     * если поток прерван. Возвращает число обработанных получателей
+     */
+    public int forEach(Audience audience, Consumer<BroadcastTarget> handler) {
+        int processed = 0;
+        long afterChatId = Long.MIN_VALUE;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<BroadcastTarget> page = readPage(audience.sql, afterChatId, PAGE_SIZE);
+            for (BroadcastTarget target : page) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                handler.accept(target);
+                processed++;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            afterChatId = page.get(page.size() - 1).chatId();
+        }
+
+        log.debug("📤 Обход получателей {} завершен: {}", audience, processed);
+        return processed;
+    }
+
+    /**
+     * Обход одной части рассылки (см. BroadcastFanoutService): чаты с |chat_id % partitions| = partition
+     * и chat_id больше afterChatId, по возрастанию chat_id. Обработчик вызывается вне транзакции,
+     * поэтому может писать в БД (отметки прогресса идут на основную базу)
+     */
+    public int forEachInPartition(Audience audience, int partition, int partitions, long afterChatId,
+                                  Consumer<BroadcastTarget> handler) {
+        int processed = 0;
+        long lastChatId = afterChatId;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<BroadcastTarget> page = readPage(audience.partitionSql, partitions, partition, lastChatId, PAGE_SIZE);
+            for (BroadcastTarget target : page) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                handler.accept(target);
+                processed++;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            lastChatId = page.get(page.size() - 1).chatId();
+        }
+
+        log.debug("📤 Обход части {}/{} получателей {} завершен: {}", partition, partitions, audience, processed);
+        return processed;
+    }
+
+    /**
+     * Обход части рассылки с окном spreadMillis: каждому чату детерминированно назначено
+     * смещение от начала окна, часть partition — отрезок окна с номером partition из partitions.
+     * Чаты идут по возрастанию смещения, после (afterOffset, afterChatId)
+     */
+    public int forEachInSpreadPartition(Audience audience, int partition, int partitions, long spreadMillis,
+                                        long afterOffset, long afterChatId, SpreadTargetHandler handler) {
+        int processed = 0;
+        long lastOffset = afterOffset;
+        long lastChatId = afterChatId;
+        while (!Thread.currentThread().isInterrupted()) {
+            long pageOffset = lastOffset;
+            long pageChatId = lastChatId;
+            List<SpreadTarget> page = readOnlyTransaction.execute(status ->
+                    jdbcTemplate.query(audience.spreadSql,
+                            (rs, rowNum) -> new SpreadTarget(toTarget(rs), rs.getLong(3)),
+                            spreadMillis, partitions, spreadMillis, partition, pageOffset, pageChatId, PAGE_SIZE));
+            if (page == null) {
+                break;
+            }
+            for (SpreadTarget target : page) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                handler.accept(target.target(), target.offsetMillis());
+                processed++;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            SpreadTarget last = page.get(page.size() - 1);
+            lastOffset = last.offsetMillis();
+            lastChatId = last.target().chatId();
+        }
+
+        log.debug("📤 Обход отрезка {}/{} окна {} мс получателей {} завершен: {}",
+                partition, partitions, spreadMillis, audience, processed);
+        return processed;
+    }
+
+    /**
+     * Смещение чата от начала окна spreadMillis, в мс: [0, spreadMillis).
+     * Совпадает с offset_ms в spreadSql, поэтому момент отправки чату можно посчитать без БД
+     */
+    public static long spreadOffset(long chatId, long spreadMillis) {
+        long hash = Math.floorMod(chatId, SPREAD_HASH_PRIME) * SPREAD_HASH_MUL1 % SPREAD_HASH_PRIME;
+        hash = (hash ^ (hash >> 16)) * SPREAD_HASH_MUL2 % SPREAD_HASH_PRIME;
+        return hash % spreadMillis;
+    }
+
+    /**
+     * Часть рассылки (отрезок окна), в которую попадает смещение offsetMillis
+     */
+    public static int spreadPartition(long offsetMillis, int partitions, long spreadMillis) {
+        return (int) (offsetMillis * partitions / spreadMillis);
+    }
+
+    @FunctionalInterface
+    public interface SpreadTargetHandler {
+        void accept(BroadcastTarget target, long offsetMillis);
+    }
+
+    private record SpreadTarget(BroadcastTarget target, long offsetMillis) {
+    }
+
+    /**
+     * Одна страница получателей в короткой read-only транзакции
+     */
+    private List<BroadcastTarget> readPage(String sql, Object... args) {
+        List<BroadcastTarget> page = readOnlyTransaction.execute(status ->
+                jdbcTemplate.query(sql, (rs, rowNum) -> toTarget(rs), args));
+        return page != null ? page : List.of();
+    }
+
+    private static BroadcastTarget toTarget(ResultSet rs) throws SQLException {
+        long chatId = rs.getLong(1);
+        int topicId = rs.getInt(2);
+        return new BroadcastTarget(chatId, rs.wasNull() ? null : topicId);
+    }
+}
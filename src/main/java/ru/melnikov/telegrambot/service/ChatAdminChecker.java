@@ -6,8 +6,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
+import ru.melnikov.telegrambot.cache.ChatSettingsCache;
 import ru.melnikov.telegrambot.model.BotChat;
 import ru.melnikov.telegrambot.repository.BotChatRepository;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
 
 import java.util.List;
 
@@ -18,11 +20,13 @@ public class ChatAdminChecker {
 
     private final BotChatRepository botChatRepository;
     private final ChatEventService chatEventService;
+    private final ChatSettingsCache chatSettingsCache;
 
     /**
      * Периодическая проверка статуса бота в чатах
      * Запускается каждые 10 минут
      */
+    @ClusterSingleton
     @Scheduled(fixedDelay = 600000) // 10 минут
     public void checkBotAdminStatus() {
         log.info("🔄 Запуск периодической проверки статуса бота в чатах...");
@@ -71,6 +75,7 @@ public class ChatAdminChecker {
                 chat.setIsActive(false);
                 chat.setIsBotAdmin(false);
                 botChatRepository.save(chat);
+                chatSettingsCache.put(chat);
                 log.info("Чат {} помечен как неактивный", chat.getChatId());
             }
         }
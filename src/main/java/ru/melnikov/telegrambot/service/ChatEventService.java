@@ -11,8 +11,10 @@ import org.telegram.telegrambots.meta.api.objects.User;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberAdministrator;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberOwner;
+import ru.melnikov.telegrambot.cache.ChatSettingsCache;
 import ru.melnikov.telegrambot.config.BotSettingsConfig;
 import ru.melnikov.telegrambot.model.BotChat;
+import ru.melnikov.telegrambot.model.ChatSettings;
 import ru.melnikov.telegrambot.repository.BotChatRepository;
 
 import java.time.LocalDateTime;
@@ -27,6 +29,7 @@ public class ChatEventService {
 
     private final BotChatRepository botChatRepository;
     private final BotSettingsConfig settingsConfig;
+    private final ChatSettingsCache chatSettingsCache;
 
     /**
      * Обработка добавления бота в чат
@@ -45,11 +48,12 @@ public class ChatEventService {
             botChat.setUsername(chat.getUserName());
             botChat.setUpdatedAt(LocalDateTime.now());
             botChatRepository.save(botChat);
+            chatSettingsCache.put(botChat);
 
             log.info("🤖 Бот повторно добавлен в чат {}: {}", chatId, getChatName(chat));
         } else {
             // Создаем новый чат
-            Map<String, Object> settings = createDefaultGroupSettings();
+            ChatSettings settings = createDefaultGroupSettings();
 
             BotChat botChat = BotChat.builder()
                     .chatId(chatId)
@@ -63,6 +67,7 @@ public class ChatEventService {
                     .build();
 
             botChatRepository.save(botChat);
+            chatSettingsCache.put(botChat);
 
             log.info("🎉 Бот добавлен в новый чат {}: {} (добавил: {})",
                     chatId, getChatName(chat),
@@ -81,6 +86,7 @@ public class ChatEventService {
             chat.setBotPermissions("{}");
             chat.setUpdatedAt(LocalDateTime.now());
             botChatRepository.save(chat);
+            chatSettingsCache.put(chat);
 
             log.info("👋 Бот удален из чата {}: {}", chatId, chat.getTitle());
         });
@@ -115,6 +121,7 @@ public class ChatEventService {
                     botChat.setBotPermissions("{}");
                     botChat.setUpdatedAt(LocalDateTime.now());
                     botChatRepository.save(botChat);
+                    chatSettingsCache.put(botChat);
 
                     log.info("🚫 Бот потерял доступ к чату {}: {}", chatId, botChat.getTitle());
                 } else {
@@ -123,6 +130,7 @@ public class ChatEventService {
                     botChat.setIsBotAdmin(true);
                     botChat.setUpdatedAt(LocalDateTime.now());
                     botChatRepository.save(botChat);
+                    chatSettingsCache.put(botChat);
 
                     log.info("👑 Бот предположительно администратор в чате {}: {}",
                             chatId, botChat.getTitle());
@@ -145,6 +153,7 @@ public class ChatEventService {
             botChat.setBotPermissions(extractPermissions(chatMember));
             botChat.setUpdatedAt(LocalDateTime.now());
             botChatRepository.save(botChat);
+            chatSettingsCache.put(botChat);
 
             log.info("👑 Боту официально выданы права администратора в чате {}: {}",
                     chatId, botChat.getTitle());
@@ -180,19 +189,9 @@ public class ChatEventService {
 
     // ====== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ======
 
-    private Map<String, Object> createDefaultGroupSettings() {
-        Map<String, Object> settings = new HashMap<>();
-
+    private ChatSettings createDefaultGroupSettings() {
         // Настройки из конфигурации YML
-        settings.put("schedule_notifications", true);
-        settings.put("deadline_notifications", true);
-        settings.put("before_class_enabled", settingsConfig.getReminders().getBeforeClass().getEnabled());
-        settings.put("welcome_message", true);
-        settings.put("mention_all_enabled", true);
-        settings.put("bot_topic_id", null);
-        settings.put("bot_topic_name", null);
-
-        return settings;
+        return ChatSettings.defaultsForGroup(settingsConfig.getReminders().getBeforeClass().getEnabled());
     }
 
     private String extractPermissions(ChatMember chatMember) {
@@ -254,11 +253,10 @@ public class ChatEventService {
             log.info("📨 Приветственное сообщение будет отправлено в чат {}", chatId);
 
             // Сохраняем флаг, что приветствие нужно отправить
-            Map<String, Object> settings = botChat.getSettings();
-            if (settings != null && Boolean.TRUE.equals(settings.get("welcome_message"))) {
-                settings.put("pending_welcome", true);
-                botChat.setSettings(settings);
-                botChatRepository.save(botChat);
+            ChatSettings settings = botChat.getSettings();
+            if (settings != null && settings.welcomeMessage()) {
+                botChatRepository.updateSettingsFlags(chatId, ChatSettings.PENDING_WELCOME, 0);
+                chatSettingsCache.invalidate(chatId);
             }
 
         } catch (Exception e) {
@@ -295,6 +293,7 @@ public class ChatEventService {
                 chat.setBotPermissions("{}");
             }
             botChatRepository.save(chat);
+            chatSettingsCache.put(chat);
 
             log.info("Статус администратора для чата {} установлен в: {}",
                     chatId, isAdmin ? "✅ Админ" : "❌ Не админ");
@@ -0,0 +1,147 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание секций таблицы command_logs (секционирование по дням, см. миграцию V3).
+ * <p>
+ * Заранее создает секции на ближайшие дни и удаляет целиком секции, все строки
+ * которых старше срока хранения — вместо DELETE по большой таблице.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommandLogPartitionService {
+
+    private static final String PARENT_TABLE = "command_logs";
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    // Границы из pg_get_expr: FOR VALUES FROM ('2026-01-30 00:00:00') TO ('2026-01-31 00:00:00')
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\((MINVALUE|'[^']+')\\) TO \\((MAXVALUE|'[^']+')\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BotSettingsConfig settingsConfig;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Ежедневное обслуживание секций
+     */
+    @ClusterSingleton
+    @Scheduled(cron = "0 5 0 * * *") // Каждый день в 00:05
+    public void maintain() {
+        try {
+            int created = ensureUpcomingPartitions();
+            int dropped = dropExpiredPartitions(getConfig().getRetentionDays());
+            log.info("🗂️ Секции журнала команд: создано {}, удалено {}", created, dropped);
+        } catch (Exception e) {
+            log.error("❌ Ошибка обслуживания секций журнала команд: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Создает недостающие дневные секции с сегодняшнего дня на partitionsAhead дней вперед
+     */
+    public int ensureUpcomingPartitions() {
+        List<Partition> partitions = findPartitions();
+
+        LocalDate today = LocalDate.now();
+        int created = 0;
+        for (int i = 0; i <= getConfig().getPartitionsAhead(); i++) {
+            LocalDate day = today.plusDays(i);
+            if (partitions.stream().anyMatch(partition -> partition.covers(day))) {
+                continue;
+            }
+
+            String name = PARENT_TABLE + "_p" + day.format(SUFFIX_FORMAT);
+            try {
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        name, PARENT_TABLE, day, day.plusDays(1)));
+                created++;
+            } catch (Exception e) {
+                // Обычно значит, что строки за этот день уже лежат в default-секции
+                log.warn("⚠️ Не удалось создать секцию {}: {}", name, e.getMessage());
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Удаляет секции, все строки которых старше начала дня (сегодня - daysToKeep).
+     * Удаление секции — операция над метаданными, без построчного DELETE и без bloat
+     */
+    public int dropExpiredPartitions(int daysToKeep) {
+        LocalDate cutoff = LocalDate.now().minusDays(daysToKeep);
+        int dropped = 0;
+
+        for (Partition partition : findPartitions()) {
+            if (partition.upper() == null || partition.upper().isAfter(cutoff)) {
+                continue;
+            }
+
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition.name());
+            dropped++;
+            log.info("🗑️ Удалена секция журнала команд {} (данные до {})", partition.name(), partition.upper());
+        }
+        return dropped;
+    }
+
+    // ====== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ======
+
+    /**
+     * Секции command_logs с разобранными границами (default-секция пропускается)
+     */
+    private List<Partition> findPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query("""
+                SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = ?
+                """, rs -> {
+            Matcher matcher = RANGE_BOUND.matcher(rs.getString("bound"));
+            if (matcher.find()) {
+                partitions.add(new Partition(rs.getString("name"),
+                        parseBound(matcher.group(1)), parseBound(matcher.group(2))));
+            }
+        }, PARENT_TABLE);
+        return partitions;
+    }
+
+    private static LocalDate parseBound(String value) {
+        // MINVALUE/MAXVALUE — открытая граница
+        return value.startsWith("'") ? LocalDate.parse(value.substring(1, 11)) : null;
+    }
+
+    /**
+     * Секция с границами [lower, upper); null — MINVALUE/MAXVALUE
+     */
+    private record Partition(String name, LocalDate lower, LocalDate upper) {
+        boolean covers(LocalDate day) {
+            return (lower == null || !day.isBefore(lower)) && (upper == null || day.isBefore(upper));
+        }
+    }
+
+    private BotSettingsConfig.AuditConfig.CommandLogConfig getConfig() {
+        return settingsConfig.getAudit().getCommandLog();
+    }
+}
@@ -20,14 +20,16 @@ import java.util.Map;
 public class CommandLogService {
 
     private final CommandLogRepository repository;
+    private final CommandLogWriter commandLogWriter;
+    private final CommandLogPartitionService partitionService;
+    private final CommandStatsRollupService rollupService;
 
     /**
-     * Логирование успешной команды
+     * Логирование успешной команды (асинхронно, через буфер CommandLogWriter)
      */
-    @Transactional
-    public CommandLog logSuccess(Long userId, String username, Long chatId,
-                                 String command, String args, Long executionTimeMs) {
-        CommandLog commandLog = CommandLog.builder()
+    public void logSuccess(Long userId, String username, Long chatId,
+                           String command, String args, Long executionTimeMs) {
+        submit(CommandLog.builder()
                 .userId(userId)
                 .username(username)
                 .chatId(chatId)
@@ -36,21 +38,17 @@ public class CommandLogService {
                 .success(true)
                 .executionTimeMs(executionTimeMs)
                 .createdAt(LocalDateTime.now())
-                .build();
+                .build());
 
-        CommandLog saved = repository.save(commandLog);
-        log.debug("✅ Команда успешно залогирована: {} от пользователя {}", command, username);
-
-        return saved;
+        log.debug("✅ Команда поставлена в журнал: {} от пользователя {}", command, username);
     }
 
     /**
-     * Логирование команды с ошибкой
+     * Логирование команды с ошибкой (асинхронно, через буфер CommandLogWriter)
      */
-    @Transactional
-    public CommandLog logError(Long userId, String username, Long chatId,
-                               String command, String args, String errorMessage, Long executionTimeMs) {
-        CommandLog commandLog = CommandLog.builder()
+    public void logError(Long userId, String username, Long chatId,
+                         String command, String args, String errorMessage, Long executionTimeMs) {
+        submit(CommandLog.builder()
                 .userId(userId)
                 .username(username)
                 .chatId(chatId)
@@ -60,56 +58,54 @@ public class CommandLogService {
                 .errorMessage(errorMessage)
                 .executionTimeMs(executionTimeMs)
                 .createdAt(LocalDateTime.now())
-                .build();
+                .build());
 
-        CommandLog saved = repository.save(commandLog);
         log.error("❌ Ошибка команды залогирована: {} от пользователя {}. Ошибка: {}",
                 command, username, errorMessage);
-
-        return saved;
     }
 
     /**
      * Быстрый лог (без измерения времени)
      */
-    @Transactional
     public void quickLog(Long userId, String username, Long chatId, String command) {
-        CommandLog commandLog = CommandLog.builder()
+        submit(CommandLog.builder()
                 .userId(userId)
                 .username(username)
                 .chatId(chatId)
                 .command(command)
                 .success(true)
                 .createdAt(LocalDateTime.now())
-                .build();
+                .build());
 
-        repository.save(commandLog);
         log.info("📝 Быстрый лог: {} от {}", command, username);
     }
 
     /**
-     * Статистика по командам
+     * Состояние асинхронной записи журнала
+     */
+    public Map<String, Object> getWriterStats() {
+        return commandLogWriter.getStats();
+    }
+
+    /**
+     * Статистика по командам за период [from, to) — из предагрегированных данных.
+     * Отчетный запрос: при настроенной реплике выполняется на ней
      */
     @Transactional(readOnly = true)
     public CommandStatistics getStatistics(LocalDateTime from, LocalDateTime to) {
-        List<Object[]> stats = repository.getCommandStatistics(from, to);
-
         CommandStatistics result = new CommandStatistics();
-        for (Object[] row : stats) {
-            String cmd = (String) row[0];
-            Long count = (Long) row[1];
-            Long avgTime = (Long) row[2];
-            Long errorCount = (Long) row[3];
-
-            // Исправлено: создаем CommandStat и добавляем в map
+        rollupService.getTotals(from, to).forEach((cmd, totals) -> {
             CommandStatistics.CommandStat stat = CommandStatistics.CommandStat.builder()
-                    .count(count != null ? count : 0)
-                    .avgExecutionTime(avgTime != null ? avgTime : 0)
-                    .errorCount(errorCount != null ? errorCount : 0)
+                    .count(totals.getCount())
+                    .avgExecutionTime(totals.getAvgExecutionTime())
+                    .errorCount(totals.getErrors())
+                    .minExecutionTime(totals.getMinExecutionTime())
+                    .maxExecutionTime(totals.getMaxExecutionTime())
+                    .p95ExecutionTime(totals.getPercentileExecutionTime(95))
                     .build();
 
             result.getCommandStats().put(cmd, stat);
-        }
+        });
 
         // Рассчитываем общие метрики
         result.calculateTotalMetrics();
@@ -136,12 +132,20 @@ public class CommandLogService {
     }
 
     /**
-     * Очистка старых логов
+     * Очистка старых логов: удаляются целые дневные секции command_logs.
+     * Возвращает количество удаленных секций
      */
-    @Transactional
     public int cleanupOldLogs(int daysToKeep) {
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(daysToKeep);
-        return repository.deleteByCreatedAtBefore(cutoffDate);
+        return partitionService.dropExpiredPartitions(daysToKeep);
+    }
+
+    private void submit(CommandLog commandLog) {
+        // user_id обязателен — такая строка уронила бы весь батч
+        if (commandLog.getUserId() == null) {
+            log.warn("⚠️ Команда {} без пользователя не записана в журнал", commandLog.getCommand());
+            return;
+        }
+        commandLogWriter.submit(commandLog);
     }
 
     /**
@@ -190,6 +194,9 @@ public class CommandLogService {
             private long count;
             private long avgExecutionTime;
             private long errorCount;
+            private long minExecutionTime;
+            private long maxExecutionTime;
+            private long p95ExecutionTime; // оценка по гистограмме
 
             public double getErrorRate() {
                 return count > 0 ? (double) errorCount / count * 100 : 0;
@@ -0,0 +1,215 @@
+package ru.melnikov.telegrambot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.model.CommandLog;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная запись журнала команд.
+ * <p>
+ * Поток обработки команды только кладет запись в ограниченный буфер (без блокировки).
+ * Фоновый поток забирает записи пачками и пишет их многострочными INSERT
+ * в одной транзакции — раз в flushInterval или как только набрался batchSize.
+ * В той же транзакции обновляются агрегаты CommandStatsRollupService.
+ * Если буфер переполнен, запись отбрасывается и учитывается в счетчике dropped.
+ * При остановке приложения буфер дописывается до конца.
+ */
+@Slf4j
+@Component
+public class CommandLogWriter {
+
+    private static final String INSERT_PREFIX = """
+            INSERT INTO command_logs (user_id, username, chat_id, command, arguments,
+                                      success, error_message, execution_time_ms, created_at)
+            VALUES\s""";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final long SHUTDOWN_TIMEOUT_MS = 30000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CommandStatsRollupService rollupService;
+    private final BotSettingsConfig.AuditConfig.CommandLogConfig config;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private BlockingQueue<CommandLog> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public CommandLogWriter(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            CommandStatsRollupService rollupService,
+                            BotSettingsConfig settingsConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupService = rollupService;
+        this.config = settingsConfig.getAudit().getCommandLog();
+    }
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(config.getBufferSize());
+        running = true;
+
+        writerThread = new Thread(this::runLoop, "command-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        log.info("📝 Асинхронная запись журнала команд запущена: буфер {}, батч {}, интервал {}",
+                config.getBufferSize(), config.getBatchSize(), config.getFlushInterval());
+    }
+
+    /**
+     * Кладет запись в буфер. Никогда не блокирует: при переполнении запись отбрасывается
+     */
+    public boolean submit(CommandLog entry) {
+        if (buffer.offer(entry)) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+
+        long total = dropped.incrementAndGet();
+        if (total == 1 || total % 1000 == 0) {
+            log.warn("⚠️ Буфер журнала команд переполнен, отброшено записей: {}", total);
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Без interrupt: прерывание посреди JDBC-записи сломало бы финальный сброс.
+        // Поток заметит флаг не позже чем через flushInterval
+        running = false;
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!buffer.isEmpty()) {
+            log.warn("⚠️ При остановке не записано {} записей журнала команд", buffer.size());
+        }
+        log.info("📝 Запись журнала команд остановлена. Записано: {}, отброшено: {}",
+                written.get(), dropped.get());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("buffered", buffer.size());
+        stats.put("capacity", config.getBufferSize());
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        return stats;
+    }
+
+    // ====== ФОНОВЫЙ ПОТОК ======
+
+    private void runLoop() {
+        int batchSize = config.getBatchSize();
+        long flushIntervalNanos = config.getFlushInterval().toNanos();
+        List<CommandLog> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    CommandLog first = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (first == null) {
+                        break;
+                    }
+                    batch.add(first);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            flush(batch);
+        }
+
+        // Финальный сброс при остановке
+        Thread.interrupted();
+        do {
+            buffer.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+        } while (!buffer.isEmpty());
+    }
+
+    private void flush(List<CommandLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Сырые строки и агрегаты статистики — в одной транзакции
+            transactionTemplate.executeWithoutResult(status -> {
+                insertBatch(batch);
+                rollupService.record(batch);
+            });
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+            log.debug("📝 Записано {} записей журнала команд", batch.size());
+        } catch (Exception e) {
+            // Не повторяем: журнал не должен копиться в памяти при недоступной БД
+            failed.addAndGet(batch.size());
+            log.error("❌ Не удалось записать {} записей журнала команд: {}", batch.size(), e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void insertBatch(List<CommandLog> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+
+        jdbcTemplate.update(sql.toString(), ps -> {
+            int index = 1;
+            for (CommandLog entry : batch) {
+                ps.setLong(index++, entry.getUserId());
+                ps.setString(index++, entry.getUsername());
+                ps.setObject(index++, entry.getChatId(), Types.BIGINT);
+                ps.setString(index++, entry.getCommand());
+                ps.setString(index++, entry.getArguments());
+                ps.setBoolean(index++, !Boolean.FALSE.equals(entry.getSuccess()));
+                ps.setString(index++, entry.getErrorMessage());
+                ps.setObject(index++, entry.getExecutionTimeMs(), Types.BIGINT);
+                ps.setTimestamp(index++, Timestamp.valueOf(entry.getCreatedAt()));
+            }
+        });
+    }
+}
@@ -0,0 +1,274 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.model.CommandLog;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Предагрегированная статистика команд (таблица command_stats_rollup).
+ * <p>
+ * CommandLogWriter передает сюда каждый записанный батч: строки сворачиваются
+ * в памяти по (минута, команда) и (час, команда) и добавляются к агрегатам одним
+ * батчем UPSERT. Чтение статистики за период берет часовые строки для целых часов
+ * и минутные — для краев периода, поэтому не зависит от объема сырых логов.
+ * Точность границ периода — одна минута.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommandStatsRollupService {
+
+    /**
+     * Верхние границы корзин гистограммы (мс); последняя корзина — все, что больше
+     */
+    public static final long[] HISTOGRAM_BOUNDS_MS = {10, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private static final String MINUTE = "m";
+    private static final String HOUR = "h";
+    private static final int MINUTE_ROWS_KEEP_DAYS = 2;
+    private static final int HOUR_ROWS_KEEP_DAYS = 400;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO command_stats_rollup AS r (granularity, bucket_start, command, total_count, error_count,
+                                                   timed_count, sum_ms, min_ms, max_ms, histogram)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (granularity, bucket_start, command) DO UPDATE
+            SET total_count = r.total_count + EXCLUDED.total_count,
+                error_count = r.error_count + EXCLUDED.error_count,
+                timed_count = r.timed_count + EXCLUDED.timed_count,
+                sum_ms      = r.sum_ms + EXCLUDED.sum_ms,
+                min_ms      = LEAST(r.min_ms, EXCLUDED.min_ms),
+                max_ms      = GREATEST(r.max_ms, EXCLUDED.max_ms),
+                histogram   = ARRAY(SELECT a + b
+                                    FROM unnest(r.histogram, EXCLUDED.histogram) WITH ORDINALITY AS t(a, b, i)
+                                    ORDER BY i)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Добавляет батч сырых логов к агрегатам. Вызывается в транзакции записи батча
+     */
+    public void record(List<CommandLog> batch) {
+        Map<BucketKey, Bucket> buckets = new HashMap<>();
+        for (CommandLog entry : batch) {
+            LocalDateTime createdAt = entry.getCreatedAt();
+            buckets.computeIfAbsent(new BucketKey(MINUTE, createdAt.truncatedTo(ChronoUnit.MINUTES), entry.getCommand()),
+                    key -> new Bucket()).add(entry);
+            buckets.computeIfAbsent(new BucketKey(HOUR, createdAt.truncatedTo(ChronoUnit.HOURS), entry.getCommand()),
+                    key -> new Bucket()).add(entry);
+        }
+
+        List<Map.Entry<BucketKey, Bucket>> rows = new ArrayList<>(buckets.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BucketKey key = rows.get(i).getKey();
+                Bucket bucket = rows.get(i).getValue();
+
+                Long[] histogram = new Long[bucket.histogram.length];
+                for (int h = 0; h < histogram.length; h++) {
+                    histogram[h] = bucket.histogram[h];
+                }
+
+                ps.setString(1, key.granularity());
+                ps.setTimestamp(2, Timestamp.valueOf(key.bucketStart()));
+                ps.setString(3, key.command());
+                ps.setLong(4, bucket.count);
+                ps.setLong(5, bucket.errors);
+                ps.setLong(6, bucket.timedCount);
+                ps.setLong(7, bucket.sumMs);
+                ps.setObject(8, bucket.timedCount > 0 ? bucket.minMs : null, Types.BIGINT);
+                ps.setObject(9, bucket.timedCount > 0 ? bucket.maxMs : null, Types.BIGINT);
+                ps.setArray(10, ps.getConnection().createArrayOf("bigint", histogram));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    /**
+     * Статистика по командам за период [from, to)
+     */
+    public Map<String, CommandTotals> getTotals(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime minuteFrom = ceilTo(from, ChronoUnit.MINUTES);
+        LocalDateTime minuteTo = to.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime hourFrom = ceilTo(minuteFrom, ChronoUnit.HOURS);
+        LocalDateTime hourTo = minuteTo.truncatedTo(ChronoUnit.HOURS);
+        if (!hourFrom.isBefore(hourTo)) {
+            // Период короче часа — только минутные строки
+            hourFrom = minuteTo;
+            hourTo = minuteTo;
+        }
+
+        Map<String, CommandTotals> totals = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                SELECT command, total_count, error_count, timed_count, sum_ms, min_ms, max_ms, histogram
+                FROM command_stats_rollup
+                WHERE (granularity = 'h' AND bucket_start >= ? AND bucket_start < ?)
+                   OR (granularity = 'm' AND bucket_start >= ? AND bucket_start < ?)
+                   OR (granularity = 'm' AND bucket_start >= ? AND bucket_start < ?)
+                """, rs -> {
+            CommandTotals commandTotals = totals.computeIfAbsent(rs.getString("command"), key -> new CommandTotals());
+            commandTotals.count += rs.getLong("total_count");
+            commandTotals.errors += rs.getLong("error_count");
+            commandTotals.timedCount += rs.getLong("timed_count");
+            commandTotals.sumMs += rs.getLong("sum_ms");
+
+            long minMs = rs.getLong("min_ms");
+            if (!rs.wasNull()) {
+                commandTotals.minMs = Math.min(commandTotals.minMs, minMs);
+            }
+            long maxMs = rs.getLong("max_ms");
+            if (!rs.wasNull()) {
+                commandTotals.maxMs = Math.max(commandTotals.maxMs, maxMs);
+            }
+
+            Object[] histogram = (Object[]) rs.getArray("histogram").getArray();
+            for (int h = 0; h < histogram.length && h < commandTotals.histogram.length; h++) {
+                commandTotals.histogram[h] += ((Number) histogram[h]).longValue();
+            }
+        },
+                Timestamp.valueOf(hourFrom), Timestamp.valueOf(hourTo),
+                Timestamp.valueOf(minuteFrom), Timestamp.valueOf(hourFrom),
+                Timestamp.valueOf(hourTo), Timestamp.valueOf(minuteTo));
+
+        return totals;
+    }
+
+    /**
+     * Минутные агрегаты нужны только для краев недавних периодов, часовые хранятся дольше
+     */
+    @ClusterSingleton
+    @Scheduled(cron = "0 15 0 * * *") // Каждый день в 00:15
+    public void cleanupOldRollups() {
+        int minutes = jdbcTemplate.update(
+                "DELETE FROM command_stats_rollup WHERE granularity = 'm' AND bucket_start < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(MINUTE_ROWS_KEEP_DAYS)));
+        int hours = jdbcTemplate.update(
+                "DELETE FROM command_stats_rollup WHERE granularity = 'h' AND bucket_start < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(HOUR_ROWS_KEEP_DAYS)));
+
+        log.info("🧹 Удалено агрегатов статистики: минутных {}, часовых {}", minutes, hours);
+    }
+
+    private static LocalDateTime ceilTo(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+        return truncated.equals(time) ? truncated : truncated.plus(1, unit);
+    }
+
+    private static int histogramIndex(long executionTimeMs) {
+        for (int i = 0; i < HISTOGRAM_BOUNDS_MS.length; i++) {
+            if (executionTimeMs <= HISTOGRAM_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return HISTOGRAM_BOUNDS_MS.length;
+    }
+
+    private record BucketKey(String granularity, LocalDateTime bucketStart, String command) {
+    }
+
+    private static final class Bucket {
+        private long count;
+        private long errors;
+        private long timedCount;
+        private long sumMs;
+        private long minMs = Long.MAX_VALUE;
+        private long maxMs = Long.MIN_VALUE;
+        private final long[] histogram = new long[HISTOGRAM_BOUNDS_MS.length + 1];
+
+        void add(CommandLog entry) {
+            count++;
+            if (Boolean.FALSE.equals(entry.getSuccess())) {
+                errors++;
+            }
+
+            Long executionTimeMs = entry.getExecutionTimeMs();
+            if (executionTimeMs != null) {
+                timedCount++;
+                sumMs += executionTimeMs;
+                minMs = Math.min(minMs, executionTimeMs);
+                maxMs = Math.max(maxMs, executionTimeMs);
+                histogram[histogramIndex(executionTimeMs)]++;
+            }
+        }
+    }
+
+    /**
+     * Суммарные показатели команды за период
+     */
+    public static final class CommandTotals {
+        private long count;
+        private long errors;
+        private long timedCount;
+        private long sumMs;
+        private long minMs = Long.MAX_VALUE;
+        private long maxMs = Long.MIN_VALUE;
+        private final long[] histogram = new long[HISTOGRAM_BOUNDS_MS.length + 1];
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getAvgExecutionTime() {
+            return timedCount > 0 ? sumMs / timedCount : 0;
+        }
+
+        public long getMinExecutionTime() {
+            return timedCount > 0 ? minMs : 0;
+        }
+
+        public long getMaxExecutionTime() {
+            return timedCount > 0 ? maxMs : 0;
+        }
+
+        /**
+         * Оценка перцентиля по гистограмме: верхняя граница корзины, в которую он попал
+         * (для последней корзины — максимум)
+         */
+        public long getPercentileExecutionTime(double percentile) {
+            long timed = 0;
+            for (long bucket : histogram) {
+                timed += bucket;
+            }
+            if (timed == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(timed * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return i < HISTOGRAM_BOUNDS_MS.length ? HISTOGRAM_BOUNDS_MS[i] : getMaxExecutionTime();
+                }
+            }
+            return getMaxExecutionTime();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.melnikov.telegrambot.service;
+
+/**
+ * Настройка изменена через ConfigService (path — путь в YAML, например telegram.reminders.week-type).
+ * По нему пересобираются данные, посчитанные из настроек заранее (DailyPlanService)
+ */
+public record ConfigChangedEvent(String path) {
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import ru.melnikov.telegrambot.config.BotSettingsConfig;
@@ -24,6 +25,7 @@ import java.util.Map;
 public class ConfigService {
 
     private final BotSettingsConfig settingsConfig;
+    private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper yamlMapper = new ObjectMapper(
             new YAMLFactory().disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER)
     );
@@ -180,6 +182,7 @@ public class ConfigService {
             writeYamlFile(updatedYaml);
 
             log.info("✅ Настройка обновлена: {} = {}", path, value);
+            eventPublisher.publishEvent(new ConfigChangedEvent(path));
             return true;
 
         } catch (Exception e) {
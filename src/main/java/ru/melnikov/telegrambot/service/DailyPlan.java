@@ -0,0 +1,25 @@
+package ru.melnikov.telegrambot.service;
+
+import ru.melnikov.telegrambot.model.Schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * План дня: тип недели, пары дня с учетом типа недели (по времени начала)
+ * и готовые тексты расписания. Строится DailyPlanService и не меняется
+ *
+ * @param scheduleText текст рассылки расписания (один для всех чатов)
+ * @param todayText    ответ на команду /today
+ */
+public record DailyPlan(LocalDate date,
+                        String weekType,
+                        String weekTypeDisplay,
+                        String weekTypeEmoji,
+                        List<Schedule> classes,
+                        String scheduleText,
+                        String todayText,
+                        LocalDateTime builtAt,
+                        String reason) {
+}
@@ -0,0 +1,297 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+import ru.melnikov.telegrambot.model.Schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * План текущего дня (DailyPlan), общий для команды /today, рассылок расписания и напоминаний.
+ * <p>
+ * Тип недели, выборка пар дня с фильтром по типу недели и тексты расписания считаются
+ * один раз: в полночь, при изменении расписания (ScheduleChangedEvent) и настроек
+ * (ConfigChangedEvent). Потребители читают готовый план, не обращаясь к БД.
+ * Если смена дня наступила раньше, чем сработал cron, план пересобирается при первом чтении.
+ */
+@Slf4j
+@Service
+public class DailyPlanService {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final Locale RUSSIAN_LOCALE = new Locale("ru");
+
+    private final ScheduleService scheduleService;
+    private final WeekTypeService weekTypeService;
+
+    private volatile DailyPlan plan;
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private volatile long lastBuildMillis;
+
+    public DailyPlanService(ScheduleService scheduleService, WeekTypeService weekTypeService) {
+        this.scheduleService = scheduleService;
+        this.weekTypeService = weekTypeService;
+    }
+
+    /**
+     * План на сегодня
+     */
+    public DailyPlan current() {
+        reads.incrementAndGet();
+        DailyPlan current = plan;
+        if (current == null || !current.date().equals(LocalDate.now())) {
+            current = rebuildIfStale();
+        }
+        return current;
+    }
+
+    @Scheduled(cron = "0 0 0 * * *", scheduler = SchedulingConfig.REMINDERS)
+    public void onDayRollover() {
+        // План мог уже пересобрать читатель, пришедший после полуночи раньше cron
+        rebuildIfStale();
+    }
+
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        rebuild("изменение расписания: " + event.reason());
+    }
+
+    @EventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        rebuild("изменение настройки " + event.path());
+    }
+
+    /**
+     * Повторная проверка под блокировкой: читатели, пришедшие после полуночи одновременно,
+     * дождутся одной пересборки, а не запустят каждый свою
+     */
+    private synchronized DailyPlan rebuildIfStale() {
+        DailyPlan current = plan;
+        if (current != null && current.date().equals(LocalDate.now())) {
+            return current;
+        }
+        return rebuild(current == null ? "первое обращение" : "смена дня");
+    }
+
+    public synchronized DailyPlan rebuild(String reason) {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        String weekType = weekTypeService.getWeekTypeForDate(today);
+        String weekTypeDisplay = weekTypeService.getWeekTypeDisplayName(weekType);
+        String weekTypeEmoji = weekTypeService.getWeekTypeEmoji(weekType);
+
+        List<Schedule> classes = scheduleService.findEntitiesByDay(today.getDayOfWeek().getValue()).stream()
+                .filter(s -> {
+                    String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
+                    return scheduleWeekType.equals(weekType) || scheduleWeekType.equals("all");
+                })
+                .sorted(Comparator.comparing(Schedule::getTimeStart))
+                .toList();
+
+        String dayName = today.getDayOfWeek().getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE);
+        DailyPlan built = new DailyPlan(today, weekType, weekTypeDisplay, weekTypeEmoji, classes,
+                renderScheduleText(dayName, weekTypeEmoji, weekTypeDisplay, classes),
+                renderTodayText(dayName, weekTypeEmoji, weekTypeDisplay, classes),
+                LocalDateTime.now(), reason);
+        plan = built;
+
+        builds.incrementAndGet();
+        lastBuildMillis = System.currentTimeMillis() - start;
+        log.info("🗓️ План дня {} построен ({}): тип недели {}, пар {}, за {} мс",
+                today, reason, weekType, classes.size(), lastBuildMillis);
+        return built;
+    }
+
+    public Map<String, Object> getStats() {
+        DailyPlan current = plan;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("date", current != null ? current.date() : null);
+        stats.put("weekType", current != null ? current.weekType() : null);
+        stats.put("classes", current != null ? current.classes().size() : 0);
+        stats.put("builtAt", current != null ? current.builtAt() : null);
+        stats.put("reason", current != null ? current.reason() : null);
+        stats.put("builds", builds.get());
+        stats.put("reads", reads.get());
+        stats.put("lastBuildMillis", lastBuildMillis);
+        return stats;
+    }
+
+    // ====== ТЕКСТЫ ======
+
+    /**
+     * Расписание на сегодня для рассылки
+     */
+    private String renderScheduleText(String dayName, String weekTypeEmoji, String weekTypeDisplay,
+                                      List<Schedule> classes) {
+        if (classes.isEmpty()) {
+            return String.format("""
+                📭 *Сегодня занятий нет!* 📭
+                📅 *День:* %s
+                🗓️ *Тип недели:* %s %s
+
+                🎉 *Можно отдохнуть или заняться саморазвитием*
+                """,
+                    dayName,
+                    weekTypeEmoji, weekTypeDisplay);
+        }
+
+        StringBuilder scheduleText = new StringBuilder();
+        scheduleText.append("📋 *РАСПИСАНИЕ НА СЕГОДНЯ*\n")
+                .append(String.format("📅 *День:* %s\n", dayName))
+                .append(String.format("🗓️ *Тип недели:* %s %s\n\n",
+                        weekTypeEmoji, weekTypeDisplay));
+
+        for (int i = 0; i < classes.size(); i++) {
+            Schedule s = classes.get(i);
+            String timeRange = String.format("%s-%s",
+                    s.getTimeStart().format(TIME_FORMATTER),
+                    s.getTimeEnd().format(TIME_FORMATTER));
+
+            String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
+            String pairWeekTypeEmoji = "odd".equals(scheduleWeekType) ? "1️⃣" :
+                    "even".equals(scheduleWeekType) ? "2️⃣" : "🔄";
+            String onlineEmoji = Boolean.TRUE.equals(s.getIsOnline()) ? "💻" : "🏫";
+
+            scheduleText.append(String.format("%d. %s %s\n", i + 1, pairWeekTypeEmoji, onlineEmoji))
+                    .append(String.format("   ⏰ *%s*\n", timeRange))
+                    .append(String.format("   📖 %s\n", s.getSubject()));
+
+            if (s.getTeacher() != null && !s.getTeacher().isBlank()) {
+                scheduleText.append(String.format("   👨‍🏫 %s\n", s.getTeacher()));
+            }
+
+            if (s.getLocation() != null && !s.getLocation().isBlank()) {
+                String location = Boolean.TRUE.equals(s.getIsOnline()) ? "Онлайн" : s.getLocation();
+                scheduleText.append(String.format("   📍 %s\n", location));
+            }
+
+            scheduleText.append("\n");
+        }
+
+        return scheduleText.toString();
+    }
+
+    /**
+     * Ответ на /today: пары, статистика дня и подсказки по командам
+     */
+    private String renderTodayText(String dayName, String weekTypeEmoji, String weekTypeDisplay,
+                                   List<Schedule> classes) {
+        if (classes.isEmpty()) {
+            return String.format("""
+                📭 *Сегодня занятий нет!* 📭
+                📅 *День:* %s
+                🗓️ *Тип недели:* %s %s
+
+                🎉 *Можно отдохнуть или заняться саморазвитием:*
+                • Повторите пройденный материал
+                • Подготовьтесь к будущим занятиям
+                • Отдохните и наберитесь сил
+
+                💡 *Что дальше?*
+                /day [1-7] – посмотреть другой день
+                /deadlines – проверить дедлайны
+                """,
+                    dayName,
+                    weekTypeEmoji, weekTypeDisplay);
+        }
+
+        StringBuilder scheduleText = new StringBuilder();
+
+        for (int i = 0; i < classes.size(); i++) {
+            Schedule s = classes.get(i);
+            String timeRange = String.format("%s-%s",
+                    s.getTimeStart().format(TIME_FORMATTER),
+                    s.getTimeEnd().format(TIME_FORMATTER));
+
+            String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
+
+            // Эмодзи для каждой пары
+            String pairWeekTypeEmoji;
+            String pairWeekTypeText;
+
+            if ("odd".equals(scheduleWeekType)) {
+                pairWeekTypeEmoji = "1️⃣";
+                pairWeekTypeText = "числитель";
+            } else if ("even".equals(scheduleWeekType)) {
+                pairWeekTypeEmoji = "2️⃣";
+                pairWeekTypeText = "знаменатель";
+            } else {
+                pairWeekTypeEmoji = "🔄";
+                pairWeekTypeText = "обе недели";
+            }
+
+            String onlineEmoji = Boolean.TRUE.equals(s.getIsOnline()) ? "💻" : "🏫";
+
+            scheduleText.append(String.format("%d. %s %s\n", i + 1, pairWeekTypeEmoji, onlineEmoji))
+                    .append(String.format("   ⏰ *%s*\n", timeRange))
+                    .append(String.format("   📖 %s (%s)\n", s.getSubject(), pairWeekTypeText));
+
+            if (s.getTeacher() != null && !s.getTeacher().isBlank()) {
+                scheduleText.append(String.format("   👨‍🏫 %s\n", s.getTeacher()));
+            }
+
+            if (s.getLocation() != null && !s.getLocation().isBlank()) {
+                String location = Boolean.TRUE.equals(s.getIsOnline()) ? "Онлайн" : s.getLocation();
+                scheduleText.append(String.format("   📍 %s\n", location));
+            }
+
+            scheduleText.append("\n");
+        }
+
+        int totalPairs = classes.size();
+        int onlinePairs = (int) classes.stream()
+                .filter(s -> Boolean.TRUE.equals(s.getIsOnline()))
+                .count();
+        int offlinePairs = totalPairs - onlinePairs;
+
+        LocalTime firstTime = classes.get(0).getTimeStart();
+        LocalTime lastTime = classes.stream()
+                .map(Schedule::getTimeEnd)
+                .max(LocalTime::compareTo)
+                .orElse(null);
+
+        return String.format("""
+            📋 *РАСПИСАНИЕ НА СЕГОДНЯ* 📋
+            📅 *День:* %s
+            🗓️ *Тип недели:* %s %s
+
+            %s
+
+            📊 *Статистика дня:*
+            📝 Всего пар: %d
+            🏫 Очных: %d
+            💻 Онлайн: %d
+
+            ⏰ *Временные границы:*
+            🕐 Начало: %s
+            🕔 Конец: %s
+
+            💡 *Другие команды:*
+            /day [1-7] – другой день недели
+            /deadlines – дедлайны работ
+            """,
+                dayName.substring(0, 1).toUpperCase() + dayName.substring(1),
+                weekTypeEmoji, weekTypeDisplay,
+                scheduleText.toString(),
+                totalPairs,
+                offlinePairs,
+                onlinePairs,
+                firstTime.format(TIME_FORMATTER),
+                lastTime != null ? lastTime.format(TIME_FORMATTER) : "—");
+    }
+}
@@ -0,0 +1,8 @@
+package ru.melnikov.telegrambot.service;
+
+/**
+ * Дедлайн создан, изменен или удален.
+ * Публикуется после сохранения — DeadlineReminderEngine перечитывает только этот дедлайн
+ */
+public record DeadlineChangedEvent(Long deadlineId) {
+}
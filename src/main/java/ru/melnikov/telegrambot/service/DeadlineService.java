@@ -1,23 +1,41 @@
 package ru.melnikov.telegrambot.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.DeadlineDto;
+import ru.melnikov.telegrambot.dto.DeadlineSummaryDto;
+import ru.melnikov.telegrambot.dto.DeadlineView;
 import ru.melnikov.telegrambot.mapper.DeadlineMapper;
 import ru.melnikov.telegrambot.model.Deadline;
 import ru.melnikov.telegrambot.repository.DeadlineRepository;
 import ru.melnikov.telegrambot.util.DeadlineFormatter;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Дедлайны. Каждое изменение публикует DeadlineChangedEvent —
+ * DeadlineReminderEngine обновляет напоминания только этого дедлайна
+ */
 @Service
 @RequiredArgsConstructor
 public class DeadlineService {
 
+    /**
+     * Сколько дней просроченный дедлайн остается в "актуальных"
+     */
+    public static final int OVERDUE_VISIBLE_DAYS = 7;
+
     private final DeadlineRepository deadlineRepository;
     private final DeadlineMapper deadlineMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BotSettingsConfig settingsConfig;
 
     public List<DeadlineDto> findAll() {
         return deadlineRepository.findAll()
@@ -26,6 +44,35 @@ public class DeadlineService {
                 .toList();
     }
 
+    /**
+     * Страница дедлайнов для админки (keyset по id)
+     */
+    public CursorPage<DeadlineSummaryDto> findPage(Long after, Integer limit, LocalDateTime from) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return CursorPage.of(
+                deadlineRepository.findSummaries(CursorPage.startAfter(after), from, Limit.of(pageSize + 1)),
+                pageSize, DeadlineSummaryDto::id);
+    }
+
+    /**
+     * Дедлайны в окне [from, to), по возрастанию даты. to == null — без верхней границы.
+     * Общая точка для команд бота, рассылок и напоминаний
+     */
+    public List<DeadlineView> findWindow(LocalDateTime from, LocalDateTime to) {
+        return to != null
+                ? deadlineRepository.findWindow(from, to)
+                : deadlineRepository.findFrom(from);
+    }
+
+    /**
+     * Актуальные дедлайны: будущие в пределах telegram.reminders.deadlines.actual-horizon
+     * и просроченные не более чем на OVERDUE_VISIBLE_DAYS дней
+     */
+    public List<DeadlineView> findActual(LocalDateTime now) {
+        Duration horizon = settingsConfig.getReminders().getDeadlines().getActualHorizon();
+        return findWindow(now.minusDays(OVERDUE_VISIBLE_DAYS), now.plus(horizon));
+    }
+
     public List<Deadline> findUpcoming() {
         List<Deadline> deadlines = deadlineRepository.findByDeadlineAtAfter(LocalDateTime.now());
         deadlines.sort(Comparator.comparing(Deadline::getDeadlineAt));
@@ -61,11 +108,14 @@ public class DeadlineService {
             entity = deadlineMapper.toEntity(dto);
         }
 
-        return deadlineMapper.toDto(deadlineRepository.save(entity));
+        Deadline saved = deadlineRepository.save(entity);
+        eventPublisher.publishEvent(new DeadlineChangedEvent(saved.getId()));
+        return deadlineMapper.toDto(saved);
     }
 
     public void delete(Long id) {
         deadlineRepository.deleteById(id);
+        eventPublisher.publishEvent(new DeadlineChangedEvent(id));
     }
 
     public String formatDeadlines() {
@@ -1,8 +1,11 @@
 package ru.melnikov.telegrambot.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.LinkDto;
+import ru.melnikov.telegrambot.dto.LinkSummaryDto;
 import ru.melnikov.telegrambot.mapper.LinkMapper;
 import ru.melnikov.telegrambot.model.Link;
 import ru.melnikov.telegrambot.repository.LinkRepository;
@@ -24,6 +27,19 @@ public class LinkService {
                 .toList();
     }
 
+    /**
+     * Страница ссылок для админки (keyset по id)
+     */
+    public CursorPage<LinkSummaryDto> findPage(Long after, Integer limit, Long userId) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return CursorPage.of(findSummaries(CursorPage.startAfter(after), userId, pageSize + 1),
+                pageSize, LinkSummaryDto::id);
+    }
+
+    public List<LinkSummaryDto> findSummaries(long after, Long userId, int limit) {
+        return linkRepository.findSummaries(after, userId, Limit.of(limit));
+    }
+
     public LinkDto save(LinkDto dto) {
         Link entity = linkMapper.toEntity(dto);
         entity.setCreatedBy(userService.getByIdOrThrow(dto.getCreatedBy()));
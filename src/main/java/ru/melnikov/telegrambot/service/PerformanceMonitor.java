@@ -3,7 +3,6 @@ package ru.melnikov.telegrambot.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import ru.melnikov.telegrambot.repository.CommandLogRepository;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -14,12 +13,14 @@ import java.util.concurrent.atomic.AtomicLong;
 @Service
 public class PerformanceMonitor {
 
-    private final CommandLogRepository commandLogRepository;
+    private final CommandLogService commandLogService;
+    private final CommandLogWriter commandLogWriter;
     private final ConcurrentHashMap<String, AtomicLong> commandCounters = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, AtomicLong> errorCounters = new ConcurrentHashMap<>();
 
-    public PerformanceMonitor(CommandLogRepository commandLogRepository) {
-        this.commandLogRepository = commandLogRepository;
+    public PerformanceMonitor(CommandLogService commandLogService, CommandLogWriter commandLogWriter) {
+        this.commandLogService = commandLogService;
+        this.commandLogWriter = commandLogWriter;
     }
 
     public void incrementCommand(String command) {
@@ -35,18 +36,26 @@ public class PerformanceMonitor {
      */
     @Scheduled(cron = "0 0 * * * *") // Каждый час
     public void generateHourlyReport() {
-        LocalDateTime oneHourAgo = LocalDateTime.now().minus(1, ChronoUnit.HOURS);
-        LocalDateTime now = LocalDateTime.now();
+        // Ровно прошедший час — совпадает с одной часовой строкой агрегатов
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime oneHourAgo = now.minus(1, ChronoUnit.HOURS);
 
-        Long totalCommands = commandLogRepository.countByPeriod(oneHourAgo, now);
+        // Из часовых/минутных агрегатов, а не COUNT по сырым логам
+        CommandLogService.CommandStatistics statistics = commandLogService.getStatistics(oneHourAgo, now);
 
         log.info("""
                 📊 ОТЧЕТ О ПРОИЗВОДИТЕЛЬНОСТИ (последний час)
                 Всего команд: {}
+                Ошибок: {}
+                Среднее время: {} мс
+                Запись журнала: {}
                 Статистика в памяти:
                 {}
                 """,
-                totalCommands,
+                statistics.getTotalCommands(),
+                statistics.getTotalErrors(),
+                String.format("%.1f", statistics.getAvgExecutionTime()),
+                commandLogWriter.getStats(),
                 getMemoryStats());
     }
 
@@ -57,8 +66,7 @@ public class PerformanceMonitor {
     public void dailyCleanupAndReport() {
         log.info("🧹 Начало ежедневной очистки логов...");
 
-        // Очистка логов старше 30 дней
-        // cleanupOldLogs(30); // Раскомментировать когда будет реализовано
+        // Логи старше срока хранения удаляются целыми секциями — см. CommandLogPartitionService
 
         log.info("✅ Ежедневная очистка завершена");
 
@@ -0,0 +1,8 @@
+package ru.melnikov.telegrambot.service;
+
+/**
+ * Напоминание из таблицы reminders создано, изменено или удалено.
+ * Публикуется после сохранения — ReminderEngine перечитывает только это напоминание
+ */
+public record ReminderChangedEvent(Long reminderId) {
+}
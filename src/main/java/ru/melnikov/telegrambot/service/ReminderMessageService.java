@@ -8,20 +8,18 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardRem
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.melnikov.telegrambot.bot.TelegramBot;
 import ru.melnikov.telegrambot.config.BotSettingsConfig;
-import ru.melnikov.telegrambot.model.BotChat;
-import ru.melnikov.telegrambot.model.Deadline;
+import ru.melnikov.telegrambot.dto.DeadlineView;
 import ru.melnikov.telegrambot.model.Schedule;
 import ru.melnikov.telegrambot.repository.BotChatRepository;
-import ru.melnikov.telegrambot.repository.DeadlineRepository;
-import ru.melnikov.telegrambot.repository.ScheduleRepository;
+import ru.melnikov.telegrambot.service.BroadcastTargetReader.Audience;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -30,13 +28,12 @@ public class ReminderMessageService {
 
     private final TelegramBot telegramBot;
     private final BotChatRepository botChatRepository;
-    private final ScheduleRepository scheduleRepository;
-    private final DeadlineRepository deadlineRepository;
     private final WeekTypeService weekTypeService;
     private final BotSettingsConfig settingsConfig;
     private final BotChatService botChatService;
-    private final ScheduleService scheduleService;
     private final DeadlineService deadlineService;
+    private final DailyPlanService dailyPlanService;
+    private final BroadcastTargetReader broadcastTargetReader;
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     private static final DateTimeFormatter TIME_FORMATTER_LONG = DateTimeFormatter.ofPattern("HH:mm:ss");
@@ -262,47 +259,25 @@ public class ReminderMessageService {
     // ====== ОСНОВНЫЕ МЕТОДЫ ОТПРАВКИ ======
 
     /**
-     * Отправляет расписание на сегодня во все активные чаты
+     * Отправляет расписание на сегодня во все активные чаты с включенной рассылкой расписания
      */
     public void sendDailyScheduleToAllChats() {
         log.info("📅 Запуск отправки ежедневного расписания...");
 
-        List<BotChat> activeChats = botChatService.findAllActiveChats();
+        int sent = broadcast(Audience.SCHEDULE, formatDailySchedule(), "расписания");
 
-        for (BotChat chat : activeChats) {
-            try {
-                if (shouldSendScheduleToChat(chat)) {
-                    sendScheduleToChat(chat.getChatId());
-                    Thread.sleep(100);
-                }
-            } catch (Exception e) {
-                log.error("Ошибка отправки расписания в чат {}: {}", chat.getChatId(), e.getMessage());
-            }
-        }
-
-        log.info("✅ Ежедневное расписание отправлено в {} чатов", activeChats.size());
+        log.info("✅ Ежедневное расписание отправлено в {} чатов", sent);
     }
 
     /**
-     * Отправляет дедлайны во все активные чаты
+     * Отправляет дедлайны во все активные чаты с включенной рассылкой дедлайнов
      */
     public void sendWeeklyDeadlinesToAllChats() {
         log.info("⏰ Запуск отправки недельных дедлайнов...");
 
-        List<BotChat> activeChats = botChatService.findAllActiveChats();
-
-        for (BotChat chat : activeChats) {
-            try {
-                if (shouldSendDeadlinesToChat(chat)) {
-                    sendDeadlinesToChat(chat.getChatId());
-                    Thread.sleep(100);
-                }
-            } catch (Exception e) {
-                log.error("Ошибка отправки дедлайнов в чат {}: {}", chat.getChatId(), e.getMessage());
-            }
-        }
+        int sent = broadcast(Audience.DEADLINES, formatDeadlines(), "дедлайнов");
 
-        log.info("✅ Недельные дедлайны отправлены в {} чатов", activeChats.size());
+        log.info("✅ Недельные дедлайны отправлены в {} чатов", sent);
     }
 
     /**
@@ -310,12 +285,11 @@ public class ReminderMessageService {
      */
     public void sendClassReminder(Long chatId, Schedule schedule, int minutesBefore) {
         try {
-            Optional<Integer> botTopicId = botChatService.getBotTopicId(chatId);
-
             // Используем единый метод генерации
             String reminderText = generateClassReminderMessage(schedule, minutesBefore);
 
-            sendMessageToChat(chatId, botTopicId.orElse(null), reminderText, false);
+            // Тему бота определит sendMessageToChat
+            sendMessageToChat(chatId, reminderText);
 
             log.info("✅ Напоминание отправлено в чат {}: '{}' за {} минут",
                     chatId, schedule.getSubject(), minutesBefore);
@@ -337,8 +311,10 @@ public class ReminderMessageService {
      */
     public void sendMessageToChat(Long chatId, Integer messageThreadId, String text, boolean removeKeyboard) {
         try {
-            Optional<Integer> botTopicId = botChatService.getBotTopicId(chatId);
-            Integer targetTopicId = messageThreadId != null ? messageThreadId : botTopicId.orElse(null);
+            // Тему бота ищем только если явная тема не передана
+            Integer targetTopicId = messageThreadId != null
+                    ? messageThreadId
+                    : botChatService.getBotTopicId(chatId).orElse(null);
 
             SendMessage.SendMessageBuilder builder = SendMessage.builder()
                     .chatId(chatId)
@@ -371,9 +347,8 @@ public class ReminderMessageService {
      */
     public void sendScheduleToChat(Long chatId) {
         try {
-            Optional<Integer> botTopicId = botChatService.getBotTopicId(chatId);
             String scheduleText = formatDailySchedule();
-            sendMessageToChat(chatId, botTopicId.orElse(null), scheduleText, false);
+            sendMessageToChat(chatId, scheduleText);
         } catch (Exception e) {
             log.error("Ошибка отправки расписания в чат {}: {}", chatId, e.getMessage(), e);
         }
@@ -384,9 +359,8 @@ public class ReminderMessageService {
      */
     public void sendDeadlinesToChat(Long chatId) {
         try {
-            Optional<Integer> botTopicId = botChatService.getBotTopicId(chatId);
             String deadlinesText = formatDeadlines();
-            sendMessageToChat(chatId, botTopicId.orElse(null), deadlinesText, false);
+            sendMessageToChat(chatId, deadlinesText);
         } catch (Exception e) {
             log.error("Ошибка отправки дедлайнов в чат {}: {}", chatId, e.getMessage(), e);
         }
@@ -452,23 +426,14 @@ public class ReminderMessageService {
      * Генерирует сообщение с расписанием на сегодня
      */
     public String generateTodayScheduleMessage() {
-        LocalDate today = LocalDate.now();
-        String currentWeekType = weekTypeService.getCurrentWeekType();
-        String weekTypeDisplay = weekTypeService.getWeekTypeDisplayName(currentWeekType);
-        String weekTypeEmoji = weekTypeService.getWeekTypeEmoji(currentWeekType);
+        DailyPlan plan = dailyPlanService.current();
+        String weekTypeDisplay = plan.weekTypeDisplay();
+        String weekTypeEmoji = plan.weekTypeEmoji();
 
-        int dayNumber = today.getDayOfWeek().getValue();
-        String dayName = today.getDayOfWeek().getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE);
+        String dayName = plan.date().getDayOfWeek().getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE);
         dayName = dayName.substring(0, 1).toUpperCase() + dayName.substring(1);
 
-        List<Schedule> allScheduleList = scheduleRepository.findByDayOfWeek(dayNumber);
-        List<Schedule> filteredScheduleList = allScheduleList.stream()
-                .filter(s -> {
-                    String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
-                    return scheduleWeekType.equals(currentWeekType) || scheduleWeekType.equals("all");
-                })
-                .sorted(Comparator.comparing(Schedule::getTimeStart))
-                .collect(Collectors.toList());
+        List<Schedule> filteredScheduleList = plan.classes();
 
         if (filteredScheduleList.isEmpty()) {
             return String.format("""
@@ -536,13 +501,7 @@ public class ReminderMessageService {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime twoWeeksLater = now.plusDays(14);
 
-        List<Deadline> deadlines = deadlineRepository.findAll().stream()
-                .filter(d -> {
-                    LocalDateTime deadlineAt = d.getDeadlineAt();
-                    return deadlineAt.isAfter(now) && deadlineAt.isBefore(twoWeeksLater);
-                })
-                .sorted(Comparator.comparing(Deadline::getDeadlineAt))
-                .collect(Collectors.toList());
+        List<DeadlineView> deadlines = deadlineService.findWindow(now, twoWeeksLater);
 
         if (deadlines.isEmpty()) {
             return """
@@ -561,7 +520,7 @@ public class ReminderMessageService {
         int futureCount = 0;
 
         for (int i = 0; i < deadlines.size(); i++) {
-            Deadline d = deadlines.get(i);
+            DeadlineView d = deadlines.get(i);
             LocalDateTime deadlineTime = d.getDeadlineAt();
             long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(
                     now.toLocalDate(),
@@ -717,121 +676,40 @@ public class ReminderMessageService {
     }
 
     /**
-     * Проверяет, нужно ли отправлять расписание в чат
+     * Рассылка одного текста по мере чтения получателей из БД: тема каждого
+     * получателя приходит вместе с ним, поэтому настройки чатов повторно не читаются
      */
-    private boolean shouldSendScheduleToChat(BotChat chat) {
-        if (chat == null || !Boolean.TRUE.equals(chat.getIsActive())) {
-            return false;
-        }
-
-        Map<String, Object> settings = chat.getSettings();
-        if (settings == null) {
-            return true;
-        }
-
-        return (boolean) settings.getOrDefault("schedule_notifications", true);
+    private int broadcast(Audience audience, String text, String what) {
+        int[] sent = {0};
+        broadcastTargetReader.forEach(audience, target -> {
+            try {
+                sendMessageToChat(target.chatId(), target.topicId(), text, false);
+                sent[0]++;
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                // Флаг прерывания остановит обход получателей
+                Thread.currentThread().interrupt();
+                log.warn("⚠️ Рассылка {} прервана после {} чатов", what, sent[0]);
+            } catch (Exception e) {
+                log.error("Ошибка отправки {} в чат {}: {}", what, target.chatId(), e.getMessage());
+            }
+        });
+        return sent[0];
     }
 
     /**
-     * Проверяет, нужно ли отправлять дедлайны в чат
+     * Расписание на сегодня (текст один для всех чатов, готов в плане дня)
      */
-    private boolean shouldSendDeadlinesToChat(BotChat chat) {
-        if (chat == null || !Boolean.TRUE.equals(chat.getIsActive())) {
-            return false;
-        }
-
-        Map<String, Object> settings = chat.getSettings();
-        if (settings == null) {
-            return true;
-        }
-
-        return (boolean) settings.getOrDefault("deadline_notifications", true);
+    public String formatDailySchedule() {
+        return dailyPlanService.current().scheduleText();
     }
 
     /**
-     * Форматирует расписание на сегодня
+     * Форматирует дедлайны (текст один для всех чатов)
      */
-    private String formatDailySchedule() {
-        LocalDate today = LocalDate.now();
-        int dayNumber = today.getDayOfWeek().getValue();
-        String currentWeekType = weekTypeService.getCurrentWeekType();
-        String weekTypeDisplay = weekTypeService.getWeekTypeDisplayName(currentWeekType);
-        String weekTypeEmoji = weekTypeService.getWeekTypeEmoji(currentWeekType);
-
-        List<Schedule> allScheduleList = scheduleService.findEntitiesByDay(dayNumber);
-        List<Schedule> filteredScheduleList = allScheduleList.stream()
-                .filter(s -> {
-                    String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
-                    return scheduleWeekType.equals(currentWeekType) || scheduleWeekType.equals("all");
-                })
-                .sorted(Comparator.comparing(Schedule::getTimeStart))
-                .toList();
-
-        if (filteredScheduleList.isEmpty()) {
-            return String.format("""
-                📭 *Сегодня занятий нет!* 📭
-                📅 *День:* %s
-                🗓️ *Тип недели:* %s %s
-                
-                🎉 *Можно отдохнуть или заняться саморазвитием*
-                """,
-                    today.getDayOfWeek().getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE),
-                    weekTypeEmoji, weekTypeDisplay);
-        }
-
-        StringBuilder scheduleText = new StringBuilder();
-        scheduleText.append(String.format("📋 *РАСПИСАНИЕ НА СЕГОДНЯ*\n"))
-                .append(String.format("📅 *День:* %s\n",
-                        today.getDayOfWeek().getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE)))
-                .append(String.format("🗓️ *Тип недели:* %s %s\n\n",
-                        weekTypeEmoji, weekTypeDisplay));
-
-        for (int i = 0; i < filteredScheduleList.size(); i++) {
-            Schedule s = filteredScheduleList.get(i);
-            String timeRange = String.format("%s-%s",
-                    s.getTimeStart().format(TIME_FORMATTER),
-                    s.getTimeEnd().format(TIME_FORMATTER));
-
-            String scheduleWeekType = s.getWeekType() != null ? s.getWeekType() : "all";
-            String pairWeekTypeEmoji = "odd".equals(scheduleWeekType) ? "1️⃣" :
-                    "even".equals(scheduleWeekType) ? "2️⃣" : "🔄";
-            String onlineEmoji = Boolean.TRUE.equals(s.getIsOnline()) ? "💻" : "🏫";
-
-            scheduleText.append(String.format("%d. %s %s\n", i + 1, pairWeekTypeEmoji, onlineEmoji))
-                    .append(String.format("   ⏰ *%s*\n", timeRange))
-                    .append(String.format("   📖 %s\n", s.getSubject()));
-
-            if (s.getTeacher() != null && !s.getTeacher().isBlank()) {
-                scheduleText.append(String.format("   👨‍🏫 %s\n", s.getTeacher()));
-            }
-
-            if (s.getLocation() != null && !s.getLocation().isBlank()) {
-                String location = Boolean.TRUE.equals(s.getIsOnline()) ? "Онлайн" : s.getLocation();
-                scheduleText.append(String.format("   📍 %s\n", location));
-            }
-
-            scheduleText.append("\n");
-        }
-
-        return scheduleText.toString();
-    }
-
-    /**
-     * Форматирует дедлайны
-     */
-    private String formatDeadlines() {
-        List<Deadline> allDeadlines = deadlineService.findAllDeadlinesSorted();
+    public String formatDeadlines() {
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime sevenDaysAgo = now.minusDays(7);
-
-        List<Deadline> filteredDeadlines = allDeadlines.stream()
-                .filter(d -> {
-                    LocalDateTime deadlineTime = d.getDeadlineAt();
-                    return deadlineTime.isAfter(now) ||
-                            (deadlineTime.isBefore(now) && deadlineTime.isAfter(sevenDaysAgo));
-                })
-                .sorted((d1, d2) -> d1.getDeadlineAt().compareTo(d2.getDeadlineAt()))
-                .toList();
+        List<DeadlineView> filteredDeadlines = deadlineService.findActual(now);
 
         if (filteredDeadlines.isEmpty()) {
             return """
@@ -846,7 +724,7 @@ public class ReminderMessageService {
         deadlinesText.append("⏰ *АКТУАЛЬНЫЕ ДЕДЛАЙНЫ*\n\n");
 
         for (int i = 0; i < filteredDeadlines.size(); i++) {
-            Deadline deadline = filteredDeadlines.get(i);
+            DeadlineView deadline = filteredDeadlines.get(i);
             LocalDateTime deadlineTime = deadline.getDeadlineAt();
             long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(
                     now.toLocalDate(),
@@ -892,4 +770,41 @@ public class ReminderMessageService {
 
         return deadlinesText.toString();
     }
+
+    /**
+     * Напоминание о приближающихся дедлайнах: все, что наступило в одну минуту, — одним сообщением
+     */
+    public String formatDeadlineReminders(List<DeadlineView> deadlines, LocalDateTime now) {
+        StringBuilder text = new StringBuilder();
+        text.append(deadlines.size() == 1 ? "🔔 *Скоро дедлайн*\n\n" : "🔔 *Скоро дедлайны*\n\n");
+
+        for (DeadlineView deadline : deadlines) {
+            Duration left = Duration.between(now, deadline.getDeadlineAt());
+            String emoji = left.toHours() < 24 ? "🔴" : left.toDays() <= 2 ? "🟡" : "🟢";
+
+            text.append(String.format("%s *%s*\n", emoji, deadline.getTitle()))
+                    .append(String.format("   📅 %s\n", deadline.getDeadlineAt().format(DATETIME_FORMATTER)));
+
+            if (deadline.getLinkUrl() != null && !deadline.getLinkUrl().isBlank()) {
+                String linkText = deadline.getLinkText() != null && !deadline.getLinkText().isBlank() ?
+                        deadline.getLinkText() : "Ссылка на задание";
+                text.append(String.format("   🔗 [%s](%s)\n", linkText, deadline.getLinkUrl()));
+            }
+
+            text.append(String.format("   ⏳ Осталось %s\n\n", formatTimeLeft(left)));
+        }
+
+        return text.toString();
+    }
+
+    private static String formatTimeLeft(Duration left) {
+        if (left.toDays() >= 1) {
+            long hours = left.toHoursPart();
+            return hours > 0 ? String.format("%d д. %d ч.", left.toDays(), hours) : left.toDays() + " д.";
+        }
+        if (left.toHours() >= 1) {
+            return left.toHours() + " ч.";
+        }
+        return Math.max(1, left.toMinutes()) + " мин.";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.dto.ReminderDto;
+import ru.melnikov.telegrambot.exception.NotFoundException;
+import ru.melnikov.telegrambot.mapper.ReminderMapper;
+import ru.melnikov.telegrambot.model.Reminder;
+import ru.melnikov.telegrambot.repository.ReminderRepository;
+
+import java.util.List;
+
+/**
+ * Напоминания чатов с собственным временем (таблица reminders).
+ * Каждое изменение публикует ReminderChangedEvent — ReminderEngine обновляет только его
+ */
+@Service
+@RequiredArgsConstructor
+public class ReminderService {
+
+    private final ReminderRepository reminderRepository;
+    private final ReminderMapper reminderMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public List<ReminderDto> findByChat(Long chatId) {
+        return reminderRepository.findByChatIdOrderById(chatId)
+                .stream()
+                .map(reminderMapper::toDto)
+                .toList();
+    }
+
+    public ReminderDto findById(Long id) {
+        return reminderMapper.toDto(findEntityById(id));
+    }
+
+    public ReminderDto create(ReminderDto dto) {
+        Reminder entity = reminderMapper.toEntity(dto);
+        entity.setId(null);
+        entity.setLastSentAt(null);
+
+        Reminder saved = reminderRepository.save(entity);
+        eventPublisher.publishEvent(new ReminderChangedEvent(saved.getId()));
+        return reminderMapper.toDto(saved);
+    }
+
+    public ReminderDto update(Long id, ReminderDto dto) {
+        Reminder existing = findEntityById(id);
+
+        existing.setChatId(dto.getChatId());
+        existing.setReminderType(dto.getReminderType());
+        existing.setScheduleTime(dto.getScheduleTime());
+        existing.setDaysOfWeek(dto.getDaysOfWeek() != null ? dto.getDaysOfWeek() : existing.getDaysOfWeek());
+        existing.setIsActive(dto.getIsActive() != null ? dto.getIsActive() : existing.getIsActive());
+        existing.setConfig(dto.getConfig());
+        // lastSentAt ведет ReminderEngine
+
+        Reminder saved = reminderRepository.save(existing);
+        eventPublisher.publishEvent(new ReminderChangedEvent(saved.getId()));
+        return reminderMapper.toDto(saved);
+    }
+
+    public void delete(Long id) {
+        if (!reminderRepository.existsById(id)) {
+            throw new NotFoundException("Напоминание с id=" + id + " не найдено");
+        }
+        reminderRepository.deleteById(id);
+        eventPublisher.publishEvent(new ReminderChangedEvent(id));
+    }
+
+    private Reminder findEntityById(Long id) {
+        return reminderRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Напоминание с id=" + id + " не найдено"));
+    }
+}
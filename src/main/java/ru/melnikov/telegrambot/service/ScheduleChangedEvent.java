@@ -0,0 +1,8 @@
+package ru.melnikov.telegrambot.service;
+
+/**
+ * Расписание изменилось (создание, правка, удаление, массовый импорт).
+ * Публикуется после сохранения — по нему перестраиваются планы напоминаний
+ */
+public record ScheduleChangedEvent(String reason) {
+}
@@ -1,8 +1,12 @@
 package ru.melnikov.telegrambot.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.dto.CursorPage;
 import ru.melnikov.telegrambot.dto.ScheduleDto;
+import ru.melnikov.telegrambot.dto.ScheduleSummaryDto;
 import ru.melnikov.telegrambot.exception.NotFoundException;
 import ru.melnikov.telegrambot.mapper.ScheduleMapper;
 import ru.melnikov.telegrambot.model.Schedule;
@@ -18,6 +22,7 @@ public class ScheduleService {
 
     private final ScheduleRepository scheduleRepository;
     private final ScheduleMapper scheduleMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<ScheduleDto> findByDay(Integer dayOfWeek) {
         return scheduleRepository.findByDayOfWeek(dayOfWeek)
@@ -58,7 +63,9 @@ public class ScheduleService {
 
     public ScheduleDto save(ScheduleDto scheduleDto) {
         Schedule schedule = scheduleMapper.toEntity(scheduleDto);
-        return scheduleMapper.toDto(scheduleRepository.save(schedule));
+        ScheduleDto saved = scheduleMapper.toDto(scheduleRepository.save(schedule));
+        eventPublisher.publishEvent(new ScheduleChangedEvent("добавлена пара " + saved.getId()));
+        return saved;
     }
 
     // Метод для получения всех сущностей (для команды /week)
@@ -73,6 +80,17 @@ public class ScheduleService {
                 .toList();
     }
 
+    /**
+     * Страница расписания для админки (keyset по id)
+     */
+    public CursorPage<ScheduleSummaryDto> findPage(Long after, Integer limit, Integer dayOfWeek, String weekType) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return CursorPage.of(
+                scheduleRepository.findSummaries(CursorPage.startAfter(after), dayOfWeek, weekType,
+                        Limit.of(pageSize + 1)),
+                pageSize, ScheduleSummaryDto::id);
+    }
+
     public Schedule findEntityById(Long id) {
         return scheduleRepository.findById(id)
                 .orElseThrow(() ->
@@ -95,7 +113,9 @@ public class ScheduleService {
         existing.setWeekType(dto.getWeekType());
         existing.setIsOnline(dto.getIsOnline());
 
-        return scheduleMapper.toDto(scheduleRepository.save(existing));
+        ScheduleDto saved = scheduleMapper.toDto(scheduleRepository.save(existing));
+        eventPublisher.publishEvent(new ScheduleChangedEvent("изменена пара " + saved.getId()));
+        return saved;
     }
 
     public void delete(Long id) {
@@ -103,5 +123,6 @@ public class ScheduleService {
             throw new NotFoundException("Расписание с id=" + id + " не найдено");
         }
         scheduleRepository.deleteById(id);
+        eventPublisher.publishEvent(new ScheduleChangedEvent("удалена пара " + id));
     }
 }
\ No newline at end of file
@@ -0,0 +1,586 @@
+package ru.melnikov.telegrambot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.melnikov.telegrambot.dto.ScheduleImportResult;
+import ru.melnikov.telegrambot.exception.BadRequestException;
+import ru.melnikov.telegrambot.util.CsvFormat;
+import ru.melnikov.telegrambot.util.ICalendarFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Массовый импорт и экспорт расписания в CSV и iCalendar.
+ * <p>
+ * Импорт читает файл построчно, проверяет каждую запись и пишет пачками
+ * JDBC batch INSERT в одной транзакции: при любой ошибке в файле не сохраняется ничего,
+ * а в ответе перечисляются ошибочные строки. Кеш расписания сбрасывается один раз после фиксации.
+ * Занятие определяется ключом (день, начало, предмет, тип недели): повторы внутри файла
+ * и, при загрузке без замены, занятия, которые уже есть в расписании, пропускаются —
+ * повторный импорт того же файла ничего не добавляет.
+ * <p>
+ * Экспорт читает строки курсором (fetchSize) в read-only транзакции и пишет их
+ * сразу в ответ, не создавая сущностей.
+ */
+@Slf4j
+@Service
+public class ScheduleTransferService {
+
+    public static final List<String> CSV_COLUMNS = List.of(
+            "day_of_week", "time_start", "time_end", "subject", "teacher", "location", "is_online", "week_type");
+
+    private static final int BATCH_SIZE = 500;
+    private static final int FETCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final Set<String> WEEK_TYPES = Set.of("odd", "even", "all");
+
+    private static final String INSERT_SQL = """
+            INSERT INTO schedule (day_of_week, time_start, time_end, subject, teacher,
+                                  location, is_online, week_type, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String EXISTING_KEYS_SQL = """
+            SELECT day_of_week, time_start, subject, coalesce(week_type, 'all') AS week_type
+            FROM schedule
+            """;
+    private static final String EXPORT_SQL = """
+            SELECT id, day_of_week, time_start, time_end, subject, teacher, location, is_online, week_type
+            FROM schedule
+            ORDER BY day_of_week, time_start, id
+            """;
+
+    private static final DateTimeFormatter ICS_LOCAL = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter ICS_UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        ICS("text/calendar", "ics");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Формат из параметра запроса, а если его нет — по расширению файла
+         */
+        public static Format resolve(String format, String filename) {
+            String value = format;
+            if ((value == null || value.isBlank()) && filename != null && filename.contains(".")) {
+                value = filename.substring(filename.lastIndexOf('.') + 1);
+            }
+            if (value == null || value.isBlank()) {
+                return CSV;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "csv" -> CSV;
+                case "ics", "ical", "icalendar" -> ICS;
+                default -> throw new BadRequestException("Неизвестный формат расписания: " + value);
+            };
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final WeekTypeService weekTypeService;
+    private final SecondLevelCacheService secondLevelCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ScheduleTransferService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   WeekTypeService weekTypeService,
+                                   SecondLevelCacheService secondLevelCacheService,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Отдельный экземпляр: общий JdbcTemplate не должен получить fetchSize для всех запросов
+        this.exportJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.exportJdbcTemplate.setFetchSize(FETCH_SIZE);
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.weekTypeService = weekTypeService;
+        this.secondLevelCacheService = secondLevelCacheService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // ====== ИМПОРТ ======
+
+    /**
+     * @param replace удалить текущее расписание перед загрузкой (в той же транзакции)
+     */
+    public ScheduleImportResult importSchedule(InputStream input, Format format, boolean replace) {
+        long start = System.currentTimeMillis();
+        ImportBatch batch = new ImportBatch();
+
+        Integer deleted = transactionTemplate.execute(status -> {
+            // Параллельный импорт или правка не должны вставить занятие между проверкой и вставкой
+            jdbcTemplate.execute("LOCK TABLE schedule IN EXCLUSIVE MODE");
+            int removed = replace ? jdbcTemplate.update("DELETE FROM schedule") : 0;
+            if (!replace) {
+                batch.loadExisting();
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                switch (format) {
+                    case CSV -> readCsv(reader, batch);
+                    case ICS -> readIcs(reader, batch);
+                }
+            } catch (IOException e) {
+                throw new BadRequestException("Не удалось прочитать файл: " + e.getMessage());
+            }
+            batch.flush();
+
+            // Исключение откатывает транзакцию вместе с уже вставленными пачками
+            if (!batch.errors.isEmpty()) {
+                throw new BadRequestException(batch.describeErrors());
+            }
+            return removed;
+        });
+
+        // Вставки шли мимо Hibernate: закешированные запросы расписания устарели
+        secondLevelCacheService.evictSchedule();
+        eventPublisher.publishEvent(new ScheduleChangedEvent("импорт " + format));
+
+        ScheduleImportResult result = new ScheduleImportResult(format.name(), batch.imported, batch.duplicates,
+                batch.existing, deleted != null ? deleted : 0, System.currentTimeMillis() - start);
+        log.info("📥 Импорт расписания ({}): добавлено {}, дубликатов {}, уже были {}, удалено {} за {} мс",
+                format, result.imported(), result.duplicates(), result.existing(), result.deleted(),
+                result.durationMs());
+        return result;
+    }
+
+    private void readCsv(BufferedReader reader, ImportBatch batch) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            throw new BadRequestException("Пустой файл");
+        }
+        // BOM, который добавляет Excel
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+
+        char separator = CsvFormat.detectSeparator(header);
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = CsvFormat.parseLine(header, separator);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("day_of_week", "time_start", "time_end", "subject")) {
+            if (!columns.containsKey(required)) {
+                throw new BadRequestException("В заголовке CSV нет колонки " + required
+                        + ". Ожидаемые колонки: " + String.join(",", CSV_COLUMNS));
+            }
+        }
+
+        int lineNumber = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = CsvFormat.parseLine(line, separator);
+            try {
+                batch.add(lineNumber, new Row(
+                        parseDay(field(fields, columns, "day_of_week")),
+                        parseTime(field(fields, columns, "time_start"), "time_start"),
+                        parseTime(field(fields, columns, "time_end"), "time_end"),
+                        field(fields, columns, "subject"),
+                        field(fields, columns, "teacher"),
+                        field(fields, columns, "location"),
+                        parseBoolean(field(fields, columns, "is_online")),
+                        normalizeWeekType(field(fields, columns, "week_type"))));
+            } catch (IllegalArgumentException e) {
+                batch.error(lineNumber, e.getMessage());
+            }
+        }
+    }
+
+    private void readIcs(BufferedReader reader, ImportBatch batch) throws IOException {
+        ICalendarFormat.readEvents(reader, event -> {
+            try {
+                batch.add(event.line(), toRow(event));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                batch.error(event.line(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Событие — еженедельное занятие. Тип недели берется из X-SCHEDULE-WEEK-TYPE,
+     * иначе RRULE с INTERVAL=2 дает четность недели DTSTART, иначе — каждую неделю.
+     * Выгрузки, где каждое занятие записано отдельным событием, сворачиваются
+     * проверкой дубликатов
+     */
+    private Row toRow(ICalendarFormat.Event event) {
+        ICalendarFormat.Property startProperty = event.get("DTSTART");
+        if (startProperty == null) {
+            throw new IllegalArgumentException("нет DTSTART");
+        }
+        LocalDateTime start = parseIcsDateTime(startProperty);
+
+        LocalDateTime end;
+        ICalendarFormat.Property endProperty = event.get("DTEND");
+        ICalendarFormat.Property durationProperty = event.get("DURATION");
+        if (endProperty != null) {
+            end = parseIcsDateTime(endProperty);
+        } else if (durationProperty != null) {
+            end = start.plus(Duration.parse(durationProperty.value()));
+        } else {
+            throw new IllegalArgumentException("нет DTEND или DURATION");
+        }
+        if (!end.toLocalDate().equals(start.toLocalDate())) {
+            throw new IllegalArgumentException("занятие не может переходить на другой день");
+        }
+
+        ICalendarFormat.Property rrule = event.get("RRULE");
+        if (rrule != null && !rrule.value().toUpperCase(Locale.ROOT).contains("FREQ=WEEKLY")) {
+            throw new IllegalArgumentException("поддерживаются только еженедельные повторения");
+        }
+
+        String weekType;
+        ICalendarFormat.Property weekTypeProperty = event.get("X-SCHEDULE-WEEK-TYPE");
+        if (weekTypeProperty != null) {
+            weekType = normalizeWeekType(weekTypeProperty.text());
+        } else if (rrule != null && rrule.value().toUpperCase(Locale.ROOT).contains("INTERVAL=2")) {
+            weekType = weekTypeService.getWeekTypeForDate(start.toLocalDate());
+        } else {
+            weekType = "all";
+        }
+
+        String location = text(event.get("LOCATION"));
+        ICalendarFormat.Property onlineProperty = event.get("X-SCHEDULE-ONLINE");
+        boolean online = onlineProperty != null
+                ? parseBoolean(onlineProperty.value())
+                : location != null && location.startsWith("http");
+
+        return new Row(start.getDayOfWeek().getValue(), start.toLocalTime(), end.toLocalTime(),
+                text(event.get("SUMMARY")), text(event.get("X-SCHEDULE-TEACHER")), location, online, weekType);
+    }
+
+    private LocalDateTime parseIcsDateTime(ICalendarFormat.Property property) {
+        String value = property.value().trim();
+        if ("DATE".equalsIgnoreCase(property.param("VALUE")) || value.length() == 8) {
+            throw new IllegalArgumentException(property.name() + ": событие на весь день не является занятием");
+        }
+        try {
+            if (value.endsWith("Z")) {
+                return LocalDateTime.parse(value, ICS_UTC)
+                        .atOffset(ZoneOffset.UTC)
+                        .atZoneSameInstant(ZoneId.systemDefault())
+                        .toLocalDateTime();
+            }
+            LocalDateTime local = LocalDateTime.parse(value, ICS_LOCAL);
+            String tzid = property.param("TZID");
+            if (tzid == null) {
+                return local;
+            }
+            return local.atZone(ZoneId.of(tzid))
+                    .withZoneSameInstant(ZoneId.systemDefault())
+                    .toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(property.name() + ": неверная дата " + value);
+        }
+    }
+
+    // ====== ЭКСПОРТ ======
+
+    public StreamingResponseBody export(Format format) {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            switch (format) {
+                case CSV -> exportCsv(writer);
+                case ICS -> exportIcs(writer);
+            }
+            writer.flush();
+        };
+    }
+
+    private void exportCsv(Writer writer) throws IOException {
+        writer.write(String.join(",", CSV_COLUMNS));
+        writer.write("\r\n");
+
+        streamRows(rs -> {
+            writer.write(rs.getInt("day_of_week") + ","
+                    + rs.getTime("time_start").toLocalTime() + ","
+                    + rs.getTime("time_end").toLocalTime() + ","
+                    + CsvFormat.escape(rs.getString("subject")) + ","
+                    + CsvFormat.escape(rs.getString("teacher")) + ","
+                    + CsvFormat.escape(rs.getString("location")) + ","
+                    + rs.getBoolean("is_online") + ","
+                    + CsvFormat.escape(rs.getString("week_type")) + "\r\n");
+        });
+    }
+
+    /**
+     * Каждое занятие — повторяющееся событие, начиная с ближайшей подходящей недели.
+     * Собственные свойства X-SCHEDULE-* позволяют загрузить файл обратно без потерь
+     */
+    private void exportIcs(Writer writer) throws IOException {
+        LocalDate today = LocalDate.now();
+        String stamp = LocalDateTime.now(ZoneOffset.UTC).format(ICS_UTC);
+
+        ICalendarFormat.writeLine(writer, "BEGIN:VCALENDAR");
+        ICalendarFormat.writeLine(writer, "VERSION:2.0");
+        ICalendarFormat.writeLine(writer, "PRODID:-//melnikov//telegram-bot schedule//RU");
+        ICalendarFormat.writeLine(writer, "CALSCALE:GREGORIAN");
+
+        streamRows(rs -> {
+            String weekType = rs.getString("week_type");
+            boolean everyWeek = weekType == null || "all".equals(weekType);
+            LocalDate date = firstDate(today, rs.getInt("day_of_week"), weekType);
+
+            LocalDateTime start = date.atTime(rs.getTime("time_start").toLocalTime());
+            LocalDateTime end = date.atTime(rs.getTime("time_end").toLocalTime());
+            String teacher = rs.getString("teacher");
+            String location = rs.getString("location");
+
+            ICalendarFormat.writeLine(writer, "BEGIN:VEVENT");
+            ICalendarFormat.writeLine(writer, "UID:schedule-" + rs.getLong("id") + "@telegram-bot");
+            ICalendarFormat.writeLine(writer, "DTSTAMP:" + stamp);
+            ICalendarFormat.writeLine(writer, "DTSTART:" + start.format(ICS_LOCAL));
+            ICalendarFormat.writeLine(writer, "DTEND:" + end.format(ICS_LOCAL));
+            ICalendarFormat.writeLine(writer, "RRULE:FREQ=WEEKLY;INTERVAL=" + (everyWeek ? 1 : 2));
+            ICalendarFormat.writeLine(writer, "SUMMARY:" + ICalendarFormat.escapeText(rs.getString("subject")));
+            if (location != null) {
+                ICalendarFormat.writeLine(writer, "LOCATION:" + ICalendarFormat.escapeText(location));
+            }
+            if (teacher != null) {
+                ICalendarFormat.writeLine(writer, "DESCRIPTION:" + ICalendarFormat.escapeText("Преподаватель: " + teacher));
+                ICalendarFormat.writeLine(writer, "X-SCHEDULE-TEACHER:" + ICalendarFormat.escapeText(teacher));
+            }
+            ICalendarFormat.writeLine(writer, "X-SCHEDULE-ONLINE:" + rs.getBoolean("is_online"));
+            ICalendarFormat.writeLine(writer, "X-SCHEDULE-WEEK-TYPE:" + (everyWeek ? "all" : weekType));
+            ICalendarFormat.writeLine(writer, "END:VEVENT");
+        });
+
+        ICalendarFormat.writeLine(writer, "END:VCALENDAR");
+    }
+
+    private LocalDate firstDate(LocalDate from, int dayOfWeek, String weekType) {
+        LocalDate date = from.with(TemporalAdjusters.nextOrSame(DayOfWeek.of(dayOfWeek)));
+        if (weekType != null && !"all".equals(weekType)
+                && !weekType.equals(weekTypeService.getWeekTypeForDate(date))) {
+            date = date.plusWeeks(1);
+        }
+        return date;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws Exception;
+    }
+
+    private void streamRows(RowWriter rowWriter) throws IOException {
+        try {
+            readOnlyTransaction.executeWithoutResult(status ->
+                    exportJdbcTemplate.query(EXPORT_SQL, rs -> {
+                        try {
+                            rowWriter.write(rs);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        } catch (SQLException | RuntimeException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }));
+        } catch (UncheckedIOException e) {
+            // Клиент закрыл соединение — транзакция и курсор уже закрыты
+            throw e.getCause();
+        }
+    }
+
+    // ====== РАЗБОР ПОЛЕЙ ======
+
+    private String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private String text(ICalendarFormat.Property property) {
+        if (property == null) {
+            return null;
+        }
+        String value = property.text().trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private int parseDay(String value) {
+        try {
+            int day = Integer.parseInt(value);
+            if (day >= 1 && day <= 7) {
+                return day;
+            }
+        } catch (NumberFormatException | NullPointerException ignored) {
+            // ниже — общее сообщение
+        }
+        throw new IllegalArgumentException("day_of_week должен быть от 1 до 7, получено: " + value);
+    }
+
+    private LocalTime parseTime(String value, String column) {
+        if (value == null) {
+            throw new IllegalArgumentException(column + " не заполнено");
+        }
+        try {
+            return LocalTime.parse(value.length() == 4 ? "0" + value : value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(column + ": неверное время " + value);
+        }
+    }
+
+    private boolean parseBoolean(String value) {
+        if (value == null) {
+            return false;
+        }
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true", "1", "yes", "да" -> true;
+            case "false", "0", "no", "нет", "" -> false;
+            default -> throw new IllegalArgumentException("is_online: ожидается true/false, получено: " + value);
+        };
+    }
+
+    private String normalizeWeekType(String value) {
+        if (value == null) {
+            return "all";
+        }
+        String weekType = value.trim().toLowerCase(Locale.ROOT);
+        if (!WEEK_TYPES.contains(weekType)) {
+            throw new IllegalArgumentException("week_type должен быть odd, even или all, получено: " + value);
+        }
+        return weekType;
+    }
+
+    // ====== ЗАПИСЬ ПАЧКАМИ ======
+
+    private record Row(int dayOfWeek, LocalTime timeStart, LocalTime timeEnd, String subject,
+                       String teacher, String location, boolean online, String weekType) {
+
+        Object key() {
+            return key(dayOfWeek, timeStart, subject, weekType);
+        }
+
+        static Object key(int dayOfWeek, LocalTime timeStart, String subject, String weekType) {
+            return List.of(dayOfWeek, timeStart, subject, weekType);
+        }
+    }
+
+    /**
+     * Накопитель строк импорта. После первой ошибки строки только проверяются —
+     * транзакция все равно будет откачена
+     */
+    private final class ImportBatch {
+
+        private final List<Row> rows = new ArrayList<>(BATCH_SIZE);
+        private final Set<Object> seen = new HashSet<>();
+        private final Set<Object> existingKeys = new HashSet<>();
+        private final List<String> errors = new ArrayList<>();
+        private final Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        private int errorCount;
+        private int imported;
+        private int duplicates;
+        private int existing;
+
+        /**
+         * Ключи занятий, которые уже есть в расписании
+         */
+        void loadExisting() {
+            jdbcTemplate.query(EXISTING_KEYS_SQL, rs -> {
+                existingKeys.add(Row.key(rs.getInt("day_of_week"), rs.getTime("time_start").toLocalTime(),
+                        rs.getString("subject"), rs.getString("week_type")));
+            });
+        }
+
+        void add(int line, Row row) {
+            if (row.subject() == null || row.subject().isBlank()) {
+                error(line, "subject не заполнено");
+                return;
+            }
+            if (!row.timeEnd().isAfter(row.timeStart())) {
+                error(line, "time_end должно быть позже time_start");
+                return;
+            }
+            Object key = row.key();
+            if (existingKeys.contains(key)) {
+                existing++;
+                return;
+            }
+            if (!seen.add(key)) {
+                duplicates++;
+                return;
+            }
+            if (errorCount > 0) {
+                return;
+            }
+            rows.add(row);
+            if (rows.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void error(int line, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("строка " + line + ": " + message);
+            }
+        }
+
+        void flush() {
+            if (rows.isEmpty() || errorCount > 0) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+                ps.setInt(1, row.dayOfWeek());
+                ps.setTime(2, Time.valueOf(row.timeStart()));
+                ps.setTime(3, Time.valueOf(row.timeEnd()));
+                ps.setString(4, row.subject());
+                ps.setString(5, row.teacher());
+                ps.setString(6, row.location());
+                ps.setBoolean(7, row.online());
+                ps.setString(8, row.weekType());
+                ps.setTimestamp(9, createdAt);
+            });
+            imported += rows.size();
+            rows.clear();
+        }
+
+        String describeErrors() {
+            String message = "Расписание не загружено, ошибок: " + errorCount + ". " + String.join("; ", errors);
+            return errorCount > errors.size() ? message + "; …" : message;
+        }
+    }
+}
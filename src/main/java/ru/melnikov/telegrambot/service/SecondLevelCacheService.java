@@ -0,0 +1,84 @@
+package ru.melnikov.telegrambot.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.cache.CacheRegions;
+import ru.melnikov.telegrambot.model.Group;
+import ru.melnikov.telegrambot.model.Schedule;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Статистика и ручная инвалидация кеша второго уровня Hibernate (регионы — см. CacheRegions)
+ */
+@Slf4j
+@Service
+public class SecondLevelCacheService {
+
+    private static final String GROUP_USERS_ROLE = Group.class.getName() + ".users";
+
+    private final SessionFactory sessionFactory;
+
+    public SecondLevelCacheService(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    public Map<String, Object> getStats() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String region : CacheRegions.ALL) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", regionStats.getHitCount());
+            stats.put("misses", regionStats.getMissCount());
+            stats.put("puts", regionStats.getPutCount());
+            stats.put("size", regionStats.getElementCountInMemory());
+            regions.put(region, stats);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("secondLevelHits", statistics.getSecondLevelCacheHitCount());
+        result.put("secondLevelMisses", statistics.getSecondLevelCacheMissCount());
+        result.put("queryCacheHits", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMisses", statistics.getQueryCacheMissCount());
+        result.put("regions", regions);
+        return result;
+    }
+
+    /**
+     * Сбрасывает закешированные составы групп. Нужен при удалении пользователя:
+     * коллекция Group.users хранит id, и закешированная ссылка на удаленного
+     * пользователя сломала бы загрузку группы
+     */
+    public void evictGroupMembers() {
+        sessionFactory.getCache().evictCollectionData(GROUP_USERS_ROLE);
+    }
+
+    /**
+     * Сбрасывает расписание и кеш запросов. Нужен после записи в schedule
+     * мимо Hibernate (массовый импорт через JDBC)
+     */
+    public void evictSchedule() {
+        sessionFactory.getCache().evictEntityData(Schedule.class);
+        sessionFactory.getCache().evictQueryRegions();
+        log.info("🧹 Кеш расписания сброшен");
+    }
+
+    /**
+     * Полная очистка всех регионов (админка)
+     */
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+        log.info("🧹 Кеш второго уровня очищен");
+    }
+}
@@ -2,12 +2,16 @@ package ru.melnikov.telegrambot.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.melnikov.telegrambot.config.BotSettingsConfig;
-import ru.melnikov.telegrambot.model.BotChat;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+import ru.melnikov.telegrambot.dto.BroadcastTarget;
 import ru.melnikov.telegrambot.model.Schedule;
 import ru.melnikov.telegrambot.repository.ScheduleRepository;
+import ru.melnikov.telegrambot.scheduler.ClusterSingleton;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
@@ -19,7 +23,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -34,10 +37,15 @@ public class SmartReminderService {
     private final WeekTypeService weekTypeService;
     private final BotChatService botChatService;
     private final ScheduleRepository scheduleRepository;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final BroadcastFireMarkers fireMarkers;
+    private final DailyPlanService dailyPlanService;
 
     // ====== КОНСТАНТЫ И ФОРМАТТЕРЫ ======
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     private static final Locale RUSSIAN_LOCALE = new Locale("ru");
+    private static final String SCHEDULE_MARKER = "groups.schedule";
+    private static final String DEADLINES_MARKER = "groups.deadlines";
 
     // ====== НАСТРОЙКИ ИЗ YML (кешируем для производительности) ======
 
@@ -69,13 +77,32 @@ public class SmartReminderService {
         return settingsConfig.getReminders().getScheduler();
     }
 
+    /**
+     * Окно рассылки ТОЛЬКО из YML (telegram.broadcast.spread)
+     */
+    private BotSettingsConfig.BroadcastConfig.SpreadConfig getSpread(String key) {
+        return settingsConfig.getBroadcast().spreadFor(key);
+    }
+
     // ====== ОСНОВНЫЕ МЕТОДЫ РАСПИСАНИЯ ======
 
     /**
-     * Ежедневная проверка и отправка расписания по времени из YML
-     * Комментируем или удаляем дублирующиеся методы
+     * Догоняющий запуск после старта: рассылки, время которых пришлось на простой,
+     * отправляются, если опоздание не больше catch-up-grace (см. BroadcastFireMarkers).
+     * Отметка о запуске общая для всех экземпляров, поэтому проверять может любой
      */
-    @Scheduled(cron = "0 * * * * *")
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpMissed() {
+        checkAndSendScheduleReminders();
+        checkAndSendDeadlineReminders();
+    }
+
+    /**
+     * Ежедневная проверка и отправка расписания по времени из YML.
+     * Срабатывает на первой проверке не раньше планового момента, один раз за момент
+     */
+    @ClusterSingleton
+    @Scheduled(cron = "0 * * * * *", scheduler = SchedulingConfig.BROADCAST)
     public void checkAndSendScheduleReminders() {
         // Оставляем только отправку расписания, НЕ напоминаний перед парой
         try {
@@ -85,13 +112,17 @@ public class SmartReminderService {
                 return;
             }
 
-            LocalTime currentTime = LocalTime.now().withSecond(0).withNano(0);
+            LocalDateTime now = LocalDateTime.now();
             LocalTime sendTime = config.getTimeAsLocalTime();
+            // Окно рассылки (если задано) открывается раньше времени из YML на start-before
+            LocalTime windowOpen = sendTime.minus(getSpread(SCHEDULE_MARKER).getStartBefore());
+            LocalDateTime planned = lastPlannedMoment(windowOpen, config.getDays(), now, "расписание");
 
-            if (currentTime.equals(sendTime) && shouldSendToday(config.getDays(), "расписание")) {
+            // Если постановка в очередь упадет, отметка откатится и момент повторится на следующей проверке
+            fireMarkers.tryFire(SCHEDULE_MARKER, planned, now, () -> {
                 log.info("📅 Время отправки расписания: {}", sendTime.format(TIME_FORMATTER));
-                sendScheduleToGroups();
-            }
+                sendScheduleToGroups(planned);
+            });
         } catch (Exception e) {
             log.error("❌ Ошибка отправки расписания: {}", e.getMessage(), e);
         }
@@ -100,7 +131,8 @@ public class SmartReminderService {
     /**
      * Еженедельная отправка дедлайнов по времени из YML
      */
-    @Scheduled(cron = "0 * * * * *")
+    @ClusterSingleton
+    @Scheduled(cron = "0 * * * * *", scheduler = SchedulingConfig.BROADCAST)
     public void checkAndSendDeadlineReminders() {
         // Оставляем только отправку дедлайнов
         try {
@@ -110,13 +142,15 @@ public class SmartReminderService {
                 return;
             }
 
-            LocalTime currentTime = LocalTime.now().withSecond(0).withNano(0);
+            LocalDateTime now = LocalDateTime.now();
             LocalTime sendTime = config.getTimeAsLocalTime();
+            LocalTime windowOpen = sendTime.minus(getSpread(DEADLINES_MARKER).getStartBefore());
+            LocalDateTime planned = lastPlannedMoment(windowOpen, config.getDays(), now, "дедлайны");
 
-            if (currentTime.equals(sendTime) && shouldSendToday(config.getDays(), "дедлайны")) {
+            fireMarkers.tryFire(DEADLINES_MARKER, planned, now, () -> {
                 log.info("⏰ Время отправки дедлайнов: {}", sendTime.format(TIME_FORMATTER));
-                sendDeadlinesToGroups();
-            }
+                sendDeadlinesToGroups(planned);
+            });
         } catch (Exception e) {
             log.error("❌ Ошибка отправки дедлайнов: {}", e.getMessage(), e);
         }
@@ -125,30 +159,10 @@ public class SmartReminderService {
     // ====== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ======
 
     /**
-     * Получает расписание на сегодня с учетом типа недели из YML
+     * Расписание на сегодня с учетом типа недели из YML (из плана дня)
      */
     private List<Schedule> getTodaySchedules() {
-        try {
-            int todayDayNumber = LocalDate.now().getDayOfWeek().getValue();
-            String currentWeekType = weekTypeService.getCurrentWeekType();
-
-            // Получаем все пары на сегодня из БД
-            List<Schedule> allSchedules = scheduleRepository.findByDayOfWeek(todayDayNumber);
-
-            // Фильтруем по типу недели из YML (через WeekTypeService)
-            return allSchedules.stream()
-                    .filter(schedule -> {
-                        String scheduleWeekType = schedule.getWeekType() != null ?
-                                schedule.getWeekType() : "all";
-                        return scheduleWeekType.equals(currentWeekType) ||
-                                scheduleWeekType.equals("all");
-                    })
-                    .collect(Collectors.toList());
-
-        } catch (Exception e) {
-            log.error("❌ Ошибка получения расписания на сегодня: {}", e.getMessage());
-            return List.of();
-        }
+        return dailyPlanService.current().classes();
     }
 
     /**
@@ -156,8 +170,8 @@ public class SmartReminderService {
      */
     private void sendBeforeClassReminder(Schedule schedule, int minutesBefore) {
         try {
-            Long chatId = getDefaultGroupChatId();
-            if (chatId == null) {
+            BroadcastTarget target = getDefaultGroupTarget();
+            if (target == null) {
                 log.warn("⚠️ Не найден групповой чат для отправки напоминания");
                 return;
             }
@@ -166,9 +180,9 @@ public class SmartReminderService {
                     .getDisplayName(TextStyle.FULL, RUSSIAN_LOCALE);
             dayName = dayName.substring(0, 1).toUpperCase() + dayName.substring(1);
 
-            String currentWeekType = weekTypeService.getCurrentWeekType();
-            String weekTypeEmoji = weekTypeService.getWeekTypeEmoji(currentWeekType);
-            String weekTypeName = weekTypeService.getWeekTypeDisplayName(currentWeekType);
+            DailyPlan plan = dailyPlanService.current();
+            String weekTypeEmoji = plan.weekTypeEmoji();
+            String weekTypeName = plan.weekTypeDisplay();
 
             String timeRange = String.format("%s-%s",
                     schedule.getTimeStart().format(TIME_FORMATTER),
@@ -196,8 +210,8 @@ public class SmartReminderService {
                             "💻 Онлайн" : (schedule.getLocation() != null ? schedule.getLocation() : "не указано"),
                     timeRange);
 
-            // Отправляем с учетом темы из настроек чата
-            reminderMessageService.sendMessageToChat(chatId, null, message, true);
+            // Тема бота уже известна из выборки получателя
+            reminderMessageService.sendMessageToChat(target.chatId(), target.topicId(), message, true);
 
             log.info("✅ Напоминание отправлено: '{}' за {} минут",
                     schedule.getSubject(), minutesBefore);
@@ -208,67 +222,30 @@ public class SmartReminderService {
     }
 
     /**
-     * Отправляет расписание во все активные группы
+     * Ставит в очередь рассылку расписания во все активные группы с включенной рассылкой расписания
      */
-    private void sendScheduleToGroups() {
-        List<BotChat> activeGroups = getActiveGroups();
-
-        if (activeGroups.isEmpty()) {
-            log.warn("⚠️ Нет активных групп для отправки расписания");
-            return;
-        }
-
-        log.info("📤 Отправка расписания в {} групп", activeGroups.size());
-
-        activeGroups.forEach(group -> {
-            try {
-                reminderMessageService.sendScheduleToChat(group.getChatId());
-                Thread.sleep(100); // Пауза между отправками
-            } catch (Exception e) {
-                log.error("❌ Ошибка отправки в чат {}: {}", group.getChatId(), e.getMessage());
-            }
-        });
+    private void sendScheduleToGroups(LocalDateTime windowStart) {
+        long jobId = broadcastFanoutService.submit(BroadcastTargetReader.Audience.SCHEDULE_GROUPS,
+                reminderMessageService.formatDailySchedule(), "расписания", SCHEDULE_MARKER, windowStart);
+        log.info("📤 Рассылка расписания по группам #{} поставлена в очередь", jobId);
     }
 
     /**
-     * Отправляет дедлайны во все активные группы
+     * Ставит в очередь рассылку дедлайнов во все активные группы с включенной рассылкой дедлайнов
      */
-    private void sendDeadlinesToGroups() {
-        List<BotChat> activeGroups = getActiveGroups();
-
-        if (activeGroups.isEmpty()) {
-            log.warn("⚠️ Нет активных групп для отправки дедлайнов");
-            return;
-        }
-
-        log.info("📤 Отправка дедлайнов в {} групп", activeGroups.size());
-
-        activeGroups.forEach(group -> {
-            try {
-                reminderMessageService.sendDeadlinesToChat(group.getChatId());
-                Thread.sleep(100); // Пауза между отправками
-            } catch (Exception e) {
-                log.error("❌ Ошибка отправки в чат {}: {}", group.getChatId(), e.getMessage());
-            }
-        });
+    private void sendDeadlinesToGroups(LocalDateTime windowStart) {
+        long jobId = broadcastFanoutService.submit(BroadcastTargetReader.Audience.DEADLINE_GROUPS,
+                reminderMessageService.formatDeadlines(), "дедлайнов", DEADLINES_MARKER, windowStart);
+        log.info("📤 Рассылка дедлайнов по группам #{} поставлена в очередь", jobId);
     }
 
     /**
-     * Получает все активные группы из БД
+     * Групповой чат для напоминаний перед парой: первая активная группа,
+     * в которой эти напоминания включены
      */
-    private List<BotChat> getActiveGroups() {
-        return botChatService.findAllActiveChats().stream()
-                .filter(this::isGroupChat)
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Получает ID группового чата по умолчанию
-     */
-    private Long getDefaultGroupChatId() {
-        return getActiveGroups().stream()
+    private BroadcastTarget getDefaultGroupTarget() {
+        return botChatService.findBeforeClassTargets().stream()
                 .findFirst()
-                .map(BotChat::getChatId)
                 .orElse(null);
     }
 
@@ -276,12 +253,16 @@ public class SmartReminderService {
      * Проверяет, нужно ли отправлять сегодня по паттерну из YML
      */
     private boolean shouldSendToday(String daysPattern, String reminderType) {
+        return shouldSendOn(LocalDate.now(), daysPattern, reminderType);
+    }
+
+    private boolean shouldSendOn(LocalDate date, String daysPattern, String reminderType) {
         if (daysPattern == null || daysPattern.length() != 7) {
             log.warn("⚠️ Некорректный паттерн дней для {} в YML: {}", reminderType, daysPattern);
             return false;
         }
 
-        int todayIndex = LocalDate.now().getDayOfWeek().getValue() - 1;
+        int todayIndex = date.getDayOfWeek().getValue() - 1;
 
         if (todayIndex < 0 || todayIndex >= daysPattern.length()) {
             return false;
@@ -290,23 +271,27 @@ public class SmartReminderService {
         boolean shouldSend = daysPattern.charAt(todayIndex) == '1';
 
         if (!shouldSend) {
-            log.debug("⏸️ Сегодня не день для отправки {} (паттерн из YML: {})",
-                    reminderType, daysPattern);
+            log.debug("⏸️ {} не день для отправки {} (паттерн из YML: {})",
+                    date, reminderType, daysPattern);
         }
 
         return shouldSend;
     }
 
     /**
-     * Проверяет, является ли чат группой
+     * Последний наступивший плановый момент рассылки (время из YML в разрешенный день),
+     * не раньше чем неделю назад. null — такого нет
      */
-    private boolean isGroupChat(BotChat chat) {
-        if (chat == null || chat.getChatType() == null) {
-            return false;
+    private LocalDateTime lastPlannedMoment(LocalTime sendTime, String daysPattern, LocalDateTime now,
+                                            String reminderType) {
+        for (int daysBack = 0; daysBack <= 7; daysBack++) {
+            LocalDate date = now.toLocalDate().minusDays(daysBack);
+            LocalDateTime planned = date.atTime(sendTime);
+            if (!planned.isAfter(now) && shouldSendOn(date, daysPattern, reminderType)) {
+                return planned;
+            }
         }
-
-        String chatType = chat.getChatType().toLowerCase();
-        return chatType.contains("group") || chatType.contains("supergroup");
+        return null;
     }
 
     // ====== ТЕСТОВЫЕ И ОТЛАДОЧНЫЕ МЕТОДЫ ======
@@ -382,7 +367,7 @@ public class SmartReminderService {
         try {
             log.info("🧪 Тестовая отправка расписания (время из YML: {})",
                     getScheduleConfig().getTime());
-            sendScheduleToGroups();
+            sendScheduleToGroups(LocalDateTime.now());
         } catch (Exception e) {
             log.error("❌ Ошибка тестовой отправки: {}", e.getMessage(), e);
         }
@@ -400,7 +385,7 @@ public class SmartReminderService {
         try {
             log.info("🧪 Тестовая отправка дедлайнов (время из YML: {})",
                     getDeadlineConfig().getTime());
-            sendDeadlinesToGroups();
+            sendDeadlinesToGroups(LocalDateTime.now());
         } catch (Exception e) {
             log.error("❌ Ошибка тестовой отправки: {}", e.getMessage(), e);
         }
@@ -429,7 +414,7 @@ public class SmartReminderService {
             health.put("status", "HEALTHY");
             health.put("timestamp", LocalDateTime.now().toString());
             health.put("configSource", "YML ONLY");
-            health.put("activeGroupsCount", getActiveGroups().size());
+            health.put("activeGroupsCount", botChatService.findActiveGroupTargets().size());
 
         } catch (Exception e) {
             health.put("status", "UNHEALTHY");
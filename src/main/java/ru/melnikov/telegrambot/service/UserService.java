@@ -1,20 +1,29 @@
 package ru.melnikov.telegrambot.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import ru.melnikov.telegrambot.cache.KnownUserRegistry;
+import ru.melnikov.telegrambot.dto.CursorPage;
+import ru.melnikov.telegrambot.dto.UserSummaryDto;
 import ru.melnikov.telegrambot.exception.NotFoundException;
 import ru.melnikov.telegrambot.model.Role;
 import ru.melnikov.telegrambot.model.User;
 import ru.melnikov.telegrambot.repository.UserRepository;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
+    private final KnownUserRegistry knownUserRegistry;
+    private final SecondLevelCacheService secondLevelCacheService;
 
     public User save(User user) {
         return userRepository.save(user);
@@ -28,6 +37,19 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Страница пользователей для админки (keyset по id)
+     */
+    public CursorPage<UserSummaryDto> findPage(Long after, Integer limit, Role role) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return CursorPage.of(findSummaries(CursorPage.startAfter(after), role, pageSize + 1),
+                pageSize, UserSummaryDto::id);
+    }
+
+    public List<UserSummaryDto> findSummaries(long after, Role role, int limit) {
+        return userRepository.findSummaries(after, role, Limit.of(limit));
+    }
+
     public boolean existsByTelegramId(Long telegramId) {
         return userRepository.existsByTelegramId(telegramId);
     }
@@ -37,16 +59,26 @@ public class UserService {
                 .orElseThrow(() -> new ru.melnikov.telegrambot.exception.NotFoundException("User not found: " + id));
     }
 
+    /**
+     * Регистрирует пользователя или обновляет его имя.
+     * Известные пользователи с неизменившимся именем не требуют обращения к БД
+     */
     public void registerIfNotExists(Long tgId, String username, String firstName, String lastName) {
-        if (!userRepository.existsByTelegramId(tgId)) {
-            userRepository.save(User.builder()
-                    .telegramId(tgId)
-                    .username(username)
-                    .firstName(firstName)
-                    .lastName(lastName)
-                    .role(Role.STUDENT)
-                    .build());
+        int fingerprint = KnownUserRegistry.fingerprint(username, firstName, lastName);
+        if (knownUserRegistry.isUpToDate(tgId, fingerprint)) {
+            return;
         }
+
+        int updated = userRepository.upsertRegistration(tgId, username, firstName, lastName, Role.STUDENT.name());
+        knownUserRegistry.remember(tgId, fingerprint);
+
+        if (updated > 0) {
+            log.debug("Пользователь {} зарегистрирован или обновлен", tgId);
+        }
+    }
+
+    public Map<String, Object> getKnownUserStats() {
+        return knownUserRegistry.getStats();
     }
 
     public User findById(Long id) {
@@ -56,6 +88,9 @@ public class UserService {
     }
 
     public void delete(Long id) {
+        userRepository.findById(id)
+                .ifPresent(user -> knownUserRegistry.forget(user.getTelegramId()));
         userRepository.deleteById(id);
+        secondLevelCacheService.evictGroupMembers();
     }
 }
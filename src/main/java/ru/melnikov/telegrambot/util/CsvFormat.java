@@ -0,0 +1,70 @@
+package ru.melnikov.telegrambot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Минимальный разбор и запись CSV (RFC 4180) построчно.
+ * Разделитель — запятая или точка с запятой (так сохраняет Excel с русской локалью).
+ * Поля в кавычках не могут содержать перевод строки.
+ */
+public final class CsvFormat {
+
+    private CsvFormat() {
+    }
+
+    /**
+     * Определяет разделитель по строке заголовка
+     */
+    public static char detectSeparator(String header) {
+        return header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ';' : ',';
+    }
+
+    /**
+     * Разбивает строку на поля. Кавычки внутри поля удваиваются: "a ""b"" c"
+     */
+    public static List<String> parseLine(String line, char separator) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Экранирует значение для записи: null — пустое поле
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf(';') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\r", " ").replace("\n", " ").replace("\"", "\"\"") + '"';
+    }
+}
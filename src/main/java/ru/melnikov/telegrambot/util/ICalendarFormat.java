@@ -0,0 +1,171 @@
+package ru.melnikov.telegrambot.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Минимальный потоковый разбор и запись iCalendar (RFC 5545):
+ * только события VEVENT, свернутые строки, экранирование текста.
+ * События передаются обработчику по одному, файл целиком в памяти не хранится.
+ */
+public final class ICalendarFormat {
+
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private ICalendarFormat() {
+    }
+
+    /**
+     * Свойство события: имя в верхнем регистре, параметры (TZID, VALUE) и сырое значение
+     */
+    public record Property(String name, Map<String, String> params, String value) {
+
+        public String param(String name) {
+            return params.get(name);
+        }
+
+        public String text() {
+            return unescapeText(value);
+        }
+    }
+
+    /**
+     * Событие VEVENT и номер строки, на которой оно начинается (для сообщений об ошибках).
+     * Повторяющиеся свойства (EXDATE и т.п.) не поддерживаются — остается последнее
+     */
+    public record Event(int line, Map<String, Property> properties) {
+
+        public Property get(String name) {
+            return properties.get(name);
+        }
+    }
+
+    public static void readEvents(BufferedReader reader, Consumer<Event> handler) throws IOException {
+        Map<String, Property> properties = null;
+        int eventLine = 0;
+
+        int lineNumber = 0;
+        int pendingLine = 0;
+        StringBuilder pending = null;
+        String raw;
+        while (true) {
+            raw = reader.readLine();
+            lineNumber++;
+
+            // Продолжение свернутой строки начинается с пробела или табуляции
+            if (raw != null && pending != null && !raw.isEmpty()
+                    && (raw.charAt(0) == ' ' || raw.charAt(0) == '\t')) {
+                pending.append(raw, 1, raw.length());
+                continue;
+            }
+
+            if (pending != null) {
+                String line = pending.toString();
+                if (line.equalsIgnoreCase("BEGIN:VEVENT")) {
+                    properties = new HashMap<>();
+                    eventLine = pendingLine;
+                } else if (line.equalsIgnoreCase("END:VEVENT")) {
+                    if (properties != null) {
+                        handler.accept(new Event(eventLine, properties));
+                    }
+                    properties = null;
+                } else if (properties != null) {
+                    Property property = parseProperty(line);
+                    if (property != null) {
+                        properties.put(property.name(), property);
+                    }
+                }
+            }
+
+            if (raw == null) {
+                break;
+            }
+            pending = new StringBuilder(raw);
+            pendingLine = lineNumber;
+        }
+    }
+
+    /**
+     * Записывает строку свойства со сворачиванием по 75 байт UTF-8 и CRLF
+     */
+    public static void writeLine(Writer writer, String line) throws IOException {
+        int octets = 0;
+        int limit = MAX_LINE_OCTETS;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int size = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8).length;
+            if (octets + size > limit) {
+                writer.write("\r\n ");
+                octets = 0;
+                limit = MAX_LINE_OCTETS - 1;
+            }
+            writer.write(Character.toChars(codePoint));
+            octets += size;
+            i += Character.charCount(codePoint);
+        }
+        writer.write("\r\n");
+    }
+
+    public static String escapeText(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n");
+    }
+
+    public static String unescapeText(String value) {
+        if (value == null || value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static Property parseProperty(String line) {
+        // Двоеточие внутри значения параметра в кавычках не является разделителем
+        int colon = -1;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                colon = i;
+                break;
+            }
+        }
+        if (colon <= 0) {
+            return null;
+        }
+
+        String[] head = line.substring(0, colon).split(";");
+        Map<String, String> params = new HashMap<>();
+        for (int i = 1; i < head.length; i++) {
+            int eq = head[i].indexOf('=');
+            if (eq > 0) {
+                params.put(head[i].substring(0, eq).toUpperCase(Locale.ROOT),
+                        head[i].substring(eq + 1).replace("\"", ""));
+            }
+        }
+        return new Property(head[0].toUpperCase(Locale.ROOT), params, line.substring(colon + 1));
+    }
+}
@@ -0,0 +1,50 @@
+package ru.melnikov.telegrambot.util;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Потоковая выгрузка JSON-массива: данные читаются keyset-страницами и сразу
+ * пишутся в ответ, поэтому в памяти одновременно находится не больше одной страницы.
+ */
+public final class StreamingJsonExport {
+
+    public static final int PAGE_SIZE = 500;
+
+    private StreamingJsonExport() {
+    }
+
+    /**
+     * @param pageFetcher возвращает до PAGE_SIZE элементов с id больше переданного, по возрастанию id
+     * @param idExtractor id элемента для курсора следующей страницы
+     */
+    public static <T> StreamingResponseBody stream(JsonMapper jsonMapper,
+                                                   LongFunction<List<T>> pageFetcher,
+                                                   Function<T, Long> idExtractor) {
+        return outputStream -> {
+            try (JsonGenerator generator = jsonMapper.createGenerator(outputStream)) {
+                generator.writeStartArray();
+
+                long after = 0L;
+                List<T> page;
+                do {
+                    page = pageFetcher.apply(after);
+                    for (T item : page) {
+                        generator.writePOJO(item);
+                    }
+                    if (!page.isEmpty()) {
+                        after = idExtractor.apply(page.get(page.size() - 1));
+                    }
+                    generator.flush();
+                } while (page.size() >= PAGE_SIZE);
+
+                generator.writeEndArray();
+            }
+        };
+    }
+}
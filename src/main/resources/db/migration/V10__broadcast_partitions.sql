@@ -0,0 +1,36 @@
+-- Распределенная рассылка (BroadcastFanoutService).
+-- Рассылка делится на части по остатку chat_id; любой экземпляр забирает свободную часть
+-- через FOR UPDATE SKIP LOCKED. Часть держится арендой (lease_until) и сохраняет прогресс
+-- (last_chat_id), поэтому после падения экземпляра другой продолжит с места остановки.
+
+CREATE TABLE IF NOT EXISTS broadcast_jobs (
+    id           BIGSERIAL PRIMARY KEY,
+    audience     VARCHAR(50)  NOT NULL,
+    what         VARCHAR(100) NOT NULL,
+    text         TEXT         NOT NULL,
+    partitions   INTEGER      NOT NULL,
+    created_by   VARCHAR(200) NOT NULL,
+    created_at   TIMESTAMP    NOT NULL DEFAULT now(),
+    completed_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS broadcast_partitions (
+    job_id       BIGINT       NOT NULL REFERENCES broadcast_jobs (id) ON DELETE CASCADE,
+    partition_no INTEGER      NOT NULL,
+    status       VARCHAR(20)  NOT NULL DEFAULT 'pending',
+    claimed_by   VARCHAR(200),
+    claimed_at   TIMESTAMP,
+    lease_until  TIMESTAMP,
+    -- Номер захвата: записи прогресса принимаются только от текущего владельца
+    attempts     INTEGER      NOT NULL DEFAULT 0,
+    last_chat_id BIGINT,
+    sent         INTEGER      NOT NULL DEFAULT 0,
+    failed       INTEGER      NOT NULL DEFAULT 0,
+    completed_at TIMESTAMP,
+    PRIMARY KEY (job_id, partition_no)
+);
+
+-- Поиск свободных частей идет только по незавершенным
+CREATE INDEX IF NOT EXISTS ix_broadcast_partitions_open
+    ON broadcast_partitions (job_id, partition_no)
+    WHERE completed_at IS NULL;
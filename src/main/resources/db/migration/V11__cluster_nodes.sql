@@ -0,0 +1,9 @@
+-- Состав кластера для распределения чатов (ClusterMembership).
+-- Каждый экземпляр обновляет heartbeat_at; экземпляры без свежей отметки выпадают из кольца.
+
+CREATE TABLE IF NOT EXISTS cluster_nodes (
+    node_id      VARCHAR(200) PRIMARY KEY,
+    base_url     VARCHAR(500) NOT NULL,
+    started_at   TIMESTAMP    NOT NULL DEFAULT now(),
+    heartbeat_at TIMESTAMP    NOT NULL DEFAULT now()
+);
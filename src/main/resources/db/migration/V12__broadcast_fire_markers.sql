@@ -0,0 +1,20 @@
+-- Последний выполненный плановый момент каждой рассылки (BroadcastFireMarkers).
+-- Запуск возможен только при сдвиге отметки вперед, поэтому обычный и догоняющий
+-- запуски одного момента не дублируются.
+
+CREATE TABLE IF NOT EXISTS broadcast_fire_markers (
+    broadcast_key   VARCHAR(100) PRIMARY KEY,
+    last_planned_at TIMESTAMP    NOT NULL,
+    fired_at        TIMESTAMP    NOT NULL,
+    fired_by        VARCHAR(200) NOT NULL,
+    caught_up       BOOLEAN      NOT NULL DEFAULT false
+);
+
+-- До этой версии отметок не было: все, что запланировано до обновления, считаем отправленным,
+-- иначе первый старт повторил бы сегодняшние рассылки
+INSERT INTO broadcast_fire_markers (broadcast_key, last_planned_at, fired_at, fired_by)
+VALUES ('all.schedule', now(), now(), 'migration'),
+       ('all.deadlines', now(), now(), 'migration'),
+       ('groups.schedule', now(), now(), 'migration'),
+       ('groups.deadlines', now(), now(), 'migration')
+ON CONFLICT (broadcast_key) DO NOTHING;
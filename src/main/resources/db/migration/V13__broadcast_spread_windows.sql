@@ -0,0 +1,13 @@
+-- Окна рассылок (BroadcastFanoutService): чат получает сообщение в момент
+-- window_start + смещение по хешу chat_id в пределах spread_ms.
+-- Части рассылки с окном — последовательные отрезки окна, прогресс — (last_offset_ms, last_chat_id).
+
+ALTER TABLE broadcast_jobs
+    ADD COLUMN IF NOT EXISTS window_start TIMESTAMP,
+    ADD COLUMN IF NOT EXISTS spread_ms    BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE broadcast_partitions
+    ADD COLUMN IF NOT EXISTS last_offset_ms BIGINT,
+    -- Отставание фактической отправки от плановой: сумма и максимум
+    ADD COLUMN IF NOT EXISTS lag_total_ms   BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS lag_max_ms     BIGINT NOT NULL DEFAULT 0;
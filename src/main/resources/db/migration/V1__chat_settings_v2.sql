@@ -0,0 +1,34 @@
+-- Перевод bot_chats.settings в компактный формат v2:
+-- {"v": 2, "flags": N, "bot_topic_id": N|null, "bot_topic_name": "..."|null}
+--
+-- Биты flags (см. ru.melnikov.telegrambot.model.ChatSettings):
+--   1  schedule_notifications
+--   2  deadline_notifications
+--   4  before_class_enabled
+--   8  welcome_message
+--   16 mention_all_enabled
+--   32 pending_welcome
+--
+-- Отсутствующие ключи получают те же значения по умолчанию, что и при чтении через getOrDefault.
+-- bot_topic_id раньше мог храниться числом или строкой — нечисловые значения отбрасываются.
+
+UPDATE bot_chats
+SET settings = jsonb_build_object(
+        'v', 2,
+        'flags',
+              (CASE WHEN COALESCE(settings ->> 'schedule_notifications', 'true') = 'true' THEN 1 ELSE 0 END)
+            | (CASE WHEN COALESCE(settings ->> 'deadline_notifications', 'true') = 'true' THEN 2 ELSE 0 END)
+            | (CASE WHEN COALESCE(settings ->> 'before_class_enabled', 'true') = 'true' THEN 4 ELSE 0 END)
+            | (CASE WHEN COALESCE(settings ->> 'welcome_message', 'true') = 'true' THEN 8 ELSE 0 END)
+            | (CASE WHEN COALESCE(settings ->> 'mention_all_enabled', 'true') = 'true' THEN 16 ELSE 0 END)
+            | (CASE WHEN COALESCE(settings ->> 'pending_welcome', 'false') = 'true' THEN 32 ELSE 0 END),
+        'bot_topic_id',
+            CASE WHEN trim(settings ->> 'bot_topic_id') ~ '^-?[0-9]{1,9}$'
+                 THEN trim(settings ->> 'bot_topic_id')::integer END,
+        'bot_topic_name', settings ->> 'bot_topic_name'
+    )
+WHERE settings IS NULL
+   OR jsonb_typeof(settings) <> 'object'
+   OR COALESCE(settings ->> 'v', '') <> '2';
+
+ALTER TABLE bot_chats ALTER COLUMN settings SET NOT NULL;
@@ -0,0 +1,5 @@
+-- Версия строки для оптимистичной блокировки BotChat (@Version).
+-- Атомарные UPDATE настроек тоже увеличивают version, поэтому сохранение
+-- устаревшей сущности не перезапишет их молча.
+
+ALTER TABLE bot_chats ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
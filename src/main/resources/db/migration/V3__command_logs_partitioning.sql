@@ -0,0 +1,86 @@
+-- command_logs -> таблица, секционированная по created_at (по дням).
+--
+-- Старые данные не копируются: прежняя таблица переименовывается в command_logs_legacy
+-- и подключается секцией FROM (MINVALUE) TO (<следующий день после последней записи>).
+-- Ее удалит та же ротация, что и дневные секции, когда все ее строки устареют.
+-- Дневные секции на будущее создает CommandLogPartitionService, записи вне
+-- существующих секций попадают в command_logs_default.
+
+ALTER TABLE command_logs RENAME TO command_logs_legacy;
+
+-- Секция подключается с ключом родителя (id, created_at): собственный PRIMARY KEY (id)
+-- старой таблицы мешает ATTACH, а ключ секционирования обязан быть NOT NULL.
+-- Строкам без времени достается самое раннее известное время, чтобы они не
+-- продлевали жизнь секции при ротации.
+DO $$
+DECLARE
+    legacy_pkey TEXT;
+BEGIN
+    SELECT conname
+    INTO legacy_pkey
+    FROM pg_constraint
+    WHERE conrelid = 'command_logs_legacy'::regclass
+      AND contype = 'p';
+
+    IF legacy_pkey IS NOT NULL THEN
+        EXECUTE format('ALTER TABLE command_logs_legacy DROP CONSTRAINT %I', legacy_pkey);
+    END IF;
+END
+$$;
+
+UPDATE command_logs_legacy
+SET created_at = COALESCE((SELECT min(created_at) FROM command_logs_legacy), current_date - 1)
+WHERE created_at IS NULL;
+
+ALTER TABLE command_logs_legacy ALTER COLUMN created_at SET NOT NULL;
+
+CREATE SEQUENCE command_logs_id_seq_v2;
+SELECT setval('command_logs_id_seq_v2', COALESCE((SELECT max(id) FROM command_logs_legacy), 0) + 1, false);
+
+CREATE TABLE command_logs (LIKE command_logs_legacy INCLUDING DEFAULTS)
+    PARTITION BY RANGE (created_at);
+
+ALTER TABLE command_logs ALTER COLUMN id SET DEFAULT nextval('command_logs_id_seq_v2');
+ALTER SEQUENCE command_logs_id_seq_v2 OWNED BY command_logs.id;
+
+-- Ключ секционированной таблицы обязан включать ключ секционирования
+ALTER TABLE command_logs ADD PRIMARY KEY (id, created_at);
+
+CREATE INDEX idx_command_logs_part_created_at ON command_logs (created_at);
+CREATE INDEX idx_command_logs_part_user_created ON command_logs (user_id, created_at);
+CREATE INDEX idx_command_logs_part_command_created ON command_logs (command, created_at);
+
+DO $$
+DECLARE
+    legacy_upper DATE;
+    day          DATE;
+BEGIN
+    -- Identity-колонку нельзя подключить секцией к таблице без identity
+    IF EXISTS (SELECT 1
+               FROM information_schema.columns
+               WHERE table_name = 'command_logs_legacy'
+                 AND column_name = 'id'
+                 AND is_identity = 'YES') THEN
+        ALTER TABLE command_logs_legacy ALTER COLUMN id DROP IDENTITY;
+    END IF;
+
+    SELECT GREATEST(current_date, COALESCE(max(created_at)::date + 1, current_date))
+    INTO legacy_upper
+    FROM command_logs_legacy;
+
+    EXECUTE format(
+            'ALTER TABLE command_logs ATTACH PARTITION command_logs_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+            legacy_upper);
+
+    -- Секции на ближайшую неделю, дальше их создает приложение
+    day := legacy_upper;
+    WHILE day < current_date + 8 LOOP
+        EXECUTE format(
+                'CREATE TABLE IF NOT EXISTS %I PARTITION OF command_logs FOR VALUES FROM (%L) TO (%L)',
+                'command_logs_p' || to_char(day, 'YYYYMMDD'), day, day + 1);
+        day := day + 1;
+    END LOOP;
+END
+$$;
+
+CREATE TABLE command_logs_default PARTITION OF command_logs DEFAULT;
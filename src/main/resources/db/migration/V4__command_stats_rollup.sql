@@ -0,0 +1,45 @@
+-- Предагрегированная статистика команд по минутам ('m') и часам ('h').
+-- Заполняется CommandLogWriter в той же транзакции, что и сырые строки command_logs.
+--
+-- histogram — количество выполнений по корзинам времени (верхние границы, мс):
+--   10, 50, 100, 250, 500, 1000, 2500, 5000, +inf
+
+CREATE TABLE command_stats_rollup (
+    granularity  CHAR(1)     NOT NULL CHECK (granularity IN ('m', 'h')),
+    bucket_start TIMESTAMP   NOT NULL,
+    command      VARCHAR(50) NOT NULL,
+    total_count  BIGINT      NOT NULL,
+    error_count  BIGINT      NOT NULL,
+    timed_count  BIGINT      NOT NULL,
+    sum_ms       BIGINT      NOT NULL,
+    min_ms       BIGINT,
+    max_ms       BIGINT,
+    histogram    BIGINT[]    NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, command)
+);
+
+-- Часовые агрегаты за уже накопленные логи, чтобы статистика не начиналась с нуля
+INSERT INTO command_stats_rollup (granularity, bucket_start, command, total_count, error_count,
+                                  timed_count, sum_ms, min_ms, max_ms, histogram)
+SELECT 'h',
+       date_trunc('hour', created_at),
+       command,
+       count(*),
+       count(*) FILTER (WHERE success = false),
+       count(execution_time_ms),
+       COALESCE(sum(execution_time_ms), 0),
+       min(execution_time_ms),
+       max(execution_time_ms),
+       ARRAY[
+           count(*) FILTER (WHERE execution_time_ms <= 10),
+           count(*) FILTER (WHERE execution_time_ms > 10 AND execution_time_ms <= 50),
+           count(*) FILTER (WHERE execution_time_ms > 50 AND execution_time_ms <= 100),
+           count(*) FILTER (WHERE execution_time_ms > 100 AND execution_time_ms <= 250),
+           count(*) FILTER (WHERE execution_time_ms > 250 AND execution_time_ms <= 500),
+           count(*) FILTER (WHERE execution_time_ms > 500 AND execution_time_ms <= 1000),
+           count(*) FILTER (WHERE execution_time_ms > 1000 AND execution_time_ms <= 2500),
+           count(*) FILTER (WHERE execution_time_ms > 2500 AND execution_time_ms <= 5000),
+           count(*) FILTER (WHERE execution_time_ms > 5000)
+       ]
+FROM command_logs
+GROUP BY date_trunc('hour', created_at), command;
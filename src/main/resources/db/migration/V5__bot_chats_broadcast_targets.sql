@@ -0,0 +1,41 @@
+-- Выбор получателей рассылок на стороне БД.
+--
+-- chat_type приводится к нижнему регистру (как его отдает Telegram API),
+-- новые значения в другом регистре отсекает CHECK — BotChat нормализует тип перед записью.
+-- Флаги настроек и тема бота вынесены в генерируемые колонки из settings (см. V1),
+-- поэтому их не нужно каждый раз разбирать из jsonb, а частичные индексы по ним
+-- позволяют отдавать пары (chat_id, bot_topic_id) сканированием только индекса.
+
+UPDATE bot_chats SET chat_type = lower(chat_type) WHERE chat_type <> lower(chat_type);
+
+ALTER TABLE bot_chats
+    ADD CONSTRAINT bot_chats_chat_type_lowercase CHECK (chat_type = lower(chat_type));
+
+ALTER TABLE bot_chats
+    ADD COLUMN is_group BOOLEAN
+        GENERATED ALWAYS AS (chat_type IN ('group', 'supergroup')) STORED,
+    ADD COLUMN notify_schedule BOOLEAN
+        GENERATED ALWAYS AS ((COALESCE((settings ->> 'flags')::integer, 0) & 1) <> 0) STORED,
+    ADD COLUMN notify_deadlines BOOLEAN
+        GENERATED ALWAYS AS ((COALESCE((settings ->> 'flags')::integer, 0) & 2) <> 0) STORED,
+    ADD COLUMN notify_before_class BOOLEAN
+        GENERATED ALWAYS AS ((COALESCE((settings ->> 'flags')::integer, 0) & 4) <> 0) STORED,
+    ADD COLUMN bot_topic_id INTEGER
+        GENERATED ALWAYS AS ((settings ->> 'bot_topic_id')::integer) STORED;
+
+-- is_group в INCLUDE — чтобы выборка "только группы" тоже обходилась без чтения таблицы
+CREATE INDEX ix_bot_chats_schedule_targets
+    ON bot_chats (chat_id) INCLUDE (bot_topic_id, is_group)
+    WHERE is_active AND notify_schedule;
+
+CREATE INDEX ix_bot_chats_deadline_targets
+    ON bot_chats (chat_id) INCLUDE (bot_topic_id, is_group)
+    WHERE is_active AND notify_deadlines;
+
+CREATE INDEX ix_bot_chats_before_class_targets
+    ON bot_chats (chat_id) INCLUDE (bot_topic_id)
+    WHERE is_active AND is_group AND notify_before_class;
+
+CREATE INDEX ix_bot_chats_active_groups
+    ON bot_chats (chat_id) INCLUDE (bot_topic_id)
+    WHERE is_active AND is_group;
@@ -0,0 +1,4 @@
+-- Выборки дедлайнов по окну [from, to) (DeadlineService.findWindow) идут
+-- диапазонным сканированием индекса вместо полного чтения таблицы.
+
+CREATE INDEX IF NOT EXISTS ix_deadlines_deadline_at ON deadlines (deadline_at);
@@ -0,0 +1,7 @@
+-- Собственные напоминания чатов (ReminderEngine).
+-- Общие рассылки исключают чаты, у которых есть активное напоминание того же типа:
+-- NOT EXISTS по (chat_id, reminder_type) обходится этим индексом.
+
+CREATE INDEX IF NOT EXISTS ix_reminders_active_chat_type
+    ON reminders (chat_id, reminder_type)
+    WHERE is_active;
@@ -0,0 +1,24 @@
+-- Работа нескольких экземпляров бота (SchedulerLeadership).
+-- Ведущий держит advisory lock PostgreSQL; при каждом захвате лидерства epoch
+-- увеличивается и служит маркером (fencing token) для всех записей ведущего.
+
+CREATE TABLE IF NOT EXISTS scheduler_leader (
+    id          SMALLINT PRIMARY KEY CHECK (id = 1),
+    epoch       BIGINT       NOT NULL,
+    owner       VARCHAR(200) NOT NULL,
+    acquired_at TIMESTAMP    NOT NULL
+);
+
+INSERT INTO scheduler_leader (id, epoch, owner, acquired_at)
+VALUES (1, 0, '', now())
+ON CONFLICT (id) DO NOTHING;
+
+-- Последний выполненный запуск каждой задачи: один плановый момент — один запуск в кластере,
+-- в том числе при смене ведущего посреди запуска
+CREATE TABLE IF NOT EXISTS scheduled_job_runs (
+    job_name   VARCHAR(200) PRIMARY KEY,
+    last_slot  TIMESTAMP    NOT NULL,
+    epoch      BIGINT       NOT NULL,
+    owner      VARCHAR(200) NOT NULL,
+    claimed_at TIMESTAMP    NOT NULL
+);
@@ -0,0 +1,14 @@
+-- Журнал изменений для остальных экземпляров (ClusterEventBridge).
+-- Экземпляр, изменивший расписание, напоминания или другие общие данные, добавляет строку;
+-- остальные читают строки после последнего увиденного id и повторяют событие у себя.
+-- Старые строки удаляет ведущий.
+
+CREATE TABLE IF NOT EXISTS cluster_events (
+    id         BIGSERIAL    PRIMARY KEY,
+    node_id    VARCHAR(200) NOT NULL,
+    event_type VARCHAR(50)  NOT NULL,
+    payload    VARCHAR(500),
+    created_at TIMESTAMP    NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_cluster_events_created_at ON cluster_events (created_at);
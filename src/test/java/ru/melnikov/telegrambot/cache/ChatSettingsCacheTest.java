@@ -0,0 +1,120 @@
+package ru.melnikov.telegrambot.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.model.BotChat;
+import ru.melnikov.telegrambot.model.ChatSettings;
+import ru.melnikov.telegrambot.repository.BotChatRepository;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatSettingsCacheTest {
+
+    private static final long CHAT_ID = -100123L;
+
+    private BotChatRepository repository;
+    private PlatformTransactionManager transactionManager;
+    private ChatSettingsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BotChatRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        cache = new ChatSettingsCache(repository, new BotSettingsConfig(), transactionManager);
+        cache.init();
+    }
+
+    @Test
+    void missLoadsFromDatabaseOnce() {
+        when(repository.findByChatId(CHAT_ID)).thenReturn(Optional.of(chat(ChatSettings.SCHEDULE_NOTIFICATIONS)));
+
+        assertTrue(cache.get(CHAT_ID).orElseThrow().scheduleNotifications());
+        assertTrue(cache.get(CHAT_ID).orElseThrow().scheduleNotifications());
+
+        verify(repository, times(1)).findByChatId(CHAT_ID);
+    }
+
+    @Test
+    void missInsideReadOnlyTransactionIsLoadedFromPrimary() {
+        when(repository.findByChatId(CHAT_ID)).thenReturn(Optional.of(chat(ChatSettings.SCHEDULE_NOTIFICATIONS)));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            assertTrue(cache.get(CHAT_ID).orElseThrow().scheduleNotifications());
+            // Повторное чтение — из кеша, без новой транзакции
+            assertTrue(cache.get(CHAT_ID).orElseThrow().scheduleNotifications());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(1)).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, definition.getValue().getPropagationBehavior());
+        assertFalse(definition.getValue().isReadOnly());
+        verify(repository, times(1)).findByChatId(CHAT_ID);
+    }
+
+    @Test
+    void missOutsideReadOnlyTransactionUsesCurrentConnection() {
+        when(repository.findByChatId(CHAT_ID)).thenReturn(Optional.empty());
+
+        assertTrue(cache.get(CHAT_ID).isEmpty());
+
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotCached() {
+        BotChat stale = chat(ChatSettings.SCHEDULE_NOTIFICATIONS);
+        BotChat fresh = chat(0);
+        when(repository.findByChatId(CHAT_ID))
+                .thenAnswer(invocation -> {
+                    // Мутатор коммитит и инвалидирует чат, пока промах читает старую строку
+                    cache.invalidate(CHAT_ID);
+                    return Optional.of(stale);
+                })
+                .thenReturn(Optional.of(fresh));
+
+        assertTrue(cache.get(CHAT_ID).orElseThrow().scheduleNotifications());
+
+        // Устаревший снимок не закеширован: следующее чтение снова идет в БД
+        assertFalse(cache.get(CHAT_ID).orElseThrow().scheduleNotifications());
+        verify(repository, times(2)).findByChatId(CHAT_ID);
+        assertEquals(1L, cache.getStats().get("staleLoads"));
+    }
+
+    @Test
+    void loadRacingWithPutReturnsStoredSnapshot() {
+        BotChat stale = chat(ChatSettings.SCHEDULE_NOTIFICATIONS);
+        BotChat fresh = chat(ChatSettings.DEADLINE_NOTIFICATIONS);
+        when(repository.findByChatId(CHAT_ID)).thenAnswer(invocation -> {
+            cache.put(fresh);
+            return Optional.of(stale);
+        });
+
+        ChatSettingsSnapshot snapshot = cache.get(CHAT_ID).orElseThrow();
+
+        assertTrue(snapshot.deadlineNotifications());
+        assertFalse(snapshot.scheduleNotifications());
+        assertSame(snapshot, cache.get(CHAT_ID).orElseThrow());
+    }
+
+    private static BotChat chat(int flags) {
+        return BotChat.builder()
+                .chatId(CHAT_ID)
+                .chatType("supergroup")
+                .isActive(true)
+                .settings(new ChatSettings(flags, null, null))
+                .build();
+    }
+}
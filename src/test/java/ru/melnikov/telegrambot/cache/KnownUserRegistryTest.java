@@ -0,0 +1,78 @@
+package ru.melnikov.telegrambot.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnownUserRegistryTest {
+
+    private KnownUserRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new KnownUserRegistry(null);
+    }
+
+    @Test
+    void unknownUserIsNotUpToDate() {
+        assertFalse(registry.isUpToDate(1L, KnownUserRegistry.fingerprint("user", "Иван", null)));
+    }
+
+    @Test
+    void rememberedUserIsUpToDateUntilNameChanges() {
+        int fingerprint = KnownUserRegistry.fingerprint("user", "Иван", "Петров");
+        registry.remember(1L, fingerprint);
+
+        assertTrue(registry.isUpToDate(1L, fingerprint));
+        assertFalse(registry.isUpToDate(1L, KnownUserRegistry.fingerprint("user", "Иван", "Сидоров")));
+        assertFalse(registry.isUpToDate(1L, KnownUserRegistry.fingerprint(null, "Иван", "Петров")));
+
+        int renamed = KnownUserRegistry.fingerprint("new_user", "Иван", "Петров");
+        registry.remember(1L, renamed);
+        assertTrue(registry.isUpToDate(1L, renamed));
+        assertEquals(1, registry.getStats().get("size"));
+    }
+
+    @Test
+    void growsAndKeepsAllUsers() {
+        for (long id = 1; id <= 5000; id++) {
+            registry.remember(id * 7919, (int) id);
+        }
+
+        assertEquals(5000, registry.getStats().get("size"));
+        assertTrue((Integer) registry.getStats().get("capacity") >= 10000);
+        for (long id = 1; id <= 5000; id++) {
+            assertTrue(registry.isUpToDate(id * 7919, (int) id));
+        }
+    }
+
+    @Test
+    void forgetKeepsRestOfProbeChainReachable() {
+        for (long id = 0; id < 400; id++) {
+            registry.remember(id << 20, (int) id);
+        }
+
+        for (long id = 0; id < 400; id += 3) {
+            registry.forget(id << 20);
+        }
+        registry.forget(123456789L);
+
+        for (long id = 0; id < 400; id++) {
+            assertEquals(id % 3 != 0, registry.isUpToDate(id << 20, (int) id), "id " + id);
+        }
+        assertEquals(266, registry.getStats().get("size"));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        registry.remember(1L, 1);
+
+        registry.isUpToDate(1L, 1);
+        registry.isUpToDate(1L, 2);
+        registry.isUpToDate(2L, 1);
+
+        assertEquals(1L, registry.getStats().get("hits"));
+        assertEquals(2L, registry.getStats().get("misses"));
+    }
+}
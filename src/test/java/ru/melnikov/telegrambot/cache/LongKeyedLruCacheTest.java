@@ -0,0 +1,180 @@
+package ru.melnikov.telegrambot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongKeyedLruCacheTest {
+
+    @Test
+    void putAndGet() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(4);
+
+        assertFalse(cache.put(1L, "one", 1));
+        assertFalse(cache.put(-7L, "minus seven", 2));
+
+        assertEquals("one", cache.get(1L, 3));
+        assertEquals("minus seven", cache.peek(-7L));
+        assertNull(cache.get(2L, 4));
+        assertTrue(cache.containsKey(1L));
+        assertFalse(cache.containsKey(2L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void putReplacesExistingValueWithoutEviction() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(1);
+        cache.put(5L, "old", 1);
+
+        assertFalse(cache.put(5L, "new", 2));
+        assertEquals("new", cache.peek(5L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(3);
+        cache.put(1L, "a", 1);
+        cache.put(2L, "b", 2);
+        cache.put(3L, "c", 3);
+
+        // Обращение к 1 делает самой старой запись 2
+        cache.get(1L, 4);
+
+        assertTrue(cache.put(4L, "d", 5));
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey(2L));
+        assertTrue(cache.containsKey(1L));
+        assertTrue(cache.containsKey(3L));
+        assertTrue(cache.containsKey(4L));
+    }
+
+    @Test
+    void peekDoesNotRefreshAccessTime() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(2);
+        cache.put(1L, "a", 1);
+        cache.put(2L, "b", 2);
+
+        cache.peek(1L);
+        cache.put(3L, "c", 3);
+
+        assertFalse(cache.containsKey(1L));
+        assertTrue(cache.containsKey(2L));
+    }
+
+    @Test
+    void putIfAbsentKeepsExistingValue() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(4);
+
+        assertTrue(cache.putIfAbsent(1L, "first", 1));
+        assertFalse(cache.putIfAbsent(1L, "second", 2));
+        assertEquals("first", cache.peek(1L));
+    }
+
+    @Test
+    void removeKeepsOtherKeysReachable() {
+        LongKeyedLruCache<Long> cache = new LongKeyedLruCache<>(64);
+        for (long key = 0; key < 64; key++) {
+            cache.put(key * 1024, key, key);
+        }
+
+        // Удаляем каждый второй ключ: сдвиг назад не должен терять соседей по цепочке
+        for (long key = 0; key < 64; key += 2) {
+            assertTrue(cache.remove(key * 1024));
+        }
+        assertFalse(cache.remove(0L));
+
+        assertEquals(32, cache.size());
+        for (long key = 0; key < 64; key++) {
+            if (key % 2 == 0) {
+                assertNull(cache.peek(key * 1024));
+            } else {
+                assertEquals(Long.valueOf(key), cache.peek(key * 1024));
+            }
+        }
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        LongKeyedLruCache<Long> cache = new LongKeyedLruCache<>(1000);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(800) - 400;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, cache.remove(key));
+            } else {
+                long value = random.nextLong();
+                assertFalse(cache.put(key, value, i));
+                expected.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), cache.size());
+        for (long key = -400; key < 400; key++) {
+            assertEquals(expected.get(key), cache.peek(key));
+        }
+    }
+
+    @Test
+    void removeIdleDropsEntriesOlderThanCutoff() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(8);
+        for (long key = 1; key <= 6; key++) {
+            cache.put(key, "v" + key, key * 10);
+        }
+
+        assertEquals(3, cache.removeIdle(35));
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey(3L));
+        assertTrue(cache.containsKey(4L));
+        assertTrue(cache.containsKey(6L));
+    }
+
+    @Test
+    void removeKeysByCondition() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(8);
+        for (long key = -4; key < 4; key++) {
+            cache.put(key, "v" + key, 1);
+        }
+
+        assertEquals(4, cache.removeKeys(key -> key < 0));
+        assertEquals(4, cache.size());
+        for (long key = 0; key < 4; key++) {
+            assertTrue(cache.containsKey(key));
+        }
+    }
+
+    @Test
+    void forEachValueAndClear() {
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(4);
+        cache.put(1L, "a", 1);
+        cache.put(2L, "b", 2);
+
+        List<String> values = new ArrayList<>();
+        cache.forEachValue(values::add);
+        assertEquals(2, values.size());
+        assertTrue(values.contains("a") && values.contains("b"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.peek(1L));
+        assertFalse(cache.put(3L, "c", 3));
+        assertEquals("c", cache.peek(3L));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new LongKeyedLruCache<String>(0));
+
+        LongKeyedLruCache<String> cache = new LongKeyedLruCache<>(1);
+        assertThrows(IllegalArgumentException.class, () -> cache.put(1L, null, 1));
+        assertEquals(1, cache.maxSize());
+    }
+}
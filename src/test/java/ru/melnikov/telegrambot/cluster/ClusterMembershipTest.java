@@ -0,0 +1,101 @@
+package ru.melnikov.telegrambot.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterMembershipTest {
+
+    private static final int VIRTUAL_NODES = 64;
+    private static final int CHATS = 20_000;
+
+    private static final ClusterMembership.Node A = new ClusterMembership.Node("a@host-1", "http://10.0.0.1:8080");
+    private static final ClusterMembership.Node B = new ClusterMembership.Node("b@host-2", "http://10.0.0.2:8080");
+    private static final ClusterMembership.Node C = new ClusterMembership.Node("c@host-3", "http://10.0.0.3:8080");
+
+    private final long[] chatIds = new Random(7).longs(CHATS).toArray();
+
+    @Test
+    void singleNodeOwnsEveryChat() {
+        ClusterMembership.Ring ring = new ClusterMembership.Ring(List.of(A), VIRTUAL_NODES);
+
+        for (long chatId : chatIds) {
+            assertEquals(A, ring.owner(chatId));
+        }
+        assertEquals(1.0, ring.shares().get(A.id()), 1e-9);
+    }
+
+    @Test
+    void ownerDoesNotDependOnNodeOrder() {
+        ClusterMembership.Ring ring = new ClusterMembership.Ring(List.of(A, B, C), VIRTUAL_NODES);
+        ClusterMembership.Ring shuffled = new ClusterMembership.Ring(List.of(C, A, B), VIRTUAL_NODES);
+
+        assertEquals(List.of(A, B, C), shuffled.nodes());
+        for (long chatId : chatIds) {
+            assertEquals(ring.owner(chatId), shuffled.owner(chatId));
+        }
+    }
+
+    @Test
+    void joiningNodeTakesChatsOnlyForItself() {
+        ClusterMembership.Ring before = new ClusterMembership.Ring(List.of(A, B), VIRTUAL_NODES);
+        ClusterMembership.Ring after = new ClusterMembership.Ring(List.of(A, B, C), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (long chatId : chatIds) {
+            ClusterMembership.Node owner = after.owner(chatId);
+            if (!owner.equals(before.owner(chatId))) {
+                // Между старыми экземплярами чаты не перетекают
+                assertEquals(C, owner);
+                moved++;
+            }
+        }
+        // Новому экземпляру достается примерно треть, а не все подряд
+        assertTrue(moved > CHATS / 5 && moved < CHATS / 2, "перешло " + moved);
+    }
+
+    @Test
+    void leavingNodeHandsOverOnlyItsChats() {
+        ClusterMembership.Ring before = new ClusterMembership.Ring(List.of(A, B, C), VIRTUAL_NODES);
+        ClusterMembership.Ring after = new ClusterMembership.Ring(List.of(A, C), VIRTUAL_NODES);
+
+        for (long chatId : chatIds) {
+            ClusterMembership.Node owner = before.owner(chatId);
+            if (!owner.equals(B)) {
+                assertEquals(owner, after.owner(chatId));
+            }
+        }
+    }
+
+    @Test
+    void sharesCoverRingAndMatchOwnership() {
+        ClusterMembership.Ring ring = new ClusterMembership.Ring(List.of(A, B, C), VIRTUAL_NODES);
+        Map<String, Double> shares = ring.shares();
+
+        assertEquals(1.0, shares.values().stream().mapToDouble(Double::doubleValue).sum(), 1e-9);
+
+        Map<String, Integer> owned = new HashMap<>();
+        for (long chatId : chatIds) {
+            owned.merge(ring.owner(chatId).id(), 1, Integer::sum);
+        }
+        for (ClusterMembership.Node node : List.of(A, B, C)) {
+            double share = shares.get(node.id());
+            assertTrue(share > 0.15 && share < 0.55, node.id() + ": " + share);
+            assertEquals(share, owned.get(node.id()) / (double) CHATS, 0.03);
+        }
+    }
+
+    @Test
+    void ownerIsStableForSameChat() {
+        ClusterMembership.Ring ring = new ClusterMembership.Ring(List.of(A, B, C), VIRTUAL_NODES);
+
+        assertEquals(ring.owner(-1001234567890L), ring.owner(-1001234567890L));
+        assertNotNull(ring.owner(Long.MIN_VALUE));
+        assertNotNull(ring.owner(Long.MAX_VALUE));
+    }
+}
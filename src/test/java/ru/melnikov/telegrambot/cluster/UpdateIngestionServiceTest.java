@@ -0,0 +1,30 @@
+package ru.melnikov.telegrambot.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateIngestionServiceTest {
+
+    @Test
+    void connectionFailuresMeanRequestWasNeverSent() {
+        assertTrue(UpdateIngestionService.neverSent(new ConnectException("Connection refused")));
+        assertTrue(UpdateIngestionService.neverSent(new HttpConnectTimeoutException("connect timed out")));
+        assertTrue(UpdateIngestionService.neverSent(new IOException("wrapped", new UnresolvedAddressException())));
+        assertTrue(UpdateIngestionService.neverSent(new IOException("wrapped", new ConnectException())));
+    }
+
+    @Test
+    void failuresAfterSendingAreNotRetriedLocally() {
+        // Тайм-аут ответа: запрос ушел, владелец мог уже принять обновление
+        assertFalse(UpdateIngestionService.neverSent(new HttpTimeoutException("request timed out")));
+        assertFalse(UpdateIngestionService.neverSent(new IOException("Connection reset")));
+        assertFalse(UpdateIngestionService.neverSent(new IOException("closed", new IOException("EOF"))));
+    }
+}
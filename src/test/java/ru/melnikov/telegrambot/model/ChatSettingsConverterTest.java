@@ -0,0 +1,95 @@
+package ru.melnikov.telegrambot.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSettingsConverterTest {
+
+    private final ChatSettingsConverter converter = new ChatSettingsConverter();
+
+    @Test
+    void roundTripsCurrentFormat() {
+        ChatSettings settings = new ChatSettings(
+                ChatSettings.SCHEDULE_NOTIFICATIONS | ChatSettings.MENTION_ALL_ENABLED, 42, "Бот");
+
+        String json = converter.convertToDatabaseColumn(settings);
+
+        assertEquals("{\"v\":2,\"flags\":17,\"bot_topic_id\":42,\"bot_topic_name\":\"Бот\"}", json);
+        assertEquals(settings, converter.convertToEntityAttribute(json));
+    }
+
+    @Test
+    void roundTripsEscapedTopicName() {
+        ChatSettings settings = new ChatSettings(0, 7, "a \"quoted\" \\ name\nwith\ttabs\u0001");
+
+        assertEquals(settings, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(settings)));
+    }
+
+    @Test
+    void roundTripsNullTopic() {
+        ChatSettings settings = ChatSettings.defaultsForGroup(true);
+
+        String json = converter.convertToDatabaseColumn(settings);
+
+        assertTrue(json.contains("\"bot_topic_id\":null"));
+        assertEquals(settings, converter.convertToEntityAttribute(json));
+    }
+
+    @Test
+    void parsesPostgresJsonbLayout() {
+        // jsonb возвращает ключи в своем порядке и с пробелами после разделителей
+        String json = "{\"v\": 2, \"flags\": 5, \"bot_topic_id\": -3, \"bot_topic_name\": \"\\u0422\\u0435\\u043c\\u0430\"}";
+
+        assertEquals(new ChatSettings(5, -3, "Тема"), converter.convertToEntityAttribute(json));
+    }
+
+    @Test
+    void parsesKeysInAnyOrder() {
+        String json = "{ \"bot_topic_name\" : null , \"flags\" : 3 , \"v\" : 2 }";
+
+        assertEquals(new ChatSettings(3, null, null), converter.convertToEntityAttribute(json));
+    }
+
+    @Test
+    void fallsBackToLegacyFormat() {
+        String json = "{\"schedule_notifications\": false, \"welcome_message\": \"false\", "
+                + "\"pending_welcome\": true, \"bot_topic_id\": \"15\", \"bot_topic_name\": \"Новости\"}";
+
+        ChatSettings settings = converter.convertToEntityAttribute(json);
+
+        assertFalse(settings.scheduleNotifications());
+        assertFalse(settings.welcomeMessage());
+        assertTrue(settings.deadlineNotifications());
+        assertTrue(settings.beforeClassEnabled());
+        assertTrue(settings.mentionAllEnabled());
+        assertTrue(settings.pendingWelcome());
+        assertEquals(Integer.valueOf(15), settings.botTopicId());
+        assertEquals("Новости", settings.botTopicName());
+    }
+
+    @Test
+    void legacyDefaultsForEmptyObject() {
+        assertEquals(ChatSettings.fromLegacyMap(null), converter.convertToEntityAttribute("{}"));
+    }
+
+    @Test
+    void otherVersionOrMissingFlagsGoesToLegacyPath() {
+        // Не v2 — разбирается как старый формат, где flags не ключ настроек
+        assertEquals(ChatSettings.fromLegacyMap(null), converter.convertToEntityAttribute("{\"v\":3,\"flags\":0}"));
+        assertEquals(ChatSettings.fromLegacyMap(null), converter.convertToEntityAttribute("{\"v\":2}"));
+    }
+
+    @Test
+    void malformedJsonFallsBackToDefaults() {
+        assertEquals(ChatSettings.fromLegacyMap(null), converter.convertToEntityAttribute("{\"v\":2,\"flags\":"));
+        assertEquals(ChatSettings.fromLegacyMap(null), converter.convertToEntityAttribute("not json"));
+    }
+
+    @Test
+    void nullAndBlankMapToNull() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+        assertNull(converter.convertToEntityAttribute("  "));
+    }
+}
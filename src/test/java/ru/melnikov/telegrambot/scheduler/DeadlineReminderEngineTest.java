@@ -0,0 +1,53 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineReminderEngineTest {
+
+    private static final List<Duration> OFFSETS = List.of(Duration.ofDays(7), Duration.ofDays(1), Duration.ofHours(3));
+    private static final LocalDateTime DEADLINE = LocalDateTime.of(2026, 3, 20, 23, 59, 30);
+
+    @Test
+    void allSlotsForDistantDeadline() {
+        Map<Duration, LocalDateTime> times = DeadlineReminderEngine.fireTimes(DEADLINE, OFFSETS, DEADLINE.minusDays(30));
+
+        // Секунды отбрасываются: напоминания уходят в начале минуты
+        assertEquals(Map.of(
+                Duration.ofDays(7), LocalDateTime.of(2026, 3, 13, 23, 59),
+                Duration.ofDays(1), LocalDateTime.of(2026, 3, 19, 23, 59),
+                Duration.ofHours(3), LocalDateTime.of(2026, 3, 20, 20, 59)), times);
+        assertEquals(OFFSETS, List.copyOf(times.keySet()));
+    }
+
+    @Test
+    void passedSlotsAreDropped() {
+        Map<Duration, LocalDateTime> times = DeadlineReminderEngine.fireTimes(DEADLINE, OFFSETS, DEADLINE.minusDays(2));
+
+        assertEquals(List.of(Duration.ofDays(1), Duration.ofHours(3)), List.copyOf(times.keySet()));
+    }
+
+    @Test
+    void slotJustPassedIsKeptWithinGrace() {
+        LocalDateTime threeHoursBefore = LocalDateTime.of(2026, 3, 20, 20, 59);
+
+        assertTrue(DeadlineReminderEngine.fireTimes(DEADLINE, OFFSETS, threeHoursBefore.plusSeconds(59))
+                .containsKey(Duration.ofHours(3)));
+        assertTrue(DeadlineReminderEngine.fireTimes(DEADLINE, OFFSETS, threeHoursBefore.plusMinutes(1))
+                .containsKey(Duration.ofHours(3)));
+        assertFalse(DeadlineReminderEngine.fireTimes(DEADLINE, OFFSETS, threeHoursBefore.plusMinutes(1).plusSeconds(1))
+                .containsKey(Duration.ofHours(3)));
+    }
+
+    @Test
+    void nothingLeftCloseToDeadline() {
+        assertTrue(DeadlineReminderEngine.fireTimes(DEADLINE, OFFSETS, DEADLINE.minusHours(1)).isEmpty());
+        assertTrue(DeadlineReminderEngine.fireTimes(DEADLINE, List.of(), DEADLINE.minusDays(30)).isEmpty());
+    }
+}
@@ -0,0 +1,152 @@
+package ru.melnikov.telegrambot.scheduler;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.melnikov.telegrambot.config.SchedulingConfig;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduledJobRegistryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    private final ScheduledJobRegistry registry = new ScheduledJobRegistry();
+
+    @Test
+    void sameNameReturnsSameJob() {
+        ScheduledJobRegistry.Job job = registry.job("a", scheduled("everyMinute"));
+
+        assertSame(job, registry.job("a", scheduled("fixedRate")));
+        assertNotSame(job, registry.job("b", scheduled("everyMinute")));
+        assertEquals(List.of("a", "b"), List.copyOf(registry.getStats().keySet()));
+    }
+
+    @Test
+    void poolDefaultsToMaintenance() {
+        assertEquals(SchedulingConfig.MAINTENANCE, stats(registry.job("plain", scheduled("fixedDelay"))).get("pool"));
+        assertEquals(SchedulingConfig.BROADCAST, stats(registry.job("pooled", scheduled("everyMinute"))).get("pool"));
+    }
+
+    @Test
+    void overlappingStartIsSkipped() {
+        ScheduledJobRegistry.Job job = registry.job("job", scheduled("fixedDelay"));
+
+        assertTrue(job.tryStart(START));
+        assertFalse(job.tryStart(START.plusSeconds(1)));
+        job.finish(START, START.plusSeconds(2), null);
+        assertTrue(job.tryStart(START.plusSeconds(3)));
+
+        assertEquals(1L, stats(job).get("skippedOverlaps"));
+    }
+
+    @Test
+    void firstCronStartLagIsMeasuredFromLastMatch() {
+        ScheduledJobRegistry.Job job = registry.job("job", scheduled("daily"));
+
+        assertTrue(job.tryStart(START.plusSeconds(10)));
+
+        assertEquals(START, job.currentExpected());
+        assertEquals(10_000L, stats(job).get("lastLagMs"));
+        assertEquals(1L, stats(job).get("lateStarts"));
+    }
+
+    @Test
+    void cronOverrunSkipsNextMatch() {
+        ScheduledJobRegistry.Job job = registry.job("job", scheduled("everyMinute"));
+
+        job.tryStart(START);
+        job.finish(START, START.plusSeconds(90), null);
+
+        Map<String, Object> stats = stats(job);
+        assertEquals(1L, stats.get("overruns"));
+        // Следующий запуск — первое совпадение после окончания
+        assertEquals(START.plusMinutes(2), stats.get("nextExpected"));
+        assertEquals(0L, stats.get("lateStarts"));
+    }
+
+    @Test
+    void fixedRateOverrunAndLag() {
+        ScheduledJobRegistry.Job job = registry.job("job", scheduled("fixedRate"));
+
+        job.tryStart(START);
+        job.finish(START, START.plusSeconds(2), null);
+        assertEquals(1L, stats(job).get("overruns"));
+        assertEquals(START.plusSeconds(1), stats(job).get("nextExpected"));
+
+        job.tryStart(START.plusSeconds(8));
+        assertEquals(7_000L, stats(job).get("lastLagMs"));
+        assertEquals(1L, stats(job).get("lateStarts"));
+        assertEquals(1_000L, job.periodMs());
+    }
+
+    @Test
+    void fixedDelayExpectsStartAfterEnd() {
+        ScheduledJobRegistry.Job job = registry.job("job", scheduled("fixedDelay"));
+
+        job.tryStart(START);
+        job.finish(START, START.plusSeconds(30), null);
+        assertEquals(START.plusSeconds(90), stats(job).get("nextExpected"));
+
+        job.tryStart(START.plusSeconds(92));
+        assertEquals(2_000L, stats(job).get("lastLagMs"));
+        assertEquals(0L, stats(job).get("lateStarts"));
+        assertEquals(0L, stats(job).get("overruns"));
+    }
+
+    @Test
+    void failuresAndDurationsAreCounted() {
+        ScheduledJobRegistry.Job job = registry.job("job", scheduled("fixedDelay"));
+
+        job.tryStart(START);
+        job.finish(START, START.plusSeconds(1), null);
+        job.tryStart(START.plusMinutes(2));
+        job.finish(START.plusMinutes(2), START.plusMinutes(2).plusSeconds(3), new IllegalStateException("boom"));
+
+        Map<String, Object> stats = stats(job);
+        assertEquals(2L, stats.get("runs"));
+        assertEquals(1L, stats.get("failures"));
+        assertEquals("IllegalStateException: boom", stats.get("lastError"));
+        assertEquals(3_000L, stats.get("lastDurationMs"));
+        assertEquals(2_000L, stats.get("avgDurationMs"));
+        assertEquals(3_000L, stats.get("maxDurationMs"));
+        assertEquals(false, stats.get("running"));
+    }
+
+    // ====== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ======
+
+    private static Map<String, Object> stats(ScheduledJobRegistry.Job job) {
+        return job.getStats();
+    }
+
+    private static Scheduled scheduled(String method) {
+        try {
+            return Jobs.class.getDeclaredMethod(method).getAnnotation(Scheduled.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Jobs {
+
+        @Scheduled(cron = "0 * * * * *", scheduler = SchedulingConfig.BROADCAST)
+        void everyMinute() {
+        }
+
+        @Scheduled(cron = "0 0 8 * * *")
+        void daily() {
+        }
+
+        @Scheduled(fixedRate = 1000)
+        void fixedRate() {
+        }
+
+        @Scheduled(fixedDelay = 60000)
+        void fixedDelay() {
+        }
+    }
+}
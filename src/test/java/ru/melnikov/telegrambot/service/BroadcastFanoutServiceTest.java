@@ -0,0 +1,261 @@
+package ru.melnikov.telegrambot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+import ru.melnikov.telegrambot.support.MapResultSet;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BroadcastFanoutServiceTest {
+
+    // Больше CHECKPOINT_EVERY и больше одной страницы получателей
+    private static final int TARGETS = 1203;
+    private static final long SPREAD_MILLIS = 60_000;
+
+    private final List<Long> chatIds = LongStream.rangeClosed(1, TARGETS).map(i -> -1000000000L - i * 37).boxed().toList();
+
+    private TrackingTransactionManager transactionManager;
+    private ReminderMessageService reminderMessageService;
+    private BotSettingsConfig settingsConfig;
+    private SchedulerLeadership leadership;
+    private final List<Long> sentTo = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new TrackingTransactionManager();
+        reminderMessageService = mock(ReminderMessageService.class);
+        doAnswer(invocation -> sentTo.add(invocation.getArgument(0)))
+                .when(reminderMessageService).sendMessageToChat(anyLong(), any(), anyString(), anyBoolean());
+
+        settingsConfig = new BotSettingsConfig();
+        settingsConfig.getBroadcast().setPartitions(1);
+        settingsConfig.getBroadcast().setGlobalRatePerSecond(1000);
+
+        leadership = mock(SchedulerLeadership.class);
+        when(leadership.getInstanceId()).thenReturn("test-instance");
+    }
+
+    @Test
+    void partitionWithManyTargetsCompletes() {
+        FakeJdbcTemplate jdbc = new FakeJdbcTemplate(claimRow(System.currentTimeMillis(), 0));
+
+        fanout(jdbc).processPending();
+
+        assertTrue(jdbc.completed, "часть должна быть завершена");
+        assertEquals(TARGETS / 50, jdbc.checkpoints);
+        assertEquals(chatIds.stream().sorted().toList(), sentTo);
+    }
+
+    @Test
+    void spreadPartitionWithManyTargetsCompletes() {
+        // Окно уже прошло — отправка без ожидания плановых моментов
+        FakeJdbcTemplate jdbc = new FakeJdbcTemplate(claimRow(System.currentTimeMillis() - 3_600_000, SPREAD_MILLIS));
+
+        fanout(jdbc).processPending();
+
+        assertTrue(jdbc.completed, "часть должна быть завершена");
+        assertEquals(TARGETS / 50, jdbc.checkpoints);
+        assertEquals(chatIds.stream()
+                .sorted(Comparator.comparingLong(FakeJdbcTemplate::offsetOf).thenComparing(Comparator.naturalOrder()))
+                .toList(), sentTo);
+    }
+
+    private BroadcastFanoutService fanout(FakeJdbcTemplate jdbc) {
+        BroadcastTargetReader reader = new BroadcastTargetReader(jdbc, transactionManager);
+        return new BroadcastFanoutService(jdbc, transactionManager, reader, reminderMessageService,
+                settingsConfig, leadership);
+    }
+
+    private static Map<String, Object> claimRow(long windowStartMillis, long spreadMillis) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("job_id", 1L);
+        row.put("partition_no", 0);
+        row.put("attempts", 1);
+        row.put("last_chat_id", null);
+        row.put("last_offset_ms", null);
+        row.put("sent", 0);
+        row.put("failed", 0);
+        row.put("lag_total_ms", 0L);
+        row.put("lag_max_ms", 0L);
+        row.put("audience", BroadcastTargetReader.Audience.SCHEDULE.name());
+        row.put("what", "тест");
+        row.put("text", "текст");
+        row.put("partitions", 1);
+        row.put("window_start", new Timestamp(windowStartMillis));
+        row.put("spread_ms", spreadMillis);
+        return row;
+    }
+
+    /**
+     * Считает открытые read-only транзакции, как маршрутизация на реплику
+     */
+    private static final class TrackingTransactionManager implements PlatformTransactionManager {
+
+        private int readOnlyDepth;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            boolean readOnly = definition != null && definition.isReadOnly();
+            if (readOnly) {
+                readOnlyDepth++;
+            }
+            return new TrackedStatus(readOnly);
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            end(status);
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            end(status);
+        }
+
+        private void end(TransactionStatus status) {
+            if (((TrackedStatus) status).readOnly) {
+                readOnlyDepth--;
+            }
+        }
+
+        private static final class TrackedStatus extends SimpleTransactionStatus {
+            private final boolean readOnly;
+
+            private TrackedStatus(boolean readOnly) {
+                this.readOnly = readOnly;
+            }
+        }
+    }
+
+    /**
+     * Таблицы рассылки и чатов в памяти. Запись внутри read-only транзакции
+     * падает так же, как на реплике
+     */
+    private final class FakeJdbcTemplate extends JdbcTemplate {
+
+        private final Map<String, Object> claimRow;
+        private boolean claimed;
+        private int checkpoints;
+        private boolean completed;
+
+        private FakeJdbcTemplate(Map<String, Object> claimRow) {
+            this.claimRow = claimRow;
+        }
+
+        static long offsetOf(long chatId) {
+            return BroadcastTargetReader.spreadOffset(chatId, SPREAD_MILLIS);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            if (sql.contains("SET status = 'claimed'")) {
+                if (claimed) {
+                    return List.of();
+                }
+                claimed = true;
+                return List.of(map(rowMapper, claimRow));
+            }
+
+            assertTrue(transactionManager.readOnlyDepth > 0, "получатели читаются в read-only транзакции");
+            List<Map<String, Object>> rows = sql.contains("offset_ms") ? spreadPage(args) : partitionPage(args);
+            List<T> page = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                page.add(map(rowMapper, row));
+            }
+            return page;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (transactionManager.readOnlyDepth > 0) {
+                throw new TransientDataAccessResourceException("cannot execute UPDATE in a read-only transaction");
+            }
+            if (sql.contains("status = 'done'")) {
+                completed = true;
+            } else if (sql.contains("SET last_chat_id")) {
+                checkpoints++;
+            }
+            return 1;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            // Число отправляющих экземпляров
+            return requiredType.cast(1);
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql, Object... args) {
+            return List.of(Map.of("sent", sentTo.size(), "seconds", 0L));
+        }
+
+        // partitionSql: partitions, partition, afterChatId, limit
+        private List<Map<String, Object>> partitionPage(Object[] args) {
+            long partitions = ((Number) args[0]).longValue();
+            long partition = ((Number) args[1]).longValue();
+            long after = ((Number) args[2]).longValue();
+            int limit = ((Number) args[3]).intValue();
+            return chatIds.stream()
+                    .filter(id -> Math.abs(id % partitions) == partition && id > after)
+                    .sorted()
+                    .limit(limit)
+                    .map(id -> row(id, null))
+                    .toList();
+        }
+
+        // spreadSql: spread, partitions, spread, partition, afterOffset, afterChatId, limit
+        private List<Map<String, Object>> spreadPage(Object[] args) {
+            long spread = ((Number) args[0]).longValue();
+            long partitions = ((Number) args[1]).longValue();
+            long partition = ((Number) args[3]).longValue();
+            long afterOffset = ((Number) args[4]).longValue();
+            long afterChatId = ((Number) args[5]).longValue();
+            int limit = ((Number) args[6]).intValue();
+            return chatIds.stream()
+                    .filter(id -> BroadcastTargetReader.spreadPartition(offsetOf(id), (int) partitions, spread) == partition)
+                    .filter(id -> offsetOf(id) > afterOffset || offsetOf(id) == afterOffset && id > afterChatId)
+                    .sorted(Comparator.comparingLong(FakeJdbcTemplate::offsetOf).thenComparing(Comparator.naturalOrder()))
+                    .limit(limit)
+                    .map(id -> row(id, offsetOf(id)))
+                    .toList();
+        }
+
+        private Map<String, Object> row(long chatId, Long offset) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("chat_id", chatId);
+            row.put("bot_topic_id", null);
+            if (offset != null) {
+                row.put("offset_ms", offset);
+            }
+            return row;
+        }
+
+        private <T> T map(RowMapper<T> rowMapper, Map<String, Object> row) {
+            try {
+                return rowMapper.mapRow(MapResultSet.of(row), 0);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
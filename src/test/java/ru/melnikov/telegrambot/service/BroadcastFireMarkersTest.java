@@ -0,0 +1,180 @@
+package ru.melnikov.telegrambot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.melnikov.telegrambot.config.BotSettingsConfig;
+import ru.melnikov.telegrambot.scheduler.SchedulerLeadership;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BroadcastFireMarkersTest {
+
+    private static final String KEY = "all.schedule";
+    private static final LocalDateTime PLANNED = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    private final Map<String, LocalDateTime> markers = new HashMap<>();
+    private final AtomicInteger actions = new AtomicInteger();
+
+    private RollbackTransactionManager transactionManager;
+    private BroadcastFireMarkers fireMarkers;
+
+    @BeforeEach
+    void setUp() {
+        BotSettingsConfig settingsConfig = new BotSettingsConfig();
+        settingsConfig.getReminders().getScheduler().setCatchUpGrace(Duration.ofHours(2));
+
+        SchedulerLeadership leadership = mock(SchedulerLeadership.class);
+        when(leadership.getInstanceId()).thenReturn("test-instance");
+
+        transactionManager = new RollbackTransactionManager();
+        fireMarkers = new BroadcastFireMarkers(new FakeJdbcTemplate(), transactionManager, settingsConfig, leadership);
+    }
+
+    @Test
+    void firesPlannedMomentOnce() {
+        assertTrue(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusSeconds(5), actions::incrementAndGet));
+        assertFalse(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusSeconds(65), actions::incrementAndGet));
+
+        assertEquals(1, actions.get());
+        assertEquals(PLANNED, markers.get(KEY));
+        assertEquals(0L, stats().get("caughtUp"));
+    }
+
+    @Test
+    void momentFiredElsewhereIsNotRepeated() {
+        markers.put(KEY, PLANNED);
+
+        assertFalse(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusSeconds(5), actions::incrementAndGet));
+
+        assertEquals(0, actions.get());
+        assertEquals(1L, stats().get("alreadyFired"));
+    }
+
+    @Test
+    void nextMomentFiresAfterPrevious() {
+        markers.put(KEY, PLANNED);
+
+        assertTrue(fireMarkers.tryFire(KEY, PLANNED.plusDays(1), PLANNED.plusDays(1), actions::incrementAndGet));
+
+        assertEquals(PLANNED.plusDays(1), markers.get(KEY));
+    }
+
+    @Test
+    void missedMomentWithinGraceIsCaughtUp() {
+        assertTrue(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusMinutes(90), actions::incrementAndGet));
+
+        assertEquals(1, actions.get());
+        assertEquals(1L, stats().get("caughtUp"));
+    }
+
+    @Test
+    void missedMomentOutsideGraceIsSkipped() {
+        assertFalse(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusHours(3), actions::incrementAndGet));
+        // Предупреждение — один раз на момент
+        assertFalse(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusHours(3).plusMinutes(1), actions::incrementAndGet));
+
+        assertEquals(0, actions.get());
+        assertNull(markers.get(KEY));
+        assertEquals(1L, stats().get("skippedOutsideGrace"));
+    }
+
+    @Test
+    void futureOrMissingMomentDoesNothing() {
+        assertFalse(fireMarkers.tryFire(KEY, null, PLANNED, actions::incrementAndGet));
+        assertFalse(fireMarkers.tryFire(KEY, PLANNED.plusMinutes(1), PLANNED, actions::incrementAndGet));
+
+        assertEquals(0, actions.get());
+        assertEquals(0, transactionManager.begun);
+    }
+
+    @Test
+    void failedActionRollsBackMarkerAndIsRetried() {
+        assertFalse(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusSeconds(5), () -> {
+            throw new IllegalStateException("очередь недоступна");
+        }));
+
+        assertNull(markers.get(KEY), "отметка откатывается вместе с неудачной постановкой");
+        assertEquals(1, transactionManager.rolledBack);
+        assertEquals(1L, stats().get("failed"));
+
+        assertTrue(fireMarkers.tryFire(KEY, PLANNED, PLANNED.plusMinutes(5), actions::incrementAndGet));
+        assertEquals(1, actions.get());
+        assertEquals(PLANNED, markers.get(KEY));
+    }
+
+    private Map<String, Object> stats() {
+        return fireMarkers.getStats();
+    }
+
+    /**
+     * Откат восстанавливает отметки, сохраненные в начале транзакции
+     */
+    private final class RollbackTransactionManager implements PlatformTransactionManager {
+
+        private Map<String, LocalDateTime> snapshot;
+        private int begun;
+        private int rolledBack;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            begun++;
+            snapshot = new HashMap<>(markers);
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            snapshot = null;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rolledBack++;
+            markers.clear();
+            markers.putAll(snapshot);
+        }
+    }
+
+    /**
+     * broadcast_fire_markers в памяти: отметка сдвигается только вперед, как в CLAIM_SQL
+     */
+    private final class FakeJdbcTemplate extends JdbcTemplate {
+
+        @Override
+        public int update(String sql, Object... args) {
+            String key = (String) args[0];
+            LocalDateTime planned = ((Timestamp) args[1]).toLocalDateTime();
+            LocalDateTime last = markers.get(key);
+            if (last != null && !last.isBefore(planned)) {
+                return 0;
+            }
+            markers.put(key, planned);
+            return 1;
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            LocalDateTime last = markers.get((String) args[0]);
+            return last == null ? List.of() : List.of(elementType.cast(Timestamp.valueOf(last)));
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.melnikov.telegrambot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadcastTargetReaderTest {
+
+    private static final long HOUR_MILLIS = 3_600_000;
+
+    @Test
+    void spreadOffsetMatchesSqlFormula() {
+        // Значения посчитаны по той же формуле в bigint-арифметике, что и offset_ms в spreadSql
+        assertEquals(656_244, BroadcastTargetReader.spreadOffset(-1001234567890L, HOUR_MILLIS));
+        assertEquals(1_864_550, BroadcastTargetReader.spreadOffset(123456789L, HOUR_MILLIS));
+        assertEquals(2_614_409, BroadcastTargetReader.spreadOffset(-1L, HOUR_MILLIS));
+    }
+
+    @Test
+    void spreadOffsetStaysInsideWindow() {
+        long[] windows = {1, 1000, 60_000, HOUR_MILLIS};
+        for (long window : windows) {
+            LongStream.of(Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1, -1001234567890L, 987654321L)
+                    .forEach(chatId -> {
+                        long offset = BroadcastTargetReader.spreadOffset(chatId, window);
+                        assertTrue(offset >= 0 && offset < window, chatId + " -> " + offset);
+                    });
+        }
+    }
+
+    @Test
+    void spreadOffsetIsStableFromDayToDay() {
+        long chatId = -1001987654321L;
+        assertEquals(BroadcastTargetReader.spreadOffset(chatId, HOUR_MILLIS),
+                BroadcastTargetReader.spreadOffset(chatId, HOUR_MILLIS));
+    }
+
+    @Test
+    void consecutiveGroupIdsSpreadEvenly() {
+        int segments = 12;
+        int chats = 60_000;
+        int[] counts = new int[segments];
+        for (long i = 0; i < chats; i++) {
+            long offset = BroadcastTargetReader.spreadOffset(-1001000000000L - i, HOUR_MILLIS);
+            counts[BroadcastTargetReader.spreadPartition(offset, segments, HOUR_MILLIS)]++;
+        }
+
+        int expected = chats / segments;
+        for (int count : counts) {
+            assertTrue(Math.abs(count - expected) < expected / 10, "отрезок с " + count + " чатами из " + expected);
+        }
+    }
+
+    @Test
+    void spreadPartitionSplitsWindowIntoEqualSegments() {
+        int partitions = 4;
+        long window = 60_000;
+
+        assertEquals(0, BroadcastTargetReader.spreadPartition(0, partitions, window));
+        assertEquals(0, BroadcastTargetReader.spreadPartition(14_999, partitions, window));
+        assertEquals(1, BroadcastTargetReader.spreadPartition(15_000, partitions, window));
+        assertEquals(3, BroadcastTargetReader.spreadPartition(window - 1, partitions, window));
+
+        int previous = 0;
+        for (long offset = 0; offset < window; offset += 7) {
+            int partition = BroadcastTargetReader.spreadPartition(offset, partitions, window);
+            assertTrue(partition >= previous && partition < partitions);
+            previous = partition;
+        }
+    }
+}
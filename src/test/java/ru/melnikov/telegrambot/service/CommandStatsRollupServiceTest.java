@@ -0,0 +1,136 @@
+package ru.melnikov.telegrambot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.melnikov.telegrambot.service.CommandStatsRollupService.CommandTotals;
+import ru.melnikov.telegrambot.support.MapResultSet;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandStatsRollupServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 10, 0, 0);
+
+    @Test
+    void longPeriodUsesHourRowsAndMinuteEdges() {
+        FakeJdbcTemplate jdbc = new FakeJdbcTemplate(List.of());
+
+        new CommandStatsRollupService(jdbc).getTotals(DAY.plusHours(10).plusSeconds(30), DAY.plusHours(13).plusMinutes(20));
+
+        // часовые [11:00, 13:00), минутные [10:01, 11:00) и [13:00, 13:20)
+        assertEquals(List.of(
+                ts(11, 0), ts(13, 0),
+                ts(10, 1), ts(11, 0),
+                ts(13, 0), ts(13, 20)), jdbc.args);
+    }
+
+    @Test
+    void periodShorterThanHourUsesOnlyMinuteRows() {
+        FakeJdbcTemplate jdbc = new FakeJdbcTemplate(List.of());
+
+        new CommandStatsRollupService(jdbc).getTotals(DAY.plusHours(10).plusMinutes(5), DAY.plusHours(10).plusMinutes(40));
+
+        assertEquals(List.of(
+                ts(10, 40), ts(10, 40),
+                ts(10, 5), ts(10, 40),
+                ts(10, 40), ts(10, 40)), jdbc.args);
+    }
+
+    @Test
+    void periodOnHourBoundariesHasEmptyMinuteEdges() {
+        FakeJdbcTemplate jdbc = new FakeJdbcTemplate(List.of());
+
+        new CommandStatsRollupService(jdbc).getTotals(DAY.plusHours(8), DAY.plusHours(12));
+
+        assertEquals(List.of(
+                ts(8, 0), ts(12, 0),
+                ts(8, 0), ts(8, 0),
+                ts(12, 0), ts(12, 0)), jdbc.args);
+    }
+
+    @Test
+    void sumsHourAndMinuteRowsPerCommand() {
+        FakeJdbcTemplate jdbc = new FakeJdbcTemplate(List.of(
+                row("/today", 10, 1, 8, 800, 20L, 400L, 0, 3, 4, 0, 1, 0, 0, 0, 0),
+                row("/help", 3, 0, 0, 0, null, null, 0, 0, 0, 0, 0, 0, 0, 0, 0),
+                row("/today", 5, 0, 2, 2000, 700L, 1300L, 0, 0, 0, 0, 0, 1, 1, 0, 0)));
+
+        Map<String, CommandTotals> totals = new CommandStatsRollupService(jdbc)
+                .getTotals(DAY.plusHours(10), DAY.plusHours(14));
+
+        assertEquals(List.of("/today", "/help"), new ArrayList<>(totals.keySet()));
+
+        CommandTotals today = totals.get("/today");
+        assertEquals(15, today.getCount());
+        assertEquals(1, today.getErrors());
+        assertEquals(280, today.getAvgExecutionTime());
+        assertEquals(20, today.getMinExecutionTime());
+        assertEquals(1300, today.getMaxExecutionTime());
+        assertEquals(100, today.getPercentileExecutionTime(50));
+        assertEquals(2500, today.getPercentileExecutionTime(95));
+
+        CommandTotals help = totals.get("/help");
+        assertEquals(3, help.getCount());
+        assertEquals(0, help.getAvgExecutionTime());
+        assertEquals(0, help.getMinExecutionTime());
+        assertEquals(0, help.getMaxExecutionTime());
+        assertEquals(0, help.getPercentileExecutionTime(99));
+    }
+
+    private static Timestamp ts(int hour, int minute) {
+        return Timestamp.valueOf(DAY.withHour(hour).withMinute(minute));
+    }
+
+    private static Map<String, Object> row(String command, long total, long errors, long timed, long sumMs,
+                                           Long minMs, Long maxMs, long... histogram) {
+        Long[] boxed = new Long[histogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            boxed[i] = histogram[i];
+        }
+
+        Map<String, Object> row = new HashMap<>();
+        row.put("command", command);
+        row.put("total_count", total);
+        row.put("error_count", errors);
+        row.put("timed_count", timed);
+        row.put("sum_ms", sumMs);
+        row.put("min_ms", minMs);
+        row.put("max_ms", maxMs);
+        row.put("histogram", boxed);
+        return row;
+    }
+
+    /**
+     * Отдает заданные строки в RowCallbackHandler и запоминает параметры запроса
+     */
+    private static final class FakeJdbcTemplate extends JdbcTemplate {
+
+        private final List<Map<String, Object>> rows;
+        private final List<Object> args = new ArrayList<>();
+
+        private FakeJdbcTemplate(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            this.args.addAll(List.of(args));
+            for (Map<String, Object> row : rows) {
+                try {
+                    handler.processRow(MapResultSet.of(row));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+}
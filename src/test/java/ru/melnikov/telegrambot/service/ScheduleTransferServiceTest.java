@@ -0,0 +1,249 @@
+package ru.melnikov.telegrambot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.melnikov.telegrambot.dto.ScheduleImportResult;
+import ru.melnikov.telegrambot.exception.BadRequestException;
+import ru.melnikov.telegrambot.service.ScheduleTransferService.Format;
+import ru.melnikov.telegrambot.support.MapResultSet;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ScheduleTransferServiceTest {
+
+    private static final String CSV = """
+            day_of_week;time_start;time_end;subject;teacher;location;is_online;week_type
+            1;8:30;10:00;Математика;Иванов И. И.;"ауд. 101; корпус 2";false;odd
+            1;10:10;11:40;Физика;;https://meet.example.com;да;
+            1;08:30;10:00;Математика;Иванов И. И.;ауд. 101;false;odd
+            """;
+
+    private FakeJdbcTemplate jdbc;
+    private ScheduleTransferService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new FakeJdbcTemplate();
+        WeekTypeService weekTypeService = mock(WeekTypeService.class);
+        when(weekTypeService.getWeekTypeForDate(any())).thenReturn("even");
+
+        service = new ScheduleTransferService(jdbc, mock(PlatformTransactionManager.class), weekTypeService,
+                mock(SecondLevelCacheService.class), mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void importsCsvAndSkipsDuplicatesWithinFile() {
+        ScheduleImportResult result = importCsv(CSV, false);
+
+        assertEquals(2, result.imported());
+        assertEquals(1, result.duplicates());
+        assertEquals(0, result.existing());
+
+        Map<String, Object> physics = jdbc.rows.get(1);
+        assertEquals("Физика", physics.get("subject"));
+        assertNull(physics.get("teacher"));
+        assertEquals(true, physics.get("is_online"));
+        assertEquals("all", physics.get("week_type"));
+        assertEquals("ауд. 101; корпус 2", jdbc.rows.get(0).get("location"));
+    }
+
+    @Test
+    void reimportingSameFileAddsNothing() {
+        importCsv(CSV, false);
+
+        ScheduleImportResult again = importCsv(CSV, false);
+
+        assertEquals(0, again.imported());
+        assertEquals(3, again.existing());
+        assertEquals(2, jdbc.rows.size());
+    }
+
+    @Test
+    void replaceDoesNotCompareWithExistingRows() {
+        importCsv(CSV, false);
+
+        ScheduleImportResult replaced = importCsv(CSV, true);
+
+        assertEquals(2, replaced.imported());
+        assertEquals(2, replaced.deleted());
+        assertEquals(2, jdbc.rows.size());
+    }
+
+    @Test
+    void invalidRowsRejectWholeFileWithLineNumbers() {
+        BadRequestException error = assertThrows(BadRequestException.class, () -> importCsv("""
+                day_of_week,time_start,time_end,subject
+                8,08:30,10:00,Математика
+                1,10:00,09:00,Физика
+                1,25:00,26:00,Химия
+                """, false));
+
+        assertTrue(error.getMessage().contains("ошибок: 3"), error.getMessage());
+        assertTrue(error.getMessage().contains("строка 2: day_of_week"), error.getMessage());
+        assertTrue(error.getMessage().contains("строка 3: time_end"), error.getMessage());
+        assertTrue(error.getMessage().contains("строка 4: time_start"), error.getMessage());
+        assertTrue(jdbc.rows.isEmpty());
+    }
+
+    @Test
+    void missingRequiredColumnIsReported() {
+        BadRequestException error = assertThrows(BadRequestException.class,
+                () -> importCsv("day_of_week,time_start,subject\n1,08:30,Математика\n", false));
+
+        assertTrue(error.getMessage().contains("time_end"), error.getMessage());
+    }
+
+    @Test
+    void importsIcsEvents() {
+        ScheduleImportResult result = importIcs("""
+                BEGIN:VCALENDAR
+                BEGIN:VEVENT
+                DTSTART:20250310T083000
+                DTEND:20250310T100000
+                RRULE:FREQ=WEEKLY;INTERVAL=2
+                SUMMARY:Математика
+                X-SCHEDULE-TEACHER:Иванов И. И.
+                END:VEVENT
+                BEGIN:VEVENT
+                DTSTART:20250311T101000
+                DURATION:PT1H30M
+                RRULE:FREQ=WEEKLY
+                SUMMARY:Физика
+                LOCATION:https://meet.example.com
+                END:VEVENT
+                BEGIN:VEVENT
+                DTSTART:20250312T101000
+                DTEND:20250312T114000
+                SUMMARY:Химия
+                X-SCHEDULE-WEEK-TYPE:odd
+                X-SCHEDULE-ONLINE:false
+                END:VEVENT
+                END:VCALENDAR
+                """);
+
+        assertEquals(3, result.imported());
+
+        Map<String, Object> math = jdbc.rows.get(0);
+        assertEquals(1, math.get("day_of_week"));
+        assertEquals("even", math.get("week_type"));
+        assertEquals("Иванов И. И.", math.get("teacher"));
+
+        Map<String, Object> physics = jdbc.rows.get(1);
+        assertEquals(2, physics.get("day_of_week"));
+        assertEquals(java.sql.Time.valueOf("11:40:00"), physics.get("time_end"));
+        assertEquals(true, physics.get("is_online"));
+        assertEquals("all", physics.get("week_type"));
+
+        assertEquals("odd", jdbc.rows.get(2).get("week_type"));
+    }
+
+    @Test
+    void rejectsNonWeeklyAndAllDayEvents() {
+        BadRequestException error = assertThrows(BadRequestException.class, () -> importIcs("""
+                BEGIN:VEVENT
+                DTSTART;VALUE=DATE:20250310
+                DTEND;VALUE=DATE:20250311
+                SUMMARY:Праздник
+                END:VEVENT
+                BEGIN:VEVENT
+                DTSTART:20250310T083000
+                DTEND:20250310T100000
+                RRULE:FREQ=DAILY
+                SUMMARY:Математика
+                END:VEVENT
+                """));
+
+        assertTrue(error.getMessage().contains("строка 1: DTSTART"), error.getMessage());
+        assertTrue(error.getMessage().contains("строка 6: поддерживаются только еженедельные"), error.getMessage());
+    }
+
+    private ScheduleImportResult importCsv(String csv, boolean replace) {
+        return service.importSchedule(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), Format.CSV, replace);
+    }
+
+    private ScheduleImportResult importIcs(String ics) {
+        return service.importSchedule(new ByteArrayInputStream(ics.getBytes(StandardCharsets.UTF_8)), Format.ICS, false);
+    }
+
+    /**
+     * Таблица schedule в памяти: вставки пачками, выборка ключей и удаление
+     */
+    private static final class FakeJdbcTemplate extends JdbcTemplate {
+
+        private static final List<String> INSERT_COLUMNS = List.of("day_of_week", "time_start", "time_end",
+                "subject", "teacher", "location", "is_online", "week_type", "created_at");
+
+        private final List<Map<String, Object>> rows = new ArrayList<>();
+
+        @Override
+        public DataSource getDataSource() {
+            return mock(DataSource.class);
+        }
+
+        @Override
+        public void execute(String sql) {
+            // LOCK TABLE
+        }
+
+        @Override
+        public int update(String sql) {
+            assertTrue(sql.startsWith("DELETE FROM schedule"), sql);
+            int deleted = rows.size();
+            rows.clear();
+            return deleted;
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler) {
+            for (Map<String, Object> row : List.copyOf(rows)) {
+                try {
+                    handler.processRow(MapResultSet.of(row));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> setter) {
+            for (T arg : batchArgs) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                        PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        (proxy, method, args) -> {
+                            if (method.getName().startsWith("set") && args.length == 2) {
+                                row.put(INSERT_COLUMNS.get((Integer) args[0] - 1), args[1]);
+                                return null;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        });
+                try {
+                    setter.setValues(statement, arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                rows.add(row);
+            }
+            return new int[][]{};
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.melnikov.telegrambot.support;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ResultSet на одну строку из Map (колонки в порядке ключей) для тестов RowMapper и RowCallbackHandler.
+ * Поддерживает только чтение значений по имени или номеру колонки и wasNull()
+ */
+public final class MapResultSet {
+
+    private MapResultSet() {
+    }
+
+    public static ResultSet of(Map<String, Object> row) {
+        List<String> columns = new ArrayList<>(row.keySet());
+        boolean[] lastNull = new boolean[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("wasNull")) {
+                        return lastNull[0];
+                    }
+                    if (!name.startsWith("get") || args == null || args.length != 1) {
+                        throw new UnsupportedOperationException(name);
+                    }
+
+                    Object value = args[0] instanceof Integer index
+                            ? row.get(columns.get(index - 1))
+                            : row.get((String) args[0]);
+                    lastNull[0] = value == null;
+                    return switch (name) {
+                        case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                        case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                        case "getArray" -> value == null ? null : Proxy.newProxyInstance(Array.class.getClassLoader(),
+                                new Class<?>[]{Array.class}, (arrayProxy, arrayMethod, arrayArgs) -> value);
+                        default -> value;
+                    };
+                });
+    }
+}
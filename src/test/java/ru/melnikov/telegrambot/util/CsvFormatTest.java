@@ -0,0 +1,41 @@
+package ru.melnikov.telegrambot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvFormatTest {
+
+    @Test
+    void detectsSeparatorFromHeader() {
+        assertEquals(',', CsvFormat.detectSeparator("day_of_week,time_start,subject"));
+        assertEquals(';', CsvFormat.detectSeparator("day_of_week;time_start;subject"));
+        // Запятая в заголовке — значит, разделитель запятая
+        assertEquals(',', CsvFormat.detectSeparator("day_of_week,\"a;b\""));
+    }
+
+    @Test
+    void splitsAndTrimsFields() {
+        assertEquals(List.of("1", "08:30", "Математика", ""), CsvFormat.parseLine("1, 08:30 ,Математика,", ','));
+        assertEquals(List.of("1", "08:30", "Физика"), CsvFormat.parseLine("1;08:30;Физика", ';'));
+    }
+
+    @Test
+    void quotedFieldsKeepSeparatorsAndDoubledQuotes() {
+        assertEquals(List.of("1", "Иванов, И. И.", "ауд. \"101\""),
+                CsvFormat.parseLine("1,\"Иванов, И. И.\",\"ауд. \"\"101\"\"\"", ','));
+        assertEquals(List.of("a;b", "c"), CsvFormat.parseLine("\"a;b\";c", ';'));
+    }
+
+    @Test
+    void escapeRoundTrips() {
+        for (String value : List.of("plain", "with,comma", "with;semicolon", "with \"quotes\"")) {
+            String line = "x," + CsvFormat.escape(value) + ",y";
+            assertEquals(List.of("x", value, "y"), CsvFormat.parseLine(line, ','));
+        }
+        assertEquals("", CsvFormat.escape(null));
+        assertEquals("\"two lines\"", CsvFormat.escape("two\nlines"));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.melnikov.telegrambot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ICalendarFormatTest {
+
+    @Test
+    void readsEventsWithLineNumbersAndParams() throws IOException {
+        List<ICalendarFormat.Event> events = read("""
+                BEGIN:VCALENDAR
+                VERSION:2.0
+                BEGIN:VEVENT
+                DTSTART;TZID=Europe/Moscow:20250310T083000
+                DTEND;TZID=Europe/Moscow:20250310T100000
+                SUMMARY:Математика
+                END:VEVENT
+                BEGIN:VEVENT
+                dtstart:20250311T101000
+                DURATION:PT1H30M
+                summary:Физика
+                END:VEVENT
+                END:VCALENDAR
+                """);
+
+        assertEquals(2, events.size());
+
+        ICalendarFormat.Event first = events.get(0);
+        assertEquals(3, first.line());
+        assertEquals("20250310T083000", first.get("DTSTART").value());
+        assertEquals("Europe/Moscow", first.get("DTSTART").param("TZID"));
+        assertEquals("Математика", first.get("SUMMARY").text());
+
+        ICalendarFormat.Event second = events.get(1);
+        assertEquals(8, second.line());
+        assertEquals("PT1H30M", second.get("DURATION").value());
+        assertEquals("Физика", second.get("SUMMARY").text());
+    }
+
+    @Test
+    void unfoldsContinuationLinesAndUnescapesText() throws IOException {
+        List<ICalendarFormat.Event> events = read("""
+                BEGIN:VEVENT
+                SUMMARY:Очень длинное назв
+                 ание\\, с запятой\\; и\\nпереводом
+                LOCATION;ALTREP="http://example.com:8080/room":Корпус 1
+                END:VEVENT
+                """);
+
+        ICalendarFormat.Event event = events.get(0);
+        assertEquals("Очень длинное название, с запятой; и\nпереводом", event.get("SUMMARY").text());
+        // Двоеточие в параметре в кавычках не разделяет имя и значение
+        assertEquals("Корпус 1", event.get("LOCATION").value());
+        assertEquals("http://example.com:8080/room", event.get("LOCATION").param("ALTREP"));
+    }
+
+    @Test
+    void ignoresPropertiesOutsideEventsAndUnclosedEvent() throws IOException {
+        List<ICalendarFormat.Event> events = read("""
+                SUMMARY:вне события
+                BEGIN:VEVENT
+                SUMMARY:не закрыто
+                """);
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void writeLineFoldsAt75OctetsAndReadsBack() throws IOException {
+        String summary = "SUMMARY:" + "Дифференциальные уравнения и ".repeat(5);
+        StringWriter writer = new StringWriter();
+        ICalendarFormat.writeLine(writer, "BEGIN:VEVENT");
+        ICalendarFormat.writeLine(writer, summary);
+        ICalendarFormat.writeLine(writer, "END:VEVENT");
+
+        for (String line : writer.toString().split("\r\n")) {
+            assertTrue(line.getBytes(java.nio.charset.StandardCharsets.UTF_8).length <= 75, line);
+        }
+        assertEquals(summary.substring("SUMMARY:".length()), read(writer.toString()).get(0).get("SUMMARY").value());
+    }
+
+    @Test
+    void escapeTextRoundTrips() {
+        String value = "a\\b, c; d\ne";
+        assertEquals("a\\\\b\\, c\\; d\\ne", ICalendarFormat.escapeText(value));
+        assertEquals(value, ICalendarFormat.unescapeText(ICalendarFormat.escapeText(value)));
+    }
+
+    private static List<ICalendarFormat.Event> read(String ics) throws IOException {
+        List<ICalendarFormat.Event> events = new ArrayList<>();
+        ICalendarFormat.readEvents(new BufferedReader(new StringReader(ics)), events::add);
+        return events;
+    }
+}